@@ -70,6 +70,10 @@ public class HTTPConstants {
          * frameworks still use the 302 status code as if it were the 303[6].
          */
         REDIRECT_FOUND(302, "Found"),
+        /**
+         * conditional GET, the cached copy of the client is still valid
+         */
+        REDIRECT_NOT_MODIFIED(304, "Not Modified"),
         /**
          * http://code.google.com/p/gears/wiki/ResumableHttpRequestsProposal
          */
@@ -303,6 +307,8 @@ public class HTTPConstants {
     public static final String HEADER_RESPONSE_TRANSFER_ENCODING            = "Transfer-Encoding";
     public static final String HEADER_RESPONSE_TRANSFER_ENCODING_CHUNKED    = "chunked";
     public static final String HEADER_RESPONSE_ACCEPT_RANGES                = "Accept-Ranges";
+    public static final String HEADER_RESPONSE_LAST_MODIFIED                = "Last-Modified";
+    public static final String HEADER_RESPONSE_VARY                         = "Vary";
     public static final String HEADER_RESPONSE_CONTENT_ENCODING             = "Content-Encoding";
     public static final String HEADER_RESPONSE_LOCATION                     = "Location";
     public static final String HEADER_RESPONSE_SERVER                       = "Server";
@@ -92,18 +92,20 @@ public class InterfaceHandler<T> {
         return ret;
     }
 
-    private final RemoteAPIInterface       impl;
+    private final RemoteAPIInterface           impl;
 
-    private final java.util.List<Class<T>> interfaceClasses;
-    private final HashMap<Method, Integer> parameterCountMap;
-    private final HashMap<Method, Integer> methodsAuthLevel;
-    private final HashMap<String, Method>  methods;
-    private final HashSet<Method>          signatureRequiredMethods;
-    private Method                         signatureHandler = null;
-    private final int                      defaultAuthLevel;
-    private boolean                        sessionRequired  = false;
-    private SoftReference<byte[]>          helpBytes        = new SoftReference<byte[]>(null);
-    private SoftReference<byte[]>          helpBytesJson    = new SoftReference<byte[]>(null);
+    private final java.util.List<Class<T>>     interfaceClasses;
+    private final HashMap<Method, Integer>     parameterCountMap;
+    private final HashMap<Method, Integer>     methodsAuthLevel;
+    private final HashMap<String, Method>      methods;
+    /* name -> [method registered by plain name, method with 0 parameters, 1 parameter, ...], rebuilt by parse */
+    private volatile HashMap<String, Method[]> methodRoutes     = new HashMap<String, Method[]>();
+    private final HashSet<Method>              signatureRequiredMethods;
+    private Method                             signatureHandler = null;
+    private final int                          defaultAuthLevel;
+    private boolean                            sessionRequired  = false;
+    private SoftReference<byte[]>              helpBytes        = new SoftReference<byte[]>(null);
+    private SoftReference<byte[]>              helpBytesJson    = new SoftReference<byte[]>(null);
 
     /**
      * @param <T>
@@ -171,12 +173,14 @@ public class InterfaceHandler<T> {
      * @return
      */
     public Method getMethod(final String methodName, final int length) {
-        final String methodID = methodName + length;
-        final Method ret = this.methods.get(methodID);
-        if (ret != null) {
-            return ret;
+        final Method[] methods = this.methodRoutes.get(methodName);
+        if (methods == null) {
+            return null;
+        }
+        if (length >= 0 && length + 1 < methods.length && methods[length + 1] != null) {
+            return methods[length + 1];
         }
-        return this.methods.get(methodName);
+        return methods[0];
     }
 
     /**
@@ -355,7 +359,9 @@ public class InterfaceHandler<T> {
         this.methods.clear();
         this.parameterCountMap.clear();
         this.methodsAuthLevel.clear();
+        final HashMap<String, Method[]> methodRoutes = new HashMap<String, Method[]>();
         this.methods.put("help", InterfaceHandler.HELP);
+        InterfaceHandler.putMethodRoute(methodRoutes, "help", -1, InterfaceHandler.HELP);
         this.parameterCountMap.put(InterfaceHandler.HELP, 0);
         this.methodsAuthLevel.put(InterfaceHandler.HELP, 0);
         this.signatureHandler = null;
@@ -385,6 +391,7 @@ public class InterfaceHandler<T> {
                 if (this.methods.put(name + paramCounter, m) != null) {
                     throw new ParseException(interfaceClass + " already contains method: \r\n" + name + "\r\n");
                 }
+                InterfaceHandler.putMethodRoute(methodRoutes, name, paramCounter, m);
                 if (m.getAnnotation(ApiRawMethod.class) != null) {
                     final Method existing = methods.get(name);
                     // prefer method with less(more generic) parameters, so best method would be
@@ -393,6 +400,7 @@ public class InterfaceHandler<T> {
                     // see example for Cnl2APIFlash.add
                     if (existing == null) {
                         this.methods.put(name, m);
+                        InterfaceHandler.putMethodRoute(methodRoutes, name, -1, m);
                     } else {
                         int existingParamCounter = 0;
                         boolean hasRemoteAPIRequest = false;
@@ -406,6 +414,7 @@ public class InterfaceHandler<T> {
                         }
                         if (hasRemoteAPIRequest && paramCounter < existingParamCounter) {
                             this.methods.put(name, m);
+                            InterfaceHandler.putMethodRoute(methodRoutes, name, -1, m);
                         }
                     }
                 }
@@ -425,6 +434,24 @@ public class InterfaceHandler<T> {
         if (signatureHandlerNeededClass != null && this.signatureHandler == null) {
             throw new ParseException(signatureHandlerNeededClass + " Contains methods that need validated Signatures but no Validator provided");
         }
+        this.methodRoutes = methodRoutes;
+    }
+
+    /**
+     * @param parameterCount
+     *            -1 for methods registered by plain name (help and raw methods)
+     */
+    private static void putMethodRoute(final HashMap<String, Method[]> methodRoutes, final String name, final int parameterCount, final Method method) {
+        Method[] methods = methodRoutes.get(name);
+        if (methods == null || methods.length < parameterCount + 2) {
+            final Method[] grown = new Method[Math.max(parameterCount + 2, 1)];
+            if (methods != null) {
+                System.arraycopy(methods, 0, grown, 0, methods.length);
+            }
+            methods = grown;
+            methodRoutes.put(name, methods);
+        }
+        methods[parameterCount + 1] = method;
     }
 
     /**
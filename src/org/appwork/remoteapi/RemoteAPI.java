@@ -251,8 +251,21 @@ public class RemoteAPI implements HttpRequestHandler {
         return false;
     }
 
+    private static final class Route {
+        private final String                               nameSpace;
+        private final InterfaceHandler<RemoteAPIInterface> interfaceHandler;
+
+        private Route(final String nameSpace, final InterfaceHandler<RemoteAPIInterface> interfaceHandler) {
+            this.nameSpace = nameSpace;
+            this.interfaceHandler = interfaceHandler;
+        }
+    }
+
     /* hashmap that holds all registered interfaces and their paths */
-    private HashMap<String, InterfaceHandler<RemoteAPIInterface>> interfaces = new HashMap<String, InterfaceHandler<RemoteAPIInterface>>();
+    private HashMap<String, InterfaceHandler<RemoteAPIInterface>> interfaces        = new HashMap<String, InterfaceHandler<RemoteAPIInterface>>();
+    /* interfaces compiled into a trie by setInterfaces, see getRemoteAPIMethod */
+    private volatile RouteTrie<Route>                             routes            = new RouteTrie<Route>(new HashMap<String, Route>());
+    private volatile Boolean                                      streamingResponse = null;
 
     public RemoteAPI() {
 
@@ -432,8 +445,54 @@ public class RemoteAPI implements HttpRequestHandler {
         return new RemoteAPIResponse(response, this);
     }
 
+    /**
+     * resolves /namespace/method in a single pass over the path and a lookup of the namespace in the route trie. same results as
+     * matching {@link #INTF}, the regex is only used for paths with line terminators, where . and $ behave differently
+     */
     public RemoteAPIMethod getRemoteAPIMethod(final HttpRequest request) throws BasicRemoteAPIException {
         final String path = request.getRequestedPath();
+        if (path == null) {
+            return null;
+        }
+        final int end = path.length();
+        int start = -1;
+        int separator = -1;
+        for (int index = 0; index < end; index++) {
+            final char c = path.charAt(index);
+            if (c == '/') {
+                if (start < 0) {
+                    start = index;
+                } else if (index >= start + 2 && index < end - 1) {
+                    /* greedy (.+)/ -> last slash behind a non empty namespace and before a non empty method */
+                    separator = index;
+                }
+            } else if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return this.getRemoteAPIMethodByRegex(path);
+            }
+        }
+        if (start < 0 || start == end - 1) {
+            return null;
+        }
+        int nameSpaceStart = start + 1;
+        int nameSpaceEnd = separator < 0 ? nameSpaceStart : separator;
+        int methodStart = separator < 0 ? nameSpaceStart : separator + 1;
+        if (path.charAt(end - 1) == '/') {
+            /* special handling for commands without name, see getRemoteAPIMethodByRegex */
+            nameSpaceStart = methodStart;
+            nameSpaceEnd = end - 1;
+            methodStart = end;
+        }
+        final Route route = this.routes.get(path, nameSpaceStart, nameSpaceEnd);
+        if (route != null) {
+            return new RemoteAPIMethod(route.nameSpace, route.interfaceHandler, path.substring(methodStart));
+        }
+        return null;
+    }
+
+    /**
+     * the former {@link #INTF} based lookup, {@link #getRemoteAPIMethod(HttpRequest)} must return the same results
+     */
+    protected RemoteAPIMethod getRemoteAPIMethodByRegex(final String path) {
         final String[] intf = new Regex(path, RemoteAPI.INTF).getRow(0);
 
         if (intf == null || intf.length != 3) {
@@ -454,7 +513,6 @@ public class RemoteAPI implements HttpRequestHandler {
         }
 
         final InterfaceHandler<RemoteAPIInterface> ret = this.interfaces.get(intf[1]);
-
         if (ret != null) {
             return new RemoteAPIMethod(intf[1], ret, intf[2]);
         }
@@ -615,11 +673,20 @@ public class RemoteAPI implements HttpRequestHandler {
                     }
                 }
                 clazz = clazz.getSuperclass();
-                this.interfaces = linterfaces;
+                this.setInterfaces(linterfaces);
             }
         }
     }
 
+    private void setInterfaces(final HashMap<String, InterfaceHandler<RemoteAPIInterface>> interfaces) {
+        final HashMap<String, Route> routes = new HashMap<String, Route>();
+        for (final java.util.Map.Entry<String, InterfaceHandler<RemoteAPIInterface>> e : interfaces.entrySet()) {
+            routes.put(e.getKey(), new Route(e.getKey(), e.getValue()));
+        }
+        this.routes = new RouteTrie<Route>(routes);
+        this.interfaces = interfaces;
+    }
+
     /**
      * @param request
      * @param response
@@ -642,7 +709,52 @@ public class RemoteAPI implements HttpRequestHandler {
      * @return
      */
     public String toString(final RemoteAPIRequest request, final RemoteAPIResponse response, final Object responseData) {
-        return JSonStorage.serializeToJson(new DataObject(responseData));
+        return JSonStorage.serializeToJson(this.toResponseObject(request, response, responseData));
+    }
+
+    /**
+     * the object that gets serialized as response for responseData.
+     *
+     * @param request
+     * @param response
+     * @param responseData
+     * @return
+     */
+    protected Object toResponseObject(final RemoteAPIRequest request, final RemoteAPIResponse response, final Object responseData) {
+        return new DataObject(responseData);
+    }
+
+    /**
+     * responses are serialized via {@link RemoteAPIResponse#sendObject(RemoteAPIRequest, Object)} unless a subclass still customizes
+     * the String based {@link #toString(RemoteAPIRequest, RemoteAPIResponse, Object)}, {@link #jQueryWrap(RemoteAPIRequest, String)}
+     * or {@link #sendText(RemoteAPIRequest, RemoteAPIResponse, String)}
+     *
+     * @return
+     */
+    private boolean isStreamingResponse() {
+        Boolean ret = this.streamingResponse;
+        if (ret == null) {
+            ret = true;
+            for (Class<?> clazz = this.getClass(); clazz != RemoteAPI.class && ret; clazz = clazz.getSuperclass()) {
+                try {
+                    clazz.getDeclaredMethod("toString", RemoteAPIRequest.class, RemoteAPIResponse.class, Object.class);
+                    ret = false;
+                } catch (final NoSuchMethodException e) {
+                }
+                try {
+                    clazz.getDeclaredMethod("jQueryWrap", RemoteAPIRequest.class, String.class);
+                    ret = false;
+                } catch (final NoSuchMethodException e) {
+                }
+                try {
+                    clazz.getDeclaredMethod("sendText", RemoteAPIRequest.class, RemoteAPIResponse.class, String.class);
+                    ret = false;
+                } catch (final NoSuchMethodException e) {
+                }
+            }
+            this.streamingResponse = ret;
+        }
+        return ret;
     }
 
     public void unregister(final RemoteAPIInterface x) {
@@ -670,7 +782,7 @@ public class RemoteAPI implements HttpRequestHandler {
                 }
                 clazz = clazz.getSuperclass();
             }
-            this.interfaces = linterfaces;
+            this.setInterfaces(linterfaces);
         }
     }
 
@@ -697,6 +809,10 @@ public class RemoteAPI implements HttpRequestHandler {
             }
             if (method != null && method.getAnnotation(ResponseWrapper.class) != null) {
                 text = ((AbstractResponseWrapper<Object>) method.getAnnotation(ResponseWrapper.class).value().newInstance()).toString(responseData);
+            } else if (this.isStreamingResponse()) {
+                response.setResponseCode(ResponseCode.SUCCESS_OK);
+                response.sendObject(request, this.toResponseObject(request, response, responseData));
+                return;
             } else {
                 text = this.toString(request, response, responseData);
             }
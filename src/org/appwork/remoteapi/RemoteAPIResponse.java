@@ -33,6 +33,7 @@
  * ==================================================================================================================================================== */
 package org.appwork.remoteapi;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.zip.Deflater;
@@ -41,6 +42,7 @@ import java.util.zip.GZIPOutputStream;
 
 import org.appwork.net.protocol.http.HTTPConstants;
 import org.appwork.net.protocol.http.HTTPConstants.ResponseCode;
+import org.appwork.storage.JSonStorage;
 import org.appwork.utils.Application;
 import org.appwork.utils.net.ChunkedOutputStream;
 import org.appwork.utils.net.HTTPHeader;
@@ -115,13 +117,7 @@ public class RemoteAPIResponse implements HttpResponseInterface {
      */
 
     public void sendBytes(final RemoteAPIRequest request, final byte[] bytes) throws IOException {
-        /* we dont want this api response to get cached */
-        if (this.getResponseHeaders().get(HTTPConstants.HEADER_REQUEST_CACHE_CONTROL) == null) {
-            this.getResponseHeaders().add(new HTTPHeader(HTTPConstants.HEADER_REQUEST_CACHE_CONTROL, "no-store, no-cache"));
-        }
-        if (this.getResponseHeaders().get(HTTPConstants.HEADER_RESPONSE_CONTENT_TYPE) == null) {
-            this.getResponseHeaders().add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_TYPE, "application/json"));
-        }
+        this.addDefaultHeaders();
         final boolean gzip = RemoteAPI.gzip(request);
         final boolean deflate = RemoteAPI.gzip(request) && Application.getJavaVersion() >= Application.JAVA16;
         if (gzip == false && deflate == false || bytes.length <= this.MAXUNCOMPRESSED) {
@@ -155,6 +151,38 @@ public class RemoteAPIResponse implements HttpResponseInterface {
 
     }
 
+    private void addDefaultHeaders() {
+        /* we dont want this api response to get cached */
+        if (this.getResponseHeaders().get(HTTPConstants.HEADER_REQUEST_CACHE_CONTROL) == null) {
+            this.getResponseHeaders().add(new HTTPHeader(HTTPConstants.HEADER_REQUEST_CACHE_CONTROL, "no-store, no-cache"));
+        }
+        if (this.getResponseHeaders().get(HTTPConstants.HEADER_RESPONSE_CONTENT_TYPE) == null) {
+            this.getResponseHeaders().add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_TYPE, "application/json"));
+        }
+    }
+
+    /**
+     * Serializes object (jquery wrapped if requested) straight into a byte buffer and sends it via
+     * {@link #sendBytes(RemoteAPIRequest, byte[])}. Nothing is written to the connection before serialization has finished, so
+     * a failing serialization can still be answered with an error response.
+     *
+     * @param request
+     * @param object
+     * @throws IOException
+     */
+    public void sendObject(final RemoteAPIRequest request, final Object object) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream(1024);
+        final String callback = request.getJqueryCallback();
+        if (callback != null) {
+            os.write((callback + "(").getBytes("UTF-8"));
+        }
+        JSonStorage.getMapper().writeObject(os, object);
+        if (callback != null) {
+            os.write(");".getBytes("UTF-8"));
+        }
+        this.sendBytes(request, os.toByteArray());
+    }
+
     /**
      * @param responseCode
      *            the responseCode to set
@@ -0,0 +1,121 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.remoteapi;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * immutable character trie for route lookups on a region of a String, so the key does not have to be cut out of the request path. built
+ * once at registration time, lookups are lock free
+ *
+ * @author thomas
+ *
+ */
+final class RouteTrie<V> {
+
+    private static final class Node<V> {
+        /* sorted, binary searched */
+        private char[]    chars    = RouteTrie.NO_CHARS;
+        private Node<V>[] children = null;
+        private V         value    = null;
+
+        private Node<V> child(final char c) {
+            final int index = Arrays.binarySearch(this.chars, c);
+            if (index < 0) {
+                return null;
+            }
+            return this.children[index];
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<V> getOrCreate(final char c) {
+            int index = Arrays.binarySearch(this.chars, c);
+            if (index >= 0) {
+                return this.children[index];
+            }
+            index = -index - 1;
+            final int length = this.chars.length;
+            final char[] chars = new char[length + 1];
+            final Node<V>[] children = (Node<V>[]) new Node<?>[length + 1];
+            System.arraycopy(this.chars, 0, chars, 0, index);
+            System.arraycopy(this.chars, index, chars, index + 1, length - index);
+            if (this.children != null) {
+                System.arraycopy(this.children, 0, children, 0, index);
+                System.arraycopy(this.children, index, children, index + 1, length - index);
+            }
+            chars[index] = c;
+            children[index] = new Node<V>();
+            this.chars = chars;
+            this.children = children;
+            return children[index];
+        }
+    }
+
+    private static final char[] NO_CHARS = new char[0];
+
+    private final Node<V>       root     = new Node<V>();
+    private final int           size;
+
+    RouteTrie(final Map<String, ? extends V> routes) {
+        for (final Entry<String, ? extends V> route : routes.entrySet()) {
+            Node<V> node = this.root;
+            final String key = route.getKey();
+            for (int index = 0; index < key.length(); index++) {
+                node = node.getOrCreate(key.charAt(index));
+            }
+            node.value = route.getValue();
+        }
+        this.size = routes.size();
+    }
+
+    /**
+     * value for the key path[start, end) or null
+     */
+    V get(final String path, final int start, final int end) {
+        Node<V> node = this.root;
+        for (int index = start; index < end; index++) {
+            node = node.child(path.charAt(index));
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.value;
+    }
+
+    int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.remoteapi.test;
+
+import org.appwork.exceptions.WTFException;
+import org.appwork.remoteapi.RemoteAPI;
+import org.appwork.remoteapi.RemoteAPIInterface;
+import org.appwork.utils.net.httpserver.requests.GetRequest;
+
+/**
+ * {@link RemoteAPI#getRemoteAPIMethod} must resolve every path like the former regex lookup
+ * 
+ * @author thomas
+ * 
+ */
+public class RoutingTest {
+    public static interface RoutingAPI extends RemoteAPIInterface {
+        public void ping();
+    }
+
+    public static class RoutingAPIImpl implements RoutingAPI {
+        private final String nameSpace;
+
+        public RoutingAPIImpl(final String nameSpace) {
+            this.nameSpace = nameSpace;
+        }
+
+        public String getAPINamespace(final Class<?> c) {
+            return this.nameSpace;
+        }
+
+        @Override
+        public void ping() {
+        }
+    }
+
+    private static class TestAPI extends RemoteAPI {
+        private RemoteAPIMethod byRegex(final String path) {
+            return this.getRemoteAPIMethodByRegex(path);
+        }
+    }
+
+    private static String toString(final RemoteAPI.RemoteAPIMethod method) {
+        if (method == null) { return "null"; }
+        return method.getNameSpace() + "|" + method.getMethodName() + "|" + System.identityHashCode(method.getInterfaceHandler());
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final TestAPI api = new TestAPI();
+        for (final String nameSpace : new String[] { "", "a", "a/b", "a/b/c", "b", "x/" }) {
+            api.register(new RoutingAPIImpl(nameSpace));
+        }
+        final String[] paths = new String[] { "", "/", "//", "///", "/a", "/a/", "/a//", "//a", "//a/", "/a/b", "/a/b/", "/a/b/c", "/a/b/c/", "/a/b/c/ping", "/a/b/c/d/ping", "/a/b/ping", "/a//ping", "/a/ping/", "/a/ping", "/b/ping", "/ping", "/ping/", "/x//ping", "/x/ping", "/unknown/ping", "a/ping", "x/a/ping", "/a/b\n", "/a\n/ping", "/a/ " };
+        int mismatches = 0;
+        for (final String path : paths) {
+            final GetRequest request = new GetRequest(null);
+            request.setRequestedPath(path);
+            final String trie = RoutingTest.toString(api.getRemoteAPIMethod(request));
+            final String regex = RoutingTest.toString(api.byRegex(path));
+            if (!trie.equals(regex)) {
+                System.out.println("Mismatch for " + path.replace("\n", "\\n") + ": " + trie + " != " + regex);
+                mismatches++;
+            }
+        }
+        if (mismatches > 0) { throw new WTFException(mismatches + " mismatches"); }
+        System.out.println("OK");
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.remoteapi.test.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.appwork.remoteapi.InterfaceHandler;
+import org.appwork.remoteapi.RemoteAPI;
+import org.appwork.remoteapi.RemoteAPI.RemoteAPIMethod;
+import org.appwork.remoteapi.RemoteAPIInterface;
+import org.appwork.remoteapi.exceptions.BasicRemoteAPIException;
+import org.appwork.utils.Regex;
+import org.appwork.utils.net.httpserver.requests.GetRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * request path to api method: the former Regex + namespace HashMap + name/parameter count concatenation against
+ * {@link RemoteAPI#getRemoteAPIMethod} and {@link InterfaceHandler#getMethod(String, int)}
+ *
+ * @author thomas
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+    public static interface BenchAPI extends RemoteAPIInterface {
+        public int add(int a, int b);
+
+        public String echo(String text);
+
+        public void ping();
+
+        public boolean setEnabled(boolean enabled);
+    }
+
+    public static class BenchAPIImpl implements BenchAPI {
+        private final String nameSpace;
+
+        public BenchAPIImpl(final String nameSpace) {
+            this.nameSpace = nameSpace;
+        }
+
+        @Override
+        public int add(final int a, final int b) {
+            return a + b;
+        }
+
+        @Override
+        public String echo(final String text) {
+            return text;
+        }
+
+        public String getAPINamespace(final Class<?> c) {
+            return this.nameSpace;
+        }
+
+        @Override
+        public void ping() {
+        }
+
+        @Override
+        public boolean setEnabled(final boolean enabled) {
+            return enabled;
+        }
+    }
+
+    private static final Pattern                                  INTF       = Pattern.compile("/((.+)/)?(.+)$");
+    private static final String[]                                 METHODS    = new String[] { "add", "echo", "ping", "setEnabled", "help" };
+    private static final int[]                                    PARAMETERS = new int[] { 2, 1, 0, 1, 0 };
+
+    @Param({ "10", "50" })
+    public int                                                    interfaces;
+
+    private RemoteAPI                                             api;
+    private GetRequest[]                                          requests;
+    private int[]                                                 parameters;
+    /* the former lookup structures: namespace -> handler and name+parameterCount (or plain name) -> method */
+    private HashMap<String, InterfaceHandler<?>>                  legacyInterfaces;
+    private HashMap<InterfaceHandler<?>, HashMap<String, Method>> legacyMethods;
+    private int                                                   next       = 0;
+
+    @Setup
+    public void setup() throws Exception {
+        this.api = new RemoteAPI();
+        for (int index = 0; index < this.interfaces; index++) {
+            this.api.register(new BenchAPIImpl("bench/namespace" + index));
+        }
+        this.requests = new GetRequest[this.interfaces * RoutingBenchmark.METHODS.length];
+        this.parameters = new int[this.requests.length];
+        this.legacyInterfaces = new HashMap<String, InterfaceHandler<?>>();
+        this.legacyMethods = new HashMap<InterfaceHandler<?>, HashMap<String, Method>>();
+        int request = 0;
+        for (int index = 0; index < this.interfaces; index++) {
+            for (int method = 0; method < RoutingBenchmark.METHODS.length; method++) {
+                final GetRequest getRequest = new GetRequest(null);
+                getRequest.setRequestedPath("/bench/namespace" + index + "/" + RoutingBenchmark.METHODS[method]);
+                final RemoteAPIMethod remoteAPIMethod = this.api.getRemoteAPIMethod(getRequest);
+                final InterfaceHandler<?> handler = remoteAPIMethod.getInterfaceHandler();
+                this.legacyInterfaces.put(remoteAPIMethod.getNameSpace(), handler);
+                HashMap<String, Method> methods = this.legacyMethods.get(handler);
+                if (methods == null) {
+                    methods = new HashMap<String, Method>();
+                    this.legacyMethods.put(handler, methods);
+                }
+                final String name = RoutingBenchmark.METHODS[method];
+                /* help is registered by plain name */
+                methods.put("help".equals(name) ? name : name + RoutingBenchmark.PARAMETERS[method], handler.getMethod(name, RoutingBenchmark.PARAMETERS[method]));
+                this.parameters[request] = RoutingBenchmark.PARAMETERS[method];
+                this.requests[request++] = getRequest;
+            }
+        }
+        for (int index = 0; index < this.requests.length; index++) {
+            final Method expected = this.legacy(this.requests[index], this.parameters[index]);
+            if (expected == null || expected != this.route(this.requests[index], this.parameters[index])) {
+                throw new IllegalStateException("routing mismatch for " + this.requests[index].getRequestedPath());
+            }
+        }
+    }
+
+    private Method legacy(final GetRequest request, final int parameters) {
+        final String[] intf = new Regex(request.getRequestedPath(), RoutingBenchmark.INTF).getRow(0);
+        if (intf == null || intf.length != 3) {
+            return null;
+        }
+        if (intf[2] != null && intf[2].endsWith("/")) {
+            intf[1] = intf[2].substring(0, intf[2].length() - 1);
+            intf[2] = "";
+        }
+        if (intf[1] == null) {
+            intf[1] = "";
+        }
+        final InterfaceHandler<?> handler = this.legacyInterfaces.get(intf[1]);
+        if (handler == null) {
+            return null;
+        }
+        final HashMap<String, Method> methods = this.legacyMethods.get(handler);
+        final Method ret = methods.get(intf[2] + parameters);
+        if (ret != null) {
+            return ret;
+        }
+        return methods.get(intf[2]);
+    }
+
+    @Benchmark
+    public Method legacyRegex() {
+        final int index = this.next++ % this.requests.length;
+        return this.legacy(this.requests[index], this.parameters[index]);
+    }
+
+    private Method route(final GetRequest request, final int parameters) throws BasicRemoteAPIException {
+        final RemoteAPIMethod method = this.api.getRemoteAPIMethod(request);
+        if (method == null) {
+            return null;
+        }
+        return method.getInterfaceHandler().getMethod(method.getMethodName(), parameters);
+    }
+
+    @Benchmark
+    public Method routeTrie() throws BasicRemoteAPIException {
+        final int index = this.next++ % this.requests.length;
+        return this.route(this.requests[index], this.parameters[index]);
+    }
+}
@@ -0,0 +1,616 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.appwork.exceptions.WTFException;
+import org.appwork.storage.config.handler.StorageHandler;
+import org.appwork.utils.IO;
+import org.appwork.utils.ModifyLock;
+import org.appwork.utils.logging2.LogInterface;
+import org.appwork.utils.logging2.extmanager.LoggerFactory;
+
+/**
+ * {@link JsonKeyValueStorage} variant for storages with heavy write traffic. Values are kept in a {@link ConcurrentHashMap}, so get and
+ * put never wait for each other and every single key update is atomic. A default value is stored with putIfAbsent, so it can not overwrite
+ * a concurrent put.
+ *
+ * save() copies the map without blocking writers and serializes the copy in the delayed write. Writes that happen while the copy is taken
+ * have already marked the storage dirty again, so they are written with the next save at the latest. Copies are numbered, so concurrent
+ * saves never replace the file with an older copy.
+ *
+ * Every key maps to one of several lock stripes. Modifications only share the lock of their stripe, {@link #runLocked(Runnable)} and
+ * {@link #clear()} take all stripes exclusively. The journal mode of {@link JsonKeyValueStorage} is not supported.
+ *
+ * @author thomas
+ *
+ */
+public class ConcurrentJsonKeyValueStorage extends Storage {
+
+    /* ConcurrentHashMap does not allow null values */
+    private static final Object                     NULL              = new Object();
+    private static final int                        STRIPES           = 16;
+
+    private final ConcurrentHashMap<String, Object> map;
+    private final ModifyLock[]                      stripes;
+    private final String                            name;
+    private final File                              file;
+    private final boolean                           plain;
+    private final byte[]                            key;
+    private volatile boolean                        autoPutValues     = true;
+    private volatile boolean                        enumCacheEnabled  = false;
+    private volatile boolean                        closed            = false;
+    private volatile boolean                        binary            = false;
+    private volatile IO.SYNC                        sync              = IO.SYNC.META_AND_DATA;
+    private volatile long                           maxWriteStaleness = 0;
+    private final AtomicLong                        setMark           = new AtomicLong(0);
+    private final AtomicLong                        writeMark         = new AtomicLong(0);
+    /* snapshots are numbered in the order they are taken, a write never replaces the file with an older snapshot */
+    private final Object                            snapshotLock      = new Object();
+    private long                                    snapshotSequence  = 0;
+    private final Object                            writeLock         = new Object();
+    private long                                    writtenSequence   = 0;
+
+    public ConcurrentJsonKeyValueStorage(final File file) throws StorageException {
+        this(file, false);
+    }
+
+    public ConcurrentJsonKeyValueStorage(final File file, final boolean plain) throws StorageException {
+        this(file, plain, JSonStorage.KEY);
+    }
+
+    public ConcurrentJsonKeyValueStorage(final File file, final boolean plain, final byte[] key) throws StorageException {
+        this.file = file;
+        this.name = file.getName();
+        this.plain = plain;
+        this.key = key;
+        this.stripes = new ModifyLock[ConcurrentJsonKeyValueStorage.STRIPES];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ModifyLock();
+        }
+        final HashMap<String, Object> load = file.exists() ? JSonStorage.restoreFrom(file, plain, key, TypeRef.HASHMAP, new HashMap<String, Object>()) : null;
+        this.map = new ConcurrentHashMap<String, Object>(load == null ? 16 : Math.max(16, load.size() * 4 / 3 + 1));
+        if (load != null) {
+            for (final Entry<String, Object> e : load.entrySet()) {
+                if (e.getKey() != null) {
+                    this.map.put(e.getKey(), ConcurrentJsonKeyValueStorage.mask(e.getValue()));
+                }
+            }
+        }
+    }
+
+    private static Object mask(final Object value) {
+        return value == null ? ConcurrentJsonKeyValueStorage.NULL : value;
+    }
+
+    private static Object unmask(final Object value) {
+        return value == ConcurrentJsonKeyValueStorage.NULL ? null : PrimitiveValue.unwrap(value);
+    }
+
+    protected LogInterface getDefaultLogger() {
+        return LoggerFactory.getDefaultLogger();
+    }
+
+    private ModifyLock getStripe(final String key) {
+        if (key == null) {
+            throw new WTFException("key == null is forbidden!");
+        }
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return this.stripes[h & ConcurrentJsonKeyValueStorage.STRIPES - 1];
+    }
+
+    @Override
+    public void clear() throws StorageException {
+        this.runLocked(new Runnable() {
+
+            @Override
+            public void run() {
+                ConcurrentJsonKeyValueStorage.this.map.clear();
+            }
+        });
+        this.requestSave();
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+
+    @Override
+    public <E> E get(final String key, final E def) throws StorageException {
+        return this.get(key, def, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <E> E get(final String key, final E def, final Boolean autoPutValue) throws StorageException {
+        final boolean autoPutDefaultValue = autoPutValue == null ? this.isAutoPutValues() : Boolean.TRUE.equals(autoPutValue);
+        Object ret = this.map.get(key);
+        if (ret == null) {
+            if (!autoPutDefaultValue) {
+                return def;
+            }
+            final Object existing = this.internalPutIfAbsent(key, this.toStorageValue(def));
+            if (existing == null) {
+                return def;
+            }
+            /* lost the race against a concurrent put */
+            ret = existing;
+        }
+        ret = JsonKeyValueStorage.convert(ConcurrentJsonKeyValueStorage.unmask(ret), def);
+        if (def instanceof Enum<?> && ret instanceof String) {
+            final Enum<?> value = EnumCache.get(((Enum<?>) def).getDeclaringClass(), (String) ret);
+            if (value != null) {
+                ret = value;
+                if (autoPutDefaultValue && this.enumCacheEnabled) {
+                    this.put(key, value);
+                }
+            } else {
+                this.getDefaultLogger().info("Could not restore the enum. There is no value for " + ret + " in " + ((Enum<?>) def).getDeclaringClass());
+                if (autoPutDefaultValue) {
+                    this.put(key, (Enum<?>) def);
+                }
+                ret = def;
+            }
+        }
+        return (E) ret;
+    }
+
+    @Override
+    public int getInt(final String key, final int def) throws StorageException {
+        final Object ret = this.map.get(key);
+        if (ret instanceof PrimitiveValue) {
+            return ((PrimitiveValue) ret).intValue();
+        } else if (ret instanceof Number) {
+            return ((Number) ret).intValue();
+        } else if (ret instanceof String) {
+            return Integer.parseInt((String) ret);
+        } else if (ret == null && this.isAutoPutValues()) {
+            this.internalPutIfAbsent(key, PrimitiveValue.INT, def);
+        }
+        return def;
+    }
+
+    @Override
+    public long getLong(final String key, final long def) throws StorageException {
+        final Object ret = this.map.get(key);
+        if (ret instanceof PrimitiveValue) {
+            return ((PrimitiveValue) ret).longValue();
+        } else if (ret instanceof Number) {
+            return ((Number) ret).longValue();
+        } else if (ret instanceof String) {
+            return Long.parseLong((String) ret);
+        } else if (ret == null && this.isAutoPutValues()) {
+            this.internalPutIfAbsent(key, PrimitiveValue.LONG, def);
+        }
+        return def;
+    }
+
+    @Override
+    public boolean getBoolean(final String key, final boolean def) throws StorageException {
+        final Object ret = this.map.get(key);
+        if (ret instanceof PrimitiveValue) {
+            return ((PrimitiveValue) ret).booleanValue();
+        } else if (ret instanceof Boolean) {
+            return ((Boolean) ret).booleanValue();
+        } else if (ret instanceof String) {
+            return Boolean.parseBoolean((String) ret);
+        } else if (ret == null && this.isAutoPutValues()) {
+            this.internalPutIfAbsent(key, PrimitiveValue.BOOLEAN, def ? 1 : 0);
+        }
+        return def;
+    }
+
+    @Override
+    public double getDouble(final String key, final double def) throws StorageException {
+        final Object ret = this.map.get(key);
+        if (ret instanceof PrimitiveValue) {
+            return ((PrimitiveValue) ret).doubleValue();
+        } else if (ret instanceof Number) {
+            return ((Number) ret).doubleValue();
+        } else if (ret instanceof String) {
+            return Double.parseDouble((String) ret);
+        } else if (ret == null && this.isAutoPutValues()) {
+            this.internalPutIfAbsent(key, PrimitiveValue.DOUBLE, Double.doubleToRawLongBits(def));
+        }
+        return def;
+    }
+
+    private Object toStorageValue(final Object def) throws StorageException {
+        if (def == null || def instanceof Boolean || def instanceof Long || def instanceof Integer || def instanceof Byte || def instanceof String || def instanceof Double || def instanceof Float) {
+            return def;
+        } else if (def instanceof Enum<?>) {
+            return this.enumCacheEnabled ? def : ((Enum<?>) def).name();
+        } else {
+            throw new StorageException("Invalid datatype: " + def.getClass());
+        }
+    }
+
+    @Override
+    public byte[] getCryptKey() {
+        return this.key;
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    @Override
+    public String getID() {
+        return this.file.getAbsolutePath();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public List<String> getKeys() {
+        return new ArrayList<String>(this.map.keySet());
+    }
+
+    @Override
+    public boolean hasProperty(final String key) {
+        return this.map.containsKey(key);
+    }
+
+    @Override
+    public boolean isAutoPutValues() {
+        return this.autoPutValues;
+    }
+
+    @Override
+    public void setAutoPutValues(final boolean autoPutValues) {
+        this.autoPutValues = autoPutValues;
+    }
+
+    public void setEnumCacheEnabled(final boolean enumCacheEnabled) {
+        this.enumCacheEnabled = enumCacheEnabled;
+    }
+
+    public boolean isPlain() {
+        return this.plain;
+    }
+
+    public boolean isBinary() {
+        return this.binary;
+    }
+
+    /**
+     * see {@link JsonKeyValueStorage#setBinary(boolean)}
+     *
+     * @param binary
+     */
+    public void setBinary(final boolean binary) {
+        this.binary = binary;
+    }
+
+    public IO.SYNC getSync() {
+        return this.sync;
+    }
+
+    /**
+     * see {@link JsonKeyValueStorage#setSync(IO.SYNC)}
+     *
+     * @param sync
+     */
+    public void setSync(final IO.SYNC sync) {
+        this.sync = sync == null ? IO.SYNC.META_AND_DATA : sync;
+    }
+
+    public long getMaxWriteStaleness() {
+        return this.maxWriteStaleness;
+    }
+
+    /**
+     * see {@link JsonKeyValueStorage#setMaxWriteStaleness(long)}
+     *
+     * @param maxWriteStaleness
+     */
+    public void setMaxWriteStaleness(final long maxWriteStaleness) {
+        this.maxWriteStaleness = maxWriteStaleness;
+    }
+
+    private Object internalPut(final String key, final Object value) {
+        final ModifyLock stripe = this.getStripe(key);
+        final boolean readL = stripe.readLock();
+        final Object ret;
+        try {
+            ret = ConcurrentJsonKeyValueStorage.unmask(this.map.put(key, ConcurrentJsonKeyValueStorage.mask(value)));
+        } finally {
+            stripe.readUnlock(readL);
+        }
+        if (ret != value && (ret == null || !ret.equals(value))) {
+            this.requestSave();
+        }
+        return ret;
+    }
+
+    /**
+     * @return the masked existing value, null if value has been stored
+     */
+    private Object internalPutIfAbsent(final String key, final Object value) {
+        final ModifyLock stripe = this.getStripe(key);
+        final boolean readL = stripe.readLock();
+        final Object ret;
+        try {
+            ret = this.map.putIfAbsent(key, ConcurrentJsonKeyValueStorage.mask(value));
+        } finally {
+            stripe.readUnlock(readL);
+        }
+        if (ret == null) {
+            this.requestSave();
+        }
+        return ret;
+    }
+
+    /**
+     * updates an existing {@link PrimitiveValue} of the same type in place, so repeated writes of a counter do not allocate
+     */
+    private void internalPut(final String key, final int type, final long bits) {
+        final ModifyLock stripe = this.getStripe(key);
+        final boolean readL = stripe.readLock();
+        boolean changed;
+        try {
+            final Object existing = this.map.get(key);
+            if (existing instanceof PrimitiveValue && ((PrimitiveValue) existing).type == type) {
+                /* the instance may have been replaced concurrently, a lost in place update is as if this put happened first */
+                changed = ((PrimitiveValue) existing).set(bits);
+            } else {
+                final PrimitiveValue value = new PrimitiveValue(type, bits);
+                final Object old = ConcurrentJsonKeyValueStorage.unmask(this.map.put(key, value));
+                changed = old == null || !old.equals(value.box());
+            }
+        } finally {
+            stripe.readUnlock(readL);
+        }
+        if (changed) {
+            this.requestSave();
+        }
+    }
+
+    private void internalPutIfAbsent(final String key, final int type, final long bits) {
+        final ModifyLock stripe = this.getStripe(key);
+        final boolean readL = stripe.readLock();
+        final Object ret;
+        try {
+            ret = this.map.putIfAbsent(key, new PrimitiveValue(type, bits));
+        } finally {
+            stripe.readUnlock(readL);
+        }
+        if (ret == null) {
+            this.requestSave();
+        }
+    }
+
+    @Override
+    public void put(final String key, final boolean value) throws StorageException {
+        this.internalPut(key, PrimitiveValue.BOOLEAN, value ? 1 : 0);
+    }
+
+    @Override
+    public void put(final String key, final Boolean value) throws StorageException {
+        if (value == null) {
+            this.internalPut(key, null);
+        } else {
+            this.put(key, value.booleanValue());
+        }
+    }
+
+    @Override
+    public void put(final String key, final Byte value) throws StorageException {
+        this.internalPut(key, value);
+    }
+
+    @Override
+    public void put(final String key, final double value) throws StorageException {
+        this.internalPut(key, PrimitiveValue.DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    @Override
+    public void put(final String key, final Double value) throws StorageException {
+        if (value == null) {
+            this.internalPut(key, null);
+        } else {
+            this.put(key, value.doubleValue());
+        }
+    }
+
+    @Override
+    public void put(final String key, final Enum<?> value) throws StorageException {
+        if (value == null) {
+            this.internalPut(key, null);
+        } else {
+            this.internalPut(key, this.enumCacheEnabled ? value : value.name());
+        }
+    }
+
+    @Override
+    public void put(final String key, final Float value) throws StorageException {
+        this.internalPut(key, value);
+    }
+
+    @Override
+    public void put(final String key, final int value) throws StorageException {
+        this.internalPut(key, PrimitiveValue.INT, value);
+    }
+
+    @Override
+    public void put(final String key, final Integer value) throws StorageException {
+        if (value == null) {
+            this.internalPut(key, null);
+        } else {
+            this.put(key, value.intValue());
+        }
+    }
+
+    @Override
+    public void put(final String key, final long value) throws StorageException {
+        this.internalPut(key, PrimitiveValue.LONG, value);
+    }
+
+    @Override
+    public void put(final String key, final Long value) throws StorageException {
+        if (value == null) {
+            this.internalPut(key, null);
+        } else {
+            this.put(key, value.longValue());
+        }
+    }
+
+    @Override
+    public void put(final String key, final String value) throws StorageException {
+        this.internalPut(key, value);
+    }
+
+    @Override
+    public Object remove(final String key) {
+        final ModifyLock stripe = this.getStripe(key);
+        final boolean readL = stripe.readLock();
+        final Object ret;
+        try {
+            ret = this.map.remove(key);
+        } finally {
+            stripe.readUnlock(readL);
+        }
+        if (ret == null) {
+            return null;
+        }
+        this.requestSave();
+        return ConcurrentJsonKeyValueStorage.unmask(ret);
+    }
+
+    @Override
+    public long getModificationCounter() {
+        return this.setMark.get();
+    }
+
+    public void requestSave() {
+        this.setMark.incrementAndGet();
+    }
+
+    /**
+     * takes all stripes exclusively, always in the same order
+     */
+    @Override
+    public void runLocked(final Runnable run) {
+        int locked = 0;
+        try {
+            for (; locked < this.stripes.length; locked++) {
+                this.stripes[locked].writeLock();
+            }
+            run.run();
+        } finally {
+            while (--locked >= 0) {
+                this.stripes[locked].writeUnlock();
+            }
+        }
+    }
+
+    @Override
+    public void save() throws StorageException {
+        if (this.closed) {
+            throw new StorageException("StorageChest already closed!");
+        }
+        final long lastSetMark = this.setMark.get();
+        if (this.writeMark.getAndSet(lastSetMark) != lastSetMark) {
+            final HashMap<String, Object> snapshot;
+            final long sequence;
+            synchronized (this.snapshotLock) {
+                sequence = ++this.snapshotSequence;
+                snapshot = this.snapshot();
+            }
+            final Runnable run = new Runnable() {
+
+                @Override
+                public void run() {
+                    synchronized (ConcurrentJsonKeyValueStorage.this.writeLock) {
+                        if (sequence <= ConcurrentJsonKeyValueStorage.this.writtenSequence) {
+                            /* concurrent saves, a newer snapshot has already been written */
+                            return;
+                        }
+                        JSonStorage.saveObjectTo(ConcurrentJsonKeyValueStorage.this.file, ConcurrentJsonKeyValueStorage.this.plain, ConcurrentJsonKeyValueStorage.this.key, snapshot, ConcurrentJsonKeyValueStorage.this.isBinary(), ConcurrentJsonKeyValueStorage.this.getSync());
+                        ConcurrentJsonKeyValueStorage.this.writtenSequence = sequence;
+                    }
+                }
+
+            };
+            StorageHandler.enqueueWrite(run, this.file.getAbsolutePath(), true, this.maxWriteStaleness);
+        }
+    }
+
+    /**
+     * shallow copy of the map. Shares the stripes with writers, so it only waits for {@link #runLocked(Runnable)} and {@link #clear()}
+     * and never contains half of such an operation
+     */
+    private HashMap<String, Object> snapshot() {
+        final boolean[] readL = new boolean[this.stripes.length];
+        int locked = 0;
+        try {
+            for (; locked < this.stripes.length; locked++) {
+                readL[locked] = this.stripes[locked].readLock();
+            }
+            final HashMap<String, Object> ret = new HashMap<String, Object>(Math.max(16, this.map.size() * 4 / 3 + 1));
+            for (final Entry<String, Object> e : this.map.entrySet()) {
+                ret.put(e.getKey(), ConcurrentJsonKeyValueStorage.unmask(e.getValue()));
+            }
+            return ret;
+        } finally {
+            while (--locked >= 0) {
+                this.stripes[locked].readUnlock(readL[locked]);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.map.size();
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return JSonStorage.getMapper().objectToString(this.snapshot());
+        } catch (final Throwable e) {
+            return this.map.toString();
+        }
+    }
+}
@@ -35,38 +35,56 @@ package org.appwork.storage;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
+import org.appwork.exceptions.WTFException;
 import org.appwork.shutdown.ShutdownController;
 import org.appwork.shutdown.ShutdownEvent;
 import org.appwork.shutdown.ShutdownRequest;
+import org.appwork.storage.simplejson.JSonBinaryParser;
+import org.appwork.storage.simplejson.JSonLazyDocument;
 import org.appwork.utils.Application;
 import org.appwork.utils.IO;
 import org.appwork.utils.Regex;
 import org.appwork.utils.StringUtils;
+import org.appwork.utils.net.NullOutputStream;
+import org.appwork.utils.os.CrossSystem;
 import org.appwork.utils.reflection.Clazz;
 
 import com.fasterxml.jackson.core.JsonGenerationException;
@@ -80,6 +98,32 @@ public class JSonStorage {
     /* default key for encrypted json */
     static public byte[]                              KEY         = new byte[] { 0x01, 0x02, 0x11, 0x01, 0x01, 0x54, 0x01, 0x01, 0x01, 0x01, 0x12, 0x01, 0x01, 0x01, 0x22, 0x01 };
     private static final HashMap<File, AtomicInteger> LOCKS       = new HashMap<File, AtomicInteger>();
+    /*
+     * canStore walks the whole type graph by reflection. Types do not change at runtime, so the result of every type is remembered:
+     * null if it can be stored, else the failure. The weak key is the raw class of the type, to not pin classes (and their
+     * classloaders). The type itself is remembered by its String, because ParameterizedTypes are usually new instances on every call
+     * and would be dropped from a weak map at once
+     */
+    private static final Map<Class<?>, Map<String, CanStoreFailure>> CANSTORE_CACHE             = new WeakHashMap<Class<?>, Map<String, CanStoreFailure>>();
+    private static final Map<Class<?>, Map<String, CanStoreFailure>> CANSTORE_NONSTORABLE_CACHE = new WeakHashMap<Class<?>, Map<String, CanStoreFailure>>();
+
+    /**
+     * a cached canStore failure. Every call throws its own InvalidTypeException, so no exception instance is shared between threads
+     */
+    private static class CanStoreFailure {
+        private final String              message;
+        private final WeakReference<Type> type;
+
+        private CanStoreFailure(final InvalidTypeException e) {
+            this.message = e.getMessage();
+            this.type = new WeakReference<Type>(e.getType());
+        }
+
+        private InvalidTypeException create(final Type gType) {
+            final Type type = this.type.get();
+            return new InvalidTypeException(type == null ? gType : type, this.message);
+        }
+    }
 
     static {
         /* shutdown hook to save all open Storages */
@@ -119,8 +163,57 @@ public class JSonStorage {
      * @throws InvalidTypeException
      */
     public static void canStore(final Type gType, final boolean allowNonStorableObjects) throws InvalidTypeException {
-        HashSet<Object> dupeID = new HashSet<Object>();
-        JSonStorage.canStoreIntern(gType, gType.toString(), allowNonStorableObjects, dupeID);
+        final Class<?> raw = JSonStorage.getRawClass(gType);
+        if (raw == null) {
+            /* not supported, canStoreIntern throws */
+            JSonStorage.canStoreIntern(gType, gType.toString(), allowNonStorableObjects, new HashSet<Object>());
+            return;
+        }
+        final Map<Class<?>, Map<String, CanStoreFailure>> cache = allowNonStorableObjects ? JSonStorage.CANSTORE_NONSTORABLE_CACHE : JSonStorage.CANSTORE_CACHE;
+        final String key = gType.toString();
+        synchronized (cache) {
+            final Map<String, CanStoreFailure> results = cache.get(raw);
+            if (results != null && results.containsKey(key)) {
+                final CanStoreFailure failure = results.get(key);
+                if (failure == null) {
+                    return;
+                }
+                throw failure.create(gType);
+            }
+        }
+        InvalidTypeException error = null;
+        try {
+            JSonStorage.canStoreIntern(gType, key, allowNonStorableObjects, new HashSet<Object>());
+        } catch (final InvalidTypeException e) {
+            error = e;
+        }
+        synchronized (cache) {
+            Map<String, CanStoreFailure> results = cache.get(raw);
+            if (results == null) {
+                results = new HashMap<String, CanStoreFailure>();
+                cache.put(raw, results);
+            }
+            results.put(key, error == null ? null : new CanStoreFailure(error));
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * @return the class that owns the type, or null for type variables and wildcards
+     */
+    private static Class<?> getRawClass(final Type gType) {
+        if (gType instanceof Class) {
+            return (Class<?>) gType;
+        } else if (gType instanceof ParameterizedType) {
+            final Type raw = ((ParameterizedType) gType).getRawType();
+            return raw instanceof Class ? (Class<?>) raw : null;
+        } else if (gType instanceof GenericArrayType) {
+            return JSonStorage.getRawClass(((GenericArrayType) gType).getGenericComponentType());
+        } else {
+            return null;
+        }
     }
 
     /**
@@ -223,6 +316,24 @@ public class JSonStorage {
         return JSonStorage.JSON_MAPPER;
     }
 
+    /**
+     * writes object with the current mapper and closes os. binary is only used if the mapper is a {@link JSONBinaryMapper}, other
+     * mappers write json text, which is detected on load as well
+     *
+     * @param os
+     * @param object
+     * @param binary
+     * @throws JSonMapperException
+     */
+    public static void writeObject(final OutputStream os, final Object object, final boolean binary) throws JSonMapperException {
+        final JSONMapper mapper = JSonStorage.JSON_MAPPER;
+        if (binary && mapper instanceof JSONBinaryMapper) {
+            ((JSONBinaryMapper) mapper).writeObjectBinary(os, object);
+        } else {
+            mapper.writeObject(os, object);
+        }
+    }
+
     /**
      * TODO: Difference to {@link #getStorage(String)} ?
      */
@@ -277,6 +388,20 @@ public class JSonStorage {
     }
 
     public static <E> E restoreFrom(final File file, final boolean plain, final byte[] key, final TypeRef<E> type, final E def) {
+        return JSonStorage.restoreFrom(file, plain, key, type, def, null);
+    }
+
+    /**
+     * @param file
+     * @param plain
+     * @param key
+     * @param type
+     * @param def
+     * @param digest
+     *            if not null, is updated with the raw file content, see {@link #saveObjectToIfChanged(File, boolean, byte[], Object, byte[], IO.SYNC)}
+     * @return
+     */
+    public static <E> E restoreFrom(final File file, final boolean plain, final byte[] key, final TypeRef<E> type, final E def, final MessageDigest digest) {
         final Object lock = JSonStorage.requestLock(file);
         synchronized (lock) {
             FileInputStream fis = null;
@@ -286,13 +411,31 @@ public class JSonStorage {
                     return def;
                 }
                 fis = new FileInputStream(res);
+                final InputStream fs;
+                if (digest == null) {
+                    fs = fis;
+                } else {
+                    fs = new DigestInputStream(fis, digest) {
+                        @Override
+                        public void close() throws IOException {
+                            /* fis is closed below, after the rest of the file has been hashed */
+                        }
+                    };
+                }
                 final InputStream is;
                 if (plain) {
-                    is = fis;
+                    is = fs;
                 } else {
-                    is = createCipherInputStream(fis, key, key);
+                    is = createCipherInputStream(fs, key, key);
                 }
-                return restoreFromInputStream(is, type, def);
+                final E ret = restoreFromInputStream(is, type, def);
+                if (digest != null) {
+                    /* the parser may stop before the end of the file */
+                    final byte[] buffer = new byte[8192];
+                    while (fs.read(buffer) >= 0) {
+                    }
+                }
+                return ret;
             } catch (final Throwable e) {
                 org.appwork.utils.logging2.extmanager.LoggerFactory.getDefaultLogger().log(e);
             } finally {
@@ -308,6 +451,60 @@ public class JSonStorage {
         }
     }
 
+    /**
+     * loads file as {@link JSonLazyDocument}. The file is only scanned into an offset index, values are decoded when they are accessed,
+     * so reading a few keys of a large file does not parse and map the whole content. Plain json files are memory mapped instead of
+     * read onto the heap (except on windows, where a mapped file could not be replaced by the next save until the mapping is garbage
+     * collected). Encrypted files have to be decrypted completely, binary files (see
+     * {@link #saveObjectTo(File, boolean, byte[], Object, boolean)}) are converted to json text first and do not benefit from this.
+     *
+     * @param file
+     * @param plain
+     * @param key
+     * @return null if the file does not exist or could not be read
+     */
+    public static JSonLazyDocument restoreLazyFrom(final File file, final boolean plain, final byte[] key) {
+        final Object lock = JSonStorage.requestLock(file);
+        synchronized (lock) {
+            try {
+                if (!file.exists() || file.length() == 0) {
+                    return null;
+                }
+                if (plain && !CrossSystem.isWindows()) {
+                    final RandomAccessFile raf = new RandomAccessFile(file, "r");
+                    final MappedByteBuffer mapped;
+                    try {
+                        /* the mapping stays valid after the channel is closed. saves replace the file, they never write into it */
+                        mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+                    } finally {
+                        raf.close();
+                    }
+                    final byte[] head = new byte[Math.min(JSonBinaryParser.MAGIC.length, mapped.remaining())];
+                    mapped.duplicate().get(head);
+                    if (!JSonBinaryParser.isBinary(head, 0, head.length)) {
+                        return new JSonLazyDocument(mapped);
+                    }
+                }
+                byte[] data = IO.readFile(file);
+                if (!plain) {
+                    data = decryptByteArray(data, key, key);
+                    if (data == null) {
+                        return null;
+                    }
+                }
+                if (JSonBinaryParser.isBinary(data, 0, data.length)) {
+                    data = new JSonBinaryParser(data).readNode().toString().getBytes("UTF-8");
+                }
+                return new JSonLazyDocument(data);
+            } catch (final Throwable e) {
+                org.appwork.utils.logging2.extmanager.LoggerFactory.getDefaultLogger().log(e);
+            } finally {
+                JSonStorage.unLock(file);
+            }
+            return null;
+        }
+    }
+
     /**
      * restores a store json object
      *
@@ -357,7 +554,7 @@ public class JSonStorage {
         return def;
     }
 
-    private static byte[] decryptByteArray(final byte[] b, final byte[] key, final byte[] iv) {
+    static byte[] decryptByteArray(final byte[] b, final byte[] key, final byte[] iv) {
         try {
             final IvParameterSpec ivSpec = new IvParameterSpec(iv);
             final SecretKeySpec skeySpec = new SecretKeySpec(key, "AES");
@@ -387,7 +584,33 @@ public class JSonStorage {
         return new CipherInputStream(inputStream, cipher);
     }
 
-    private static byte[] encryptByteArray(final byte[] data, final byte[] key, final byte[] iv) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
+    private static CipherOutputStream createCipherOutputStream(final OutputStream outputStream, final byte[] key, final byte[] iv) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException {
+        final Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        final IvParameterSpec ivSpec = new IvParameterSpec(iv);
+        final SecretKeySpec skeySpec = new SecretKeySpec(key, "AES");
+        cipher.init(Cipher.ENCRYPT_MODE, skeySpec, ivSpec);
+        return new CipherOutputStream(outputStream, cipher);
+    }
+
+    /**
+     * @param data
+     * @param plain
+     * @param key
+     * @return data as {@link #saveTo(File, boolean, byte[], byte[])} writes it to the file
+     * @throws StorageException
+     */
+    public static byte[] toFileContent(final byte[] data, final boolean plain, final byte[] key) throws StorageException {
+        if (plain) {
+            return data;
+        }
+        try {
+            return encryptByteArray(data, key, key);
+        } catch (final Exception e) {
+            throw new StorageException(e);
+        }
+    }
+
+    static byte[] encryptByteArray(final byte[] data, final byte[] key, final byte[] iv) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
         final Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
         final IvParameterSpec ivSpec = new IvParameterSpec(iv);
         final SecretKeySpec skeySpec = new SecretKeySpec(key, "AES");
@@ -490,6 +713,10 @@ public class JSonStorage {
     }
 
     public static void saveTo(final File file, final boolean plain, final byte[] key, final byte[] data) throws StorageException {
+        JSonStorage.saveTo(file, plain, key, data, IO.SYNC.META_AND_DATA);
+    }
+
+    public static void saveTo(final File file, final boolean plain, final byte[] key, final byte[] data, final IO.SYNC sync) throws StorageException {
         final Object lock = JSonStorage.requestLock(file);
         synchronized (lock) {
             final File tmp = new File(file.getAbsolutePath() + ".tmp");
@@ -498,11 +725,177 @@ public class JSonStorage {
                 tmp.delete();
                 if (plain) {
                     /* uncrypted */
-                    IO.writeToFile(tmp, data);
+                    IO.writeToFile(tmp, data, sync);
                 } else {
                     /* encrypted */
-                    IO.writeToFile(tmp, encryptByteArray(data, key, key));
+                    IO.writeToFile(tmp, encryptByteArray(data, key, key), sync);
+                }
+                if (file.exists()) {
+                    if (!file.delete()) {
+                        throw new StorageException("Could not overwrite file: " + file.getAbsolutePath());
+                    }
+                }
+                if (!tmp.renameTo(file)) {
+                    throw new StorageException("Could not rename file: " + tmp + " to " + file);
+                }
+            } catch (final Exception e) {
+                throw new StorageException("Can not write to " + tmp.getAbsolutePath(), e);
+            } finally {
+                JSonStorage.unLock(file);
+            }
+        }
+    }
+
+    /**
+     * serializes object directly into the (encrypted) file. Unlike {@link #saveTo(File, boolean, byte[], byte[])} there is no
+     * intermediate json String or byte[] copy of the whole payload. like saveTo, the file is synced with {@link IO.SYNC#META_AND_DATA}
+     * before it replaces the old one
+     *
+     * @param file
+     * @param plain
+     * @param key
+     * @param object
+     * @throws StorageException
+     */
+    public static void saveObjectTo(final File file, final boolean plain, final byte[] key, final Object object) throws StorageException {
+        JSonStorage.saveObjectTo(file, plain, key, object, false);
+    }
+
+    /**
+     * @param file
+     * @param plain
+     * @param key
+     * @param object
+     * @param binary
+     *            write the compact binary encoding instead of json text. {@link #restoreFrom(File, boolean, byte[], TypeRef, Object)}
+     *            detects the encoding, so both can be read without knowing how the file was written
+     * @throws StorageException
+     */
+    public static void saveObjectTo(final File file, final boolean plain, final byte[] key, final Object object, final boolean binary) throws StorageException {
+        JSonStorage.saveObjectTo(file, plain, key, object, binary, IO.SYNC.META_AND_DATA);
+    }
+
+    /**
+     * @param file
+     * @param plain
+     * @param key
+     * @param object
+     * @param binary
+     * @param sync
+     *            fsync the file before it replaces the old one
+     * @throws StorageException
+     */
+    public static void saveObjectTo(final File file, final boolean plain, final byte[] key, final Object object, final boolean binary, final IO.SYNC sync) throws StorageException {
+        JSonStorage.saveObjectTo(file, plain, key, object, binary, sync, null);
+    }
+
+    /**
+     * saves object like {@link #saveObjectTo(File, boolean, byte[], Object, boolean, IO.SYNC)}, unless the file already has the same
+     * content. The (encrypted) content is hashed first without touching the disk, so saving an unchanged object neither writes, replaces
+     * nor syncs the file
+     *
+     * @param file
+     * @param plain
+     * @param key
+     * @param object
+     * @param previousHash
+     *            {@link #HASH_TYPE} hash of the current file content, see
+     *            {@link #restoreFrom(File, boolean, byte[], TypeRef, Object, MessageDigest)}, or null to always replace the file
+     * @param sync
+     *            fsync the file before it replaces the old one
+     * @return hash of the file content
+     * @throws StorageException
+     */
+    public static byte[] saveObjectToIfChanged(final File file, final boolean plain, final byte[] key, final Object object, final byte[] previousHash, final IO.SYNC sync) throws StorageException {
+        if (previousHash != null && file.exists()) {
+            final MessageDigest digest = JSonStorage.createDigest();
+            try {
+                JSonStorage.writeFileContent(new DigestOutputStream(new NullOutputStream(), digest), plain, key, object, false);
+            } catch (final Exception e) {
+                throw new StorageException(e);
+            }
+            final byte[] hash = digest.digest();
+            if (Arrays.equals(hash, previousHash)) {
+                return hash;
+            }
+        }
+        final MessageDigest digest = JSonStorage.createDigest();
+        JSonStorage.saveObjectTo(file, plain, key, object, false, sync, digest);
+        return digest.digest();
+    }
+
+    /**
+     * hash algorithm of {@link #saveObjectToIfChanged(File, boolean, byte[], Object, byte[], IO.SYNC)}
+     */
+    public static final String HASH_TYPE = "SHA-256";
+
+    public static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(JSonStorage.HASH_TYPE);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new WTFException(e);
+        }
+    }
+
+    /**
+     * serializes object into os, encrypted unless plain. Closes os
+     */
+    private static void writeFileContent(final OutputStream os, final boolean plain, final byte[] key, final Object object, final boolean binary) throws Exception {
+        final OutputStream out;
+        if (plain) {
+            /* uncrypted */
+            out = os;
+        } else {
+            /* encrypted */
+            try {
+                out = createCipherOutputStream(os, key, key);
+            } catch (final Exception e) {
+                os.close();
+                throw e;
+            }
+        }
+        /* closes the stream */
+        JSonStorage.writeObject(out, object, binary);
+    }
+
+    /**
+     * @param digest
+     *            if not null, is updated with the written (encrypted) bytes
+     */
+    private static void saveObjectTo(final File file, final boolean plain, final byte[] key, final Object object, final boolean binary, final IO.SYNC sync, final MessageDigest digest) throws StorageException {
+        final Object lock = JSonStorage.requestLock(file);
+        synchronized (lock) {
+            final File tmp = new File(file.getAbsolutePath() + ".tmp");
+            try {
+                tmp.getParentFile().mkdirs();
+                tmp.delete();
+                final FileOutputStream fos = new FileOutputStream(tmp);
+                OutputStream fs;
+                if (sync == null || sync == IO.SYNC.NONE) {
+                    fs = fos;
+                } else {
+                    fs = new FilterOutputStream(fos) {
+                        @Override
+                        public void write(final byte[] b, final int off, final int len) throws IOException {
+                            this.out.write(b, off, len);
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            try {
+                                this.flush();
+                                fos.getChannel().force(sync == IO.SYNC.META_AND_DATA);
+                            } finally {
+                                fos.close();
+                            }
+                        }
+                    };
+                }
+                if (digest != null) {
+                    /* hashes the bytes as they are written to the file, after encryption */
+                    fs = new DigestOutputStream(fs, digest);
                 }
+                JSonStorage.writeFileContent(fs, plain, key, object, binary);
                 if (file.exists()) {
                     if (!file.delete()) {
                         throw new StorageException("Could not overwrite file: " + file.getAbsolutePath());
@@ -525,7 +918,7 @@ public class JSonStorage {
      */
     public static void saveTo(final File file, final Object packageData) {
         final boolean plain = file.getName().toLowerCase().endsWith(".json");
-        JSonStorage.saveTo(file, plain, JSonStorage.KEY, JSonStorage.serializeToJsonByteArray(packageData));
+        JSonStorage.saveObjectTo(file, plain, JSonStorage.KEY, packageData);
     }
 
     /**
@@ -33,8 +33,12 @@
  * ==================================================================================================================================================== */
 package org.appwork.storage;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.lang.reflect.Array;
 import java.net.URL;
 import java.util.ArrayList;
@@ -67,7 +71,28 @@ public class JsonKeyValueStorage extends Storage {
     private final AtomicLong          setMark       = new AtomicLong(0);
     private final AtomicLong          writeMark     = new AtomicLong(0);
     private boolean                   enumCacheEnabled;
+    private volatile boolean          binary        = false;
     private final ModifyLock          modifyLock    = new ModifyLock();
+    private volatile IO.SYNC          sync          = IO.SYNC.META_AND_DATA;
+    private volatile long             maxWriteStaleness = 0;
+
+    /* journal mode, see setJournalEnabled */
+    private static final TypeRef<ArrayList<Object>> JOURNAL_RECORD              = new TypeRef<ArrayList<Object>>() {
+                                                                                 };
+    private static final long                       JOURNAL_MIN_COMPACTION_SIZE = 64 * 1024;
+    private volatile boolean                        journalEnabled              = false;
+    /* the journal file contains records that are not part of the snapshot file yet */
+    private volatile boolean                        journalActive               = false;
+    /* keys changed since the last journal write, guarded by journalKeys */
+    private final HashSet<String>                   journalKeys                 = new HashSet<String>();
+    private boolean                                 journalCleared              = false;
+    private boolean                                 journalReset                = false;
+    /* serializes journal appends and compaction */
+    private final Object                            journalLock                 = new Object();
+    private long                                    journalSize                 = 0;
+    private long                                    snapshotSize                = 0;
+    private volatile long                           journalMaxSize              = 1024 * 1024;
+    private volatile double                         journalMaxRatio             = 1.0d;
 
     private final Map<String, Object> getMap() {
         return internalMap;
@@ -124,6 +149,7 @@ public class JsonKeyValueStorage extends Storage {
             final HashMap<String, Object> load = JSonStorage.restoreFrom(file, plain, key, TypeRef.HASHMAP, new HashMap<String, Object>());
             this.putAll(load);
         }
+        this.replayJournal();
     }
 
     /**
@@ -150,6 +176,7 @@ public class JsonKeyValueStorage extends Storage {
         this.key = key;
         final HashMap<String, Object> load = JSonStorage.restoreFrom(this.file, plain, key, TypeRef.HASHMAP, new HashMap<String, Object>());
         this.putAll(load);
+        this.replayJournal();
     }
 
     @Override
@@ -157,6 +184,12 @@ public class JsonKeyValueStorage extends Storage {
         getLock().writeLock();
         try {
             getMap().clear();
+            if (this.isJournalTracking()) {
+                synchronized (this.journalKeys) {
+                    this.journalKeys.clear();
+                    this.journalCleared = true;
+                }
+            }
         } finally {
             getLock().writeUnlock();
             this.requestSave();
@@ -181,35 +214,12 @@ public class JsonKeyValueStorage extends Storage {
         Object ret = null;
         try {
             contains = getMap().containsKey(key);
-            ret = contains ? getMap().get(key) : null;
+            ret = contains ? PrimitiveValue.unwrap(getMap().get(key)) : null;
         } finally {
             getLock().readUnlock(readL);
         }
 
-        if (ret != null && def != null && ret.getClass() != def.getClass()) {
-            /* ret class different from def class, so we have to convert */
-            if (def instanceof Long) {
-                if (ret instanceof Integer) {
-                    ret = ((Integer) ret).longValue();
-                } else if (ret instanceof String) {
-                    ret = Long.parseLong((String) ret);
-                }
-            } else if (def instanceof Integer) {
-                if (ret instanceof Long) {
-                    ret = ((Long) ret).intValue();
-                } else if (ret instanceof String) {
-                    ret = Integer.parseInt((String) ret);
-                }
-            } else if (def instanceof Double) {
-                if (ret instanceof Float) {
-                    ret = ((Float) ret).doubleValue();
-                }
-            } else if (def instanceof Float) {
-                if (ret instanceof Double) {
-                    ret = ((Double) ret).floatValue();
-                }
-            }
-        }
+        ret = JsonKeyValueStorage.convert(ret, def);
         // put entry if we have no entry
         if (!contains) {
             ret = def;
@@ -237,18 +247,14 @@ public class JsonKeyValueStorage extends Storage {
         }
 
         if (def instanceof Enum<?> && ret instanceof String) {
-            try {
-                ret = Enum.valueOf(((Enum<?>) def).getDeclaringClass(), (String) ret);
+            final Enum<?> value = EnumCache.get(((Enum<?>) def).getDeclaringClass(), (String) ret);
+            if (value != null) {
+                ret = value;
                 if (autoPutDefaultValue && this.isEnumCacheEnabled()) {
-                    this.put(key, (Enum<?>) ret);
-                }
-            } catch (final Throwable e) {
-                if (e instanceof IllegalArgumentException) {
-                    getDefaultLogger().info("Could not restore the enum. There is no value for " + ret + " in " + ((Enum<?>) def).getDeclaringClass());
-                    getDefaultLogger().log(e);
-                } else {
-                    getDefaultLogger().log(e);
+                    this.put(key, value);
                 }
+            } else {
+                getDefaultLogger().info("Could not restore the enum. There is no value for " + ret + " in " + ((Enum<?>) def).getDeclaringClass());
                 if (autoPutDefaultValue) {
                     this.put(key, (Enum<?>) def);
                 }
@@ -258,6 +264,113 @@ public class JsonKeyValueStorage extends Storage {
         return (E) ret;
     }
 
+    /**
+     * @return the raw map value, a {@link PrimitiveValue} for values written by the primitive puts
+     */
+    private Object getRaw(final String key) {
+        final boolean readL = getLock().readLock();
+        try {
+            return getMap().get(key);
+        } finally {
+            getLock().readUnlock(readL);
+        }
+    }
+
+    @Override
+    public int getInt(final String key, final int def) throws StorageException {
+        final Object ret = this.getRaw(key);
+        if (ret instanceof PrimitiveValue) {
+            return ((PrimitiveValue) ret).intValue();
+        } else if (ret instanceof Number) {
+            return ((Number) ret).intValue();
+        } else if (ret instanceof String) {
+            return Integer.parseInt((String) ret);
+        } else if (ret == null && this.isAutoPutValues() && !this.hasProperty(key)) {
+            this.put(key, def);
+        }
+        return def;
+    }
+
+    @Override
+    public long getLong(final String key, final long def) throws StorageException {
+        final Object ret = this.getRaw(key);
+        if (ret instanceof PrimitiveValue) {
+            return ((PrimitiveValue) ret).longValue();
+        } else if (ret instanceof Number) {
+            return ((Number) ret).longValue();
+        } else if (ret instanceof String) {
+            return Long.parseLong((String) ret);
+        } else if (ret == null && this.isAutoPutValues() && !this.hasProperty(key)) {
+            this.put(key, def);
+        }
+        return def;
+    }
+
+    @Override
+    public boolean getBoolean(final String key, final boolean def) throws StorageException {
+        final Object ret = this.getRaw(key);
+        if (ret instanceof PrimitiveValue) {
+            return ((PrimitiveValue) ret).booleanValue();
+        } else if (ret instanceof Boolean) {
+            return ((Boolean) ret).booleanValue();
+        } else if (ret instanceof String) {
+            return Boolean.parseBoolean((String) ret);
+        } else if (ret == null && this.isAutoPutValues() && !this.hasProperty(key)) {
+            this.put(key, def);
+        }
+        return def;
+    }
+
+    @Override
+    public double getDouble(final String key, final double def) throws StorageException {
+        final Object ret = this.getRaw(key);
+        if (ret instanceof PrimitiveValue) {
+            return ((PrimitiveValue) ret).doubleValue();
+        } else if (ret instanceof Number) {
+            return ((Number) ret).doubleValue();
+        } else if (ret instanceof String) {
+            return Double.parseDouble((String) ret);
+        } else if (ret == null && this.isAutoPutValues() && !this.hasProperty(key)) {
+            this.put(key, def);
+        }
+        return def;
+    }
+
+    /**
+     * converts a stored value to the type of def, e.g. a Long restored from json for an Integer default
+     *
+     * @param ret
+     * @param def
+     * @return
+     */
+    static Object convert(Object ret, final Object def) {
+        if (ret != null && def != null && ret.getClass() != def.getClass()) {
+            /* ret class different from def class, so we have to convert */
+            if (def instanceof Long) {
+                if (ret instanceof Integer) {
+                    ret = ((Integer) ret).longValue();
+                } else if (ret instanceof String) {
+                    ret = Long.parseLong((String) ret);
+                }
+            } else if (def instanceof Integer) {
+                if (ret instanceof Long) {
+                    ret = ((Long) ret).intValue();
+                } else if (ret instanceof String) {
+                    ret = Integer.parseInt((String) ret);
+                }
+            } else if (def instanceof Double) {
+                if (ret instanceof Float) {
+                    ret = ((Float) ret).doubleValue();
+                }
+            } else if (def instanceof Float) {
+                if (ret instanceof Double) {
+                    ret = ((Double) ret).floatValue();
+                }
+            }
+        }
+        return ret;
+    }
+
     /**
      * @return the key
      */
@@ -301,8 +414,11 @@ public class JsonKeyValueStorage extends Storage {
         final boolean readL = getLock().readLock();
         boolean requestSave = true;
         try {
-            final Object ret = getMap().put(key, value);
+            final Object ret = PrimitiveValue.unwrap(getMap().put(key, value));
             requestSave = !equals(ret, value);
+            if (requestSave) {
+                this.markJournalKey(key);
+            }
             return ret;
         } finally {
             getLock().readUnlock(readL);
@@ -312,6 +428,49 @@ public class JsonKeyValueStorage extends Storage {
         }
     }
 
+    /**
+     * updates an existing {@link PrimitiveValue} of the same type in place, so repeated writes of a counter do not allocate
+     */
+    private void internal_put(final String key, final int type, final long bits) {
+        if (key == null) {
+            throw new WTFException("key == null is forbidden!");
+        }
+        final boolean readL = getLock().readLock();
+        boolean requestSave = false;
+        try {
+            final Object existing = getMap().get(key);
+            if (existing instanceof PrimitiveValue && ((PrimitiveValue) existing).type == type) {
+                requestSave = ((PrimitiveValue) existing).set(bits);
+            } else {
+                final PrimitiveValue value = new PrimitiveValue(type, bits);
+                getMap().put(key, value);
+                requestSave = existing == null || !equals(PrimitiveValue.unwrap(existing), value.box());
+            }
+            if (requestSave) {
+                this.markJournalKey(key);
+            }
+        } finally {
+            getLock().readUnlock(readL);
+            if (requestSave) {
+                this.requestSave();
+            }
+        }
+    }
+
+    /**
+     * @return a shallow copy of the map with all {@link PrimitiveValue}s boxed. Caller must hold the storage lock. The other values
+     *         are never modified in place, so the copy can be serialized after the lock has been released
+     */
+    private HashMap<String, Object> copyMap() {
+        final HashMap<String, Object> ret = new HashMap<String, Object>(getMap());
+        for (final Entry<String, Object> e : ret.entrySet()) {
+            if (e.getValue() instanceof PrimitiveValue) {
+                e.setValue(((PrimitiveValue) e.getValue()).box());
+            }
+        }
+        return ret;
+    }
+
     private static final Set<Class<?>> WRAPPER_TYPES = getWrapperTypes();
 
     public static boolean isWrapperType(final Class<?> clazz) {
@@ -417,13 +576,60 @@ public class JsonKeyValueStorage extends Storage {
         return this.plain;
     }
 
+    public boolean isBinary() {
+        return this.binary;
+    }
+
+    /**
+     * write the storage file in the compact binary encoding. Loading detects the encoding, so existing json files keep working and are
+     * converted with the next save
+     *
+     * @param binary
+     */
+    public void setBinary(final boolean binary) {
+        this.binary = binary;
+    }
+
+    public IO.SYNC getSync() {
+        return this.sync;
+    }
+
+    /**
+     * fsync policy for writing the storage file and the journal. default is {@link IO.SYNC#META_AND_DATA}, like the former
+     * IO.writeToFile based save, {@link IO.SYNC#NONE} trades durability for speed
+     *
+     * @param sync
+     */
+    public void setSync(final IO.SYNC sync) {
+        this.sync = sync == null ? IO.SYNC.META_AND_DATA : sync;
+    }
+
+    public long getMaxWriteStaleness() {
+        return this.maxWriteStaleness;
+    }
+
+    /**
+     * ms until a delayed write of this storage is executed at the latest. <=0 uses the default of
+     * {@link StorageHandler#getWriteBehindScheduler()}
+     *
+     * @param maxWriteStaleness
+     */
+    public void setMaxWriteStaleness(final long maxWriteStaleness) {
+        this.maxWriteStaleness = maxWriteStaleness;
+    }
+
+    @Override
     public void put(final String key, final boolean value) throws StorageException {
-        this.internal_put(key, value);
+        this.internal_put(key, PrimitiveValue.BOOLEAN, value ? 1 : 0);
     }
 
     @Override
     public void put(final String key, final Boolean value) throws StorageException {
-        this.internal_put(key, value);
+        if (value == null) {
+            this.internal_put(key, null);
+        } else {
+            this.put(key, value.booleanValue());
+        }
     }
 
     @Override
@@ -431,9 +637,18 @@ public class JsonKeyValueStorage extends Storage {
         this.internal_put(key, value);
     }
 
+    @Override
+    public void put(final String key, final double value) throws StorageException {
+        this.internal_put(key, PrimitiveValue.DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
     @Override
     public void put(final String key, final Double value) throws StorageException {
-        this.internal_put(key, value);
+        if (value == null) {
+            this.internal_put(key, null);
+        } else {
+            this.put(key, value.doubleValue());
+        }
     }
 
     @Override
@@ -454,22 +669,32 @@ public class JsonKeyValueStorage extends Storage {
         this.internal_put(key, value);
     }
 
+    @Override
     public void put(final String key, final int value) throws StorageException {
-        this.internal_put(key, value);
+        this.internal_put(key, PrimitiveValue.INT, value);
     }
 
     @Override
     public void put(final String key, final Integer value) throws StorageException {
-        this.internal_put(key, value);
+        if (value == null) {
+            this.internal_put(key, null);
+        } else {
+            this.put(key, value.intValue());
+        }
     }
 
+    @Override
     public void put(final String key, final long value) throws StorageException {
-        this.internal_put(key, value);
+        this.internal_put(key, PrimitiveValue.LONG, value);
     }
 
     @Override
     public void put(final String key, final Long value) throws StorageException {
-        this.internal_put(key, value);
+        if (value == null) {
+            this.internal_put(key, null);
+        } else {
+            this.put(key, value.longValue());
+        }
     }
 
     @Override
@@ -502,7 +727,8 @@ public class JsonKeyValueStorage extends Storage {
         if (hasProperty(key)) {
             getLock().writeLock();
             try {
-                return getMap().remove(key);
+                this.markJournalKey(key);
+                return PrimitiveValue.unwrap(getMap().remove(key));
             } finally {
                 getLock().writeUnlock();
                 this.requestSave();
@@ -511,6 +737,27 @@ public class JsonKeyValueStorage extends Storage {
         return null;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.appwork.storage.Storage#getModificationCounter()
+     */
+    @Override
+    public long getModificationCounter() {
+        /* incremented after every modification of the map */
+        return this.setMark.get();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.appwork.storage.Storage#runLocked(java.lang.Runnable)
+     */
+    @Override
+    public void runLocked(final Runnable run) {
+        getLock().runWriteLock(run);
+    }
+
     public void requestSave() {
         final long mark = this.setMark.incrementAndGet();
         if (false) {
@@ -525,10 +772,23 @@ public class JsonKeyValueStorage extends Storage {
         }
         final long lastSetMark = this.setMark.get();
         if (this.writeMark.getAndSet(lastSetMark) != lastSetMark) {
+            if (this.isJournalTracking()) {
+                /* the runnable collects the changed keys when it is executed, so coalesced runnables do not lose records */
+                final Runnable run = new Runnable() {
+
+                    @Override
+                    public void run() {
+                        JsonKeyValueStorage.this.writeJournal();
+                    }
+
+                };
+                StorageHandler.enqueueWrite(run, file.getAbsolutePath(), true, this.maxWriteStaleness);
+                return;
+            }
             final boolean readL = getLock().readLock();
-            final byte[] jsonBytes;
+            final HashMap<String, Object> snapshot;
             try {
-                jsonBytes = JSonStorage.getMapper().objectToByteArray(getMap());
+                snapshot = this.copyMap();
                 writeMark.set(setMark.get());
             } finally {
                 getLock().readUnlock(readL);
@@ -537,11 +797,264 @@ public class JsonKeyValueStorage extends Storage {
 
                 @Override
                 public void run() {
-                    JSonStorage.saveTo(file, plain, key, jsonBytes);
+                    /* streamed into the file, without holding the storage lock */
+                    JSonStorage.saveObjectTo(file, plain, key, snapshot, isBinary(), getSync());
                 }
 
             };
-            StorageHandler.enqueueWrite(run, file.getAbsolutePath(), true);
+            StorageHandler.enqueueWrite(run, file.getAbsolutePath(), true, this.maxWriteStaleness);
+        }
+    }
+
+    /**
+     * @return the journal file used in journal mode. It is located next to the storage file
+     */
+    public File getJournalFile() {
+        return new File(this.file.getAbsolutePath() + ".journal");
+    }
+
+    public boolean isJournalEnabled() {
+        return this.journalEnabled;
+    }
+
+    /**
+     * In journal mode, save() appends only the changed keys as put/remove records to {@link #getJournalFile()} instead of rewriting
+     * the whole storage file. The journal is replayed when the storage is opened and compacted into a full snapshot once it exceeds
+     * {@link #setJournalCompaction(long, double)}. Encrypted storages encrypt every record with the storage key.
+     *
+     * @param enabled
+     */
+    public void setJournalEnabled(final boolean enabled) {
+        synchronized (this.journalKeys) {
+            if (enabled && !this.journalEnabled && !this.journalActive) {
+                /* changes before this point were not tracked, so the first write has to be a full snapshot */
+                this.journalReset = true;
+            }
+            this.journalEnabled = enabled;
+        }
+    }
+
+    /**
+     * @param maxSize
+     *            compact as soon as the journal is larger than maxSize bytes
+     * @param maxRatio
+     *            compact as soon as the journal is larger than maxRatio * size of the snapshot file
+     */
+    public void setJournalCompaction(final long maxSize, final double maxRatio) {
+        this.journalMaxSize = maxSize;
+        this.journalMaxRatio = maxRatio;
+    }
+
+    private boolean isJournalTracking() {
+        return this.journalEnabled || this.journalActive;
+    }
+
+    private void markJournalKey(final String key) {
+        if (this.isJournalTracking()) {
+            synchronized (this.journalKeys) {
+                this.journalKeys.add(key);
+            }
+        }
+    }
+
+    /**
+     * collects all pending records. Caller must hold the storage lock
+     *
+     * @return
+     */
+    private List<Object[]> drainJournalRecords() {
+        final List<Object[]> records = new ArrayList<Object[]>();
+        synchronized (this.journalKeys) {
+            if (this.journalCleared) {
+                this.journalCleared = false;
+                records.add(new Object[0]);
+            }
+            for (final String key : this.journalKeys) {
+                if (getMap().containsKey(key)) {
+                    records.add(new Object[] { key, PrimitiveValue.unwrap(getMap().get(key)) });
+                } else {
+                    records.add(new Object[] { key });
+                }
+            }
+            this.journalKeys.clear();
+        }
+        return records;
+    }
+
+    private boolean isJournalCompactionRequired() {
+        final long maxSize = this.journalMaxSize;
+        if (this.journalSize > maxSize) {
+            return true;
+        }
+        return this.journalSize > Math.min(maxSize, JOURNAL_MIN_COMPACTION_SIZE) && this.journalSize > this.snapshotSize * this.journalMaxRatio;
+    }
+
+    protected void writeJournal() throws StorageException {
+        synchronized (this.journalLock) {
+            final boolean reset;
+            synchronized (this.journalKeys) {
+                reset = this.journalReset;
+            }
+            if (reset || !this.isJournalEnabled() || this.isJournalCompactionRequired()) {
+                this.compactJournal();
+                return;
+            }
+            final List<Object[]> records;
+            final boolean readL = getLock().readLock();
+            try {
+                records = this.drainJournalRecords();
+            } finally {
+                getLock().readUnlock(readL);
+            }
+            this.appendJournal(records);
+            if (this.isJournalCompactionRequired()) {
+                this.compactJournal();
+            }
+        }
+    }
+
+    /**
+     * writes a full snapshot and removes the journal. Pending records are appended to the journal before the snapshot is written, so
+     * replaying a journal that could not be deleted after a crash results in the same state as the snapshot
+     */
+    private void compactJournal() throws StorageException {
+        final List<Object[]> records;
+        final HashMap<String, Object> snapshot;
+        getLock().writeLock();
+        try {
+            records = this.drainJournalRecords();
+            snapshot = this.copyMap();
+            synchronized (this.journalKeys) {
+                this.journalReset = false;
+            }
+        } finally {
+            getLock().writeUnlock();
+        }
+        final File journal = this.getJournalFile();
+        if (this.journalSize > 0 || journal.exists()) {
+            this.appendJournal(records);
+        }
+        JSonStorage.saveObjectTo(this.file, this.plain, this.key, snapshot, this.isBinary(), this.getSync());
+        this.snapshotSize = this.file.length();
+        if (journal.exists() && !journal.delete()) {
+            getDefaultLogger().info("Could not delete journal: " + journal);
+            this.journalActive = true;
+            return;
+        }
+        this.journalSize = 0;
+        this.journalActive = false;
+    }
+
+    private void appendJournal(final List<Object[]> records) throws StorageException {
+        if (records.size() == 0) {
+            return;
+        }
+        final File journal = this.getJournalFile();
+        try {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            final DataOutputStream dos = new DataOutputStream(bos);
+            for (final Object[] record : records) {
+                byte[] data = JSonStorage.getMapper().objectToByteArray(record);
+                if (!this.plain) {
+                    data = JSonStorage.encryptByteArray(data, this.key, this.key);
+                }
+                dos.writeInt(data.length);
+                dos.write(data);
+            }
+            dos.flush();
+            journal.getParentFile().mkdirs();
+            final FileOutputStream fos = new FileOutputStream(journal, true);
+            try {
+                /* one write per flush, a crash can only leave a torn frame at the end, see replayJournal */
+                bos.writeTo(fos);
+                final IO.SYNC sync = this.getSync();
+                if (sync != IO.SYNC.NONE) {
+                    fos.getChannel().force(sync == IO.SYNC.META_AND_DATA);
+                }
+            } finally {
+                fos.close();
+            }
+            this.journalSize += bos.size();
+            this.journalActive = true;
+        } catch (final StorageException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new StorageException("Can not write to " + journal.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * applies all records of the journal file on top of the loaded snapshot. A torn record at the end (crash during append) is cut off
+     */
+    private void replayJournal() {
+        this.snapshotSize = this.file.length();
+        final File journal = this.getJournalFile();
+        if (!journal.isFile()) {
+            return;
+        }
+        /* even an unreadable journal has to be removed by the next compaction */
+        this.journalActive = true;
+        try {
+            final byte[] data = IO.readFile(journal);
+            int offset = 0;
+            int records = 0;
+            int corrupt = 0;
+            boolean brokenFrame = false;
+            getLock().writeLock();
+            try {
+                while (offset + 4 <= data.length) {
+                    final int length = (data[offset] & 0xff) << 24 | (data[offset + 1] & 0xff) << 16 | (data[offset + 2] & 0xff) << 8 | data[offset + 3] & 0xff;
+                    if (length < 0) {
+                        /* the length prefix itself is garbage, the following records cannot be located */
+                        brokenFrame = true;
+                        break;
+                    }
+                    if (length > data.length - offset - 4) {
+                        /* torn tail: the last append did not complete */
+                        break;
+                    }
+                    final byte[] payload = new byte[length];
+                    System.arraycopy(data, offset + 4, payload, 0, length);
+                    final ArrayList<Object> record = JSonStorage.restoreFromByteArray(payload, this.plain, this.key, JOURNAL_RECORD, null);
+                    offset += 4 + length;
+                    if (record == null) {
+                        /* framing is intact, skip the unreadable record and keep the valid ones after it */
+                        corrupt++;
+                        continue;
+                    }
+                    if (record.size() == 0) {
+                        getMap().clear();
+                    } else if (record.get(0) instanceof String) {
+                        if (record.size() == 1) {
+                            getMap().remove(record.get(0));
+                        } else {
+                            getMap().put((String) record.get(0), record.get(1));
+                        }
+                    }
+                    records++;
+                }
+            } finally {
+                getLock().writeUnlock();
+            }
+            if (corrupt > 0 || brokenFrame) {
+                final File backup = new File(journal.getAbsolutePath() + ".corrupt");
+                backup.delete();
+                IO.copyFile(journal, backup);
+                getDefaultLogger().severe("Journal " + journal + " is corrupt: skipped " + corrupt + " unreadable records" + (brokenFrame ? ", invalid record length @" + offset : "") + ". Copy kept at " + backup);
+            }
+            if (offset < data.length) {
+                getDefaultLogger().info("Cut off invalid journal tail: " + journal + "@" + offset);
+                final RandomAccessFile raf = new RandomAccessFile(journal, "rw");
+                try {
+                    raf.setLength(offset);
+                } finally {
+                    raf.close();
+                }
+            }
+            getDefaultLogger().info("Replayed " + records + " journal records from " + journal);
+            this.journalSize = offset;
+        } catch (final IOException e) {
+            getDefaultLogger().log(e);
         }
     }
 
@@ -577,7 +1090,7 @@ public class JsonKeyValueStorage extends Storage {
     public String toString() {
         final boolean readL = getLock().readLock();
         try {
-            return JSonStorage.getMapper().objectToString(getMap());
+            return JSonStorage.getMapper().objectToString(this.copyMap());
         } catch (final Throwable e) {
             return getMap().toString();
         } finally {
@@ -0,0 +1,117 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage;
+
+/**
+ * unboxed storage value. Primitive puts update an existing instance in place, so counters and timestamps do not allocate a new box
+ * for every write. Instances never leave the storage: every read path and every snapshot converts them with {@link #unwrap(Object)}
+ *
+ * @author thomas
+ *
+ */
+final class PrimitiveValue {
+
+    static final int BOOLEAN = 0;
+    static final int INT     = 1;
+    static final int LONG    = 2;
+    static final int DOUBLE  = 3;
+
+    /**
+     * @param value
+     * @return the boxed value if value is a {@link PrimitiveValue}, else value itself
+     */
+    static Object unwrap(final Object value) {
+        if (value instanceof PrimitiveValue) {
+            return ((PrimitiveValue) value).box();
+        }
+        return value;
+    }
+
+    final int             type;
+    private volatile long bits;
+
+    PrimitiveValue(final int type, final long bits) {
+        this.type = type;
+        this.bits = bits;
+    }
+
+    /**
+     * @param bits
+     * @return true if the value changed
+     */
+    boolean set(final long bits) {
+        if (this.bits == bits) {
+            return false;
+        }
+        this.bits = bits;
+        return true;
+    }
+
+    boolean booleanValue() {
+        return this.bits != 0;
+    }
+
+    long longValue() {
+        final long bits = this.bits;
+        return this.type == PrimitiveValue.DOUBLE ? (long) Double.longBitsToDouble(bits) : bits;
+    }
+
+    int intValue() {
+        return (int) this.longValue();
+    }
+
+    double doubleValue() {
+        final long bits = this.bits;
+        return this.type == PrimitiveValue.DOUBLE ? Double.longBitsToDouble(bits) : bits;
+    }
+
+    Object box() {
+        final long bits = this.bits;
+        switch (this.type) {
+        case BOOLEAN:
+            return Boolean.valueOf(bits != 0);
+        case INT:
+            return Integer.valueOf((int) bits);
+        case LONG:
+            return Long.valueOf(bits);
+        default:
+            return Double.valueOf(Double.longBitsToDouble(bits));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(this.box());
+    }
+}
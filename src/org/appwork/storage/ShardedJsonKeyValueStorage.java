@@ -0,0 +1,445 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.appwork.exceptions.WTFException;
+import org.appwork.utils.IO;
+
+/**
+ * {@link Storage} that hash-partitions its keys into several {@link JsonKeyValueStorage} shard files. Every shard has its own dirty
+ * marks and its own delayed write (the shard file is the write ID), so a save only rewrites the shards that changed. Shards are loaded
+ * in parallel.
+ *
+ * The number of shards is part of the file layout: reopening the same files with a different shard count would map keys to the wrong
+ * shards. The count is therefore written to {@link #getShardCountFile()} and checked when the storage is opened.
+ *
+ * @author thomas
+ *
+ */
+public class ShardedJsonKeyValueStorage extends Storage {
+
+    private final JsonKeyValueStorage[] shards;
+    private final File                  file;
+    private final boolean               plain;
+    private final byte[]                key;
+
+    public ShardedJsonKeyValueStorage(final File file, final int shards) throws StorageException {
+        this(file, shards, false);
+    }
+
+    public ShardedJsonKeyValueStorage(final File file, final int shards, final boolean plain) throws StorageException {
+        this(file, shards, plain, JSonStorage.KEY);
+    }
+
+    /**
+     * @param file
+     *            base file. shards are stored next to it as name.0.json ... name.(shards-1).json (.ejs if encrypted)
+     * @param shards
+     * @param plain
+     * @param key
+     * @throws StorageException
+     */
+    public ShardedJsonKeyValueStorage(final File file, final int shards, final boolean plain, final byte[] key) throws StorageException {
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards < 1");
+        }
+        this.file = file;
+        this.plain = plain;
+        this.key = key;
+        this.shards = new JsonKeyValueStorage[shards];
+        this.checkShardCount();
+        this.load();
+    }
+
+    /**
+     * @return file that stores the shard count of this layout (name.shards next to the shard files)
+     */
+    public File getShardCountFile() {
+        return new File(this.file.getParentFile(), this.getBaseName() + ".shards");
+    }
+
+    private void checkShardCount() throws StorageException {
+        final File countFile = this.getShardCountFile();
+        try {
+            if (countFile.isFile()) {
+                final String stored = IO.readFileToTrimmedString(countFile);
+                final int count;
+                try {
+                    count = Integer.parseInt(stored);
+                } catch (final NumberFormatException e) {
+                    throw new StorageException("Invalid shard count file " + countFile + ": " + stored, e);
+                }
+                if (count != this.shards.length) {
+                    throw new StorageException(this.file + " was created with " + count + " shards, cannot open it with " + this.shards.length);
+                }
+            } else {
+                IO.secureWrite(countFile, String.valueOf(this.shards.length), IO.SYNC.META_AND_DATA);
+            }
+        } catch (final IOException e) {
+            throw new StorageException("Could not access shard count file " + countFile, e);
+        }
+    }
+
+    private String getBaseName() {
+        final String name = this.file.getName();
+        final int extension = name.lastIndexOf('.');
+        return extension > 0 ? name.substring(0, extension) : name;
+    }
+
+    private void load() throws StorageException {
+        final int threads = Math.min(this.shards.length, Runtime.getRuntime().availableProcessors());
+        if (threads <= 1) {
+            for (int index = 0; index < this.shards.length; index++) {
+                this.shards[index] = new JsonKeyValueStorage(this.getShardFile(index), this.plain, this.key);
+            }
+            return;
+        }
+        final AtomicInteger threadID = new AtomicInteger(0);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread ret = new Thread(r, "ShardedJsonKeyValueStorage:" + ShardedJsonKeyValueStorage.this.file.getName() + ":" + threadID.incrementAndGet());
+                ret.setDaemon(true);
+                return ret;
+            }
+        });
+        try {
+            final List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int index = 0; index < this.shards.length; index++) {
+                final int shard = index;
+                futures.add(executor.submit(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        ShardedJsonKeyValueStorage.this.shards[shard] = new JsonKeyValueStorage(ShardedJsonKeyValueStorage.this.getShardFile(shard), ShardedJsonKeyValueStorage.this.plain, ShardedJsonKeyValueStorage.this.key);
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof StorageException) {
+                throw (StorageException) e.getCause();
+            }
+            throw new StorageException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public File getShardFile(final int index) {
+        return new File(this.file.getParentFile(), this.getBaseName() + "." + index + (this.plain ? ".json" : ".ejs"));
+    }
+
+    public int getShardCount() {
+        return this.shards.length;
+    }
+
+    private JsonKeyValueStorage getShard(final String key) {
+        if (key == null) {
+            throw new WTFException("key == null is forbidden!");
+        }
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return this.shards[(h & 0x7fffffff) % this.shards.length];
+    }
+
+    @Override
+    public void clear() throws StorageException {
+        for (final JsonKeyValueStorage shard : this.shards) {
+            shard.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (final JsonKeyValueStorage shard : this.shards) {
+            shard.close();
+        }
+    }
+
+    @Override
+    public <E> E get(final String key, final E def, final Boolean autoPutValue) throws StorageException {
+        return this.getShard(key).get(key, def, autoPutValue);
+    }
+
+    @Override
+    public <E> E get(final String key, final E def) throws StorageException {
+        return this.getShard(key).get(key, def);
+    }
+
+    @Override
+    public int getInt(final String key, final int def) throws StorageException {
+        return this.getShard(key).getInt(key, def);
+    }
+
+    @Override
+    public long getLong(final String key, final long def) throws StorageException {
+        return this.getShard(key).getLong(key, def);
+    }
+
+    @Override
+    public boolean getBoolean(final String key, final boolean def) throws StorageException {
+        return this.getShard(key).getBoolean(key, def);
+    }
+
+    @Override
+    public double getDouble(final String key, final double def) throws StorageException {
+        return this.getShard(key).getDouble(key, def);
+    }
+
+    @Override
+    public byte[] getCryptKey() {
+        return this.key;
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    @Override
+    public String getID() {
+        return this.file.getAbsolutePath();
+    }
+
+    public List<String> getKeys() {
+        final List<String> ret = new ArrayList<String>();
+        for (final JsonKeyValueStorage shard : this.shards) {
+            ret.addAll(shard.getKeys());
+        }
+        return ret;
+    }
+
+    @Override
+    public boolean hasProperty(final String key) {
+        return this.getShard(key).hasProperty(key);
+    }
+
+    @Override
+    public boolean isAutoPutValues() {
+        return this.shards[0].isAutoPutValues();
+    }
+
+    public boolean isPlain() {
+        return this.plain;
+    }
+
+    @Override
+    public void put(final String key, final Boolean value) throws StorageException {
+        this.getShard(key).put(key, value);
+    }
+
+    @Override
+    public void put(final String key, final Byte value) throws StorageException {
+        this.getShard(key).put(key, value);
+    }
+
+    @Override
+    public void put(final String key, final Double value) throws StorageException {
+        this.getShard(key).put(key, value);
+    }
+
+    @Override
+    public void put(final String key, final Enum<?> value) throws StorageException {
+        this.getShard(key).put(key, value);
+    }
+
+    @Override
+    public void put(final String key, final Float value) throws StorageException {
+        this.getShard(key).put(key, value);
+    }
+
+    @Override
+    public void put(final String key, final Integer value) throws StorageException {
+        this.getShard(key).put(key, value);
+    }
+
+    @Override
+    public void put(final String key, final Long value) throws StorageException {
+        this.getShard(key).put(key, value);
+    }
+
+    @Override
+    public void put(final String key, final String value) throws StorageException {
+        this.getShard(key).put(key, value);
+    }
+
+    @Override
+    public void put(final String key, final int value) throws StorageException {
+        this.getShard(key).put(key, value);
+    }
+
+    @Override
+    public void put(final String key, final long value) throws StorageException {
+        this.getShard(key).put(key, value);
+    }
+
+    @Override
+    public void put(final String key, final boolean value) throws StorageException {
+        this.getShard(key).put(key, value);
+    }
+
+    @Override
+    public void put(final String key, final double value) throws StorageException {
+        this.getShard(key).put(key, value);
+    }
+
+    @Override
+    public Object remove(final String key) {
+        return this.getShard(key).remove(key);
+    }
+
+    /**
+     * saves only the shards that changed since their last save
+     */
+    @Override
+    public void save() throws StorageException {
+        for (final JsonKeyValueStorage shard : this.shards) {
+            shard.save();
+        }
+    }
+
+    @Override
+    public void setAutoPutValues(final boolean b) {
+        for (final JsonKeyValueStorage shard : this.shards) {
+            shard.setAutoPutValues(b);
+        }
+    }
+
+    public void setBinary(final boolean binary) {
+        for (final JsonKeyValueStorage shard : this.shards) {
+            shard.setBinary(binary);
+        }
+    }
+
+    /**
+     * see {@link JsonKeyValueStorage#setSync(IO.SYNC)}
+     *
+     * @param sync
+     */
+    public void setSync(final IO.SYNC sync) {
+        for (final JsonKeyValueStorage shard : this.shards) {
+            shard.setSync(sync);
+        }
+    }
+
+    /**
+     * see {@link JsonKeyValueStorage#setMaxWriteStaleness(long)}
+     *
+     * @param maxWriteStaleness
+     */
+    public void setMaxWriteStaleness(final long maxWriteStaleness) {
+        for (final JsonKeyValueStorage shard : this.shards) {
+            shard.setMaxWriteStaleness(maxWriteStaleness);
+        }
+    }
+
+    public void setEnumCacheEnabled(final boolean enumCacheEnabled) {
+        for (final JsonKeyValueStorage shard : this.shards) {
+            shard.setEnumCacheEnabled(enumCacheEnabled);
+        }
+    }
+
+    /**
+     * see {@link JsonKeyValueStorage#setJournalEnabled(boolean)}
+     *
+     * @param enabled
+     */
+    public void setJournalEnabled(final boolean enabled) {
+        for (final JsonKeyValueStorage shard : this.shards) {
+            shard.setJournalEnabled(enabled);
+        }
+    }
+
+    @Override
+    public long getModificationCounter() {
+        long ret = 0;
+        for (final JsonKeyValueStorage shard : this.shards) {
+            ret += shard.getModificationCounter();
+        }
+        return ret;
+    }
+
+    /**
+     * locks all shards, always in the same order
+     */
+    @Override
+    public void runLocked(final Runnable run) {
+        this.runLocked(run, 0);
+    }
+
+    private void runLocked(final Runnable run, final int index) {
+        if (index == this.shards.length) {
+            run.run();
+            return;
+        }
+        this.shards[index].runLocked(new Runnable() {
+
+            @Override
+            public void run() {
+                ShardedJsonKeyValueStorage.this.runLocked(run, index + 1);
+            }
+        });
+    }
+
+    @Override
+    public int size() {
+        int ret = 0;
+        for (final JsonKeyValueStorage shard : this.shards) {
+            ret += shard.size();
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedJsonKeyValueStorage:" + this.getID() + "|Shards:" + this.shards.length;
+    }
+}
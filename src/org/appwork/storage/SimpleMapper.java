@@ -33,25 +33,27 @@
  * ==================================================================================================================================================== */
 package org.appwork.storage;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.appwork.storage.simplejson.JSonBinaryGenerator;
 import org.appwork.storage.simplejson.JSonFactory;
+import org.appwork.storage.simplejson.JSonGenerator;
 import org.appwork.storage.simplejson.JSonNode;
+import org.appwork.storage.simplejson.JSonPullParser;
 import org.appwork.storage.simplejson.ParserException;
 import org.appwork.storage.simplejson.mapper.JSonMapper;
 import org.appwork.storage.simplejson.mapper.MapperException;
-import org.appwork.utils.IO;
 
 /**
  * @author thomas
  *
  */
-public class SimpleMapper implements JSONMapper {
+public class SimpleMapper implements JSONBinaryMapper {
     protected final JSonMapper mapper;
 
     public SimpleMapper() {
@@ -72,9 +74,49 @@ public class SimpleMapper implements JSONMapper {
                 }
                 return super.create(obj);
             }
+
+            @Override
+            public void write(final Object obj, final JSonGenerator gen) throws MapperException, IOException {
+                for (final JsonSerializerEntry se : serializer) {
+                    if (obj != null && se.clazz.isAssignableFrom(obj.getClass())) {
+                        gen.writeRawValue(se.serializer.toJSonString(obj));
+                        return;
+                    }
+                }
+                super.write(obj, gen);
+            }
         };
     }
 
+    /* one cached generator per thread, so the write buffer is reused */
+    private final ThreadLocal<JSonGenerator> generators = new ThreadLocal<JSonGenerator>();
+
+    /**
+     * writes value as UTF-8 json into outputStream without building a String first. does not close the stream
+     *
+     * @param outputStream
+     * @param value
+     * @throws IOException
+     * @throws MapperException
+     */
+    protected void write(final OutputStream outputStream, final Object value) throws IOException, MapperException {
+        JSonGenerator gen = generators.get();
+        if (gen == null) {
+            gen = new JSonGenerator();
+        } else {
+            /* a serializer may call us recursively, so the cached generator must not be shared */
+            generators.set(null);
+        }
+        try {
+            gen.reset(outputStream);
+            mapper.write(value, gen);
+            gen.flush();
+        } finally {
+            gen.reset(null);
+            generators.set(gen);
+        }
+    }
+
     public JSonMapper getMapper() {
         return mapper;
     }
@@ -147,14 +189,13 @@ public class SimpleMapper implements JSONMapper {
 
     @Override
     public byte[] objectToByteArray(Object value) throws JSonMapperException {
-        final String ret = objectToString(value);
         try {
-            if (ret == null) {
-                return "null".getBytes("UTF-8");
-            } else {
-                return ret.getBytes("UTF-8");
-            }
-        } catch (UnsupportedEncodingException e) {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            write(bos, value);
+            return bos.toByteArray();
+        } catch (final IOException e) {
+            throw new JSonMapperException(e);
+        } catch (final MapperException e) {
             throw new JSonMapperException(e);
         }
     }
@@ -166,7 +207,31 @@ public class SimpleMapper implements JSONMapper {
     public void writeObject(OutputStream outputStream, Object value) throws JSonMapperException {
         try {
             try {
-                outputStream.write(objectToByteArray(value));
+                write(outputStream, value);
+            } catch (final MapperException e) {
+                throw new JSonMapperException(e);
+            } finally {
+                if (outputStream != null) {
+                    outputStream.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new JSonMapperException(e);
+        }
+    }
+
+    /**
+     * closes outputStream
+     */
+    @Override
+    public void writeObjectBinary(OutputStream outputStream, Object value) throws JSonMapperException {
+        try {
+            try {
+                final JSonBinaryGenerator gen = new JSonBinaryGenerator(outputStream);
+                mapper.write(value, gen);
+                gen.flush();
+            } catch (final MapperException e) {
+                throw new JSonMapperException(e);
             } finally {
                 if (outputStream != null) {
                     outputStream.close();
@@ -189,7 +254,9 @@ public class SimpleMapper implements JSONMapper {
     public <T> T inputStreamToObject(InputStream inputStream, TypeRef<T> type) throws JSonMapperException {
         try {
             try {
-                return byteArrayToObject(IO.readStream(-1, inputStream), type);
+                return mapper.jsonToObject(JSonPullParser.create(inputStream), type);
+            } catch (final MapperException e) {
+                throw new JSonMapperException(e);
             } finally {
                 if (inputStream != null) {
                     inputStream.close();
@@ -203,17 +270,18 @@ public class SimpleMapper implements JSONMapper {
     @Override
     public <T> T byteArrayToObject(byte[] byteArray, TypeRef<T> type) throws JSonMapperException {
         try {
-            return stringToObject(new String(byteArray, "UTF-8"), type);
-        } catch (UnsupportedEncodingException e) {
+            return mapper.jsonToObject(JSonPullParser.create(byteArray), type);
+        } catch (final MapperException e) {
             throw new JSonMapperException(e);
         }
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public <T> T byteArrayToObject(byte[] byteArray, Class<T> clazz) throws JSonMapperException {
         try {
-            return stringToObject(new String(byteArray, "UTF-8"), clazz);
-        } catch (UnsupportedEncodingException e) {
+            return (T) mapper.jsonToObject(JSonPullParser.create(byteArray), clazz);
+        } catch (final MapperException e) {
             throw new JSonMapperException(e);
         }
     }
@@ -226,11 +294,14 @@ public class SimpleMapper implements JSONMapper {
      * @return
      * @throws JSonMapperException
      */
+    @SuppressWarnings("unchecked")
     @Override
     public <T> T inputStreamToObject(InputStream inputStream, Class<T> clazz) throws JSonMapperException {
         try {
             try {
-                return byteArrayToObject(IO.readStream(-1, inputStream), clazz);
+                return (T) mapper.jsonToObject(JSonPullParser.create(inputStream), clazz);
+            } catch (final MapperException e) {
+                throw new JSonMapperException(e);
             } finally {
                 if (inputStream != null) {
                     inputStream.close();
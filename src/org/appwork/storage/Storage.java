@@ -51,6 +51,43 @@ public abstract class Storage {
 
     abstract public <E> E get(String key, E def) throws StorageException;
 
+    /**
+     * primitive variant of {@link #get(String, Object)}. Implementations that store primitives unboxed override it, this default boxes
+     *
+     * @param key
+     * @param def
+     * @return the stored value, def if there is no value or the stored value is null
+     * @throws StorageException
+     */
+    public int getInt(final String key, final int def) throws StorageException {
+        final Integer ret = this.get(key, def);
+        return ret == null ? def : ret;
+    }
+
+    /**
+     * see {@link #getInt(String, int)}
+     */
+    public long getLong(final String key, final long def) throws StorageException {
+        final Long ret = this.get(key, def);
+        return ret == null ? def : ret;
+    }
+
+    /**
+     * see {@link #getInt(String, int)}
+     */
+    public boolean getBoolean(final String key, final boolean def) throws StorageException {
+        final Boolean ret = this.get(key, def);
+        return ret == null ? def : ret;
+    }
+
+    /**
+     * see {@link #getInt(String, int)}
+     */
+    public double getDouble(final String key, final double def) throws StorageException {
+        final Double ret = this.get(key, def);
+        return ret == null ? def : ret;
+    }
+
     public abstract byte[] getCryptKey();
 
     abstract public String getID();
@@ -79,6 +116,22 @@ public abstract class Storage {
 
     abstract public void put(String key, String value) throws StorageException;
 
+    public void put(final String key, final int value) throws StorageException {
+        this.put(key, Integer.valueOf(value));
+    }
+
+    public void put(final String key, final long value) throws StorageException {
+        this.put(key, Long.valueOf(value));
+    }
+
+    public void put(final String key, final boolean value) throws StorageException {
+        this.put(key, Boolean.valueOf(value));
+    }
+
+    public void put(final String key, final double value) throws StorageException {
+        this.put(key, Double.valueOf(value));
+    }
+
     /**
      *
      * Removes The entry. This is not the same as {@code put(key,null)}
@@ -92,6 +145,26 @@ public abstract class Storage {
 
     abstract public void setAutoPutValues(boolean b);
 
+    /**
+     * @return a counter that changes with every modification of this storage, or -1 if modifications are not tracked. Used to detect
+     *         whether values read earlier are still valid
+     */
+    public long getModificationCounter() {
+        return -1;
+    }
+
+    /**
+     * runs run while no other thread can modify this storage. Used to apply several modifications at once, modifications of run
+     * itself are allowed
+     *
+     * @param run
+     */
+    public void runLocked(final Runnable run) {
+        synchronized (this) {
+            run.run();
+        }
+    }
+
     abstract public int size();
 
 }
@@ -52,19 +52,39 @@ package org.appwork.storage;
  * <http://www.gnu.org/licenses/lgpl-3.0-standalone.html>.
  */
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.Writer;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.appwork.storage.simplejson.JSonArray;
 import org.appwork.storage.simplejson.JSonNode;
 import org.appwork.storage.simplejson.JSonObject;
+import org.appwork.storage.simplejson.JSonUtils;
 import org.appwork.storage.simplejson.JSonValue;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -377,6 +397,536 @@ public class Xml2Json {
         return xpathStr;
     }
 
+    /* ------------------------------------------------------------------------------------------------------------------------------
+     * Streaming conversion. Uses StAX instead of a DOM, applies the same path, skip and array rules and writes the json while the
+     * events arrive. Parsed with JSonFactory, the result is the same json as xml2json(String), only the members are written in another
+     * order than the HashMap order of the DOM path.
+     * Whether an element collapses to its only member, and which value of a repeated member wins, is only known when the element
+     * ends. So the members of an element are collected per key in MemberBuffers and written when it ends. A MemberBuffer moves to a
+     * temp file once it holds more than SPILL_LIMIT chars, so the heap does not have to hold the document. Once an element has a
+     * second member, its '{' is written and one repeatable group (the first one, or the next that starts) is written directly to the
+     * output, so the usual list of repeatable elements next to a few other members does not go through a buffer at all.
+     * ------------------------------------------------------------------------------------------------------------------------------ */
+
+    /* chars a MemberBuffer keeps on the heap, the rest goes to a temp file */
+    private static final int SPILL_LIMIT = 64 * 1024;
+
+    private static class MemberBuffer implements Appendable {
+        private final StringBuilder      head = new StringBuilder();
+        /* buffers with a temp file, deleted in the finally block of the conversion */
+        private final List<MemberBuffer> spilled;
+        private File                     file;
+        private Writer                   spill;
+
+        private MemberBuffer(List<MemberBuffer> spilled) {
+            this.spilled = spilled;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            if (spill != null) {
+                spill.write(c);
+            } else {
+                head.append(c);
+                checkSpill();
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            if (spill != null) {
+                spill.append(csq, start, end);
+            } else {
+                head.append(csq, start, end);
+                checkSpill();
+            }
+            return this;
+        }
+
+        private void checkSpill() throws IOException {
+            if (head.length() > SPILL_LIMIT) {
+                spilled.add(this);
+                file = File.createTempFile("xml2json", ".tmp");
+                spill = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            }
+        }
+
+        private char first() {
+            return head.length() == 0 ? 0 : head.charAt(0);
+        }
+
+        /**
+         * writes the content to out and releases the buffer
+         */
+        private void writeTo(Appendable out) throws IOException {
+            out.append(head);
+            if (spill != null) {
+                spill.close();
+                final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+                try {
+                    final char[] buffer = new char[8192];
+                    int read;
+                    while ((read = reader.read(buffer)) >= 0) {
+                        if (out instanceof Writer) {
+                            ((Writer) out).write(buffer, 0, read);
+                        } else {
+                            out.append(CharBuffer.wrap(buffer, 0, read));
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+            dispose();
+        }
+
+        private void dispose() {
+            head.setLength(0);
+            if (spill != null) {
+                try {
+                    spill.close();
+                } catch (final IOException ignore) {
+                }
+                spill = null;
+                file.delete();
+            }
+        }
+    }
+
+    private static class Member {
+        private final String key;
+        /* repeatable group: '[' or '{', 0 for a plain value */
+        private char         groupOpen;
+        private int          items;
+        private MemberBuffer buffer;
+
+        private Member(String key) {
+            this.key = key;
+        }
+    }
+
+    private static class Frame {
+        private String                        xpath;
+        /* skipped elements pass their content to the parent */
+        private boolean                       skip;
+        /* array path element, child elements are written as elements of an array */
+        private boolean                       array;
+        private int                           elements;
+        /* receives the value of this element */
+        private Appendable                    out;
+        /* members by key, last wins like the HashMap of the DOM path */
+        private LinkedHashMap<String, Member> members;
+        /* receives the value of the current member */
+        private Appendable                    target;
+        /* second member arrived, '{' is written to out */
+        private boolean                       open;
+        /* members already written to out */
+        private int                           written;
+        /* repeatable group that is written directly to out */
+        private Member                        direct;
+    }
+
+    /* temp files of the running streaming conversion */
+    private List<MemberBuffer> spilled;
+
+    /**
+     * converts the xml document from in and writes the json into out as UTF-8. See the notes on the streaming conversion for the
+     * differences to {@link #xml2json(String)}
+     *
+     * @param in
+     * @param out
+     * @throws Exception
+     */
+    public void xml2json(InputStream in, OutputStream out) throws Exception {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        xml2json(createXMLStreamReader(in, null), writer);
+        writer.flush();
+    }
+
+    /**
+     * converts the xml document from in and writes the json into out. See the notes on the streaming conversion for the differences to
+     * {@link #xml2json(String)}
+     *
+     * @param in
+     * @param out
+     * @throws Exception
+     */
+    public void xml2json(Reader in, Writer out) throws Exception {
+        xml2json(createXMLStreamReader(null, in), out);
+        out.flush();
+    }
+
+    private XMLStreamReader createXMLStreamReader(InputStream is, Reader reader) throws XMLStreamException {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        /* the DOM has separate nodes for CDATA sections */
+        final String reportCDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+        if (factory.isPropertySupported(reportCDATA)) {
+            factory.setProperty(reportCDATA, Boolean.TRUE);
+        }
+        factory.setXMLResolver(new XMLResolver() {
+
+            @Override
+            public Object resolveEntity(String publicID, String systemID, String baseURI, String namespace) throws XMLStreamException {
+                /* same as the EntityResolver of the DOM path */
+                return new ByteArrayInputStream(new byte[0]);
+            }
+        });
+        if (reader != null) {
+            return factory.createXMLStreamReader(reader);
+        }
+        return factory.createXMLStreamReader(is);
+    }
+
+    private void xml2json(XMLStreamReader reader, Writer out) throws Exception {
+        this.spilled = new ArrayList<MemberBuffer>();
+        try {
+            this.basePath = null;
+            final ArrayList<Frame> stack = new ArrayList<Frame>();
+            final StringBuilder text = new StringBuilder();
+            boolean hasText = false;
+            boolean hasRoot = false;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE) {
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    hasText = true;
+                    continue;
+                }
+                if (hasText) {
+                    /* one DOM text node */
+                    streamText(stack, text.toString());
+                    text.setLength(0);
+                    hasText = false;
+                }
+                switch (event) {
+                case XMLStreamConstants.CDATA:
+                    streamText(stack, reader.getText());
+                    break;
+                case XMLStreamConstants.START_ELEMENT: {
+                    final Frame parent = stack.size() == 0 ? null : stack.get(stack.size() - 1);
+                    final String name = getTagName(reader);
+                    final Frame frame = new Frame();
+                    frame.xpath = (parent == null ? "" : parent.xpath) + "/" + name;
+                    if (parent == null) {
+                        hasRoot = true;
+                        out.write("{\"");
+                        out.write(JSonUtils.escape(name));
+                        out.write("\":");
+                        frame.out = out;
+                    } else if (parent.array) {
+                        if (parent.elements++ > 0) {
+                            parent.out.append(',');
+                        }
+                        frame.out = parent.out;
+                    } else {
+                        final Frame owner = owner(stack);
+                        if (skips.contains(frame.xpath)) {
+                            frame.skip = true;
+                            stack.add(frame);
+                            break;
+                        } else if (arrays.contains(frame.xpath)) {
+                            streamGroupItem(owner, name, '[');
+                            target(owner).append('[');
+                            frame.array = true;
+                            frame.out = target(owner);
+                            stack.add(frame);
+                            break;
+                        }
+                        final boolean isRepeatable = repeatables.contains(frame.xpath);
+                        final boolean hasKey = keyPaths.contains(frame.xpath);
+                        if (isRepeatable && hasKey) {
+                            streamGroupItem(owner, name, '{');
+                            final Appendable target = target(owner);
+                            target.append('"').append(JSonUtils.escape(getAttribute(reader, (String) pathMaps.get(frame.xpath)))).append("\":");
+                        } else if (isRepeatable) {
+                            streamGroupItem(owner, name, '[');
+                        } else if (hasKey) {
+                            streamMember(owner, getAttribute(reader, (String) pathMaps.get(frame.xpath)));
+                        } else {
+                            streamMember(owner, name);
+                        }
+                        frame.out = target(owner);
+                    }
+                    if (singles.contains(frame.xpath)) {
+                        final JSonNode value = streamSingle(reader);
+                        if (parent == null) {
+                            /* same as the cast in xml2jsonObj(Element) */
+                            throw new ClassCastException(value.getClass().getName() + " cannot be cast to " + JSonObject.class.getName());
+                        }
+                        frame.out.append(value.toString());
+                        break;
+                    }
+                    final ArrayList<String> names = new ArrayList<String>();
+                    final HashMap<String, String> values = new HashMap<String, String>();
+                    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                        final String prefix = reader.getNamespacePrefix(i);
+                        final String attrName = prefix == null || prefix.length() == 0 ? "xmlns" : "xmlns:" + prefix;
+                        names.add(attrName);
+                        values.put(attrName, reader.getNamespaceURI(i));
+                    }
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        final String prefix = reader.getAttributePrefix(i);
+                        final String attrName = prefix == null || prefix.length() == 0 ? reader.getAttributeLocalName(i) : prefix + ":" + reader.getAttributeLocalName(i);
+                        names.add(attrName);
+                        values.put(attrName, reader.getAttributeValue(i));
+                    }
+                    /* the DOM NamedNodeMap is sorted by name */
+                    final String[] sorted = names.toArray(new String[names.size()]);
+                    Arrays.sort(sorted);
+                    for (final String attrName : sorted) {
+                        streamMember(frame, attrName);
+                        target(frame).append(new JSonValue(values.get(attrName)).toString());
+                    }
+                    stack.add(frame);
+                    break;
+                }
+                case XMLStreamConstants.END_ELEMENT: {
+                    final Frame frame = stack.remove(stack.size() - 1);
+                    if (frame.skip) {
+                        break;
+                    } else if (frame.array) {
+                        frame.out.append(']');
+                        break;
+                    }
+                    endMembers(frame, stack.size() == 0);
+                    if (stack.size() == 0) {
+                        out.write("}");
+                    }
+                    break;
+                }
+                default:
+                    break;
+                }
+            }
+            if (!hasRoot) {
+                throw new XMLStreamException("No root element");
+            }
+        } finally {
+            reader.close();
+            for (final MemberBuffer buffer : this.spilled) {
+                buffer.dispose();
+            }
+            this.spilled = null;
+        }
+    }
+
+    /**
+     * @return the frame that receives members of the current element. skipped elements pass them to their parent
+     */
+    private Frame owner(ArrayList<Frame> stack) {
+        for (int i = stack.size() - 1; i >= 0; i--) {
+            if (!stack.get(i).skip) {
+                return stack.get(i);
+            }
+        }
+        return null;
+    }
+
+    private Appendable target(Frame frame) {
+        return frame.target;
+    }
+
+    private Member newMember(Frame frame, String key) throws IOException {
+        if (frame.members == null) {
+            frame.members = new LinkedHashMap<String, Member>();
+        }
+        final Member member = new Member(key);
+        member.buffer = new MemberBuffer(this.spilled);
+        frame.members.put(key, member);
+        if (frame.members.size() == 2) {
+            openObject(frame);
+        }
+        return member;
+    }
+
+    /**
+     * the element has several members and does not collapse. A repeatable group that is already there goes on directly to out
+     */
+    private void openObject(Frame frame) throws IOException {
+        frame.open = true;
+        frame.out.append('{');
+        final Member first = frame.members.values().iterator().next();
+        if (first.groupOpen != 0) {
+            frame.out.append('"').append(JSonUtils.escape(first.key)).append("\":").append(first.groupOpen);
+            first.buffer.writeTo(frame.out);
+            frame.direct = first;
+            frame.written++;
+        }
+    }
+
+    /**
+     * starts a member. The value has to be written to {@link #target(Frame)} afterwards
+     */
+    private void streamMember(Frame frame, String key) throws IOException {
+        Member member = frame.members == null ? null : frame.members.get(key);
+        if (member == null) {
+            member = newMember(frame, key);
+        } else if (member == frame.direct) {
+            /* the group is already written, the value goes nowhere */
+            frame.target = new MemberBuffer(this.spilled);
+            return;
+        } else {
+            /* last wins */
+            member.buffer.dispose();
+            member.groupOpen = 0;
+            member.items = 0;
+        }
+        frame.target = member.buffer;
+    }
+
+    /**
+     * adds an item to the repeatable array/object name. All siblings with that name share one group, also if other tags are between
+     * them
+     */
+    private void streamGroupItem(Frame frame, String name, char open) throws IOException {
+        Member member = frame.members == null ? null : frame.members.get(name);
+        if (member == null) {
+            member = newMember(frame, name);
+            member.groupOpen = open;
+            if (frame.open && frame.direct == null) {
+                if (frame.written++ > 0) {
+                    frame.out.append(',');
+                }
+                frame.out.append('"').append(JSonUtils.escape(name)).append("\":").append(open);
+                frame.direct = member;
+            }
+        } else if (member.groupOpen != open && member != frame.direct) {
+            /* replaces a plain value */
+            member.buffer.dispose();
+            member.groupOpen = open;
+            member.items = 0;
+        }
+        final Appendable target = member == frame.direct ? frame.out : member.buffer;
+        if (member.items++ > 0) {
+            target.append(',');
+        }
+        frame.target = target;
+    }
+
+    /**
+     * writes the collected members of the element
+     */
+    private void endMembers(Frame frame, boolean root) throws IOException {
+        if (!frame.open) {
+            if (frame.members == null) {
+                frame.out.append("{}");
+                return;
+            }
+            /* a single member collapses to its value */
+            final Member member = frame.members.values().iterator().next();
+            if (root && (member.groupOpen != 0 ? member.groupOpen : member.buffer.first()) != '{') {
+                /* same as the cast in xml2jsonObj(Element) */
+                throw new ClassCastException("root element does not convert to a " + JSonObject.class.getName());
+            }
+            writeValue(member, frame.out);
+            return;
+        }
+        if (frame.direct != null) {
+            frame.out.append(frame.direct.groupOpen == '[' ? ']' : '}');
+        }
+        for (final Member member : frame.members.values()) {
+            if (member == frame.direct) {
+                continue;
+            }
+            if (frame.written++ > 0) {
+                frame.out.append(',');
+            }
+            frame.out.append('"').append(JSonUtils.escape(member.key)).append("\":");
+            writeValue(member, frame.out);
+        }
+        frame.out.append('}');
+    }
+
+    private void writeValue(Member member, Appendable out) throws IOException {
+        if (member.groupOpen == 0) {
+            member.buffer.writeTo(out);
+        } else {
+            out.append(member.groupOpen);
+            member.buffer.writeTo(out);
+            out.append(member.groupOpen == '[' ? ']' : '}');
+        }
+    }
+
+    private void streamText(ArrayList<Frame> stack, String nodeValue) throws IOException {
+        final Frame frame = owner(stack);
+        if (frame == null || frame.array) {
+            /* array path elements only convert their child elements */
+            return;
+        }
+        if (nodeValue.trim().length() > 0) {
+            streamMember(frame, "content");
+            target(frame).append(text(nodeValue).toString());
+        }
+    }
+
+    /**
+     * single path rule: the value of the first child node, the rest of the element is skipped
+     */
+    private JSonNode streamSingle(XMLStreamReader reader) throws XMLStreamException {
+        JSonNode ret = null;
+        String first = null;
+        boolean done = false;
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (!done) {
+                if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE) {
+                    first = first == null ? reader.getText() : first + reader.getText();
+                    continue;
+                }
+                done = true;
+                if (first != null) {
+                    ret = text(first);
+                } else if (event == XMLStreamConstants.CDATA || event == XMLStreamConstants.COMMENT) {
+                    ret = text(reader.getText());
+                } else if (event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+                    ret = text(reader.getPIData());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    ret = new JSonValue("");
+                } else {
+                    /* element nodes have no value, same as the DOM path */
+                    ret = text(null);
+                }
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        return ret;
+    }
+
+    private String getAttribute(XMLStreamReader reader, String qName) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            final String prefix = reader.getAttributePrefix(i);
+            final String attrName = prefix == null || prefix.length() == 0 ? reader.getAttributeLocalName(i) : prefix + ":" + reader.getAttributeLocalName(i);
+            if (attrName.equals(qName)) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        /* same as Element.getAttribute */
+        return "";
+    }
+
+    /**
+     * the DOM path is not namespace aware, so the tag name is the qualified name as written
+     */
+    private String getTagName(XMLStreamReader reader) {
+        final String prefix = reader.getPrefix();
+        if (prefix == null || prefix.length() == 0) {
+            return reader.getLocalName();
+        }
+        return prefix + ":" + reader.getLocalName();
+    }
+
     private String getTagName(Element elem) {
         String name = elem.getLocalName();
         if (name == null) {
@@ -35,12 +35,21 @@ package org.appwork.storage.config;
 
 import java.io.File;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.appwork.exceptions.WTFException;
 import org.appwork.storage.config.annotations.CustomStorageName;
 import org.appwork.storage.config.annotations.StorageHandlerFactoryAnnotation;
+import org.appwork.storage.config.handler.ConfigInterfaceGenerator;
 import org.appwork.storage.config.handler.StorageHandler;
 import org.appwork.utils.Application;
 import org.appwork.utils.swing.dialog.Dialog;
@@ -84,6 +93,99 @@ public class JsonConfig {
 
     private static final HashMap<String, LockObject>      LOCKS = new HashMap<String, LockObject>();
 
+    private static final AtomicBoolean GENERATED_IMPLEMENTATIONS = new AtomicBoolean(false);
+
+    public static boolean isGeneratedImplementationsEnabled() {
+        return JsonConfig.GENERATED_IMPLEMENTATIONS.get();
+    }
+
+    /**
+     * create generated classes instead of {@link Proxy} instances for config interfaces, see {@link ConfigInterfaceGenerator}. Config
+     * interfaces that cannot be generated, eg non public ones, still use a Proxy
+     *
+     * @param enabled
+     */
+    public static void setGeneratedImplementationsEnabled(final boolean enabled) {
+        JsonConfig.GENERATED_IMPLEMENTATIONS.set(enabled);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends ConfigInterface> T newInstance(final ClassLoader cl, final Class<T> configInterface, final StorageHandler<?> storageHandler) {
+        if (JsonConfig.isGeneratedImplementationsEnabled() && storageHandler.getConfigInterface() == configInterface) {
+            try {
+                final T ret = ConfigInterfaceGenerator.create((StorageHandler<T>) storageHandler);
+                if (ret != null) {
+                    return ret;
+                }
+            } catch (final Throwable e) {
+                org.appwork.utils.logging2.extmanager.LoggerFactory.getDefaultLogger().log(e);
+            }
+        }
+        return (T) Proxy.newProxyInstance(cl, new Class<?>[] { configInterface }, storageHandler);
+    }
+
+    /**
+     * creates the default instances of all configInterfaces in parallel, eg at application start. Storage files are loaded and
+     * interfaces are parsed on up to threads threads. Waits until all are done. Use {@link StorageHandler#getStartupTimings()} to see
+     * where the time went
+     *
+     * @param threads
+     *            <=0 to use one thread per cpu
+     * @param configInterfaces
+     * @throws RuntimeException
+     *             the first exception of a failed interface, after all others have been created
+     */
+    public static void preload(final int threads, final List<Class<? extends ConfigInterface>> configInterfaces) {
+        if (configInterfaces.isEmpty()) {
+            return;
+        }
+        final int poolSize = Math.max(1, Math.min(configInterfaces.size(), threads > 0 ? threads : Runtime.getRuntime().availableProcessors()));
+        final AtomicInteger threadID = new AtomicInteger(0);
+        final ExecutorService executor = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread ret = new Thread(r, "JsonConfig:preload:" + threadID.incrementAndGet());
+                ret.setDaemon(true);
+                return ret;
+            }
+        });
+        try {
+            final List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final Class<? extends ConfigInterface> configInterface : configInterfaces) {
+                futures.add(executor.submit(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        JsonConfig.create(configInterface);
+                    }
+                }));
+            }
+            Throwable error = null;
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause();
+                    }
+                }
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            } else if (error != null) {
+                throw new WTFException(error);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WTFException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     public static <T extends ConfigInterface> String getStorageName(Class<T> configInterface) {
         String id = configInterface.getName();
         CustomStorageName anno = configInterface.getAnnotation(CustomStorageName.class);
@@ -130,7 +232,7 @@ public class JsonConfig {
                     }
 
                 }
-                final T ret = (T) Proxy.newProxyInstance(cl, new Class<?>[] { configInterface }, lock.getStorageHandler());
+                final T ret = JsonConfig.newInstance(cl, configInterface, lock.getStorageHandler());
                 synchronized (JsonConfig.CACHE) {
                     if (lock.getLock().get() == 1) {
                         JsonConfig.CACHE.put(path, ret);
@@ -186,7 +288,7 @@ public class JsonConfig {
                         lock.setStorageHandler(new StorageHandler<T>(path, configInterface));
                     }
                 }
-                final T ret = (T) Proxy.newProxyInstance(cl, new Class<?>[] { configInterface }, lock.getStorageHandler());
+                final T ret = JsonConfig.newInstance(cl, configInterface, lock.getStorageHandler());
                 synchronized (JsonConfig.CACHE) {
                     if (lock.getLock().get() == 1) {
                         JsonConfig.CACHE.put(id, ret);
@@ -240,7 +342,7 @@ public class JsonConfig {
                         lock.setStorageHandler(new StorageHandler<T>(urlPath, configInterface));
                     }
                 }
-                final T ret = (T) Proxy.newProxyInstance(cl, new Class<?>[] { configInterface }, lock.getStorageHandler());
+                final T ret = JsonConfig.newInstance(cl, configInterface, lock.getStorageHandler());
                 synchronized (JsonConfig.CACHE) {
                     if (lock.getLock().get() == 1) {
                         JsonConfig.CACHE.put(id, ret);
@@ -0,0 +1,103 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.config.events;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.appwork.storage.config.handler.KeyHandler;
+import org.appwork.storage.config.handler.StorageHandler;
+
+/**
+ * all values that have been changed by one committed batch, see {@link StorageHandler#beginBatch()}
+ *
+ * @author thomas
+ *
+ */
+public class ConfigChangeSet {
+
+    private final StorageHandler<?>          storageHandler;
+    private final Map<KeyHandler<?>, Object> values;
+
+    public ConfigChangeSet(final StorageHandler<?> storageHandler, final LinkedHashMap<KeyHandler<?>, Object> values) {
+        this.storageHandler = storageHandler;
+        this.values = Collections.unmodifiableMap(values);
+    }
+
+    public StorageHandler<?> getStorageHandler() {
+        return this.storageHandler;
+    }
+
+    /**
+     * @return changed keys in the order they have been set
+     */
+    public Set<KeyHandler<?>> getKeyHandlers() {
+        return this.values.keySet();
+    }
+
+    public Map<KeyHandler<?>, Object> getValues() {
+        return this.values;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T getValue(final KeyHandler<T> keyHandler) {
+        return (T) this.values.get(keyHandler);
+    }
+
+    public boolean contains(final KeyHandler<?> keyHandler) {
+        return this.values.containsKey(keyHandler);
+    }
+
+    public boolean isEmpty() {
+        return this.values.isEmpty();
+    }
+
+    public int size() {
+        return this.values.size();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (final KeyHandler<?> keyHandler : this.values.keySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(keyHandler.getKey());
+        }
+        return this.storageHandler.getConfigInterface().getName() + "[" + sb + "]";
+    }
+}
@@ -47,7 +47,11 @@ public class ConfigEvent extends SimpleEvent<KeyHandler<?>, Object, ConfigEvent.
          * Parameter[0] = Throwable from value validator<br>
          * Parameter[1] = Methodhandler
          */
-        VALIDATOR_ERROR
+        VALIDATOR_ERROR,
+        /**
+         * Parameter[0] = {@link ConfigChangeSet} of a committed batch. The caller is null
+         */
+        VALUES_UPDATED
 
     }
 
@@ -33,6 +33,8 @@
  * ==================================================================================================================================================== */
 package org.appwork.storage.config.events;
 
+import java.util.Map.Entry;
+
 import org.appwork.storage.config.ValidationException;
 import org.appwork.storage.config.handler.KeyHandler;
 import org.appwork.utils.event.Eventsender;
@@ -61,6 +63,16 @@ public class ConfigEventSender<RawClass> extends Eventsender<GenericConfigEventL
            
             listener.onConfigValidatorError((KeyHandler<RawClass>)event.getCaller(), (RawClass) ((ValidationException) event.getParameter()).getValue(), (ValidationException) event.getParameter());
             break;
+        case VALUES_UPDATED:
+            final ConfigChangeSet changeSet = (ConfigChangeSet) event.getParameter();
+            if (listener instanceof ConfigChangeSetListener) {
+                ((ConfigChangeSetListener<RawClass>) listener).onConfigValuesModified(changeSet);
+            } else {
+                for (final Entry<KeyHandler<?>, Object> next : changeSet.getValues().entrySet()) {
+                    listener.onConfigValueModified((KeyHandler<RawClass>) next.getKey(), (RawClass) next.getValue());
+                }
+            }
+            break;
         default:
             throw new RuntimeException(event.getType() + " is not handled");
         }
@@ -74,7 +74,30 @@ public class BooleanKeyHandler extends KeyHandler<Boolean> {
 
     }
 
+    private static class BooleanValueCache extends ValueCache<Boolean> {
+        private final boolean primitive;
+
+        private BooleanValueCache(final long mark, final Boolean value) {
+            super(mark, value);
+            this.primitive = value != null && value.booleanValue();
+        }
+    }
+
+    @Override
+    protected ValueCache<Boolean> createValueCache(final long mark, final Boolean value) {
+        return new BooleanValueCache(mark, value);
+    }
+
+    /**
+     * does not lock as long as the value is cached
+     *
+     * @return
+     */
     public boolean isEnabled() {
+        final ValueCache<Boolean> cache = this.getValueCache();
+        if (cache != null) {
+            return ((BooleanValueCache) cache).primitive;
+        }
         final Boolean value = this.getValue();
         if (value == null || value == false) {
             return false;
@@ -82,6 +105,18 @@ public class BooleanKeyHandler extends KeyHandler<Boolean> {
         return true;
     }
 
+    /**
+     * like {@link #isEnabled()}, but null is unboxed like the Proxy implementation does it and throws a NullPointerException. Used by the
+     * typed getters of generated config implementations
+     */
+    boolean booleanValueStrict() {
+        final ValueCache<Boolean> cache = this.getValueCache();
+        if (cache != null && cache.value != null) {
+            return ((BooleanValueCache) cache).primitive;
+        }
+        return this.getValue().booleanValue();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -0,0 +1,157 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.config.handler;
+
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import org.appwork.storage.config.ValidationException;
+import org.appwork.storage.config.events.ConfigChangeSet;
+
+/**
+ * collects several value changes of one config interface and applies them at once, see {@link StorageHandler#beginBatch()}.
+ * {@link #commit()} validates all values first, stores them under one storage lock, requests one save and fires one
+ * {@link org.appwork.storage.config.events.ConfigEvent.Types#VALUES_UPDATED} event
+ *
+ * @author thomas
+ *
+ */
+public class ConfigBatch {
+
+    private final StorageHandler<?>                   storageHandler;
+    private final LinkedHashMap<KeyHandler<?>, Object> values = new LinkedHashMap<KeyHandler<?>, Object>();
+    private boolean                                   closed = false;
+
+    ConfigBatch(final StorageHandler<?> storageHandler) {
+        this.storageHandler = storageHandler;
+    }
+
+    public StorageHandler<?> getStorageHandler() {
+        return this.storageHandler;
+    }
+
+    /**
+     * @param keyHandler
+     * @param value
+     * @return this
+     */
+    public synchronized <T> ConfigBatch set(final KeyHandler<T> keyHandler, final T value) {
+        if (this.closed) {
+            throw new IllegalStateException("Batch already closed");
+        }
+        if (keyHandler.getStorageHandler() != this.storageHandler) {
+            throw new IllegalArgumentException(keyHandler + " does not belong to " + this.storageHandler.getConfigInterface());
+        }
+        this.values.put(keyHandler, value);
+        return this;
+    }
+
+    /**
+     * @param key
+     * @param value
+     * @return this
+     */
+    public ConfigBatch set(final String key, final Object value) {
+        return this.set(this.storageHandler.getKeyHandler(key), value);
+    }
+
+    /**
+     * @param keyHandler
+     * @return true if this batch contains a pending value for keyHandler
+     */
+    public synchronized boolean contains(final KeyHandler<?> keyHandler) {
+        return this.values.containsKey(keyHandler);
+    }
+
+    /**
+     * @param keyHandler
+     * @return the pending value of keyHandler, or null
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T get(final KeyHandler<T> keyHandler) {
+        return (T) this.values.get(keyHandler);
+    }
+
+    public synchronized int size() {
+        return this.values.size();
+    }
+
+    public synchronized boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * validates and applies all pending values. Nothing is applied if one value is invalid
+     *
+     * @return the values that actually changed
+     * @throws ValidationException
+     *             for the first invalid value. A VALIDATOR_ERROR event has been fired for it
+     */
+    @SuppressWarnings("unchecked")
+    public ConfigChangeSet commit() throws ValidationException {
+        final LinkedHashMap<KeyHandler<?>, Object> pending = this.close();
+        final LinkedHashMap<KeyHandler<?>, Object> changes = new LinkedHashMap<KeyHandler<?>, Object>();
+        for (final Entry<KeyHandler<?>, Object> next : pending.entrySet()) {
+            if (((KeyHandler<Object>) next.getKey()).validateBatchValue(next.getValue())) {
+                changes.put(next.getKey(), next.getValue());
+            }
+        }
+        final ConfigChangeSet changeSet = new ConfigChangeSet(this.storageHandler, changes);
+        if (!changeSet.isEmpty()) {
+            this.storageHandler.applyBatch(changeSet);
+        }
+        return changeSet;
+    }
+
+    /**
+     * drops all pending values
+     */
+    public void discard() {
+        this.close();
+    }
+
+    private LinkedHashMap<KeyHandler<?>, Object> close() {
+        final LinkedHashMap<KeyHandler<?>, Object> ret;
+        synchronized (this) {
+            if (this.closed) {
+                throw new IllegalStateException("Batch already closed");
+            }
+            this.closed = true;
+            ret = new LinkedHashMap<KeyHandler<?>, Object>(this.values);
+            this.values.clear();
+        }
+        this.storageHandler.unbindBatch(this);
+        return ret;
+    }
+}
@@ -0,0 +1,327 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.config.handler;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import org.appwork.storage.config.ConfigInterface;
+import org.appwork.utils.reflection.ClassFileWriter;
+import org.appwork.utils.reflection.ClassFileWriter.Code;
+
+/**
+ * Creates a class per {@link ConfigInterface} that implements every getter and setter with a direct call of the bound
+ * {@link KeyHandler}, instead of a {@link java.lang.reflect.Proxy} that looks up the handler of every call in a Map. The bytecode
+ * has the same behaviour as {@link StorageHandler#invoke(Object, Method, Object[])}: getters call
+ * {@link StorageHandler#invokeGetter(KeyHandler)} (or its unboxed variants), setters call
+ * {@link StorageHandler#invokeSetter(KeyHandler, Object)}. toString, equals and hashCode are delegated to the StorageHandler.
+ *
+ * @author thomas
+ *
+ */
+public class ConfigInterfaceGenerator {
+    private static final int                                            GETTER              = 0;
+    private static final int                                            SETTER              = 1;
+    private static final int                                            STORAGEHANDLER      = 2;
+
+    private static final String                                         STORAGEHANDLER_NAME = "org/appwork/storage/config/handler/StorageHandler";
+    private static final String                                         STORAGEHANDLER_DESC = "L" + STORAGEHANDLER_NAME + ";";
+    private static final String                                         KEYHANDLER_DESC     = "Lorg/appwork/storage/config/handler/KeyHandler;";
+
+    private static final WeakHashMap<Class<?>, WeakReference<Class<?>>> CACHE               = new WeakHashMap<Class<?>, WeakReference<Class<?>>>();
+
+    private static class Slot {
+        private final Method        method;
+        private final KeyHandler<?> keyHandler;
+        private final int           type;
+
+        private Slot(final Method method, final KeyHandler<?> keyHandler, final int type) {
+            this.method = method;
+            this.keyHandler = keyHandler;
+            this.type = type;
+        }
+    }
+
+    /**
+     * defines the generated class next to the interface. StorageHandler and KeyHandler are always taken from this library, even if
+     * the classloader of the interface would find other ones
+     */
+    private static class GeneratedClassLoader extends ClassLoader {
+        private GeneratedClassLoader(final ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            if (StorageHandler.class.getName().equals(name)) {
+                return StorageHandler.class;
+            } else if (KeyHandler.class.getName().equals(name)) {
+                return KeyHandler.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        private Class<?> define(final String name, final byte[] bytes) {
+            return this.defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * @param storageHandler
+     * @return an instance of the generated implementation or null if the interface cannot be implemented this way, eg because it is
+     *         not public
+     * @throws Exception
+     */
+    public static <T extends ConfigInterface> T create(final StorageHandler<T> storageHandler) throws Exception {
+        final Class<T> configInterface = storageHandler.getConfigInterface();
+        final ArrayList<Slot> slots = getSlots(storageHandler, configInterface);
+        if (slots == null) {
+            return null;
+        }
+        Class<?> clazz = null;
+        synchronized (CACHE) {
+            final WeakReference<Class<?>> ref = CACHE.get(configInterface);
+            clazz = ref == null ? null : ref.get();
+            if (clazz == null) {
+                final String name = configInterface.getName() + "$$GeneratedConfig";
+                clazz = new GeneratedClassLoader(configInterface.getClassLoader()).define(name, generate(name, configInterface, slots));
+                CACHE.put(configInterface, new WeakReference<Class<?>>(clazz));
+            }
+        }
+        final ArrayList<KeyHandler<?>> keyHandlers = new ArrayList<KeyHandler<?>>();
+        for (final Slot slot : slots) {
+            if (slot.keyHandler != null) {
+                keyHandlers.add(slot.keyHandler);
+            }
+        }
+        final KeyHandler<?>[] handlerArray = keyHandlers.toArray(new KeyHandler<?>[keyHandlers.size()]);
+        final Object ret = clazz.getConstructor(StorageHandler.class, handlerArray.getClass()).newInstance(storageHandler, handlerArray);
+        return configInterface.cast(ret);
+    }
+
+    /**
+     * @return all methods of the interface, sorted by signature, so the same interface always results in the same fields
+     */
+    private static ArrayList<Slot> getSlots(final StorageHandler<?> storageHandler, final Class<?> configInterface) {
+        if (!Modifier.isPublic(configInterface.getModifiers())) {
+            return null;
+        }
+        /* initializes lazy KeyHandlers, the generated fields are final */
+        final HashMap<Method, KeyHandler<?>> methodMap = storageHandler.getMap();
+        final TreeMap<String, Method> methods = new TreeMap<String, Method>();
+        for (final Method m : configInterface.getMethods()) {
+            final String signature = m.getName() + ClassFileWriter.getDescriptor(m);
+            final Method existing = methods.get(signature);
+            if (existing == null || !methodMap.containsKey(existing)) {
+                /* the same method may be declared by several interfaces */
+                methods.put(signature, m);
+            }
+        }
+        final ArrayList<Slot> ret = new ArrayList<Slot>();
+        for (final Entry<String, Method> next : methods.entrySet()) {
+            final Method m = next.getValue();
+            final String signature = next.getKey();
+            final KeyHandler<?> keyHandler = methodMap.get(m);
+            if (keyHandler == null) {
+                if ("toString()Ljava/lang/String;".equals(signature) || "hashCode()I".equals(signature) || "equals(Ljava/lang/Object;)Z".equals(signature)) {
+                    /* always generated */
+                    continue;
+                } else if (signature.equals("_getStorageHandler()" + ClassFileWriter.getDescriptor(m.getReturnType()))) {
+                    ret.add(new Slot(m, null, STORAGEHANDLER));
+                    continue;
+                }
+                return null;
+            }
+            if (!isSupported(m.getReturnType())) {
+                return null;
+            }
+            for (final Class<?> p : m.getParameterTypes()) {
+                if (!isSupported(p)) {
+                    return null;
+                }
+            }
+            if (keyHandler.isGetter(m)) {
+                if (m.getParameterTypes().length != 0 || m.getReturnType() == void.class) {
+                    return null;
+                }
+                ret.add(new Slot(m, keyHandler, GETTER));
+            } else {
+                if (m.getParameterTypes().length != 1 || m.getReturnType() != void.class) {
+                    return null;
+                }
+                ret.add(new Slot(m, keyHandler, SETTER));
+            }
+        }
+        return ret;
+    }
+
+    private static boolean isSupported(Class<?> type) {
+        if (type == short.class || type == char.class) {
+            /* the proxy does not convert these either */
+            return false;
+        }
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || Modifier.isPublic(type.getModifiers());
+    }
+
+    private static final int ALOAD_0       = 0x2a;
+    private static final int ALOAD_1       = 0x2b;
+    private static final int ALOAD_2       = 0x2c;
+    private static final int AALOAD        = 0x32;
+    private static final int GETFIELD      = 0xb4;
+    private static final int PUTFIELD      = 0xb5;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC  = 0xb8;
+    private static final int CHECKCAST     = 0xc0;
+    private static final int IRETURN       = 0xac;
+    private static final int LRETURN       = 0xad;
+    private static final int FRETURN       = 0xae;
+    private static final int DRETURN       = 0xaf;
+    private static final int ARETURN       = 0xb0;
+    private static final int RETURN        = 0xb1;
+
+    private static byte[] generate(final String className, final Class<?> configInterface, final ArrayList<Slot> slots) throws IOException {
+        final String name = className.replace('.', '/');
+        final ClassFileWriter cw = new ClassFileWriter();
+        final int storageHandlerField = cw.fieldRef(name, "storageHandler", STORAGEHANDLER_DESC);
+        cw.field("storageHandler", STORAGEHANDLER_DESC);
+        // constructor(StorageHandler, KeyHandler[])
+        final Code init = new Code(3, 3);
+        init.op(ALOAD_0).op(INVOKESPECIAL, cw.methodRef("java/lang/Object", "<init>", "()V"));
+        init.op(ALOAD_0).op(ALOAD_1).op(PUTFIELD, storageHandlerField);
+        int index = 0;
+        for (final Slot slot : slots) {
+            if (slot.keyHandler != null) {
+                final String fieldName = "keyHandler" + index;
+                cw.field(fieldName, KEYHANDLER_DESC);
+                init.op(ALOAD_0).op(ALOAD_2).push(index).op(AALOAD).op(CHECKCAST, cw.classRef("org/appwork/storage/config/handler/KeyHandler"));
+                init.op(PUTFIELD, cw.fieldRef(name, fieldName, KEYHANDLER_DESC));
+                index++;
+            }
+        }
+        init.op(RETURN);
+        cw.method("<init>", "(" + STORAGEHANDLER_DESC + "[" + KEYHANDLER_DESC + ")V", init);
+        index = 0;
+        for (final Slot slot : slots) {
+            final Method m = slot.method;
+            switch (slot.type) {
+            case STORAGEHANDLER: {
+                final Code code = new Code(1, 1);
+                code.op(ALOAD_0).op(GETFIELD, storageHandlerField).op(ARETURN);
+                cw.method(m.getName(), ClassFileWriter.getDescriptor(m), code);
+                break;
+            }
+            case GETTER: {
+                final Class<?> type = m.getReturnType();
+                final Code code = new Code(2, 1);
+                code.op(ALOAD_0).op(GETFIELD, storageHandlerField);
+                code.op(ALOAD_0).op(GETFIELD, cw.fieldRef(name, "keyHandler" + index++, KEYHANDLER_DESC));
+                if (type == boolean.class) {
+                    code.op(INVOKEVIRTUAL, cw.methodRef(STORAGEHANDLER_NAME, "invokeBooleanGetter", "(" + KEYHANDLER_DESC + ")Z")).op(IRETURN);
+                } else if (type == byte.class) {
+                    code.op(INVOKEVIRTUAL, cw.methodRef(STORAGEHANDLER_NAME, "invokeByteGetter", "(" + KEYHANDLER_DESC + ")B")).op(IRETURN);
+                } else if (type == int.class) {
+                    code.op(INVOKEVIRTUAL, cw.methodRef(STORAGEHANDLER_NAME, "invokeIntGetter", "(" + KEYHANDLER_DESC + ")I")).op(IRETURN);
+                } else if (type == long.class) {
+                    code.op(INVOKEVIRTUAL, cw.methodRef(STORAGEHANDLER_NAME, "invokeLongGetter", "(" + KEYHANDLER_DESC + ")J")).op(LRETURN);
+                } else if (type == float.class) {
+                    code.op(INVOKEVIRTUAL, cw.methodRef(STORAGEHANDLER_NAME, "invokeFloatGetter", "(" + KEYHANDLER_DESC + ")F")).op(FRETURN);
+                } else if (type == double.class) {
+                    code.op(INVOKEVIRTUAL, cw.methodRef(STORAGEHANDLER_NAME, "invokeDoubleGetter", "(" + KEYHANDLER_DESC + ")D")).op(DRETURN);
+                } else {
+                    code.op(INVOKEVIRTUAL, cw.methodRef(STORAGEHANDLER_NAME, "invokeGetter", "(" + KEYHANDLER_DESC + ")Ljava/lang/Object;"));
+                    if (type != Object.class) {
+                        code.op(CHECKCAST, cw.classRef(ClassFileWriter.getInternalName(type)));
+                    }
+                    code.op(ARETURN);
+                }
+                cw.method(m.getName(), ClassFileWriter.getDescriptor(m), code);
+                break;
+            }
+            case SETTER: {
+                final Class<?> type = m.getParameterTypes()[0];
+                final boolean wide = type == long.class || type == double.class;
+                final Code code = new Code(wide ? 4 : 3, wide ? 3 : 2);
+                code.op(ALOAD_0).op(GETFIELD, storageHandlerField);
+                code.op(ALOAD_0).op(GETFIELD, cw.fieldRef(name, "keyHandler" + index++, KEYHANDLER_DESC));
+                if (type == boolean.class) {
+                    /* iload_1 */
+                    code.op(0x1b).op(INVOKESTATIC, cw.methodRef("java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;"));
+                } else if (type == byte.class) {
+                    code.op(0x1b).op(INVOKESTATIC, cw.methodRef("java/lang/Byte", "valueOf", "(B)Ljava/lang/Byte;"));
+                } else if (type == int.class) {
+                    code.op(0x1b).op(INVOKESTATIC, cw.methodRef("java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;"));
+                } else if (type == long.class) {
+                    /* lload_1 */
+                    code.op(0x1f).op(INVOKESTATIC, cw.methodRef("java/lang/Long", "valueOf", "(J)Ljava/lang/Long;"));
+                } else if (type == float.class) {
+                    /* fload_1 */
+                    code.op(0x23).op(INVOKESTATIC, cw.methodRef("java/lang/Float", "valueOf", "(F)Ljava/lang/Float;"));
+                } else if (type == double.class) {
+                    /* dload_1 */
+                    code.op(0x27).op(INVOKESTATIC, cw.methodRef("java/lang/Double", "valueOf", "(D)Ljava/lang/Double;"));
+                } else {
+                    code.op(ALOAD_1);
+                }
+                code.op(INVOKEVIRTUAL, cw.methodRef(STORAGEHANDLER_NAME, "invokeSetter", "(" + KEYHANDLER_DESC + "Ljava/lang/Object;)V")).op(RETURN);
+                cw.method(m.getName(), ClassFileWriter.getDescriptor(m), code);
+                break;
+            }
+            default:
+                break;
+            }
+        }
+        // same as the proxy: toString, equals and hashCode of the StorageHandler
+        final Code toString = new Code(1, 1);
+        toString.op(ALOAD_0).op(GETFIELD, storageHandlerField).op(INVOKEVIRTUAL, cw.methodRef("java/lang/Object", "toString", "()Ljava/lang/String;")).op(ARETURN);
+        cw.method("toString", "()Ljava/lang/String;", toString);
+        final Code hashCode = new Code(1, 1);
+        hashCode.op(ALOAD_0).op(GETFIELD, storageHandlerField).op(INVOKEVIRTUAL, cw.methodRef("java/lang/Object", "hashCode", "()I")).op(IRETURN);
+        cw.method("hashCode", "()I", hashCode);
+        final Code equals = new Code(2, 2);
+        equals.op(ALOAD_0).op(GETFIELD, storageHandlerField).op(ALOAD_1).op(INVOKEVIRTUAL, cw.methodRef("java/lang/Object", "equals", "(Ljava/lang/Object;)Z")).op(IRETURN);
+        cw.method("equals", "(Ljava/lang/Object;)Z", equals);
+        return cw.toByteArray(name, "java/lang/Object", ClassFileWriter.getInternalName(configInterface));
+    }
+}
@@ -0,0 +1,267 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.config.handler;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.WeakHashMap;
+
+import org.appwork.storage.InvalidTypeException;
+import org.appwork.storage.JSonStorage;
+import org.appwork.storage.config.ConfigInterface;
+import org.appwork.storage.config.InterfaceParseException;
+import org.appwork.storage.config.annotations.AllowStorage;
+import org.appwork.utils.logging2.extmanager.LoggerFactory;
+
+/**
+ * the parsed key definitions of a config interface. They only depend on the interface class, so they are cached and shared by all
+ * {@link StorageHandler}s of the same interface. A new build loads new classes, so the cache can never return outdated definitions
+ *
+ * @author thomas
+ *
+ */
+public class ConfigInterfaceMetadata {
+    public static class KeyDefinition {
+        private final String key;
+        /* type of the first method of this key, used to create the KeyHandler */
+        private final Type   type;
+        private Method       getter;
+        private Method       setter;
+
+        private KeyDefinition(final String key, final Type type) {
+            this.key = key;
+            this.type = type;
+        }
+
+        public String getKey() {
+            return this.key;
+        }
+
+        public Type getType() {
+            return this.type;
+        }
+
+        public Method getGetter() {
+            return this.getter;
+        }
+
+        public Method getSetter() {
+            return this.setter;
+        }
+    }
+
+    private static final WeakHashMap<Class<?>, SoftReference<ConfigInterfaceMetadata>> CACHE = new WeakHashMap<Class<?>, SoftReference<ConfigInterfaceMetadata>>();
+
+    /**
+     * @param configInterface
+     * @return cached metadata, or null if configInterface has not been parsed yet
+     */
+    public static ConfigInterfaceMetadata getCached(final Class<?> configInterface) {
+        synchronized (CACHE) {
+            final SoftReference<ConfigInterfaceMetadata> ref = CACHE.get(configInterface);
+            return ref == null ? null : ref.get();
+        }
+    }
+
+    /**
+     * @param configInterface
+     * @return the metadata of configInterface, parsed on first call
+     */
+    public static ConfigInterfaceMetadata get(final Class<?> configInterface) {
+        ConfigInterfaceMetadata ret = getCached(configInterface);
+        if (ret == null) {
+            ret = new ConfigInterfaceMetadata(configInterface);
+            synchronized (CACHE) {
+                CACHE.put(configInterface, new SoftReference<ConfigInterfaceMetadata>(ret));
+            }
+        }
+        return ret;
+    }
+
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    private final Class<?>                  configInterface;
+    private final ArrayList<KeyDefinition>  keys   = new ArrayList<KeyDefinition>();
+    /* reported by every StorageHandler of this interface, see StorageHandler.error */
+    private final ArrayList<Throwable>      errors = new ArrayList<Throwable>();
+
+    private ConfigInterfaceMetadata(final Class<?> configInterface) {
+        this.configInterface = configInterface;
+        this.parse();
+    }
+
+    public Class<?> getConfigInterface() {
+        return this.configInterface;
+    }
+
+    public List<KeyDefinition> getKeys() {
+        return Collections.unmodifiableList(this.keys);
+    }
+
+    public List<Throwable> getErrors() {
+        return Collections.unmodifiableList(this.errors);
+    }
+
+    private static int getParameterCount(final Method method) {
+        if (method != null) {
+            return method.getParameterTypes().length;
+        }
+        return 0;
+    }
+
+    private boolean isAllowed(final Method m, final Type type) {
+        final AllowStorage allow = m.getAnnotation(AllowStorage.class);
+        if (allow != null) {
+            for (final Class<?> c : allow.value()) {
+                if (type == c) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void parse() {
+        final HashMap<String, Method> keyGetterMap = new HashMap<String, Method>();
+        final HashMap<String, Method> keySetterMap = new HashMap<String, Method>();
+        String key;
+        final LinkedHashMap<String, KeyDefinition> parseMap = new LinkedHashMap<String, KeyDefinition>();
+        Class<?> clazz = this.configInterface;
+        while (clazz != null && clazz != ConfigInterface.class) {
+            for (final Method m : clazz.getDeclaredMethods()) {
+                final String methodName = m.getName().toLowerCase(Locale.ENGLISH);
+                final boolean get = methodName.startsWith("get");
+                if (get || methodName.startsWith("is")) {
+                    key = methodName.substring(get ? 3 : 2);
+                    // we do not allow to setters/getters with the same name but
+                    // different cases. this only confuses the user when editing
+                    // the
+                    // later config file
+                    if (keyGetterMap.containsKey(key)) {
+                        if (m.getName().equals(keyGetterMap.get(key).getName()) && getParameterCount(m) == getParameterCount(keyGetterMap.get(key))) {
+                            // overridden method. that's ok
+                            LoggerFactory.getDefaultLogger().info("Overridden Config Key found " + keyGetterMap.get(key) + "<-->" + m);
+                            continue;
+
+                        }
+                        this.errors.add(new InterfaceParseException("Key " + key + " Dupe found! " + keyGetterMap.get(key) + "<-->" + m));
+                        continue;
+                    }
+                    keyGetterMap.put(key, m);
+                    if (getParameterCount(m) > 0) {
+                        this.errors.add(new InterfaceParseException("Getter " + m + " has parameters."));
+                        keyGetterMap.remove(key);
+                        continue;
+                    }
+                    try {
+                        /* AllowStorage is only supported for get methods */
+                        if (!get || !this.isAllowed(m, m.getReturnType())) {
+                            JSonStorage.canStore(m.getGenericReturnType(), false);
+                        }
+                    } catch (final InvalidTypeException e) {
+                        if (!get || !this.isAllowed(m, e.getType())) {
+                            this.errors.add(new InterfaceParseException(e));
+                            keyGetterMap.remove(key);
+                            continue;
+                        }
+                    }
+                    KeyDefinition kd = parseMap.get(key);
+                    if (kd == null) {
+                        kd = new KeyDefinition(key, m.getGenericReturnType());
+                        parseMap.put(key, kd);
+                    }
+                    kd.getter = m;
+                } else if (methodName.startsWith("set")) {
+                    key = methodName.substring(3);
+                    if (keySetterMap.containsKey(key)) {
+                        if (m.getName().equals(keyGetterMap.get(key).getName()) && getParameterCount(m) == getParameterCount(keyGetterMap.get(key))) {
+                            // overridden method. that's ok
+                            LoggerFactory.getDefaultLogger().info("Overridden Config Key found " + keyGetterMap.get(key) + "<-->" + m);
+                            continue;
+
+                        }
+                        this.errors.add(new InterfaceParseException("Key " + key + " Dupe found! " + keySetterMap.get(key) + "<-->" + m));
+                        continue;
+                    }
+                    keySetterMap.put(key, m);
+                    if (getParameterCount(m) != 1) {
+                        this.errors.add(new InterfaceParseException("Setter " + m + " has !=1 parameters."));
+                        keySetterMap.remove(key);
+                        continue;
+
+                    }
+                    if (m.getReturnType() != void.class) {
+                        this.errors.add(new InterfaceParseException("Setter " + m + " has a returntype != void"));
+                        keySetterMap.remove(key);
+                        continue;
+                    }
+                    try {
+                        JSonStorage.canStore(m.getGenericParameterTypes()[0], false);
+                    } catch (final InvalidTypeException e) {
+                        if (!this.isAllowed(m, e.getType())) {
+                            this.errors.add(new InterfaceParseException(e));
+                            keySetterMap.remove(key);
+                            continue;
+                        }
+                    }
+                    KeyDefinition kd = parseMap.get(key);
+                    if (kd == null) {
+                        kd = new KeyDefinition(key, m.getGenericParameterTypes()[0]);
+                        parseMap.put(key, kd);
+                    }
+                    kd.setter = m;
+                } else {
+                    this.errors.add(new InterfaceParseException("Only getter and setter allowed:" + m));
+                    continue;
+                }
+            }
+            // run down the calss hirarchy to find all methods. getMethods does
+            // not work, because it only finds public methods
+            final Class<?>[] interfaces = clazz.getInterfaces();
+            clazz = interfaces[0];
+        }
+        this.keys.addAll(parseMap.values());
+    }
+}
@@ -0,0 +1,419 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.config.handler;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per key instrumentation of config access. Counts reads and writes through config interfaces and keeps latency histograms per
+ * {@link KeyHandler}, and counts file writes per storage. All counters are thread safe and striped, so profiling does not serialize
+ * the callers. When disabled, the cost is one volatile read per access.
+ *
+ * @author thomas
+ *
+ */
+public class ConfigProfiler {
+    /**
+     * a counter that is spread over several cache lines. Threads increment different stripes, {@link #get()} sums them up
+     */
+    public static class StripedCounter {
+        /* 8 longs = one cache line per stripe */
+        private static final int      PADDING = 8;
+        private static final int      STRIPES = getStripes();
+        private final AtomicLongArray values  = new AtomicLongArray(STRIPES * PADDING);
+
+        private static int getStripes() {
+            final int cpus = Runtime.getRuntime().availableProcessors();
+            int ret = 1;
+            while (ret < cpus * 2 && ret < 64) {
+                ret <<= 1;
+            }
+            return ret;
+        }
+
+        private static int getStripe(final int stripes) {
+            return (int) Thread.currentThread().getId() & stripes - 1;
+        }
+
+        public void add(final long value) {
+            this.values.addAndGet(getStripe(STRIPES) * PADDING, value);
+        }
+
+        public long get() {
+            long ret = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                ret += this.values.get(i * PADDING);
+            }
+            return ret;
+        }
+
+        public void reset() {
+            for (int i = 0; i < STRIPES; i++) {
+                this.values.set(i * PADDING, 0);
+            }
+        }
+    }
+
+    /**
+     * latency histogram with power of two buckets: bucket n counts durations of [2^(n-1),2^n) ns. Striped like {@link StripedCounter}, each
+     * stripe is a full histogram of 64 longs = 8 cache lines. Stripes are limited to 8 to keep the memory per key small
+     */
+    public static class LatencyHistogram {
+        public static final int       BUCKETS = 64;
+        private static final int      STRIPES = Math.min(8, StripedCounter.STRIPES);
+        private final StripedCounter  count   = new StripedCounter();
+        private final StripedCounter  nanos   = new StripedCounter();
+        private final AtomicLongArray buckets = new AtomicLongArray(STRIPES * BUCKETS);
+
+        public void record(final long duration) {
+            this.count.add(1);
+            this.nanos.add(duration);
+            this.buckets.incrementAndGet(StripedCounter.getStripe(STRIPES) * BUCKETS + (duration <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(duration)));
+        }
+
+        public void reset() {
+            this.count.reset();
+            this.nanos.reset();
+            for (int i = 0; i < this.buckets.length(); i++) {
+                this.buckets.set(i, 0);
+            }
+        }
+
+        private long[] getBuckets() {
+            final long[] ret = new long[BUCKETS];
+            for (int i = 0; i < this.buckets.length(); i++) {
+                ret[i % BUCKETS] += this.buckets.get(i);
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * counters of one KeyHandler. The KeyHandler is only weakly referenced, so profiling does not keep KeyHandlers and their
+     * StorageHandlers alive
+     */
+    public static class KeyStats {
+        private final WeakReference<KeyHandler<?>> keyHandler;
+        private final String                       storage;
+        private final String                       key;
+        private final LatencyHistogram             reads  = new LatencyHistogram();
+        private final LatencyHistogram             writes = new LatencyHistogram();
+
+        private KeyStats(final KeyHandler<?> keyHandler) {
+            this.keyHandler = new WeakReference<KeyHandler<?>>(keyHandler);
+            this.storage = keyHandler.getStorageHandler().getConfigInterface().getName();
+            this.key = keyHandler.getKey();
+        }
+
+        /**
+         * @return the KeyHandler or null if it has been garbage collected
+         */
+        public KeyHandler<?> getKeyHandler() {
+            return this.keyHandler.get();
+        }
+    }
+
+    /**
+     * immutable copy of the counters of one key
+     */
+    public static class KeySnapshot {
+        private final String storage;
+        private final String key;
+        private final long   reads;
+        private final long   readNanos;
+        private final long[] readHistogram;
+        private final long   writes;
+        private final long   writeNanos;
+        private final long[] writeHistogram;
+
+        private KeySnapshot(final KeyStats stats) {
+            this.storage = stats.storage;
+            this.key = stats.key;
+            this.reads = stats.reads.count.get();
+            this.readNanos = stats.reads.nanos.get();
+            this.readHistogram = stats.reads.getBuckets();
+            this.writes = stats.writes.count.get();
+            this.writeNanos = stats.writes.nanos.get();
+            this.writeHistogram = stats.writes.getBuckets();
+        }
+
+        /**
+         * @return name of the config interface
+         */
+        public String getStorage() {
+            return this.storage;
+        }
+
+        public String getKey() {
+            return this.key;
+        }
+
+        public long getReads() {
+            return this.reads;
+        }
+
+        public long getReadNanos() {
+            return this.readNanos;
+        }
+
+        public long[] getReadHistogram() {
+            return this.readHistogram.clone();
+        }
+
+        public long getWrites() {
+            return this.writes;
+        }
+
+        public long getWriteNanos() {
+            return this.writeNanos;
+        }
+
+        public long[] getWriteHistogram() {
+            return this.writeHistogram.clone();
+        }
+
+        /**
+         * @param percentile
+         *            0-100
+         * @return upper bound in ns of the histogram bucket that contains the percentile of all reads
+         */
+        public long getReadPercentile(final double percentile) {
+            return ConfigProfiler.getPercentile(this.readHistogram, percentile);
+        }
+
+        public long getWritePercentile(final double percentile) {
+            return ConfigProfiler.getPercentile(this.writeHistogram, percentile);
+        }
+
+        @Override
+        public String toString() {
+            return this.storage + "." + this.key + " reads=" + this.reads + "|" + (this.reads == 0 ? 0 : this.readNanos / this.reads) + "ns/i|p99<" + this.getReadPercentile(99) + "ns writes=" + this.writes + "|" + (this.writes == 0 ? 0 : this.writeNanos / this.writes) + "ns/i";
+        }
+    }
+
+    public static class Snapshot {
+        private final List<KeySnapshot>     keys;
+        private final HashMap<String, Long> saves;
+
+        private Snapshot(final List<KeySnapshot> keys, final HashMap<String, Long> saves) {
+            this.keys = keys;
+            this.saves = saves;
+        }
+
+        /**
+         * @return all keys that were accessed, sorted by number of accesses, most accessed first
+         */
+        public List<KeySnapshot> getKeys() {
+            return this.keys;
+        }
+
+        /**
+         * @return number of file writes per storage file
+         */
+        public HashMap<String, Long> getSaves() {
+            return this.saves;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            for (final KeySnapshot key : this.keys) {
+                sb.append(key).append("\r\n");
+            }
+            for (final Entry<String, Long> save : this.saves.entrySet()) {
+                sb.append("save ").append(save.getKey()).append(" ").append(save.getValue()).append("\r\n");
+            }
+            return sb.toString();
+        }
+    }
+
+    private static volatile boolean                                ENABLED = false;
+    private static final ConcurrentLinkedQueue<KeyStats>           STATS   = new ConcurrentLinkedQueue<KeyStats>();
+    private static final ConcurrentHashMap<String, StripedCounter> SAVES   = new ConcurrentHashMap<String, StripedCounter>();
+
+    public static boolean isEnabled() {
+        return ConfigProfiler.ENABLED;
+    }
+
+    /**
+     * can be switched at any time. Counters are kept when profiling is disabled, see {@link #reset()}
+     *
+     * @param enabled
+     */
+    public static void setEnabled(final boolean enabled) {
+        ConfigProfiler.ENABLED = enabled;
+    }
+
+    /**
+     * @return System.nanoTime() if profiling is enabled, else 0
+     */
+    public static long start() {
+        return ConfigProfiler.ENABLED ? System.nanoTime() : 0;
+    }
+
+    public static void recordRead(final KeyHandler<?> keyHandler, final long start) {
+        if (start != 0) {
+            ConfigProfiler.getStats(keyHandler).reads.record(System.nanoTime() - start);
+        }
+    }
+
+    public static void recordWrite(final KeyHandler<?> keyHandler, final long start) {
+        if (start != 0) {
+            ConfigProfiler.getStats(keyHandler).writes.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param id
+     *            storage file that has been written
+     */
+    public static void recordSave(final String id) {
+        if (ConfigProfiler.ENABLED) {
+            StripedCounter counter = ConfigProfiler.SAVES.get(id);
+            if (counter == null) {
+                final StripedCounter existing = ConfigProfiler.SAVES.putIfAbsent(id, counter = new StripedCounter());
+                if (existing != null) {
+                    counter = existing;
+                }
+            }
+            counter.add(1);
+        }
+    }
+
+    private static KeyStats getStats(final KeyHandler<?> keyHandler) {
+        KeyStats ret = keyHandler.profilerStats;
+        if (ret == null) {
+            synchronized (keyHandler) {
+                ret = keyHandler.profilerStats;
+                if (ret == null) {
+                    ret = new KeyStats(keyHandler);
+                    ConfigProfiler.removeCollected();
+                    ConfigProfiler.STATS.add(ret);
+                    keyHandler.profilerStats = ret;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * removes the stats of garbage collected KeyHandlers
+     */
+    private static void removeCollected() {
+        for (final Iterator<KeyStats> it = ConfigProfiler.STATS.iterator(); it.hasNext();) {
+            if (it.next().getKeyHandler() == null) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * @return counters of all keys that were accessed while profiling was enabled. Counters of garbage collected KeyHandlers may be
+     *         dropped
+     */
+    public static Snapshot snapshot() {
+        final ArrayList<KeySnapshot> keys = new ArrayList<KeySnapshot>();
+        for (final KeyStats stats : ConfigProfiler.STATS) {
+            final KeySnapshot key = new KeySnapshot(stats);
+            if (key.getReads() > 0 || key.getWrites() > 0) {
+                keys.add(key);
+            }
+        }
+        Collections.sort(keys, new Comparator<KeySnapshot>() {
+
+            @Override
+            public int compare(final KeySnapshot o1, final KeySnapshot o2) {
+                final long a = o1.getReads() + o1.getWrites();
+                final long b = o2.getReads() + o2.getWrites();
+                return a == b ? 0 : a > b ? -1 : 1;
+            }
+        });
+        final HashMap<String, Long> saves = new HashMap<String, Long>();
+        for (final Entry<String, StripedCounter> next : ConfigProfiler.SAVES.entrySet()) {
+            saves.put(next.getKey(), next.getValue().get());
+        }
+        return new Snapshot(keys, saves);
+    }
+
+    /**
+     * drops all counters
+     */
+    public static void reset() {
+        for (final Iterator<KeyStats> it = ConfigProfiler.STATS.iterator(); it.hasNext();) {
+            final KeyStats stats = it.next();
+            final KeyHandler<?> keyHandler = stats.getKeyHandler();
+            if (keyHandler != null) {
+                /* same lock as getStats, the KeyHandler gets new stats on its next access */
+                synchronized (keyHandler) {
+                    if (keyHandler.profilerStats == stats) {
+                        keyHandler.profilerStats = null;
+                    }
+                    it.remove();
+                }
+            } else {
+                it.remove();
+            }
+        }
+        ConfigProfiler.SAVES.clear();
+    }
+
+    private static long getPercentile(final long[] histogram, final double percentile) {
+        long total = 0;
+        for (final long count : histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long limit = (long) Math.ceil(total * percentile / 100d);
+        long sum = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            sum += histogram[i];
+            if (sum >= limit) {
+                return i == 0 ? 1 : i >= 63 ? Long.MAX_VALUE : 1l << i;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.config.handler;
+
+/**
+ * how long the creation of one {@link StorageHandler} took, see {@link StorageHandler#getStartupTimings()}
+ *
+ * @author thomas
+ *
+ */
+public class ConfigStartupTiming {
+    private final String  interfaceName;
+    private final String  storageID;
+    private final long    storageNanos;
+    private final long    metadataNanos;
+    private final boolean metadataCached;
+    private final long    keyHandlerNanos;
+    private final int     keyHandlers;
+    private final boolean lazy;
+
+    ConfigStartupTiming(final String interfaceName, final String storageID, final long storageNanos, final long metadataNanos, final boolean metadataCached, final long keyHandlerNanos, final int keyHandlers, final boolean lazy) {
+        this.interfaceName = interfaceName;
+        this.storageID = storageID;
+        this.storageNanos = storageNanos;
+        this.metadataNanos = metadataNanos;
+        this.metadataCached = metadataCached;
+        this.keyHandlerNanos = keyHandlerNanos;
+        this.keyHandlers = keyHandlers;
+        this.lazy = lazy;
+    }
+
+    public String getInterfaceName() {
+        return this.interfaceName;
+    }
+
+    /**
+     * @return null for the default storage of the interface
+     */
+    public String getStorageID() {
+        return this.storageID;
+    }
+
+    /**
+     * @return time to load the storage file. 0 if the storage has been passed to the StorageHandler
+     */
+    public long getStorageNanos() {
+        return this.storageNanos;
+    }
+
+    /**
+     * @return time to parse the interface, or to look it up in the {@link ConfigInterfaceMetadata} cache
+     */
+    public long getMetadataNanos() {
+        return this.metadataNanos;
+    }
+
+    public boolean isMetadataCached() {
+        return this.metadataCached;
+    }
+
+    /**
+     * @return time to create and init the KeyHandlers. In lazy mode, only creation is included
+     */
+    public long getKeyHandlerNanos() {
+        return this.keyHandlerNanos;
+    }
+
+    public int getKeyHandlers() {
+        return this.keyHandlers;
+    }
+
+    public boolean isLazy() {
+        return this.lazy;
+    }
+
+    public long getTotalNanos() {
+        return this.storageNanos + this.metadataNanos + this.keyHandlerNanos;
+    }
+
+    @Override
+    public String toString() {
+        return this.interfaceName + (this.storageID == null ? "" : "." + this.storageID) + " total=" + this.getTotalNanos() / 1000 + "us storage=" + this.storageNanos / 1000 + "us metadata=" + this.metadataNanos / 1000 + "us" + (this.metadataCached ? "(cached)" : "") + " keyHandlers=" + this.keyHandlers + "|" + this.keyHandlerNanos / 1000 + "us" + (this.lazy ? "(lazy)" : "");
+    }
+}
@@ -95,4 +95,44 @@ public class DoubleKeyHandler extends KeyHandler<Double> {
 
     }
 
+    private static class DoubleValueCache extends ValueCache<Double> {
+        private final double primitive;
+
+        private DoubleValueCache(final long mark, final Double value) {
+            super(mark, value);
+            this.primitive = value == null ? 0d : value.doubleValue();
+        }
+    }
+
+    @Override
+    protected ValueCache<Double> createValueCache(final long mark, final Double value) {
+        return new DoubleValueCache(mark, value);
+    }
+
+    /**
+     * unboxed getter, does not lock or allocate as long as the value is cached
+     *
+     * @return the value or 0 for null
+     */
+    public double doubleValue() {
+        final ValueCache<Double> cache = this.getValueCache();
+        if (cache != null) {
+            return ((DoubleValueCache) cache).primitive;
+        }
+        final Double value = this.getValue();
+        return value == null ? 0d : value.doubleValue();
+    }
+
+    /**
+     * like {@link #doubleValue()}, but null is unboxed like the Proxy implementation does it and throws a NullPointerException. Used by the
+     * typed getters of generated config implementations
+     */
+    double doubleValueStrict() {
+        final ValueCache<Double> cache = this.getValueCache();
+        if (cache != null && cache.value != null) {
+            return ((DoubleValueCache) cache).primitive;
+        }
+        return this.getValue().doubleValue();
+    }
+
 }
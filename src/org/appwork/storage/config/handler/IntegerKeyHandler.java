@@ -117,4 +117,44 @@ public class IntegerKeyHandler extends KeyHandler<Integer> {
 
     }
 
+    private static class IntValueCache extends ValueCache<Integer> {
+        private final int primitive;
+
+        private IntValueCache(final long mark, final Integer value) {
+            super(mark, value);
+            this.primitive = value == null ? 0 : value.intValue();
+        }
+    }
+
+    @Override
+    protected ValueCache<Integer> createValueCache(final long mark, final Integer value) {
+        return new IntValueCache(mark, value);
+    }
+
+    /**
+     * unboxed getter, does not lock or allocate as long as the value is cached
+     *
+     * @return the value or 0 for null
+     */
+    public int intValue() {
+        final ValueCache<Integer> cache = this.getValueCache();
+        if (cache != null) {
+            return ((IntValueCache) cache).primitive;
+        }
+        final Integer value = this.getValue();
+        return value == null ? 0 : value.intValue();
+    }
+
+    /**
+     * like {@link #intValue()}, but null is unboxed like the Proxy implementation does it and throws a NullPointerException. Used by the
+     * typed getters of generated config implementations
+     */
+    int intValueStrict() {
+        final ValueCache<Integer> cache = this.getValueCache();
+        if (cache != null && cache.value != null) {
+            return ((IntValueCache) cache).primitive;
+        }
+        return this.getValue().intValue();
+    }
+
 }
@@ -69,6 +69,7 @@ import org.appwork.storage.config.annotations.ValidatorFactory;
 import org.appwork.storage.config.events.ConfigEvent;
 import org.appwork.storage.config.events.ConfigEvent.Types;
 import org.appwork.storage.config.events.ConfigEventSender;
+import org.appwork.utils.ReflectionUtils;
 import org.appwork.utils.reflection.Clazz;
 
 /**
@@ -76,6 +77,18 @@ import org.appwork.utils.reflection.Clazz;
  *
  */
 public abstract class KeyHandler<RawClass> {
+    /**
+     * typed value of a KeyHandler, valid as long as the modification counter of the storage does not change
+     */
+    protected static class ValueCache<RawClass> {
+        protected final long     mark;
+        protected final RawClass value;
+
+        protected ValueCache(final long mark, final RawClass value) {
+            this.mark = mark;
+            this.value = value;
+        }
+    }
 
     private static final String                   ANNOTATION_PACKAGE_NAME = CryptedStorage.class.getPackage().getName();
     private static final String                   PACKAGE_NAME            = PlainStorage.class.getPackage().getName();
@@ -91,6 +104,14 @@ public abstract class KeyHandler<RawClass> {
     protected AbstractCustomValueGetter<RawClass> customValueGetter;
     protected String[]                            backwardsCompatibilityLookupKeys;
     private boolean                               defaultOnNull           = false;
+    /* boxed return type of number getters, null for all other types */
+    private Class<?>                              numberClass             = null;
+    private volatile ValueCache<RawClass>         valueCache              = null;
+    /* set by StorageHandler after init(), see StorageHandler.setLazyKeyHandlersEnabled */
+    volatile boolean                              initialized             = false;
+    Throwable                                     initError               = null;
+    /* created on first access while ConfigProfiler is enabled */
+    volatile ConfigProfiler.KeyStats              profilerStats           = null;
 
     /**
      * @param storageHandler
@@ -469,8 +490,16 @@ public abstract class KeyHandler<RawClass> {
         }
     }
 
+    @SuppressWarnings("unchecked")
     public RawClass getValue() {
+        final ValueCache<RawClass> cache = this.getValueCache();
+        if (cache != null) {
+            return cache.value;
+        }
         synchronized (this) {
+            final Storage storage = this.getStorageHandler().getPrimitiveStorage();
+            /* read the counter first, a modification during the read invalidates the cached value */
+            final long mark = this.isValueCacheable() ? storage.getModificationCounter() : -1;
             RawClass value = this.getValueStorage();
             if (this.customValueGetter != null) {
                 value = this.customValueGetter.getValue(this, value);
@@ -478,10 +507,52 @@ public abstract class KeyHandler<RawClass> {
             if (value == null && isDefaultOnNull()) {
                 value = getDefaultValue();
             }
+            if (value != null && this.numberClass != null && value.getClass() != this.numberClass) {
+                value = (RawClass) ReflectionUtils.castNumber((Number) value, this.numberClass);
+            }
+            if (mark >= 0 && storage.hasProperty(this.getKey())) {
+                /* default values that are not stored may be created by a factory and are not cached */
+                this.valueCache = this.createValueCache(mark, value);
+            }
             return value;
         }
     }
 
+    /**
+     * @return the cached value or null if there is no valid one
+     */
+    protected ValueCache<RawClass> getValueCache() {
+        final ValueCache<RawClass> cache = this.valueCache;
+        if (cache != null && cache.mark == this.getStorageHandler().getPrimitiveStorage().getModificationCounter()) {
+            return cache;
+        }
+        return null;
+    }
+
+    protected ValueCache<RawClass> createValueCache(final long mark, final RawClass value) {
+        return new ValueCache<RawClass>(mark, value);
+    }
+
+    /**
+     * only immutable values are cached. Values of a {@link AbstractCustomValueGetter} may change at any time
+     *
+     * @return
+     */
+    protected boolean isValueCacheable() {
+        if (this.customValueGetter != null) {
+            return false;
+        }
+        final Class<?> rawClass = this.getRawClass();
+        return rawClass.isPrimitive() || rawClass.isEnum() || isWrapperType(rawClass);
+    }
+
+    /**
+     * @return the boxed return type of number getters. values returned by {@link #getValue()} are already of this type
+     */
+    protected Class<?> getNumberClass() {
+        return this.numberClass;
+    }
+
     public RawClass getValueStorage() {
         final Storage storage = this.getStorageHandler().getPrimitiveStorage();
         if (storage.hasProperty(this.getKey())) {
@@ -541,6 +612,18 @@ public abstract class KeyHandler<RawClass> {
 
         // read local cryptinfos
         this.primitive = JSonStorage.canStorePrimitive(getMethod.getReturnType());
+        final Class<?> returnType = getMethod.getReturnType();
+        if (Clazz.isByte(returnType)) {
+            this.numberClass = Byte.class;
+        } else if (Clazz.isInteger(returnType)) {
+            this.numberClass = Integer.class;
+        } else if (Clazz.isLong(returnType)) {
+            this.numberClass = Long.class;
+        } else if (Clazz.isDouble(returnType)) {
+            this.numberClass = Double.class;
+        } else if (Clazz.isFloat(returnType)) {
+            this.numberClass = Float.class;
+        }
         final CryptedStorage cryptedStorage = this.getAnnotation(CryptedStorage.class);
         if (cryptedStorage != null) {
             if (this.storageHandler.getPrimitiveStorage().getCryptKey() != null) {
@@ -693,6 +776,7 @@ public abstract class KeyHandler<RawClass> {
                     }
                     this.validateValue(newValue);
                     this.putValue(newValue);
+                    this.valueCache = null;
                     getStorageHandler().requestSave();
                 }
             }
@@ -709,6 +793,48 @@ public abstract class KeyHandler<RawClass> {
         }
     }
 
+    /**
+     * first part of {@link #setValue(Object)} for {@link ConfigBatch}: validates newValue without storing it
+     *
+     * @param newValue
+     * @return false if newValue equals the current value and nothing has to be written
+     * @throws ValidationException
+     */
+    boolean validateBatchValue(final RawClass newValue) throws ValidationException {
+        try {
+            synchronized (this) {
+                if (setValueEqualsGetValue(newValue)) {
+                    return false;
+                }
+                if (this.validatorFactory != null) {
+                    this.validatorFactory.validate(newValue);
+                }
+                this.validateValue(newValue);
+                return true;
+            }
+        } catch (final ValidationException e) {
+            e.setValue(newValue);
+            this.fireEvent(ConfigEvent.Types.VALIDATOR_ERROR, this, e);
+            throw e;
+        } catch (final Throwable t) {
+            final ValidationException e = new ValidationException(t);
+            e.setValue(newValue);
+            this.fireEvent(ConfigEvent.Types.VALIDATOR_ERROR, this, e);
+            throw e;
+        }
+    }
+
+    /**
+     * second part of {@link #setValue(Object)} for {@link ConfigBatch}: stores a value that passed
+     * {@link #validateBatchValue(Object)}. No save is requested and no event is fired
+     *
+     * @param newValue
+     */
+    void putBatchValue(final RawClass newValue) {
+        this.putValue(newValue);
+        this.valueCache = null;
+    }
+
     private static final Set<Class<?>> WRAPPER_TYPES = getWrapperTypes();
 
     public static boolean isWrapperType(final Class<?> clazz) {
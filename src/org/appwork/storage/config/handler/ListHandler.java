@@ -36,8 +36,11 @@ package org.appwork.storage.config.handler;
 import java.io.File;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Type;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.util.Arrays;
 
 import org.appwork.exceptions.WTFException;
 import org.appwork.storage.JSonStorage;
@@ -61,6 +64,25 @@ public abstract class ListHandler<T> extends KeyHandler<T> {
         public T get();
     }
 
+    /**
+     * content of the file as it has been read or written by this handler
+     */
+    private static class FileState {
+        private final byte[] hash;
+        private final long   lastModified;
+        private final long   length;
+
+        private FileState(final byte[] hash, final File file) {
+            this.hash = hash;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        private boolean matches(final File file) {
+            return file.lastModified() == this.lastModified && file.length() == this.length;
+        }
+    }
+
     public static final int                   MIN_LIFETIME   = 10000;
     private volatile ListHandlerCache<Object> cache;
     private final TypeRef<Object>             typeRef;
@@ -70,6 +92,9 @@ public abstract class ListHandler<T> extends KeyHandler<T> {
     private URL                               url;
     private boolean                           useObjectCache = false;
     private byte[]                            cryptKey       = null;
+    private volatile FileState                fileState      = null;
+    /* keeps the value after the MinTimeWeakReference expired, until the gc needs the memory */
+    private volatile SoftReference<Object>    softCache      = null;
 
     /**
      * @param storageHandler
@@ -90,7 +115,28 @@ public abstract class ListHandler<T> extends KeyHandler<T> {
         if (this.useObjectCache && this.getStorageHandler().isObjectCacheEnabled()) {
             final ListHandlerCache<Object> lCache = this.cache;
             if (lCache != null) {
-                return lCache.get();
+                final Object ret = lCache.get();
+                if (ret == null) {
+                    return this.getSoftCachedValue();
+                }
+                return ret;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the value of the expired MinTimeWeakReference, if it has not been collected yet and the file did not change since it has
+     *         been read or written
+     */
+    private Object getSoftCachedValue() {
+        final SoftReference<Object> ref = this.softCache;
+        final FileState state = this.fileState;
+        if (ref != null && state != null) {
+            final Object ret = ref.get();
+            if (ret != null && state.matches(this.path)) {
+                this.putCachedValue(ret);
+                return ret;
             }
         }
         return null;
@@ -167,6 +213,7 @@ public abstract class ListHandler<T> extends KeyHandler<T> {
                 }
 
             };
+            this.softCache = null;
         } else if (this.useObjectCache && this.getStorageHandler().isObjectCacheEnabled()) {
             this.cache = new ListHandlerCache<Object>() {
                 final MinTimeWeakReference<Object> minTimeWeakReference = new MinTimeWeakReference<Object>(finalValue, ListHandler.MIN_LIFETIME, "Storage " + getKey());
@@ -177,8 +224,10 @@ public abstract class ListHandler<T> extends KeyHandler<T> {
                 }
 
             };
+            this.softCache = new SoftReference<Object>(finalValue);
         } else {
             this.cache = null;
+            this.softCache = null;
         }
     }
 
@@ -226,8 +275,16 @@ public abstract class ListHandler<T> extends KeyHandler<T> {
             // prefer local file. like primitive storage does as well.
             if (path.exists()) {
                 org.appwork.utils.logging2.extmanager.LoggerFactory.getDefaultLogger().finer("Read Config: " + this.path.getAbsolutePath());
-                readObject = JSonStorage.restoreFrom(this.path, this.cryptKey == null, this.cryptKey, this.typeRef, dummyObject);
+                final MessageDigest digest = JSonStorage.createDigest();
+                readObject = JSonStorage.restoreFrom(this.path, this.cryptKey == null, this.cryptKey, this.typeRef, dummyObject, digest);
                 exists = path.exists();
+                if (readObject != dummyObject) {
+                    this.setFileState(new FileState(digest.digest(), this.path));
+                }
+            }
+            if (readObject == dummyObject || !exists) {
+                /* nothing to compare with, but the state still tells whether the file has been created since */
+                this.setFileState(new FileState(null, this.path));
             }
             if (readObject == dummyObject || !exists) {
                 if (this.url != null) {
@@ -279,19 +336,63 @@ public abstract class ListHandler<T> extends KeyHandler<T> {
     protected void validateValue(final T object) throws Throwable {
     }
 
+    private void setFileState(final FileState state) {
+        this.fileState = state;
+    }
+
     /**
+     * @return sync mode of the list files
+     */
+    protected IO.SYNC getSync() {
+        return IO.SYNC.META_AND_DATA;
+    }
+
+    /**
+     * @return hash of the file content if the file has not been changed since this handler read or wrote it, else null
+     */
+    private byte[] getFileHash() {
+        final FileState state = this.fileState;
+        return state != null && state.matches(this.path) ? state.hash : null;
+    }
+
+    /**
+     * writes object unless the file already has the same content. Direct writes serialize object straight into the temp file after a
+     * hash pass, delayed writes serialize object now, because it may change until the write is executed
+     *
      * @param object
      */
     protected void write(final T object) {
-        final byte[] jsonBytes = JSonStorage.getMapper().objectToByteArray(object);
-        final Runnable run = new Runnable() {
+        if (StorageHandler.isWriteDelayed(isDelayedWriteAllowed())) {
+            final byte[] jsonBytes = JSonStorage.getMapper().objectToByteArray(object);
+            final byte[] data = JSonStorage.toFileContent(jsonBytes, cryptKey == null, cryptKey);
+            final byte[] hash = JSonStorage.createDigest().digest(data);
+            /*
+             * always queued, it replaces a queued write of an older value. The file is compared when the write is executed, so a failed
+             * or replaced write does not suppress later ones
+             */
+            final Runnable run = new Runnable() {
 
-            @Override
-            public void run() {
-                JSonStorage.saveTo(path, cryptKey == null, cryptKey, jsonBytes);
-            }
-        };
-        StorageHandler.enqueueWrite(run, path.getAbsolutePath(), isDelayedWriteAllowed());
+                @Override
+                public void run() {
+                    if (Arrays.equals(hash, ListHandler.this.getFileHash())) {
+                        return;
+                    }
+                    /* data is already encrypted */
+                    JSonStorage.saveTo(path, true, null, data, ListHandler.this.getSync());
+                    ListHandler.this.setFileState(new FileState(hash, path));
+                }
+            };
+            StorageHandler.enqueueWrite(run, path.getAbsolutePath(), true);
+        } else {
+            final Runnable run = new Runnable() {
+
+                @Override
+                public void run() {
+                    ListHandler.this.setFileState(new FileState(JSonStorage.saveObjectToIfChanged(path, cryptKey == null, cryptKey, object, ListHandler.this.getFileHash(), ListHandler.this.getSync()), path));
+                }
+            };
+            StorageHandler.enqueueWrite(run, path.getAbsolutePath(), false);
+        }
         this.url = null;
     }
 
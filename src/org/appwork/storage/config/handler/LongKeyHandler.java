@@ -117,4 +117,44 @@ public class LongKeyHandler extends KeyHandler<Long> {
         }
     }
 
+    private static class LongValueCache extends ValueCache<Long> {
+        private final long primitive;
+
+        private LongValueCache(final long mark, final Long value) {
+            super(mark, value);
+            this.primitive = value == null ? 0l : value.longValue();
+        }
+    }
+
+    @Override
+    protected ValueCache<Long> createValueCache(final long mark, final Long value) {
+        return new LongValueCache(mark, value);
+    }
+
+    /**
+     * unboxed getter, does not lock or allocate as long as the value is cached
+     *
+     * @return the value or 0 for null
+     */
+    public long longValue() {
+        final ValueCache<Long> cache = this.getValueCache();
+        if (cache != null) {
+            return ((LongValueCache) cache).primitive;
+        }
+        final Long value = this.getValue();
+        return value == null ? 0l : value.longValue();
+    }
+
+    /**
+     * like {@link #longValue()}, but null is unboxed like the Proxy implementation does it and throws a NullPointerException. Used by the
+     * typed getters of generated config implementations
+     */
+    long longValueStrict() {
+        final ValueCache<Long> cache = this.getValueCache();
+        if (cache != null && cache.value != null) {
+            return ((LongValueCache) cache).primitive;
+        }
+        return this.getValue().longValue();
+    }
+
 }
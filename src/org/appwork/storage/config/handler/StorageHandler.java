@@ -41,26 +41,30 @@ import java.lang.reflect.Type;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.appwork.exceptions.WTFException;
 import org.appwork.scheduler.DelayedRunnable;
 import org.appwork.shutdown.ShutdownController;
 import org.appwork.shutdown.ShutdownEvent;
 import org.appwork.shutdown.ShutdownRequest;
-import org.appwork.storage.InvalidTypeException;
+import org.appwork.storage.ConcurrentJsonKeyValueStorage;
 import org.appwork.storage.JSonStorage;
 import org.appwork.storage.JsonKeyValueStorage;
 import org.appwork.storage.Storage;
 import org.appwork.storage.StorageException;
 import org.appwork.storage.config.ConfigInterface;
 import org.appwork.storage.config.InterfaceParseException;
-import org.appwork.storage.config.annotations.AllowStorage;
+import org.appwork.storage.config.ValidationException;
+import org.appwork.storage.config.annotations.ConcurrentStorage;
 import org.appwork.storage.config.annotations.CryptedStorage;
 import org.appwork.storage.config.annotations.DefaultBooleanArrayValue;
 import org.appwork.storage.config.annotations.DefaultByteArrayValue;
@@ -68,14 +72,13 @@ import org.appwork.storage.config.annotations.DefaultDoubleArrayValue;
 import org.appwork.storage.config.annotations.DefaultFloatArrayValue;
 import org.appwork.storage.config.annotations.DefaultIntArrayValue;
 import org.appwork.storage.config.annotations.DefaultLongArrayValue;
+import org.appwork.storage.config.events.ConfigChangeSet;
 import org.appwork.storage.config.events.ConfigEvent;
 import org.appwork.storage.config.events.ConfigEventSender;
 import org.appwork.utils.Application;
 import org.appwork.utils.Files;
 import org.appwork.utils.ReflectionUtils;
 import org.appwork.utils.StringUtils;
-import org.appwork.utils.logging2.LogInterface;
-import org.appwork.utils.logging2.extmanager.LoggerFactory;
 import org.appwork.utils.reflection.Clazz;
 import org.appwork.utils.swing.dialog.Dialog;
 
@@ -85,7 +88,9 @@ import org.appwork.utils.swing.dialog.Dialog;
  *
  */
 public class StorageHandler<T extends ConfigInterface> implements InvocationHandler {
-    private final static LinkedHashMap<String, Runnable>    DELAYEDWRITES = new LinkedHashMap<String, Runnable>();
+    private final static WriteBehindScheduler               WRITEBEHIND            = new WriteBehindScheduler();
+    /* ms the shutdown waits for delayed writes */
+    private final static long                               SHUTDOWN_FLUSH_TIMEOUT = 30 * 1000l;
 
     protected static final DelayedRunnable                  SAVEDELAYER   = new DelayedRunnable(5000, 30000) {
 
@@ -104,7 +109,7 @@ public class StorageHandler<T extends ConfigInterface> implements InvocationHand
 
             @Override
             public long getMaxDuration() {
-                return 0;
+                return StorageHandler.SHUTDOWN_FLUSH_TIMEOUT;
             }
 
             @Override
@@ -114,14 +119,15 @@ public class StorageHandler<T extends ConfigInterface> implements InvocationHand
 
             @Override
             public void onShutdown(final ShutdownRequest shutdownRequest) {
-                flushWrites();
+                /* leave some of the budget to log what could not be written in time */
+                if (!WRITEBEHIND.flush(this.getMaxDuration() - 1000)) {
+                    org.appwork.utils.logging2.extmanager.LoggerFactory.getDefaultLogger().warning("Delayed writes not done after " + this.getMaxDuration() + " ms, pending: " + WRITEBEHIND.getQueueDepth());
+                }
             }
 
             @Override
             public String toString() {
-                synchronized (DELAYEDWRITES) {
-                    return "ShutdownEvent: ProcessDelayedWrites num=" + DELAYEDWRITES.size();
-                }
+                return "ShutdownEvent: ProcessDelayedWrites num=" + WRITEBEHIND.getQueueDepth();
             }
         });
         ShutdownController.getInstance().addShutdownEvent(new ShutdownEvent() {
@@ -148,6 +154,22 @@ public class StorageHandler<T extends ConfigInterface> implements InvocationHand
         });
     }
 
+    /**
+     * @return a {@link ConcurrentJsonKeyValueStorage} for interfaces with {@link ConcurrentStorage}, else
+     *         {@link #createPrimitiveStorage(File, String, Class)}
+     */
+    private static Storage createStorage(final File filePath, final String classPath, final Class<? extends ConfigInterface> configInterface) {
+        if (configInterface.getAnnotation(ConcurrentStorage.class) == null) {
+            return StorageHandler.createPrimitiveStorage(filePath, classPath, configInterface);
+        }
+        final CryptedStorage crypted = configInterface.getAnnotation(CryptedStorage.class);
+        if (crypted != null) {
+            return new ConcurrentJsonKeyValueStorage(new File(filePath.getAbsolutePath() + ".ejs"), false, crypted.key() != null ? crypted.key() : JSonStorage.KEY);
+        } else {
+            return new ConcurrentJsonKeyValueStorage(new File(filePath.getAbsolutePath() + ".json"), true, null);
+        }
+    }
+
     public static JsonKeyValueStorage createPrimitiveStorage(final File filePath, final String classPath, final Class<? extends ConfigInterface> configInterface) {
         final CryptedStorage crypted = configInterface.getAnnotation(CryptedStorage.class);
         final JsonKeyValueStorage ret;
@@ -177,25 +199,18 @@ public class StorageHandler<T extends ConfigInterface> implements InvocationHand
         return ret;
     }
 
+    /**
+     * executes all delayed writes. Different files are written in parallel
+     */
     public static void flushWrites() {
-        final LogInterface logger = org.appwork.utils.logging2.extmanager.LoggerFactory.getDefaultLogger();
-        while (true) {
-            synchronized (DELAYEDWRITES) {
-                final Iterator<Runnable> it = DELAYEDWRITES.values().iterator();
-                if (it.hasNext()) {
-                    final Runnable next = it.next();
-                    try {
-                        next.run();
-                    } catch (final Throwable th) {
-                        logger.log(th);
-                    } finally {
-                        it.remove();
-                    }
-                } else {
-                    return;
-                }
-            }
-        }
+        WRITEBEHIND.flush();
+    }
+
+    /**
+     * @return the queue of delayed writes, see {@link #enqueueWrite(Runnable, String, boolean, long)}
+     */
+    public static WriteBehindScheduler getWriteBehindScheduler() {
+        return WRITEBEHIND;
     }
 
     private static final AtomicBoolean DELAYED_WRITES = new AtomicBoolean(false);
@@ -212,23 +227,31 @@ public class StorageHandler<T extends ConfigInterface> implements InvocationHand
         return DELAYED_WRITES.get();
     }
 
+    /**
+     * @param delayWrite
+     * @return true if {@link #enqueueWrite(Runnable, String, boolean)} queues the write, false if it is executed in the calling thread
+     */
+    public static boolean isWriteDelayed(final boolean delayWrite) {
+        return delayWrite && isDelayedWritesEnabled() && !ShutdownController.getInstance().isShuttingDown();
+    }
+
     public static void enqueueWrite(final Runnable run, final String ID, final boolean delayWrite) {
-        final boolean write;
-        synchronized (DELAYEDWRITES) {
-            final boolean isShuttingDown = ShutdownController.getInstance().isShuttingDown();
-            final boolean isDelayedWritesEnabled = isDelayedWritesEnabled();
-            if (isShuttingDown || !delayWrite || !isDelayedWritesEnabled) {
-                if (DELAYEDWRITES.size() > 0) {
-                    DELAYEDWRITES.remove(ID);
-                }
-                write = true;
-            } else {
-                DELAYEDWRITES.put(ID, run);
-                write = false;
-            }
-        }
-        if (write) {
-            run.run();
+        StorageHandler.enqueueWrite(run, ID, delayWrite, 0);
+    }
+
+    /**
+     * @param run
+     * @param ID
+     *            writes with the same ID are coalesced, only the latest one is executed
+     * @param delayWrite
+     * @param maxStaleness
+     *            ms until a delayed write is executed at the latest. <=0 uses {@link WriteBehindScheduler#getDefaultMaxStaleness()}
+     */
+    public static void enqueueWrite(final Runnable run, final String ID, final boolean delayWrite, final long maxStaleness) {
+        if (!StorageHandler.isWriteDelayed(delayWrite)) {
+            WRITEBEHIND.write(run, ID);
+        } else {
+            WRITEBEHIND.enqueue(run, ID, maxStaleness);
         }
     }
 
@@ -252,6 +275,47 @@ public class StorageHandler<T extends ConfigInterface> implements InvocationHand
         return null;
     }
 
+    private static final AtomicBoolean LAZY_KEYHANDLERS = new AtomicBoolean(false);
+
+    /**
+     * if enabled, KeyHandlers of new StorageHandlers are initialized on first access instead of in the constructor. Init errors are
+     * reported on first access then
+     *
+     * @param enabled
+     */
+    public static void setLazyKeyHandlersEnabled(final boolean enabled) {
+        LAZY_KEYHANDLERS.set(enabled);
+    }
+
+    public static boolean isLazyKeyHandlersEnabled() {
+        return LAZY_KEYHANDLERS.get();
+    }
+
+    /**
+     * @return startup timings of all StorageHandlers, slowest first
+     */
+    public static List<ConfigStartupTiming> getStartupTimings() {
+        final ArrayList<ConfigStartupTiming> ret = new ArrayList<ConfigStartupTiming>();
+        synchronized (StorageHandler.STORAGEMAP) {
+            for (final StorageHandler<?> storageHandler : StorageHandler.STORAGEMAP.keySet()) {
+                final ConfigStartupTiming timing = storageHandler.getStartupTiming();
+                if (timing != null) {
+                    ret.add(timing);
+                }
+            }
+        }
+        Collections.sort(ret, new Comparator<ConfigStartupTiming>() {
+
+            @Override
+            public int compare(final ConfigStartupTiming o1, final ConfigStartupTiming o2) {
+                final long a = o1.getTotalNanos();
+                final long b = o2.getTotalNanos();
+                return a == b ? 0 : a > b ? -1 : 1;
+            }
+        });
+        return ret;
+    }
+
     public static void saveAll() {
         synchronized (StorageHandler.STORAGEMAP) {
             for (final StorageHandler<?> storageHandler : StorageHandler.STORAGEMAP.keySet()) {
@@ -267,7 +331,8 @@ public class StorageHandler<T extends ConfigInterface> implements InvocationHand
     }
 
     private final Class<T>                         configInterface;
-    protected final HashMap<Method, KeyHandler<?>> methodMap                 = new HashMap<Method, KeyHandler<?>>();
+    /* replaced, not modified, once the StorageHandler has been created, see getMap */
+    protected volatile HashMap<Method, KeyHandler<?>> methodMap              = new HashMap<Method, KeyHandler<?>>();
     protected final Storage                        primitiveStorage;
     private final File                             path;
 
@@ -275,11 +340,25 @@ public class StorageHandler<T extends ConfigInterface> implements InvocationHand
 
     private String                                 relativCPPath;
 
-    // set externaly to start profiling
+    /**
+     * set externaly to start profiling. Access to the maps is synchronized on the map instance
+     *
+     * @deprecated use {@link ConfigProfiler}
+     */
+    @Deprecated
     public static HashMap<String, Long>            PROFILER_MAP              = null;
+    /**
+     * @deprecated use {@link ConfigProfiler}
+     */
+    @Deprecated
     public static HashMap<String, Long>            PROFILER_CALLNUM_MAP      = null;
 
     private volatile WriteStrategy                 writeStrategy             = null;
+    /* batch of the current thread, see beginBatch. openBatches avoids the ThreadLocal lookup while no batch is open */
+    private final ThreadLocal<ConfigBatch>         batches                   = new ThreadLocal<ConfigBatch>();
+    private final AtomicInteger                    openBatches               = new AtomicInteger(0);
+    private long                                   storageNanos              = 0;
+    private volatile ConfigStartupTiming           startupTiming             = null;
     private boolean                                objectCacheEnabled        = true;
 
     private final String                           storageID;
@@ -326,7 +405,9 @@ public class StorageHandler<T extends ConfigInterface> implements InvocationHand
         } catch (Throwable e) {
             e.printStackTrace();
         }
-        this.primitiveStorage = StorageHandler.createPrimitiveStorage(this.path, relativePath, configInterface);
+        final long storageStarted = System.nanoTime();
+        this.primitiveStorage = StorageHandler.createStorage(this.path, relativePath, configInterface);
+        this.storageNanos = System.nanoTime() - storageStarted;
         final CryptedStorage cryptedStorage = configInterface.getAnnotation(CryptedStorage.class);
         if (cryptedStorage != null) {
             this.validateKeys(cryptedStorage);
@@ -414,7 +495,9 @@ public class StorageHandler<T extends ConfigInterface> implements InvocationHand
             }
         }
         this.storageID = storageID;
-        this.primitiveStorage = StorageHandler.createPrimitiveStorage(Application.getResource(classPath), classPath, configInterface);
+        final long storageStarted = System.nanoTime();
+        this.primitiveStorage = StorageHandler.createStorage(Application.getResource(classPath), classPath, configInterface);
+        this.storageNanos = System.nanoTime() - storageStarted;
         final CryptedStorage cryptedStorage = configInterface.getAnnotation(CryptedStorage.class);
         if (cryptedStorage != null) {
             this.validateKeys(cryptedStorage);
@@ -666,16 +749,77 @@ public class StorageHandler<T extends ConfigInterface> implements InvocationHand
         final String keyHandlerKey = key.toLowerCase(Locale.ENGLISH);
         for (KeyHandler<?> keyHandler : methodMap.values()) {
             if (keyHandlerKey.equals(keyHandler.getKey())) {
+                this.initKeyHandler(keyHandler);
                 return (E) keyHandler;
             }
         }
         throw new NullPointerException("No KeyHandler: " + key + " in " + this.configInterface);
     }
 
+    /**
+     * @return all KeyHandlers by method. In lazy mode, all KeyHandlers are initialized first and those that failed are removed, like
+     *         in eager mode
+     */
     public HashMap<Method, KeyHandler<?>> getMap() {
+        ArrayList<KeyHandler<?>> failed = null;
+        for (final KeyHandler<?> keyHandler : this.methodMap.values()) {
+            try {
+                this.initKeyHandler(keyHandler);
+            } catch (final InterfaceParseException e) {
+                /* already reported, see initKeyHandler */
+                if (failed == null) {
+                    failed = new ArrayList<KeyHandler<?>>();
+                }
+                failed.add(keyHandler);
+            }
+        }
+        if (failed != null) {
+            synchronized (this) {
+                /* copy on write, invoke reads the map without lock */
+                final HashMap<Method, KeyHandler<?>> map = new HashMap<Method, KeyHandler<?>>(this.methodMap);
+                for (final KeyHandler<?> keyHandler : failed) {
+                    map.remove(keyHandler.getGetMethod());
+                    map.remove(keyHandler.getSetMethod());
+                }
+                this.methodMap = map;
+            }
+        }
         return this.methodMap;
     }
 
+    /**
+     * @return how long the creation of this StorageHandler took
+     */
+    public ConfigStartupTiming getStartupTiming() {
+        return this.startupTiming;
+    }
+
+    /**
+     * initializes keyHandler if it has been created lazy, see {@link #setLazyKeyHandlersEnabled(boolean)}
+     *
+     * @param keyHandler
+     * @throws InterfaceParseException
+     *             if the init failed
+     */
+    protected void initKeyHandler(final KeyHandler<?> keyHandler) throws InterfaceParseException {
+        if (!keyHandler.initialized) {
+            synchronized (keyHandler) {
+                if (!keyHandler.initialized) {
+                    try {
+                        keyHandler.init();
+                    } catch (final Throwable e) {
+                        keyHandler.initError = e;
+                        this.error(e);
+                    }
+                    keyHandler.initialized = true;
+                }
+            }
+        }
+        if (keyHandler.initError != null) {
+            throw new InterfaceParseException(keyHandler.initError);
+        }
+    }
+
     /**
      * @return
      */
@@ -780,25 +924,261 @@ public class StorageHandler<T extends ConfigInterface> implements InvocationHand
         return this.eventSender != null && this.eventSender.hasListener();
     }
 
+    @SuppressWarnings("deprecation")
+    private void profile(final Method m, final KeyHandler<?> handler, final boolean read, final long t) {
+        if (t == 0) {
+            return;
+        }
+        if (handler != null && ConfigProfiler.isEnabled()) {
+            if (read) {
+                ConfigProfiler.recordRead(handler, t);
+            } else {
+                ConfigProfiler.recordWrite(handler, t);
+            }
+        }
+        final HashMap<String, Long> profilerMap = StorageHandler.PROFILER_MAP;
+        if (profilerMap != null && m != null) {
+            final long dur = System.nanoTime() - t;
+            final String id = m.toString();
+            synchronized (profilerMap) {
+                final Long g = profilerMap.get(id);
+                profilerMap.put(id, g == null ? dur : g + dur);
+            }
+        }
+        final HashMap<String, Long> callNumMap = StorageHandler.PROFILER_CALLNUM_MAP;
+        if (callNumMap != null && m != null) {
+            final String id = m.toString();
+            synchronized (callNumMap) {
+                final Long g = callNumMap.get(id);
+                callNumMap.put(id, g == null ? 1 : g + 1);
+            }
+        }
+    }
+
+    private Object readValue(final KeyHandler<?> handler) {
+        final Object ret;
+        final ConfigBatch batch = this.getBatch();
+        if (batch != null && batch.contains(handler)) {
+            ret = batch.get(handler);
+        } else {
+            ret = handler.getValue();
+        }
+        if (ret instanceof Number && ret.getClass() != handler.getNumberClass()) {
+            return ReflectionUtils.castNumber((Number) ret, handler.getRawClass());
+        } else {
+            return ret;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeValue(final KeyHandler<?> handler, final Object value) {
+        final ConfigBatch batch = this.getBatch();
+        if (batch != null) {
+            batch.set((KeyHandler<Object>) handler, value);
+            return;
+        }
+        ((KeyHandler<Object>) handler).setValue(value);
+        if (this.writeStrategy != null) {
+            this.writeStrategy.write(this, handler);
+        }
+    }
+
+    /**
+     * starts a batch for the current thread. Until the batch is committed or discarded, all setters of the config interface that are
+     * called by this thread only collect their values in the batch, and getters of this thread return the collected values.
+     * {@link ConfigBatch#commit()} validates all values, applies them under one storage lock, requests one save and fires one
+     * {@link ConfigEvent.Types#VALUES_UPDATED} event.
+     *
+     * <pre>
+     * final ConfigBatch batch = storageHandler.beginBatch();
+     * try {
+     *     config.setA(a);
+     *     config.setB(b);
+     * } catch (final RuntimeException e) {
+     *     batch.discard();
+     *     throw e;
+     * }
+     * batch.commit();
+     * </pre>
+     *
+     * @return
+     */
+    public ConfigBatch beginBatch() {
+        if (this.getBatch() != null) {
+            throw new IllegalStateException("There is already an open batch for " + this.configInterface + " in this thread");
+        }
+        final ConfigBatch ret = new ConfigBatch(this);
+        this.batches.set(ret);
+        this.openBatches.incrementAndGet();
+        return ret;
+    }
+
+    /**
+     * runs run in a batch, see {@link #beginBatch()}. The batch is discarded if run throws an exception
+     *
+     * @param run
+     * @return the values that changed
+     * @throws ValidationException
+     */
+    public ConfigChangeSet runBatch(final Runnable run) throws ValidationException {
+        final ConfigBatch batch = this.beginBatch();
+        boolean ok = false;
+        try {
+            run.run();
+            ok = true;
+        } finally {
+            if (!ok) {
+                batch.discard();
+            }
+        }
+        return batch.commit();
+    }
+
+    /**
+     * @return the open batch of the current thread, or null
+     */
+    public ConfigBatch getBatch() {
+        if (this.openBatches.get() == 0) {
+            return null;
+        }
+        final ConfigBatch ret = this.batches.get();
+        if (ret != null && ret.isClosed()) {
+            /* closed by another thread */
+            this.batches.remove();
+            return null;
+        }
+        return ret;
+    }
+
+    void unbindBatch(final ConfigBatch batch) {
+        this.openBatches.decrementAndGet();
+        if (this.batches.get() == batch) {
+            this.batches.remove();
+        }
+    }
+
     @SuppressWarnings("unchecked")
+    void applyBatch(final ConfigChangeSet changeSet) {
+        this.getPrimitiveStorage().runLocked(new Runnable() {
+
+            @Override
+            public void run() {
+                for (final Entry<KeyHandler<?>, Object> next : changeSet.getValues().entrySet()) {
+                    ((KeyHandler<Object>) next.getKey()).putBatchValue(next.getValue());
+                }
+            }
+        });
+        this.requestSave();
+        KeyHandler<?> last = null;
+        for (final Entry<KeyHandler<?>, Object> next : changeSet.getValues().entrySet()) {
+            last = next.getKey();
+            if (last.hasEventListener()) {
+                last.getEventSender().fireEvent(new ConfigEvent(ConfigEvent.Types.VALUE_UPDATED, last, next.getValue()));
+            }
+        }
+        final WriteStrategy writeStrategy = this.writeStrategy;
+        if (writeStrategy != null) {
+            /* one write per batch, for the last changed key */
+            writeStrategy.write(this, last);
+        }
+        if (this.hasEventListener()) {
+            this.getEventSender().fireEvent(new ConfigEvent(ConfigEvent.Types.VALUES_UPDATED, null, changeSet));
+        }
+    }
+
+    /**
+     * getter of generated config implementations, see {@link ConfigInterfaceGenerator}. Same as {@link #invoke(Object, Method, Object[])}
+     * for the getter of handler
+     *
+     * @param handler
+     * @return
+     */
+    public Object invokeGetter(final KeyHandler<?> handler) {
+        final long t = this.isProfilerEnabled() ? System.nanoTime() : 0;
+        try {
+            return this.readValue(handler);
+        } finally {
+            this.profile(handler.getGetMethod(), handler, true, t);
+        }
+    }
+
+    /**
+     * the typed getters may bypass readValue if no profiler and no batch needs to see the call
+     */
+    private boolean isDirectReadAllowed() {
+        return this.openBatches.get() == 0 && !this.isProfilerEnabled();
+    }
+
+    @SuppressWarnings("deprecation")
+    private boolean isProfilerEnabled() {
+        return ConfigProfiler.isEnabled() || StorageHandler.PROFILER_MAP != null || StorageHandler.PROFILER_CALLNUM_MAP != null;
+    }
+
+    public boolean invokeBooleanGetter(final KeyHandler<?> handler) {
+        if (handler instanceof BooleanKeyHandler && this.isDirectReadAllowed()) {
+            return ((BooleanKeyHandler) handler).booleanValueStrict();
+        }
+        return ((Boolean) this.invokeGetter(handler)).booleanValue();
+    }
+
+    public byte invokeByteGetter(final KeyHandler<?> handler) {
+        return ((Number) this.invokeGetter(handler)).byteValue();
+    }
+
+    public int invokeIntGetter(final KeyHandler<?> handler) {
+        if (handler instanceof IntegerKeyHandler && this.isDirectReadAllowed()) {
+            return ((IntegerKeyHandler) handler).intValueStrict();
+        }
+        return ((Number) this.invokeGetter(handler)).intValue();
+    }
+
+    public long invokeLongGetter(final KeyHandler<?> handler) {
+        if (handler instanceof LongKeyHandler && this.isDirectReadAllowed()) {
+            return ((LongKeyHandler) handler).longValueStrict();
+        }
+        return ((Number) this.invokeGetter(handler)).longValue();
+    }
+
+    public float invokeFloatGetter(final KeyHandler<?> handler) {
+        return ((Number) this.invokeGetter(handler)).floatValue();
+    }
+
+    public double invokeDoubleGetter(final KeyHandler<?> handler) {
+        if (handler instanceof DoubleKeyHandler && this.isDirectReadAllowed()) {
+            return ((DoubleKeyHandler) handler).doubleValueStrict();
+        }
+        return ((Number) this.invokeGetter(handler)).doubleValue();
+    }
+
+    /**
+     * setter of generated config implementations, see {@link ConfigInterfaceGenerator}
+     *
+     * @param handler
+     * @param value
+     */
+    public void invokeSetter(final KeyHandler<?> handler, final Object value) {
+        final long t = this.isProfilerEnabled() ? System.nanoTime() : 0;
+        try {
+            this.writeValue(handler, value);
+        } finally {
+            this.profile(handler.getSetMethod(), handler, false, t);
+        }
+    }
+
     public Object invoke(final Object instance, final Method m, final Object[] parameter) throws Throwable {
         if (m != null) {
-            final long t = StorageHandler.PROFILER_MAP == null ? 0 : System.nanoTime();
+            final long t = this.isProfilerEnabled() ? System.nanoTime() : 0;
+            final KeyHandler<?> handler = this.methodMap.get(m);
+            if (handler != null && !handler.initialized) {
+                this.initKeyHandler(handler);
+            }
+            final boolean read = handler == null || handler.isGetter(m);
             try {
-                final KeyHandler<?> handler = this.methodMap.get(m);
                 if (handler != null) {
-                    if (handler.isGetter(m)) {
-                        final Object ret = handler.getValue();
-                        if (ret instanceof Number) {
-                            return ReflectionUtils.castNumber((Number) ret, handler.getRawClass());
-                        } else {
-                            return ret;
-                        }
+                    if (read) {
+                        return this.readValue(handler);
                     } else {
-                        ((KeyHandler<Object>) handler).setValue(parameter[0]);
-                        if (this.writeStrategy != null) {
-                            this.writeStrategy.write(this, handler);
-                        }
+                        this.writeValue(handler, parameter[0]);
                         return null;
                     }
                 } else if (m.getName().equals("toString")) {
@@ -819,21 +1199,7 @@ public class StorageHandler<T extends ConfigInterface> implements InvocationHand
                     throw new WTFException(m + " ??? no keyhandler. This is not possible!");
                 }
             } finally {
-                if (StorageHandler.PROFILER_MAP != null && m != null) {
-                    final long dur = System.nanoTime() - t;
-                    final String id = m.toString();
-                    Long g = StorageHandler.PROFILER_MAP.get(id);
-                    if (g == null) {
-                        g = 0l;
-                    }
-                    StorageHandler.PROFILER_MAP.put(id, g + dur);
-                }
-                if (StorageHandler.PROFILER_CALLNUM_MAP != null && m != null) {
-                    final String id = m.toString();
-                    final Long g = StorageHandler.PROFILER_CALLNUM_MAP.get(id);
-                    StorageHandler.PROFILER_CALLNUM_MAP.put(id, g == null ? 1 : g + 1);
-                }
-
+                this.profile(m, handler, read, t);
             }
         } else {
             // yes.... Method m may be null. this happens if we call a
@@ -865,183 +1231,47 @@ public class StorageHandler<T extends ConfigInterface> implements InvocationHand
      *
      */
     protected void parseInterface() throws Throwable {
-        final HashMap<String, Method> keyGetterMap = new HashMap<String, Method>();
-        final HashMap<String, Method> keySetterMap = new HashMap<String, Method>();
-        String key;
-        final HashMap<String, KeyHandler<?>> parseMap = new HashMap<String, KeyHandler<?>>();
-        Class<?> clazz = this.configInterface;
-        while (clazz != null && clazz != ConfigInterface.class) {
-            for (final Method m : clazz.getDeclaredMethods()) {
-                final String methodName = m.getName().toLowerCase(Locale.ENGLISH);
-                if (methodName.startsWith("get")) {
-                    key = methodName.substring(3);
-                    // we do not allow to setters/getters with the same name but
-                    // different cases. this only confuses the user when editing
-                    // the
-                    // later config file
-                    if (keyGetterMap.containsKey(key)) {
-                        if (m.getName().equals(keyGetterMap.get(key).getName()) && getParameterCount(m) == getParameterCount(keyGetterMap.get(key))) {
-                            // overridden method. that's ok
-                            LoggerFactory.getDefaultLogger().info("Overridden Config Key found " + keyGetterMap.get(key) + "<-->" + m);
-                            continue;
-
-                        }
-                        this.error(new InterfaceParseException("Key " + key + " Dupe found! " + keyGetterMap.get(key) + "<-->" + m));
-                        continue;
-                    }
-                    keyGetterMap.put(key, m);
-                    if (getParameterCount(m) > 0) {
-                        this.error(new InterfaceParseException("Getter " + m + " has parameters."));
-                        keyGetterMap.remove(key);
-                        continue;
-                    }
-                    try {
-                        final AllowStorage allow = m.getAnnotation(AllowStorage.class);
-                        boolean found = false;
-                        if (allow != null) {
-                            for (final Class<?> c : allow.value()) {
-                                if (m.getReturnType() == c) {
-                                    found = true;
-                                    break;
-                                }
-                            }
-                        }
-                        if (!found) {
-                            JSonStorage.canStore(m.getGenericReturnType(), false);
-                        }
-                    } catch (final InvalidTypeException e) {
-                        final AllowStorage allow = m.getAnnotation(AllowStorage.class);
-                        boolean found = false;
-                        if (allow != null) {
-                            for (final Class<?> c : allow.value()) {
-                                if (e.getType() == c) {
-                                    found = true;
-                                    break;
-                                }
-                            }
-                        }
-                        if (!found) {
-                            this.error(new InterfaceParseException(e));
-                            keyGetterMap.remove(key);
-                            continue;
-                        }
-                    }
-                    KeyHandler<?> kh = parseMap.get(key);
-                    if (kh == null) {
-                        kh = this.createKeyHandler(key, m.getGenericReturnType());
-                        parseMap.put(key, kh);
-                    }
-                    kh.setGetMethod(m);
-                    this.methodMap.put(m, kh);
-                } else if (methodName.startsWith("is")) {
-                    key = methodName.substring(2);
-                    // we do not allow to setters/getters with the same name but
-                    // different cases. this only confuses the user when editing
-                    // the
-                    // later config file
-                    if (keyGetterMap.containsKey(key)) {
-                        if (m.getName().equals(keyGetterMap.get(key).getName()) && getParameterCount(m) == getParameterCount(keyGetterMap.get(key))) {
-                            // overridden method. that's ok
-                            LoggerFactory.getDefaultLogger().info("Overridden Config Key found " + keyGetterMap.get(key) + "<-->" + m);
-                            continue;
-
-                        }
-                        this.error(new InterfaceParseException("Key " + key + " Dupe found! " + keyGetterMap.get(key) + "<-->" + m));
-                        continue;
-                    }
-                    keyGetterMap.put(key, m);
-                    if (getParameterCount(m) > 0) {
-                        this.error(new InterfaceParseException("Getter " + m + " has parameters."));
-                        keyGetterMap.remove(key);
-                        continue;
-                    }
-                    try {
-                        JSonStorage.canStore(m.getGenericReturnType(), false);
-                    } catch (final InvalidTypeException e) {
-                        this.error(new InterfaceParseException(e));
-                        keyGetterMap.remove(key);
-                        continue;
-                    }
-                    KeyHandler<?> kh = parseMap.get(key);
-                    if (kh == null) {
-                        kh = this.createKeyHandler(key, m.getGenericReturnType());
-                        parseMap.put(key, kh);
-                    }
-                    kh.setGetMethod(m);
-                    this.methodMap.put(m, kh);
-                } else if (methodName.startsWith("set")) {
-                    key = methodName.substring(3);
-                    if (keySetterMap.containsKey(key)) {
-                        if (m.getName().equals(keyGetterMap.get(key).getName()) && getParameterCount(m) == getParameterCount(keyGetterMap.get(key))) {
-                            // overridden method. that's ok
-                            LoggerFactory.getDefaultLogger().info("Overridden Config Key found " + keyGetterMap.get(key) + "<-->" + m);
-                            continue;
-
-                        }
-                        this.error(new InterfaceParseException("Key " + key + " Dupe found! " + keySetterMap.get(key) + "<-->" + m));
-                        continue;
-                    }
-                    keySetterMap.put(key, m);
-                    if (getParameterCount(m) != 1) {
-                        this.error(new InterfaceParseException("Setter " + m + " has !=1 parameters."));
-                        keySetterMap.remove(key);
-                        continue;
-
-                    }
-                    if (m.getReturnType() != void.class) {
-                        this.error(new InterfaceParseException("Setter " + m + " has a returntype != void"));
-                        keySetterMap.remove(key);
-                        continue;
-                    }
-                    try {
-                        JSonStorage.canStore(m.getGenericParameterTypes()[0], false);
-                    } catch (final InvalidTypeException e) {
-                        final AllowStorage allow = m.getAnnotation(AllowStorage.class);
-                        boolean found = false;
-                        if (allow != null) {
-                            for (final Class<?> c : allow.value()) {
-                                if (e.getType() == c) {
-                                    found = true;
-                                    break;
-                                }
-                            }
-                        }
-                        if (!found) {
-                            this.error(new InterfaceParseException(e));
-                            keySetterMap.remove(key);
-                            continue;
-                        }
-                    }
-                    KeyHandler<?> kh = parseMap.get(key);
-                    if (kh == null) {
-                        kh = this.createKeyHandler(key, m.getGenericParameterTypes()[0]);
-                        parseMap.put(key, kh);
-                    }
-                    kh.setSetMethod(m);
-                    this.methodMap.put(m, kh);
-                } else {
-                    this.error(new InterfaceParseException("Only getter and setter allowed:" + m));
-                    continue;
-                }
-            }
-            // run down the calss hirarchy to find all methods. getMethods does
-            // not work, because it only finds public methods
-            final Class<?>[] interfaces = clazz.getInterfaces();
-            clazz = interfaces[0];
+        final long started = System.nanoTime();
+        ConfigInterfaceMetadata metadata = ConfigInterfaceMetadata.getCached(this.configInterface);
+        final boolean cached = metadata != null;
+        if (metadata == null) {
+            metadata = ConfigInterfaceMetadata.get(this.configInterface);
         }
-        final ArrayList<Method> methodsToRemove = new ArrayList<Method>();
-        for (final KeyHandler<?> kh : this.methodMap.values()) {
-            try {
-                kh.init();
-            } catch (final Throwable e) {
-                this.error(e);
-                methodsToRemove.add(kh.getGetMethod());
-                methodsToRemove.add(kh.getSetMethod());
+        final long parsed = System.nanoTime();
+        for (final Throwable e : metadata.getErrors()) {
+            this.error(e);
+        }
+        final ArrayList<KeyHandler<?>> keyHandlers = new ArrayList<KeyHandler<?>>();
+        for (final ConfigInterfaceMetadata.KeyDefinition kd : metadata.getKeys()) {
+            final KeyHandler<?> kh = this.createKeyHandler(kd.getKey(), kd.getType());
+            if (kd.getGetter() != null) {
+                kh.setGetMethod(kd.getGetter());
+                this.methodMap.put(kd.getGetter(), kh);
+            }
+            if (kd.getSetter() != null) {
+                kh.setSetMethod(kd.getSetter());
+                this.methodMap.put(kd.getSetter(), kh);
             }
+            keyHandlers.add(kh);
         }
-        for (final Method m : methodsToRemove) {
-            this.methodMap.remove(m);
+        final boolean lazy = StorageHandler.isLazyKeyHandlersEnabled();
+        if (!lazy) {
+            final ArrayList<Method> methodsToRemove = new ArrayList<Method>();
+            for (final KeyHandler<?> kh : keyHandlers) {
+                try {
+                    kh.init();
+                    kh.initialized = true;
+                } catch (final Throwable e) {
+                    this.error(e);
+                    methodsToRemove.add(kh.getGetMethod());
+                    methodsToRemove.add(kh.getSetMethod());
+                }
+            }
+            for (final Method m : methodsToRemove) {
+                this.methodMap.remove(m);
+            }
         }
+        this.startupTiming = new ConfigStartupTiming(this.configInterface.getName(), this.storageID, this.storageNanos, parsed - started, cached, System.nanoTime() - parsed, keyHandlers.size(), lazy);
     }
 
     public void setObjectCacheEnabled(final boolean objectCacheEnabled) {
@@ -0,0 +1,457 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.config.handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.appwork.utils.logging2.extmanager.LoggerFactory;
+
+/**
+ * Write-behind queue for storage files. Writes are coalesced per ID (usually the absolute path of the file), so only the latest
+ * runnable of an ID is executed. Every ID is flushed at the latest maxStaleness ms after its first queued write. Different IDs are
+ * flushed in parallel on a small pool, writes of the same ID are never executed concurrently and keep their order.
+ *
+ * @author thomas
+ *
+ */
+public class WriteBehindScheduler {
+    private static class Lane {
+        private final String   id;
+        private final Object   writeLock = new Object();
+        private Runnable       pending;
+        /* System.nanoTime of the first write of the pending batch */
+        private long           firstQueued;
+        private long           maxStaleness;
+        private FlushTask      task;
+        private int            users;
+
+        private Lane(final String id) {
+            this.id = id;
+        }
+
+        private long getDue() {
+            if (this.maxStaleness <= 0) {
+                return Long.MAX_VALUE;
+            }
+            return this.firstQueued + TimeUnit.MILLISECONDS.toNanos(this.maxStaleness);
+        }
+    }
+
+    private class FlushTask implements Runnable {
+        private final Lane lane;
+        private long       due;
+
+        private FlushTask(final Lane lane) {
+            this.lane = lane;
+        }
+
+        @Override
+        public void run() {
+            synchronized (WriteBehindScheduler.this.lanes) {
+                if (this.lane.task != this) {
+                    /* replaced by a task with an earlier due time */
+                    return;
+                }
+                this.lane.task = null;
+                if (this.lane.pending == null) {
+                    WriteBehindScheduler.this.release(this.lane);
+                    return;
+                }
+                final long due = this.lane.getDue();
+                if (due == Long.MAX_VALUE) {
+                    return;
+                }
+                final long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    /* the batch that scheduled this task has been flushed already, a new one started later */
+                    WriteBehindScheduler.this.schedule(this.lane, wait);
+                    return;
+                }
+            }
+            WriteBehindScheduler.this.flush(this.lane);
+        }
+    }
+
+    private static class FlushThread extends Thread {
+        private FlushThread(final Runnable r, final String name) {
+            super(r, name);
+        }
+    }
+
+    private final HashMap<String, Lane>        lanes               = new HashMap<String, Lane>();
+    private final ScheduledThreadPoolExecutor  executor;
+    private volatile long                      defaultMaxStaleness = 30000;
+
+    private final AtomicLong                   enqueued            = new AtomicLong(0);
+    private final AtomicLong                   coalesced           = new AtomicLong(0);
+    private final AtomicLong                   direct              = new AtomicLong(0);
+    private final AtomicLong                   flushed             = new AtomicLong(0);
+    private final AtomicLong                   failed              = new AtomicLong(0);
+    private final AtomicLong                   flushNanos          = new AtomicLong(0);
+    private final AtomicLong                   flushNanosMax       = new AtomicLong(0);
+    private final AtomicLong                   stalenessNanosMax   = new AtomicLong(0);
+
+    public WriteBehindScheduler() {
+        this(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+    }
+
+    public WriteBehindScheduler(final int threads) {
+        final AtomicInteger num = new AtomicInteger(0);
+        this.executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new FlushThread(r, "WriteBehindScheduler:" + num.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.setKeepAliveTime(10000, TimeUnit.MILLISECONDS);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * queues run as the latest write for ID. A queued write of the same ID is replaced
+     *
+     * @param run
+     * @param id
+     * @param maxStaleness
+     *            ms until the write has to be executed at the latest, counted from the first write of the batch. <=0 uses
+     *            {@link #getDefaultMaxStaleness()}
+     */
+    public void enqueue(final Runnable run, final String id, final long maxStaleness) {
+        synchronized (this.lanes) {
+            Lane lane = this.lanes.get(id);
+            if (lane == null) {
+                lane = new Lane(id);
+                this.lanes.put(id, lane);
+            }
+            this.enqueued.incrementAndGet();
+            if (lane.pending != null) {
+                this.coalesced.incrementAndGet();
+                lane.pending = run;
+                return;
+            }
+            lane.pending = run;
+            lane.firstQueued = System.nanoTime();
+            lane.maxStaleness = maxStaleness > 0 ? maxStaleness : this.defaultMaxStaleness;
+            final long due = lane.getDue();
+            if (due != Long.MAX_VALUE && this.getTaskDue(lane) > due) {
+                this.schedule(lane, due - lane.firstQueued);
+            }
+        }
+    }
+
+    /**
+     * executes run in the calling thread. A queued write of the same ID is dropped, a running one is waited for
+     *
+     * @param run
+     * @param id
+     */
+    public void write(final Runnable run, final String id) {
+        final Lane lane;
+        synchronized (this.lanes) {
+            lane = this.lanes.get(id);
+            if (lane != null) {
+                if (lane.pending != null) {
+                    lane.pending = null;
+                    this.coalesced.incrementAndGet();
+                }
+                lane.users++;
+            }
+        }
+        this.direct.incrementAndGet();
+        ConfigProfiler.recordSave(id);
+        if (lane == null) {
+            run.run();
+            return;
+        }
+        try {
+            synchronized (lane.writeLock) {
+                run.run();
+            }
+        } finally {
+            synchronized (this.lanes) {
+                lane.users--;
+                this.release(lane);
+            }
+        }
+    }
+
+    /**
+     * executes all queued writes, different IDs in parallel, and waits until they are done
+     */
+    public void flush() {
+        this.flush(0);
+    }
+
+    /**
+     * @param timeout
+     *            ms, <=0 waits until all writes are done
+     * @return false if the timeout elapsed before all queued writes were done. They continue in the background
+     */
+    public boolean flush(final long timeout) {
+        final long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+        while (true) {
+            final ArrayList<Lane> list = new ArrayList<Lane>();
+            synchronized (this.lanes) {
+                for (final Lane lane : this.lanes.values()) {
+                    if (lane.pending != null) {
+                        list.add(lane);
+                    }
+                }
+            }
+            if (list.size() == 0) {
+                return true;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            if (list.size() == 1 && deadline == Long.MAX_VALUE || Thread.currentThread() instanceof FlushThread) {
+                /* a flush thread must not wait for the pool */
+                for (final Lane lane : list) {
+                    this.flush(lane);
+                }
+                continue;
+            }
+            final CountDownLatch latch = new CountDownLatch(list.size());
+            for (final Lane lane : list) {
+                this.executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            WriteBehindScheduler.this.flush(lane);
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                });
+            }
+            try {
+                if (deadline == Long.MAX_VALUE) {
+                    latch.await();
+                } else if (!latch.await(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                    return false;
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private void flush(final Lane lane) {
+        synchronized (this.lanes) {
+            lane.users++;
+        }
+        try {
+            synchronized (lane.writeLock) {
+                final Runnable run;
+                final long firstQueued;
+                synchronized (this.lanes) {
+                    run = lane.pending;
+                    firstQueued = lane.firstQueued;
+                    lane.pending = null;
+                }
+                if (run == null) {
+                    return;
+                }
+                ConfigProfiler.recordSave(lane.id);
+                final long started = System.nanoTime();
+                try {
+                    run.run();
+                } catch (final Throwable e) {
+                    this.failed.incrementAndGet();
+                    LoggerFactory.getDefaultLogger().log(e);
+                } finally {
+                    final long ended = System.nanoTime();
+                    this.flushed.incrementAndGet();
+                    this.flushNanos.addAndGet(ended - started);
+                    this.max(this.flushNanosMax, ended - started);
+                    this.max(this.stalenessNanosMax, ended - firstQueued);
+                }
+            }
+        } finally {
+            synchronized (this.lanes) {
+                lane.users--;
+                this.release(lane);
+            }
+        }
+    }
+
+    private void max(final AtomicLong value, final long update) {
+        while (true) {
+            final long current = value.get();
+            if (current >= update || value.compareAndSet(current, update)) {
+                return;
+            }
+        }
+    }
+
+    private long getTaskDue(final Lane lane) {
+        return lane.task == null ? Long.MAX_VALUE : lane.task.due;
+    }
+
+    /**
+     * call with lock on lanes
+     */
+    private void schedule(final Lane lane, final long nanos) {
+        final FlushTask task = new FlushTask(lane);
+        task.due = System.nanoTime() + nanos;
+        lane.task = task;
+        this.executor.schedule(task, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * call with lock on lanes. Idle lanes are removed, so the map only contains files with queued or running writes
+     */
+    private void release(final Lane lane) {
+        if (lane.pending == null && lane.task == null && lane.users == 0) {
+            this.lanes.remove(lane.id);
+        }
+    }
+
+    public long getDefaultMaxStaleness() {
+        return this.defaultMaxStaleness;
+    }
+
+    /**
+     * @param maxStaleness
+     *            ms. <=0 keeps queued writes until {@link #flush()}
+     */
+    public void setDefaultMaxStaleness(final long maxStaleness) {
+        this.defaultMaxStaleness = maxStaleness;
+    }
+
+    /**
+     * @return number of IDs with a queued write
+     */
+    public int getQueueDepth() {
+        synchronized (this.lanes) {
+            int ret = 0;
+            for (final Lane lane : this.lanes.values()) {
+                if (lane.pending != null) {
+                    ret++;
+                }
+            }
+            return ret;
+        }
+    }
+
+    public long getEnqueuedCount() {
+        return this.enqueued.get();
+    }
+
+    /**
+     * @return number of queued writes that were replaced by a later write of the same ID and never executed
+     */
+    public long getCoalescedCount() {
+        return this.coalesced.get();
+    }
+
+    /**
+     * @return coalesced/enqueued
+     */
+    public double getCoalesceRatio() {
+        final long enqueued = this.enqueued.get();
+        if (enqueued == 0) {
+            return 0;
+        }
+        return (double) this.coalesced.get() / enqueued;
+    }
+
+    /**
+     * @return number of writes executed directly, see {@link #write(Runnable, String)}
+     */
+    public long getDirectWriteCount() {
+        return this.direct.get();
+    }
+
+    public long getFlushCount() {
+        return this.flushed.get();
+    }
+
+    public long getFailedFlushCount() {
+        return this.failed.get();
+    }
+
+    /**
+     * @return average duration of a queued write in ms
+     */
+    public double getAverageFlushLatency() {
+        final long flushed = this.flushed.get();
+        if (flushed == 0) {
+            return 0;
+        }
+        return this.flushNanos.get() / 1000000d / flushed;
+    }
+
+    /**
+     * @return longest duration of a queued write in ms
+     */
+    public long getMaxFlushLatency() {
+        return TimeUnit.NANOSECONDS.toMillis(this.flushNanosMax.get());
+    }
+
+    /**
+     * @return longest time in ms between the first queued write of an ID and the end of its flush
+     */
+    public long getMaxStaleness() {
+        return TimeUnit.NANOSECONDS.toMillis(this.stalenessNanosMax.get());
+    }
+
+    public void resetCounters() {
+        this.enqueued.set(0);
+        this.coalesced.set(0);
+        this.direct.set(0);
+        this.flushed.set(0);
+        this.failed.set(0);
+        this.flushNanos.set(0);
+        this.flushNanosMax.set(0);
+        this.stalenessNanosMax.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBehindScheduler: queued=" + this.getQueueDepth() + "|enqueued=" + this.getEnqueuedCount() + "|coalesced=" + this.getCoalescedCount() + "|flushed=" + this.getFlushCount() + "|failed=" + this.getFailedFlushCount() + "|avgLatency=" + this.getAverageFlushLatency() + "ms|maxStaleness=" + this.getMaxStaleness() + "ms";
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.config.test;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.appwork.storage.config.ConfigInterface;
+import org.appwork.storage.config.annotations.DefaultBooleanValue;
+import org.appwork.storage.config.annotations.DefaultByteValue;
+import org.appwork.storage.config.annotations.DefaultDoubleValue;
+import org.appwork.storage.config.annotations.DefaultFloatValue;
+import org.appwork.storage.config.annotations.DefaultIntArrayValue;
+import org.appwork.storage.config.annotations.DefaultIntValue;
+import org.appwork.storage.config.annotations.DefaultJsonObject;
+import org.appwork.storage.config.annotations.DefaultLongValue;
+import org.appwork.storage.config.annotations.DefaultStringValue;
+import org.appwork.storage.config.handler.ConfigInterfaceGenerator;
+import org.appwork.storage.config.handler.KeyHandler;
+import org.appwork.storage.config.handler.StorageHandler;
+import org.appwork.utils.Files;
+
+/**
+ * compares generated config implementations with the Proxy ones
+ *
+ * @author thomas
+ *
+ */
+public class GeneratedConfigTest {
+    public static interface GeneratedConfig extends ConfigInterface {
+        @DefaultBooleanValue(true)
+        public boolean isBooleanValue();
+
+        public void setBooleanValue(boolean b);
+
+        @DefaultByteValue(7)
+        public byte getByteValue();
+
+        public void setByteValue(byte b);
+
+        @DefaultIntValue(42)
+        public int getIntValue();
+
+        public void setIntValue(int i);
+
+        @DefaultLongValue(1l << 40)
+        public long getLongValue();
+
+        public void setLongValue(long l);
+
+        @DefaultFloatValue(1.5f)
+        public float getFloatValue();
+
+        public void setFloatValue(float f);
+
+        @DefaultDoubleValue(2.25d)
+        public double getDoubleValue();
+
+        public void setDoubleValue(double d);
+
+        @DefaultStringValue("default")
+        public String getStringValue();
+
+        public void setStringValue(String s);
+
+        @DefaultIntArrayValue({ 1, 2, 3 })
+        public int[] getIntArray();
+
+        public void setIntArray(int[] a);
+
+        @DefaultJsonObject("[\"a\",\"b\"]")
+        public ArrayList<String> getStringList();
+
+        public void setStringList(ArrayList<String> list);
+
+        @DefaultJsonObject("[1,2]")
+        public HashSet<Integer> getIntegerSet();
+
+        public void setIntegerSet(HashSet<Integer> set);
+    }
+
+    private static final String[] GETTERS = { "isBooleanValue", "getByteValue", "getIntValue", "getLongValue", "getFloatValue", "getDoubleValue", "getStringValue", "getIntArray", "getStringList", "getIntegerSet" };
+
+    public static void main(final String[] args) throws Exception {
+        final File dir = File.createTempFile("generatedconfigtest", "");
+        dir.delete();
+        dir.mkdirs();
+        try {
+            final StorageHandler<GeneratedConfig> proxyHandler = new StorageHandler<GeneratedConfig>(new File(dir, "proxy"), GeneratedConfig.class);
+            final StorageHandler<GeneratedConfig> generatedHandler = new StorageHandler<GeneratedConfig>(new File(dir, "generated"), GeneratedConfig.class);
+            final GeneratedConfig proxy = (GeneratedConfig) Proxy.newProxyInstance(GeneratedConfig.class.getClassLoader(), new Class<?>[] { GeneratedConfig.class }, proxyHandler);
+            final GeneratedConfig generated = ConfigInterfaceGenerator.create(generatedHandler);
+            if (generated == null || Proxy.isProxyClass(generated.getClass())) {
+                throw new Exception("not generated");
+            }
+            /* defaults */
+            GeneratedConfigTest.compare(proxy, generated);
+            GeneratedConfigTest.assertEquals(generated.getIntValue(), 42);
+            GeneratedConfigTest.assertEquals(generated.getLongValue(), 1l << 40);
+            GeneratedConfigTest.assertEquals(generated.getStringList(), new ArrayList<String>(Arrays.asList("a", "b")));
+            /* setters */
+            for (final GeneratedConfig cfg : new GeneratedConfig[] { proxy, generated }) {
+                cfg.setBooleanValue(false);
+                cfg.setByteValue((byte) -3);
+                cfg.setIntValue(Integer.MIN_VALUE);
+                cfg.setLongValue(Long.MAX_VALUE);
+                cfg.setFloatValue(-0.5f);
+                cfg.setDoubleValue(Math.PI);
+                cfg.setStringValue("ä€");
+                cfg.setIntArray(new int[] { 9 });
+                cfg.setStringList(new ArrayList<String>(Arrays.asList("x")));
+                cfg.setIntegerSet(new HashSet<Integer>(Arrays.asList(5, 6, 7)));
+            }
+            GeneratedConfigTest.compare(proxy, generated);
+            GeneratedConfigTest.assertEquals(generated.isBooleanValue(), false);
+            GeneratedConfigTest.assertEquals(generated.getIntValue(), Integer.MIN_VALUE);
+            GeneratedConfigTest.assertEquals(generated.getDoubleValue(), Math.PI);
+            GeneratedConfigTest.assertEquals(generated.getStringValue(), "ä€");
+            GeneratedConfigTest.assertEquals(generated.getIntegerSet(), new HashSet<Integer>(Arrays.asList(5, 6, 7)));
+            /* null in the storage: the proxy unboxes null and throws a NullPointerException, the generated getters must do the same */
+            for (final StorageHandler<GeneratedConfig> handler : new StorageHandler[] { proxyHandler, generatedHandler }) {
+                for (final KeyHandler<?> keyHandler : handler.getMap().values()) {
+                    if (keyHandler.getGetMethod().getReturnType().isPrimitive()) {
+                        handler.getPrimitiveStorage().put(keyHandler.getKey(), (String) null);
+                    }
+                }
+            }
+            GeneratedConfigTest.compare(proxy, generated);
+            /* twice, the second call reads the cached value */
+            GeneratedConfigTest.compare(proxy, generated);
+            System.out.println("GeneratedConfigTest OK");
+        } finally {
+            Files.deleteRecursiv(dir);
+        }
+    }
+
+    private static void compare(final GeneratedConfig proxy, final GeneratedConfig generated) throws Exception {
+        for (final String getter : GeneratedConfigTest.GETTERS) {
+            final Method m = GeneratedConfig.class.getMethod(getter);
+            final Object expected = GeneratedConfigTest.call(m, proxy);
+            final Object actual = GeneratedConfigTest.call(m, generated);
+            if (expected instanceof int[] && actual instanceof int[]) {
+                if (!Arrays.equals((int[]) expected, (int[]) actual)) {
+                    throw new Exception(getter + ": " + Arrays.toString((int[]) expected) + " != " + Arrays.toString((int[]) actual));
+                }
+            } else {
+                GeneratedConfigTest.assertEquals(actual, expected);
+            }
+        }
+    }
+
+    /**
+     * @return the result or the class of the thrown exception
+     */
+    private static Object call(final Method m, final Object instance) {
+        try {
+            return m.invoke(instance);
+        } catch (final java.lang.reflect.InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof java.lang.reflect.UndeclaredThrowableException || cause instanceof java.lang.reflect.InvocationTargetException) {
+                cause = cause.getCause();
+            }
+            return cause == null ? null : cause.getClass();
+        } catch (final IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void assertEquals(final Object actual, final Object expected) throws Exception {
+        if (actual == null ? expected != null : !actual.equals(expected)) {
+            throw new Exception(expected + " != " + actual);
+        }
+    }
+}
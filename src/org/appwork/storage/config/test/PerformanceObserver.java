@@ -33,14 +33,7 @@
  * ==================================================================================================================================================== */
 package org.appwork.storage.config.test;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map.Entry;
-
-import org.appwork.storage.config.handler.StorageHandler;
+import org.appwork.storage.config.handler.ConfigProfiler;
 
 /**
  * @author Thomas
@@ -48,8 +41,7 @@ import org.appwork.storage.config.handler.StorageHandler;
  */
 public class PerformanceObserver extends Thread {
 public PerformanceObserver(){
-    StorageHandler.PROFILER_MAP = new HashMap<String, Long>();
-    StorageHandler.PROFILER_CALLNUM_MAP=new HashMap<String, Long>();
+    ConfigProfiler.setEnabled(true);
    
 }
 
@@ -88,27 +80,7 @@ public PerformanceObserver(){
      */
     public void print() {
         if(profileMethods){
-            // /
-            java.util.List<Entry<String, Long>> entries = new ArrayList<Entry<String, Long>>();
-            for (Iterator<Entry<String, Long>> it = StorageHandler.PROFILER_MAP.entrySet().iterator(); it.hasNext();) {
-                entries.add(it.next());
-            }
-            Collections.sort(entries, new Comparator<Entry<String, Long>>() {
-
-                @Override
-                public int compare(Entry<String, Long> o1, Entry<String, Long> o2) {
-
-                    return o1.getValue().compareTo(o2.getValue());
-                }
-
-            });
-
-            for (Entry<String, Long> i : entries) {
-              Long invocations = StorageHandler.PROFILER_CALLNUM_MAP.get(i.getKey());
-              
-              
-                System.out.println((i.getValue() / 1000) / 1000f + "ms \t"+invocations+"#\t"+(i.getValue()/invocations)+"ns/i  " + i.getKey());
-            }
+            System.out.println(ConfigProfiler.snapshot());
             }
             try {
                 Thread.sleep(interval);
@@ -33,15 +33,21 @@
  * ==================================================================================================================================================== */
 package org.appwork.storage.jackson;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.lang.reflect.Type;
 
-import org.appwork.storage.JSONMapper;
+import org.appwork.storage.JSONBinaryMapper;
 import org.appwork.storage.JSonMapperException;
 import org.appwork.storage.JsonSerializer;
 import org.appwork.storage.TypeRef;
+import org.appwork.storage.simplejson.JSonBinaryGenerator;
+import org.appwork.storage.simplejson.JSonBinaryParser;
+import org.appwork.storage.simplejson.JSonPullParser;
+import org.appwork.storage.simplejson.ParserException;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -57,7 +63,7 @@ import com.fasterxml.jackson.databind.module.SimpleModule;
  * @author thomas
  *
  */
-public class JacksonMapper implements JSONMapper {
+public class JacksonMapper implements JSONBinaryMapper {
 
     private final ObjectMapper mapper;
 
@@ -174,7 +180,7 @@ public class JacksonMapper implements JSONMapper {
                 // this (T) is required because of java bug
                 // http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=6302954
                 // (compiles in eclipse, but not with javac)
-                return (T) mapper.readValue(inputStream, tr);
+                return (T) mapper.readValue(toJSonInput(inputStream), tr);
             } finally {
                 if (inputStream != null) {
                     inputStream.close();
@@ -200,7 +206,7 @@ public class JacksonMapper implements JSONMapper {
             // this (T) is required because of java bug
             // http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=6302954
             // (compiles in eclipse, but not with javac)
-            return (T) mapper.readValue(byteArray, tr);
+            return (T) mapper.readValue(toJSonInput(byteArray), tr);
         } catch (final JsonProcessingException e) {
             throw new JSonMapperException(e);
         } catch (final IOException e) {
@@ -228,10 +234,58 @@ public class JacksonMapper implements JSONMapper {
         }
     }
 
+    /**
+     * closes outputStream. jackson has no binary json support, so the json text is converted
+     */
+    @Override
+    public void writeObjectBinary(OutputStream outputStream, Object value) throws JSonMapperException {
+        try {
+            try {
+                final JSonBinaryGenerator gen = new JSonBinaryGenerator(outputStream);
+                gen.writeNode(new JSonPullParser(mapper.writeValueAsBytes(value)).readNode());
+                gen.flush();
+            } finally {
+                if (outputStream != null) {
+                    outputStream.close();
+                }
+            }
+        } catch (final ParserException e) {
+            throw new JSonMapperException(e);
+        } catch (final IOException e) {
+            throw new JSonMapperException(e);
+        }
+    }
+
+    /**
+     * binary json (see {@link JSonBinaryParser}) is converted to json text, json text is returned as it is
+     */
+    private static byte[] toJSonInput(final byte[] byteArray) throws IOException {
+        if (byteArray == null || !JSonBinaryParser.isBinary(byteArray, 0, byteArray.length)) {
+            return byteArray;
+        }
+        try {
+            return new JSonBinaryParser(byteArray).readNode().toString().getBytes("UTF-8");
+        } catch (final ParserException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    private static InputStream toJSonInput(final InputStream inputStream) throws IOException {
+        final PushbackInputStream pis = new PushbackInputStream(inputStream, JSonBinaryParser.MAGIC.length);
+        if (!JSonBinaryParser.isBinary(pis)) {
+            return pis;
+        }
+        try {
+            return new ByteArrayInputStream(new JSonBinaryParser(pis).readNode().toString().getBytes("UTF-8"));
+        } catch (final ParserException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
     @Override
     public <T> T byteArrayToObject(byte[] byteArray, Class<T> clazz) throws JSonMapperException {
         try {
-            return mapper.readValue(byteArray, clazz);
+            return mapper.readValue(toJSonInput(byteArray), clazz);
         } catch (final JsonProcessingException e) {
             throw new JSonMapperException(e);
         } catch (final IOException e) {
@@ -246,7 +300,7 @@ public class JacksonMapper implements JSONMapper {
     public <T> T inputStreamToObject(InputStream inputStream, Class<T> clazz) throws JSonMapperException {
         try {
             try {
-                return mapper.readValue(inputStream, clazz);
+                return mapper.readValue(toJSonInput(inputStream), clazz);
             } finally {
                 if (inputStream != null) {
                     inputStream.close();
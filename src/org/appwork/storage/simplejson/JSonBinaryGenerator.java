@@ -0,0 +1,248 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.simplejson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map.Entry;
+
+/**
+ * Writes the binary json encoding described in {@link JSonBinaryParser}. Has the same API as {@link JSonGenerator}, so JSonMapper can
+ * stream objects into either encoding. Object keys are written once and referenced by their key table index afterwards.
+ *
+ * @author thomas
+ *
+ */
+public class JSonBinaryGenerator extends JSonGenerator {
+
+    private final byte[]                   buf;
+    private int                            len    = 0;
+    private boolean                        header = false;
+    private final HashMap<String, Integer> keys   = new HashMap<String, Integer>();
+
+    public JSonBinaryGenerator() {
+        this(null);
+    }
+
+    public JSonBinaryGenerator(final OutputStream os) {
+        this(os, 8192);
+    }
+
+    public JSonBinaryGenerator(final OutputStream os, final int bufferSize) {
+        super(os, 16);
+        this.buf = new byte[Math.max(16, bufferSize)];
+    }
+
+    private void ensure(final int bytes) throws IOException {
+        if (this.len + bytes > this.buf.length) {
+            this.flushBuffer();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.flushBuffer();
+        this.getOutputStream().flush();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (this.len > 0) {
+            this.getOutputStream().write(this.buf, 0, this.len);
+            this.len = 0;
+        }
+    }
+
+    @Override
+    public void reset(final OutputStream os) {
+        super.reset(os);
+        this.len = 0;
+        this.header = false;
+        this.keys.clear();
+    }
+
+    private void tag(final int tag) throws IOException {
+        if (!this.header) {
+            this.header = true;
+            this.ensure(JSonBinaryParser.MAGIC.length + 1);
+            System.arraycopy(JSonBinaryParser.MAGIC, 0, this.buf, this.len, JSonBinaryParser.MAGIC.length);
+            this.len += JSonBinaryParser.MAGIC.length;
+            this.buf[this.len++] = JSonBinaryParser.VERSION;
+        }
+        this.ensure(1);
+        this.buf[this.len++] = (byte) tag;
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        this.ensure(10);
+        while ((value & ~0x7fL) != 0) {
+            this.buf[this.len++] = (byte) (value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        this.buf[this.len++] = (byte) value;
+    }
+
+    private void writeUTF8(final String s) throws IOException {
+        final byte[] bytes = s.getBytes(JSonBinaryParser.UTF8);
+        this.writeVarLong(bytes.length);
+        if (bytes.length > this.buf.length) {
+            this.flushBuffer();
+            this.getOutputStream().write(bytes);
+        } else {
+            this.ensure(bytes.length);
+            System.arraycopy(bytes, 0, this.buf, this.len, bytes.length);
+            this.len += bytes.length;
+        }
+    }
+
+    @Override
+    public void writeBoolean(final boolean b) throws IOException {
+        this.tag(b ? JSonBinaryParser.TAG_TRUE : JSonBinaryParser.TAG_FALSE);
+    }
+
+    @Override
+    public void writeDouble(final double d) throws IOException {
+        this.tag(JSonBinaryParser.TAG_DOUBLE);
+        this.ensure(8);
+        final long bits = Double.doubleToRawLongBits(d);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            this.buf[this.len++] = (byte) (bits >>> shift);
+        }
+    }
+
+    @Override
+    public void writeEndArray() throws IOException {
+        this.tag(JSonBinaryParser.TAG_END);
+    }
+
+    @Override
+    public void writeEndObject() throws IOException {
+        this.writeVarLong(JSonBinaryParser.KEY_END);
+    }
+
+    @Override
+    public void writeKey(final String key) throws IOException {
+        final Integer index = this.keys.get(key);
+        if (index != null) {
+            this.writeVarLong(index.intValue() + 2);
+        } else {
+            this.keys.put(key, this.keys.size());
+            this.writeVarLong(JSonBinaryParser.KEY_NEW);
+            this.writeUTF8(key);
+        }
+    }
+
+    @Override
+    public void writeLong(final long l) throws IOException {
+        this.tag(JSonBinaryParser.TAG_LONG);
+        this.writeVarLong(l << 1 ^ l >> 63);
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        this.tag(JSonBinaryParser.TAG_NULL);
+    }
+
+    /**
+     * json text is parsed and converted to the binary encoding
+     */
+    @Override
+    public void writeRawValue(final String json) throws IOException {
+        try {
+            this.writeNode(new JSonFactory(json).parse());
+        } catch (final ParserException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    public void writeNode(final JSonNode node) throws IOException {
+        if (node instanceof JSonObject) {
+            this.writeStartObject();
+            for (final Entry<String, JSonNode> entry : ((JSonObject) node).entrySet()) {
+                this.writeKey(entry.getKey());
+                this.writeNode(entry.getValue());
+            }
+            this.writeEndObject();
+        } else if (node instanceof JSonArray) {
+            this.writeStartArray();
+            for (final JSonNode element : (JSonArray) node) {
+                this.writeNode(element);
+            }
+            this.writeEndArray();
+        } else if (node instanceof JSonValue) {
+            final JSonValue value = (JSonValue) node;
+            switch (value.getType()) {
+            case BOOLEAN:
+                this.writeBoolean((Boolean) value.getValue());
+                break;
+            case DOUBLE:
+                this.writeDouble(((Number) value.getValue()).doubleValue());
+                break;
+            case LONG:
+                this.writeLong(((Number) value.getValue()).longValue());
+                break;
+            case STRING:
+                this.writeString((String) value.getValue());
+                break;
+            default:
+                this.writeNull();
+                break;
+            }
+        } else if (node == null) {
+            this.writeNull();
+        } else {
+            this.writeRawValue(node.toString());
+        }
+    }
+
+    @Override
+    public void writeStartArray() throws IOException {
+        this.tag(JSonBinaryParser.TAG_ARRAY);
+    }
+
+    @Override
+    public void writeStartObject() throws IOException {
+        this.tag(JSonBinaryParser.TAG_OBJECT);
+    }
+
+    @Override
+    public void writeString(final String s) throws IOException {
+        if (s == null) {
+            this.writeNull();
+        } else {
+            this.tag(JSonBinaryParser.TAG_STRING);
+            this.writeUTF8(s);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.simplejson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Pull parser for the binary json encoding written by {@link JSonBinaryGenerator}. Delivers the same tokens as the json text parser,
+ * so everything built on {@link JSonPullParser} (e.g. JSonMapper#jsonToObject) works with both encodings.
+ *
+ * Layout: {@link #MAGIC}, version byte, one root value. A value is a tag byte followed by its payload:
+ *
+ * <pre>
+ * TAG_NULL, TAG_FALSE, TAG_TRUE   no payload
+ * TAG_LONG                        zigzag varint
+ * TAG_DOUBLE                      8 bytes, big endian IEEE 754 bits
+ * TAG_STRING                      varint byte length, UTF-8 bytes
+ * TAG_ARRAY                       values, TAG_END
+ * TAG_OBJECT                      (key reference, value)*, KEY_END
+ * </pre>
+ *
+ * A key reference is a varint: {@link #KEY_END} ends the object, {@link #KEY_NEW} is followed by a new key (varint length, UTF-8
+ * bytes) that is appended to the key table, n &gt; 1 references the key table entry n - 2. Varints store 7 bits per byte, least
+ * significant group first, highest bit set if more bytes follow.
+ *
+ * @author thomas
+ *
+ */
+public class JSonBinaryParser extends JSonPullParser {
+
+    /* 0x00 can never start json text, so the header can not be mistaken for json */
+    public static final byte[]   MAGIC      = new byte[] { 0x00, 'A', 'W', 'B', 'J' };
+    public static final int      VERSION    = 1;
+
+    static final int             TAG_NULL   = 0;
+    static final int             TAG_FALSE  = 1;
+    static final int             TAG_TRUE   = 2;
+    static final int             TAG_LONG   = 3;
+    static final int             TAG_DOUBLE = 4;
+    static final int             TAG_STRING = 5;
+    static final int             TAG_OBJECT = 6;
+    static final int             TAG_ARRAY  = 7;
+    static final int             TAG_END    = 8;
+
+    static final int             KEY_END    = 0;
+    static final int             KEY_NEW    = 1;
+
+    static final Charset         UTF8       = Charset.forName("UTF-8");
+
+    /**
+     * @param data
+     * @param offset
+     * @param length
+     * @return true if data starts with {@link #MAGIC}
+     */
+    public static boolean isBinary(final byte[] data, final int offset, final int length) {
+        if (length < JSonBinaryParser.MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < JSonBinaryParser.MAGIC.length; i++) {
+            if (data[offset + i] != JSonBinaryParser.MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * peeks at the start of the stream. the peeked bytes are unread again
+     *
+     * @param is
+     *            must have a pushback buffer of at least {@link #MAGIC}.length bytes
+     * @return true if the stream starts with {@link #MAGIC}
+     * @throws IOException
+     */
+    public static boolean isBinary(final PushbackInputStream is) throws IOException {
+        final byte[] head = new byte[JSonBinaryParser.MAGIC.length];
+        int read = 0;
+        int r;
+        while (read < head.length && (r = is.read(head, read, head.length - read)) != -1) {
+            read += r;
+        }
+        is.unread(head, 0, read);
+        return JSonBinaryParser.isBinary(head, 0, read);
+    }
+
+    private final InputStream    is;
+    private byte[]               buf;
+    private int                  pos;
+    private int                  limit;
+    private long                 offset     = 0;
+    private boolean              header     = false;
+    private boolean              done       = false;
+    /* true if the container at depth is an object */
+    private boolean[]            objects    = new boolean[32];
+    /* true if the last token was a KEY, so a value follows */
+    private boolean              value      = false;
+    private String[]             keys       = new String[64];
+    private int                  keyCount   = 0;
+
+    public JSonBinaryParser(final byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    public JSonBinaryParser(final byte[] data, final int offset, final int length) {
+        super();
+        this.is = null;
+        this.buf = data;
+        this.pos = offset;
+        this.limit = offset + length;
+        this.offset = -offset;
+    }
+
+    /**
+     * does NOT close the inputStream. see {@link #close()}
+     *
+     * @param is
+     */
+    public JSonBinaryParser(final InputStream is) {
+        super();
+        this.is = is;
+        this.buf = new byte[8192];
+        this.pos = 0;
+        this.limit = 0;
+    }
+
+    private ParserException bam(final String expected) {
+        return new ParserException(expected + " @" + this.getPosition());
+    }
+
+    private void fill(final int bytes) throws IOException, ParserException {
+        if (this.limit - this.pos >= bytes) {
+            return;
+        }
+        if (this.is == null) {
+            throw this.bam("Ended unexpected");
+        }
+        final int available = this.limit - this.pos;
+        if (bytes > this.buf.length) {
+            this.buf = Arrays.copyOf(this.buf, Math.max(bytes, this.buf.length * 2));
+        }
+        System.arraycopy(this.buf, this.pos, this.buf, 0, available);
+        this.offset += this.pos;
+        this.pos = 0;
+        this.limit = available;
+        while (this.limit < bytes) {
+            final int read = this.is.read(this.buf, this.limit, this.buf.length - this.limit);
+            if (read == -1) {
+                throw this.bam("Ended unexpected");
+            }
+            this.limit += read;
+        }
+    }
+
+    @Override
+    public long getPosition() {
+        return this.offset + this.pos;
+    }
+
+    private int read() throws IOException, ParserException {
+        if (this.pos == this.limit) {
+            this.fill(1);
+        }
+        return this.buf[this.pos++] & 0xff;
+    }
+
+    private boolean hasMore() throws IOException {
+        if (this.pos < this.limit) {
+            return true;
+        }
+        if (this.is == null) {
+            return false;
+        }
+        this.offset += this.pos;
+        this.pos = 0;
+        this.limit = 0;
+        final int read = this.is.read(this.buf, 0, this.buf.length);
+        if (read > 0) {
+            this.limit = read;
+            return true;
+        }
+        return false;
+    }
+
+    private long readVarLong() throws IOException, ParserException {
+        long ret = 0;
+        int shift = 0;
+        while (true) {
+            final int b = this.read();
+            ret |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return ret;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw this.bam("Invalid varint");
+            }
+        }
+    }
+
+    private int readLength() throws IOException, ParserException {
+        final long ret = this.readVarLong();
+        if (ret < 0 || ret > Integer.MAX_VALUE) {
+            throw this.bam("Invalid length " + ret);
+        }
+        return (int) ret;
+    }
+
+    private String readUTF8() throws IOException, ParserException {
+        final int length = this.readLength();
+        this.fill(length);
+        final String ret = new String(this.buf, this.pos, length, JSonBinaryParser.UTF8);
+        this.pos += length;
+        return ret;
+    }
+
+    private void readHeader() throws IOException, ParserException {
+        this.fill(JSonBinaryParser.MAGIC.length + 1);
+        if (!JSonBinaryParser.isBinary(this.buf, this.pos, this.limit - this.pos)) {
+            throw this.bam("Binary json header expected");
+        }
+        this.pos += JSonBinaryParser.MAGIC.length;
+        final int version = this.read();
+        if (version != JSonBinaryParser.VERSION) {
+            throw this.bam("Unsupported binary json version " + version);
+        }
+        this.header = true;
+    }
+
+    private void push(final boolean object) {
+        this.depth++;
+        if (this.depth == this.objects.length) {
+            this.objects = Arrays.copyOf(this.objects, this.depth * 2);
+        }
+        this.objects[this.depth] = object;
+    }
+
+    private JSonToken pop(final JSonToken token) {
+        this.depth--;
+        if (this.depth == 0) {
+            this.done = true;
+        }
+        return token;
+    }
+
+    @Override
+    protected JSonToken readToken() throws IOException, ParserException {
+        if (!this.header) {
+            this.readHeader();
+        }
+        if (this.done) {
+            if (this.hasMore()) {
+                throw this.bam("Unexpected data after root value");
+            }
+            return JSonToken.EOF;
+        }
+        if (this.depth > 0 && this.objects[this.depth] && !this.value) {
+            final long ref = this.readVarLong();
+            if (ref == JSonBinaryParser.KEY_END) {
+                return this.pop(JSonToken.END_OBJECT);
+            }
+            if (ref == JSonBinaryParser.KEY_NEW) {
+                this.text = this.readUTF8();
+                if (this.symbols != null) {
+                    this.text = this.symbols.intern(this.text, true);
+                }
+                if (this.keyCount == this.keys.length) {
+                    this.keys = Arrays.copyOf(this.keys, this.keyCount * 2);
+                }
+                this.keys[this.keyCount++] = this.text;
+            } else if (ref > 1 && ref - 2 < this.keyCount) {
+                this.text = this.keys[(int) (ref - 2)];
+            } else {
+                throw this.bam("Invalid key reference " + ref);
+            }
+            this.value = true;
+            return JSonToken.KEY;
+        }
+        this.value = false;
+        final int tag = this.read();
+        final JSonToken ret;
+        switch (tag) {
+        case TAG_NULL:
+            ret = JSonToken.NULL;
+            break;
+        case TAG_FALSE:
+        case TAG_TRUE:
+            this.booleanValue = tag == JSonBinaryParser.TAG_TRUE;
+            ret = JSonToken.BOOLEAN;
+            break;
+        case TAG_LONG:
+            final long zigzag = this.readVarLong();
+            this.longValue = zigzag >>> 1 ^ -(zigzag & 1);
+            ret = JSonToken.LONG;
+            break;
+        case TAG_DOUBLE:
+            this.fill(8);
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = bits << 8 | this.buf[this.pos++] & 0xff;
+            }
+            this.doubleValue = Double.longBitsToDouble(bits);
+            ret = JSonToken.DOUBLE;
+            break;
+        case TAG_STRING:
+            this.text = this.readUTF8();
+            if (this.symbols != null) {
+                this.text = this.symbols.intern(this.text, false);
+            }
+            ret = JSonToken.STRING;
+            break;
+        case TAG_OBJECT:
+            this.push(true);
+            return JSonToken.START_OBJECT;
+        case TAG_ARRAY:
+            this.push(false);
+            return JSonToken.START_ARRAY;
+        case TAG_END:
+            if (this.depth > 0 && !this.objects[this.depth]) {
+                return this.pop(JSonToken.END_ARRAY);
+            }
+            throw this.bam("Unexpected end tag");
+        default:
+            throw this.bam("Unknown tag " + tag);
+        }
+        if (this.depth == 0) {
+            this.done = true;
+        }
+        return ret;
+    }
+
+    @Override
+    public String getText() {
+        if (this.token == JSonToken.LONG) {
+            return Long.toString(this.longValue);
+        } else if (this.token == JSonToken.DOUBLE) {
+            return Double.toString(this.doubleValue);
+        }
+        return this.text;
+    }
+
+    /**
+     * closes the underlying InputStream (if any)
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.is != null) {
+            this.is.close();
+        }
+    }
+}
@@ -33,25 +33,69 @@
  * ==================================================================================================================================================== */
 package org.appwork.storage.simplejson;
 
+import java.io.InputStream;
+
 /**
  * @author thomas
  */
 public class JSonFactory {
 
-    public static boolean       DEBUG  = false;
-    private int                 global = 0;
-    private char                c;
-    private final String        str;
-    final StringBuilder         sb;
-    private final StringBuilder sb2;
-    private int                 counter;
-    private String              debug;
+    public static boolean        DEBUG  = false;
+    private int                  global = 0;
+    private char                 c;
+    private final String         str;
+    final StringBuilder          sb;
+    private final StringBuilder  sb2;
+    private int                  counter;
+    private String               debug;
+    private final JSonPullParser parser;
+    private JSonSymbolTable      symbols;
 
     public JSonFactory(final String json) {
         str = json;
         sb = new StringBuilder();
         sb2 = new StringBuilder();
         counter = 0;
+        parser = null;
+        symbols = JSonSymbolTable.getShared();
+    }
+
+    /**
+     * parses UTF-8 encoded json without creating a String copy of the input
+     *
+     * @param json
+     */
+    public JSonFactory(final byte[] json) {
+        this(new JSonPullParser(json));
+    }
+
+    /**
+     * parses UTF-8 encoded json from the stream. does NOT close the stream
+     *
+     * @param is
+     */
+    public JSonFactory(final InputStream is) {
+        this(new JSonPullParser(is));
+    }
+
+    public JSonFactory(final JSonPullParser parser) {
+        str = null;
+        sb = null;
+        sb2 = null;
+        counter = 0;
+        this.parser = parser;
+    }
+
+    /**
+     * @param symbols
+     *            table to dedup keys and short string values with, null to disable
+     */
+    public void setSymbolTable(final JSonSymbolTable symbols) {
+        if (parser != null) {
+            parser.setSymbolTable(symbols);
+        } else {
+            this.symbols = symbols;
+        }
     }
 
     private ParserException bam(final String expected) {
@@ -70,7 +114,7 @@ public class JSonFactory {
         return new ParserException(sb.toString());
     }
 
-    private String findString() throws ParserException {
+    private String findString(final boolean key) throws ParserException {
         // string
         try {
             sb.delete(0, sb.length());
@@ -81,7 +125,7 @@ public class JSonFactory {
                 c = str.charAt(global++);
                 switch (c) {
                 case '\"':
-                    return sb.toString();
+                    return symbols != null ? symbols.lookup(sb, key) : sb.toString();
                 case '\\':
                     escaped = true;
                     while ((c = str.charAt(global++)) == '\\') {
@@ -163,6 +207,14 @@ public class JSonFactory {
     }
 
     public JSonNode parse() throws ParserException {
+        if (parser != null) {
+            parser.nextToken();
+            final JSonNode ret = parser.readNode();
+            if (parser.nextToken() != JSonToken.EOF) {
+                throw new ParserException("Unexpected End of JSonString @" + parser.getPosition());
+            }
+            return ret;
+        }
         final JSonNode ret = parseValue();
         skipWhiteSpace();
         if (global != str.length()) {
@@ -256,7 +308,7 @@ public class JSonFactory {
             bs: switch (c) {
 
             case '"':
-                key = findString();
+                key = findString(true);
                 skipWhiteSpace();
                 c = getChar();
 
@@ -289,7 +341,7 @@ public class JSonFactory {
     }
 
     private JSonValue parseString() throws ParserException {
-        return new JSonValue(findString());
+        return new JSonValue(findString(false));
     }
 
     private JSonNode parseValue() throws ParserException {
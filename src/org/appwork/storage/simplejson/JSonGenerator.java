@@ -0,0 +1,318 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.simplejson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes json as UTF-8 directly into an {@link OutputStream}. Escaping is the same as {@link JSonUtils#escape(String)} and numbers are
+ * formatted like {@link JSonValue#toString()}, so the output equals the toString() of the corresponding {@link JSonNode} tree.
+ *
+ * The generator takes care of ',' and ':' separators. A generator can be reused for several documents via {@link #reset(OutputStream)}
+ * to avoid reallocating its buffer.
+ *
+ * @author thomas
+ *
+ */
+public class JSonGenerator {
+
+    private static final byte[] HEX     = "0123456789ABCDEF".getBytes();
+    private static final byte[] NULL    = "null".getBytes();
+    private static final byte[] TRUE    = "true".getBytes();
+    private static final byte[] FALSE   = "false".getBytes();
+
+    private OutputStream        os;
+    private final byte[]        buf;
+    private int                 len     = 0;
+    /* true if the next value in the current container needs a ',' prefix */
+    private boolean[]           comma   = new boolean[32];
+    private int                 depth   = 0;
+
+    public JSonGenerator() {
+        this(null);
+    }
+
+    public JSonGenerator(final OutputStream os) {
+        this(os, 8192);
+    }
+
+    public JSonGenerator(final OutputStream os, final int bufferSize) {
+        this.os = os;
+        this.buf = new byte[Math.max(16, bufferSize)];
+    }
+
+    private void beforeValue() throws IOException {
+        if (this.comma[this.depth]) {
+            this.write((byte) ',');
+        } else {
+            this.comma[this.depth] = true;
+        }
+    }
+
+    private void ensure(final int bytes) throws IOException {
+        if (this.len + bytes > this.buf.length) {
+            this.flushBuffer();
+        }
+    }
+
+    /**
+     * writes buffered data to the stream and flushes the stream
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        this.flushBuffer();
+        this.os.flush();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (this.len > 0) {
+            this.os.write(this.buf, 0, this.len);
+            this.len = 0;
+        }
+    }
+
+    public OutputStream getOutputStream() {
+        return this.os;
+    }
+
+    /**
+     * drops all state and binds the generator to a new stream. buffered data that has not been flushed yet is discarded
+     *
+     * @param os
+     */
+    public void reset(final OutputStream os) {
+        this.os = os;
+        this.len = 0;
+        this.depth = 0;
+        this.comma[0] = false;
+    }
+
+    private void write(final byte b) throws IOException {
+        if (this.len == this.buf.length) {
+            this.flushBuffer();
+        }
+        this.buf[this.len++] = b;
+    }
+
+    private void write(final byte[] bytes) throws IOException {
+        this.ensure(bytes.length);
+        if (bytes.length > this.buf.length) {
+            this.os.write(bytes);
+        } else {
+            System.arraycopy(bytes, 0, this.buf, this.len, bytes.length);
+            this.len += bytes.length;
+        }
+    }
+
+    private void writeAscii(final String s) throws IOException {
+        final int l = s.length();
+        for (int i = 0; i < l; i++) {
+            this.write((byte) s.charAt(i));
+        }
+    }
+
+    public void writeBoolean(final boolean b) throws IOException {
+        this.beforeValue();
+        this.write(b ? JSonGenerator.TRUE : JSonGenerator.FALSE);
+    }
+
+    public void writeDouble(final double d) throws IOException {
+        this.beforeValue();
+        this.writeAscii(Double.toString(d));
+    }
+
+    public void writeEndArray() throws IOException {
+        this.depth--;
+        this.write((byte) ']');
+    }
+
+    public void writeEndObject() throws IOException {
+        this.depth--;
+        this.write((byte) '}');
+    }
+
+    private void writeEscaped(final String s) throws IOException {
+        this.write((byte) '"');
+        final int l = s.length();
+        for (int i = 0; i < l; i++) {
+            final char ch = s.charAt(i);
+            if (ch < 0x80) {
+                switch (ch) {
+                case '"':
+                    this.ensure(2);
+                    this.buf[this.len++] = '\\';
+                    this.buf[this.len++] = '"';
+                    continue;
+                case '\\':
+                    this.ensure(2);
+                    this.buf[this.len++] = '\\';
+                    this.buf[this.len++] = '\\';
+                    continue;
+                case '\b':
+                    this.ensure(2);
+                    this.buf[this.len++] = '\\';
+                    this.buf[this.len++] = 'b';
+                    continue;
+                case '\f':
+                    this.ensure(2);
+                    this.buf[this.len++] = '\\';
+                    this.buf[this.len++] = 'f';
+                    continue;
+                case '\n':
+                    this.ensure(2);
+                    this.buf[this.len++] = '\\';
+                    this.buf[this.len++] = 'n';
+                    continue;
+                case '\r':
+                    this.ensure(2);
+                    this.buf[this.len++] = '\\';
+                    this.buf[this.len++] = 'r';
+                    continue;
+                case '\t':
+                    this.ensure(2);
+                    this.buf[this.len++] = '\\';
+                    this.buf[this.len++] = 't';
+                    continue;
+                }
+                if (ch <= '\u001F' || ch == '\u007F') {
+                    this.writeUnicodeEscape(ch);
+                } else {
+                    if (this.len == this.buf.length) {
+                        this.flushBuffer();
+                    }
+                    this.buf[this.len++] = (byte) ch;
+                }
+            } else if (ch <= '\u009F' || ch >= '\u2000' && ch <= '\u20FF') {
+                /* see JSonUtils.escape */
+                this.writeUnicodeEscape(ch);
+            } else if (ch < 0x800) {
+                this.ensure(2);
+                this.buf[this.len++] = (byte) (0xC0 | ch >> 6);
+                this.buf[this.len++] = (byte) (0x80 | ch & 0x3F);
+            } else if (Character.isHighSurrogate(ch) && i + 1 < l && Character.isLowSurrogate(s.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(ch, s.charAt(++i));
+                this.ensure(4);
+                this.buf[this.len++] = (byte) (0xF0 | cp >> 18);
+                this.buf[this.len++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                this.buf[this.len++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                this.buf[this.len++] = (byte) (0x80 | cp & 0x3F);
+            } else if (ch >= '\uD800' && ch <= '\uDFFF') {
+                /* unpaired surrogate, same as String.getBytes("UTF-8") */
+                this.write((byte) '?');
+            } else {
+                this.ensure(3);
+                this.buf[this.len++] = (byte) (0xE0 | ch >> 12);
+                this.buf[this.len++] = (byte) (0x80 | ch >> 6 & 0x3F);
+                this.buf[this.len++] = (byte) (0x80 | ch & 0x3F);
+            }
+        }
+        this.write((byte) '"');
+    }
+
+    public void writeKey(final String key) throws IOException {
+        this.beforeValue();
+        this.writeEscaped(key);
+        this.write((byte) ':');
+        /* the value that follows must not get a ',' */
+        this.comma[this.depth] = false;
+    }
+
+    public void writeLong(final long l) throws IOException {
+        this.beforeValue();
+        if (l >= 0 && l < 10) {
+            this.write((byte) ('0' + l));
+        } else {
+            this.writeAscii(Long.toString(l));
+        }
+    }
+
+    public void writeNull() throws IOException {
+        this.beforeValue();
+        this.write(JSonGenerator.NULL);
+    }
+
+    /**
+     * writes an already serialized json value
+     *
+     * @param json
+     * @throws IOException
+     */
+    public void writeRawValue(final String json) throws IOException {
+        this.beforeValue();
+        final byte[] bytes = json.getBytes("UTF-8");
+        this.write(bytes);
+    }
+
+    public void writeStartArray() throws IOException {
+        this.beforeValue();
+        this.write((byte) '[');
+        this.push();
+    }
+
+    public void writeStartObject() throws IOException {
+        this.beforeValue();
+        this.write((byte) '{');
+        this.push();
+    }
+
+    public void writeString(final String s) throws IOException {
+        if (s == null) {
+            this.writeNull();
+        } else {
+            this.beforeValue();
+            this.writeEscaped(s);
+        }
+    }
+
+    private void push() {
+        if (++this.depth == this.comma.length) {
+            final boolean[] newComma = new boolean[this.depth * 2];
+            System.arraycopy(this.comma, 0, newComma, 0, this.depth);
+            this.comma = newComma;
+        }
+        this.comma[this.depth] = false;
+    }
+
+    private void writeUnicodeEscape(final char ch) throws IOException {
+        this.ensure(6);
+        this.buf[this.len++] = '\\';
+        this.buf[this.len++] = 'u';
+        this.buf[this.len++] = JSonGenerator.HEX[ch >> 12 & 0xF];
+        this.buf[this.len++] = JSonGenerator.HEX[ch >> 8 & 0xF];
+        this.buf[this.len++] = JSonGenerator.HEX[ch >> 4 & 0xF];
+        this.buf[this.len++] = JSonGenerator.HEX[ch & 0xF];
+    }
+}
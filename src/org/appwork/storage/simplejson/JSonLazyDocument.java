@@ -0,0 +1,427 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.simplejson;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Lazy json document. The constructor scans the json text once and builds a compact offset index of all values (start/end offset,
+ * next sibling and the raw key of object members). Nothing is decoded during the scan: strings, numbers and whole subtrees are only
+ * decoded when they are accessed via {@link JSonLazyNode}, so reading a few fields of a large document costs the scan plus the
+ * accessed data instead of building and mapping the complete {@link JSonNode} tree. The document can be backed by a (memory mapped)
+ * {@link ByteBuffer}, so the json text itself does not have to be on the heap.
+ *
+ * @author thomas
+ *
+ */
+public class JSonLazyDocument {
+
+    static final byte  KIND_OBJECT  = 0;
+    static final byte  KIND_ARRAY   = 1;
+    static final byte  KIND_STRING  = 2;
+    static final byte  KIND_LONG    = 3;
+    static final byte  KIND_DOUBLE  = 4;
+    static final byte  KIND_BOOLEAN = 5;
+    static final byte  KIND_NULL    = 6;
+
+    final ByteBuffer   data;
+    private final int  limit;
+    private int        pos;
+
+    /* index, one entry per value in document order. children of a container follow it directly */
+    private int        count        = 0;
+    byte[]             kind         = new byte[64];
+    int[]              start        = new int[64];
+    int[]              end          = new int[64];
+    int[]              next         = new int[64];
+    int[]              size         = new int[64];
+    /* raw key bytes (without quotes) of object members, keyStart is -1 for all other values */
+    int[]              keyStart     = new int[64];
+    int[]              keyEnd       = new int[64];
+    boolean[]          keyEscaped   = new boolean[64];
+    /* array elements in order, elementStart[array] is the position of its first element. Makes get(int) O(1) */
+    int[]              elements;
+    int[]              elementStart;
+
+    private final JSonLazyNode root;
+
+    public JSonLazyDocument(final byte[] json) throws ParserException {
+        this(json, 0, json.length);
+    }
+
+    /**
+     * @param json
+     *            UTF-8 json text. The array is referenced, not copied, and must not be modified afterwards
+     * @param offset
+     * @param length
+     * @throws ParserException
+     */
+    public JSonLazyDocument(final byte[] json, final int offset, final int length) throws ParserException {
+        this(ByteBuffer.wrap(json, offset, length));
+    }
+
+    /**
+     * @param json
+     *            UTF-8 json text between position and limit. The buffer is referenced, not copied, and its content must not be modified
+     *            afterwards. Position and limit of the given buffer are not changed
+     * @throws ParserException
+     */
+    public JSonLazyDocument(final ByteBuffer json) throws ParserException {
+        this.data = json.duplicate();
+        this.pos = json.position();
+        this.limit = json.limit();
+        if (this.limit - this.pos >= 3 && (this.data.get(this.pos) & 0xff) == 0xEF && (this.data.get(this.pos + 1) & 0xff) == 0xBB && (this.data.get(this.pos + 2) & 0xff) == 0xBF) {
+            /* BOM */
+            this.pos += 3;
+        }
+        final int rootIndex = this.scanValue(-1, -1, false);
+        this.skipWhiteSpace();
+        if (this.pos != this.limit) {
+            throw this.bam("Unexpected End of JSonString");
+        }
+        this.indexElements();
+        this.root = new JSonLazyNode(this, rootIndex);
+    }
+
+    private void indexElements() {
+        int total = 0;
+        for (int i = 0; i < this.count; i++) {
+            if (this.kind[i] == JSonLazyDocument.KIND_ARRAY) {
+                total += this.size[i];
+            }
+        }
+        this.elements = new int[total];
+        this.elementStart = new int[this.count];
+        int e = 0;
+        for (int i = 0; i < this.count; i++) {
+            if (this.kind[i] == JSonLazyDocument.KIND_ARRAY && this.size[i] > 0) {
+                this.elementStart[i] = e;
+                for (int child = i + 1; child >= 0; child = this.next[child]) {
+                    this.elements[e++] = child;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a view on the bytes start..end
+     */
+    ByteBuffer slice(final int start, final int end) {
+        final ByteBuffer ret = this.data.duplicate();
+        ret.position(start);
+        ret.limit(end);
+        return ret;
+    }
+
+    String decode(final int start, final int end) {
+        if (this.data.hasArray()) {
+            return new String(this.data.array(), this.data.arrayOffset() + start, end - start, JSonBinaryParser.UTF8);
+        }
+        final byte[] bytes = new byte[end - start];
+        this.slice(start, end).get(bytes);
+        return new String(bytes, JSonBinaryParser.UTF8);
+    }
+
+    private ParserException bam(final String expected) {
+        return new ParserException(expected + " @" + this.pos);
+    }
+
+    private int add(final byte kind, final int keyStart, final int keyEnd, final boolean keyEscaped) {
+        if (this.count == this.kind.length) {
+            final int length = this.count * 2;
+            this.kind = Arrays.copyOf(this.kind, length);
+            this.start = Arrays.copyOf(this.start, length);
+            this.end = Arrays.copyOf(this.end, length);
+            this.next = Arrays.copyOf(this.next, length);
+            this.size = Arrays.copyOf(this.size, length);
+            this.keyStart = Arrays.copyOf(this.keyStart, length);
+            this.keyEnd = Arrays.copyOf(this.keyEnd, length);
+            this.keyEscaped = Arrays.copyOf(this.keyEscaped, length);
+        }
+        final int index = this.count++;
+        this.kind[index] = kind;
+        this.start[index] = this.pos;
+        this.next[index] = -1;
+        this.size[index] = 0;
+        this.keyStart[index] = keyStart;
+        this.keyEnd[index] = keyEnd;
+        this.keyEscaped[index] = keyEscaped;
+        return index;
+    }
+
+    private int peek() throws ParserException {
+        if (this.pos >= this.limit) {
+            throw this.bam("Ended unexpected");
+        }
+        return this.data.get(this.pos);
+    }
+
+    private void skipWhiteSpace() {
+        while (this.pos < this.limit) {
+            switch (this.data.get(this.pos)) {
+            case ' ':
+            case '\t':
+            case '\r':
+            case '\n':
+                this.pos++;
+                continue;
+            default:
+                return;
+            }
+        }
+    }
+
+    private void expect(final char c) throws ParserException {
+        this.skipWhiteSpace();
+        if (this.peek() != c) {
+            throw this.bam("'" + c + "' expected");
+        }
+        this.pos++;
+    }
+
+    private void expectLiteral(final String literal) throws ParserException {
+        final int l = literal.length();
+        if (this.pos + l > this.limit) {
+            throw this.bam(literal + " expected");
+        }
+        for (int i = 0; i < l; i++) {
+            if (this.data.get(this.pos + i) != literal.charAt(i)) {
+                throw this.bam(literal + " expected");
+            }
+        }
+        this.pos += l;
+    }
+
+    /**
+     * skips a string. pos must be on the opening quote and is behind the closing quote afterwards
+     *
+     * @return true if the string contains escape sequences
+     * @throws ParserException
+     */
+    private boolean skipString() throws ParserException {
+        this.pos++;
+        boolean escaped = false;
+        while (this.pos < this.limit) {
+            final byte b = this.data.get(this.pos++);
+            if (b == '"') {
+                return escaped;
+            } else if (b == '\\') {
+                escaped = true;
+                this.pos++;
+            }
+        }
+        throw this.bam("Unclosed String");
+    }
+
+    private int scanValue(final int keyStart, final int keyEnd, final boolean keyEscaped) throws ParserException {
+        this.skipWhiteSpace();
+        final int c = this.peek();
+        final int index;
+        switch (c) {
+        case '{': {
+            index = this.add(JSonLazyDocument.KIND_OBJECT, keyStart, keyEnd, keyEscaped);
+            this.pos++;
+            this.skipWhiteSpace();
+            if (this.peek() == '}') {
+                this.pos++;
+                break;
+            }
+            int previous = -1;
+            int children = 0;
+            while (true) {
+                this.skipWhiteSpace();
+                if (this.peek() != '"') {
+                    throw this.bam("\" expected");
+                }
+                final int childKeyStart = this.pos + 1;
+                final boolean childKeyEscaped = this.skipString();
+                final int childKeyEnd = this.pos - 1;
+                this.expect(':');
+                final int child = this.scanValue(childKeyStart, childKeyEnd, childKeyEscaped);
+                if (previous >= 0) {
+                    this.next[previous] = child;
+                }
+                previous = child;
+                children++;
+                this.skipWhiteSpace();
+                final int d = this.peek();
+                this.pos++;
+                if (d == '}') {
+                    break;
+                } else if (d != ',') {
+                    this.pos--;
+                    throw this.bam(", or } expected");
+                }
+            }
+            this.size[index] = children;
+            break;
+        }
+        case '[': {
+            index = this.add(JSonLazyDocument.KIND_ARRAY, keyStart, keyEnd, keyEscaped);
+            this.pos++;
+            this.skipWhiteSpace();
+            if (this.peek() == ']') {
+                this.pos++;
+                break;
+            }
+            int previous = -1;
+            int children = 0;
+            while (true) {
+                final int child = this.scanValue(-1, -1, false);
+                if (previous >= 0) {
+                    this.next[previous] = child;
+                }
+                previous = child;
+                children++;
+                this.skipWhiteSpace();
+                final int d = this.peek();
+                this.pos++;
+                if (d == ']') {
+                    break;
+                } else if (d != ',') {
+                    this.pos--;
+                    throw this.bam(", or ] expected");
+                }
+            }
+            this.size[index] = children;
+            break;
+        }
+        case '"':
+            index = this.add(JSonLazyDocument.KIND_STRING, keyStart, keyEnd, keyEscaped);
+            this.skipString();
+            break;
+        case 't':
+            index = this.add(JSonLazyDocument.KIND_BOOLEAN, keyStart, keyEnd, keyEscaped);
+            this.expectLiteral("true");
+            break;
+        case 'f':
+            index = this.add(JSonLazyDocument.KIND_BOOLEAN, keyStart, keyEnd, keyEscaped);
+            this.expectLiteral("false");
+            break;
+        case 'n':
+            index = this.add(JSonLazyDocument.KIND_NULL, keyStart, keyEnd, keyEscaped);
+            this.expectLiteral("null");
+            break;
+        default:
+            if (c != '-' && (c < '0' || c > '9')) {
+                throw this.bam("Value expected");
+            }
+            index = this.add(JSonLazyDocument.KIND_LONG, keyStart, keyEnd, keyEscaped);
+            scan: while (this.pos < this.limit) {
+                switch (this.data.get(this.pos)) {
+                case '.':
+                case 'e':
+                case 'E':
+                    this.kind[index] = JSonLazyDocument.KIND_DOUBLE;
+                    break;
+                case '-':
+                case '+':
+                case '0':
+                case '1':
+                case '2':
+                case '3':
+                case '4':
+                case '5':
+                case '6':
+                case '7':
+                case '8':
+                case '9':
+                    break;
+                default:
+                    break scan;
+                }
+                this.pos++;
+            }
+        }
+        this.end[index] = this.pos;
+        return index;
+    }
+
+    /**
+     * @return the number of values in the index
+     */
+    public int getIndexSize() {
+        return this.count;
+    }
+
+    public JSonLazyNode getRoot() {
+        return this.root;
+    }
+
+    /**
+     * path access. Object keys are separated by '.', array elements are addressed by [index], e.g. "entries[3].name" or "[0].id". Keys
+     * containing '.' or '[' can be accessed via {@link JSonLazyNode#get(String)}
+     *
+     * @param path
+     * @return the node or null if the path does not exist
+     * @throws ParserException
+     *             if the path is malformed
+     */
+    public JSonLazyNode get(final String path) throws ParserException {
+        JSonLazyNode node = this.root;
+        final int l = path.length();
+        int i = 0;
+        while (node != null && i < l) {
+            final char c = path.charAt(i);
+            if (c == '.') {
+                i++;
+            } else if (c == '[') {
+                final int close = path.indexOf(']', i);
+                if (close < 0) {
+                    throw new ParserException("Invalid path: " + path);
+                }
+                try {
+                    node = node.get(Integer.parseInt(path.substring(i + 1, close).trim()));
+                } catch (final NumberFormatException e) {
+                    throw new ParserException("Invalid path: " + path, e);
+                }
+                i = close + 1;
+            } else {
+                int keyEnd = i;
+                while (keyEnd < l && path.charAt(keyEnd) != '.' && path.charAt(keyEnd) != '[') {
+                    keyEnd++;
+                }
+                node = node.get(path.substring(i, keyEnd));
+                i = keyEnd;
+            }
+        }
+        return node;
+    }
+
+    @Override
+    public String toString() {
+        return this.root.toJSonString();
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.simplejson;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.appwork.exceptions.WTFException;
+
+/**
+ * View on one value of a {@link JSonLazyDocument}. Navigation (get, getKeys, size) only uses the offset index, values are decoded on
+ * access.
+ *
+ * @author thomas
+ *
+ */
+public class JSonLazyNode {
+
+    private final JSonLazyDocument doc;
+    private final int              index;
+
+    JSonLazyNode(final JSonLazyDocument doc, final int index) {
+        this.doc = doc;
+        this.index = index;
+    }
+
+    /**
+     * @return a parser that is limited to this value. Can be used for JSonMapper#jsonToObject(JSonPullParser, java.lang.reflect.Type)
+     */
+    public JSonPullParser createParser() {
+        return new JSonPullParser(this.doc.slice(this.doc.start[this.index], this.doc.end[this.index]));
+    }
+
+    /**
+     * @param key
+     * @return the member with this key (the last one if the key is not unique, same as {@link JSonObject}) or null if this is no object
+     *         or there is no such member
+     */
+    public JSonLazyNode get(final String key) {
+        if (!this.isObject()) {
+            return null;
+        }
+        final byte[] keyBytes = key.getBytes(JSonBinaryParser.UTF8);
+        int found = -1;
+        for (int child = this.firstChild(); child >= 0; child = this.doc.next[child]) {
+            if (this.doc.keyEscaped[child]) {
+                if (key.equals(this.decodeKey(child))) {
+                    found = child;
+                }
+            } else if (this.rawKeyEquals(child, keyBytes)) {
+                found = child;
+            }
+        }
+        return found < 0 ? null : new JSonLazyNode(this.doc, found);
+    }
+
+    /**
+     * @param index
+     * @return the array element or null if this is no array or index is out of range
+     */
+    public JSonLazyNode get(final int index) {
+        if (!this.isArray() || index < 0 || index >= this.size()) {
+            return null;
+        }
+        return new JSonLazyNode(this.doc, this.doc.elements[this.doc.elementStart[this.index] + index]);
+    }
+
+    /**
+     * @return all members of an object or all elements of an array, empty list for other values
+     */
+    public List<JSonLazyNode> getChildren() {
+        final List<JSonLazyNode> ret = new ArrayList<JSonLazyNode>(this.size());
+        for (int child = this.firstChild(); child >= 0; child = this.doc.next[child]) {
+            ret.add(new JSonLazyNode(this.doc, child));
+        }
+        return ret;
+    }
+
+    /**
+     * @return the key if this value is an object member, else null
+     */
+    public String getKey() {
+        if (this.doc.keyStart[this.index] < 0) {
+            return null;
+        }
+        return this.decodeKey(this.index);
+    }
+
+    public List<String> getKeys() {
+        final List<String> ret = new ArrayList<String>(this.size());
+        if (this.isObject()) {
+            for (int child = this.firstChild(); child >= 0; child = this.doc.next[child]) {
+                ret.add(this.decodeKey(child));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return START_OBJECT, START_ARRAY, STRING, LONG, DOUBLE, BOOLEAN or NULL
+     */
+    public JSonToken getToken() {
+        switch (this.doc.kind[this.index]) {
+        case JSonLazyDocument.KIND_OBJECT:
+            return JSonToken.START_OBJECT;
+        case JSonLazyDocument.KIND_ARRAY:
+            return JSonToken.START_ARRAY;
+        case JSonLazyDocument.KIND_STRING:
+            return JSonToken.STRING;
+        case JSonLazyDocument.KIND_LONG:
+            return JSonToken.LONG;
+        case JSonLazyDocument.KIND_DOUBLE:
+            return JSonToken.DOUBLE;
+        case JSonLazyDocument.KIND_BOOLEAN:
+            return JSonToken.BOOLEAN;
+        default:
+            return JSonToken.NULL;
+        }
+    }
+
+    /**
+     * @return scalars boxed like {@link JSonValue#getValue()}, the decoded {@link JSonNode} tree for objects and arrays
+     * @throws ParserException
+     */
+    public Object getValue() throws ParserException {
+        if (this.isObject() || this.isArray()) {
+            return this.toNode();
+        }
+        final JSonPullParser parser = this.createParser();
+        parser.nextToken();
+        return parser.getValue();
+    }
+
+    public boolean isArray() {
+        return this.doc.kind[this.index] == JSonLazyDocument.KIND_ARRAY;
+    }
+
+    public boolean isNull() {
+        return this.doc.kind[this.index] == JSonLazyDocument.KIND_NULL;
+    }
+
+    public boolean isObject() {
+        return this.doc.kind[this.index] == JSonLazyDocument.KIND_OBJECT;
+    }
+
+    /**
+     * @return number of members/elements for objects and arrays, 0 for other values
+     */
+    public int size() {
+        return this.doc.size[this.index];
+    }
+
+    /**
+     * @return the raw json text of this value
+     */
+    public String toJSonString() {
+        return this.doc.decode(this.doc.start[this.index], this.doc.end[this.index]);
+    }
+
+    /**
+     * decodes this value (and all children) into a {@link JSonNode} tree
+     *
+     * @return
+     * @throws ParserException
+     */
+    public JSonNode toNode() throws ParserException {
+        return this.createParser().readNode();
+    }
+
+    @Override
+    public String toString() {
+        return this.toJSonString();
+    }
+
+    private String decodeKey(final int child) {
+        final int keyStart = this.doc.keyStart[child];
+        final int keyEnd = this.doc.keyEnd[child];
+        if (!this.doc.keyEscaped[child]) {
+            return this.doc.decode(keyStart, keyEnd);
+        }
+        try {
+            /* include the quotes */
+            final JSonPullParser parser = new JSonPullParser(this.doc.slice(keyStart - 1, keyEnd + 1));
+            parser.nextToken();
+            return parser.getText();
+        } catch (final ParserException e) {
+            /* the scanner already validated the string bounds */
+            throw new WTFException(e);
+        }
+    }
+
+    private int firstChild() {
+        return this.size() > 0 ? this.index + 1 : -1;
+    }
+
+    private boolean rawKeyEquals(final int child, final byte[] keyBytes) {
+        final int keyStart = this.doc.keyStart[child];
+        if (this.doc.keyEnd[child] - keyStart != keyBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (this.doc.data.get(keyStart + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
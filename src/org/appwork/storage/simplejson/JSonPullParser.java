@@ -0,0 +1,805 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.simplejson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.appwork.exceptions.WTFException;
+
+/**
+ * Incremental pull parser that reads json directly from UTF-8 encoded bytes. Unlike {@link JSonFactory#JSonFactory(String)} the input
+ * is never copied into a String - characters are decoded on the fly, and numbers are accumulated while scanning instead of
+ * substring+parse.
+ *
+ * Usage: call {@link #nextToken()} until it returns {@link JSonToken#EOF} and use the getters to access the value of the current
+ * token. {@link #readNode()} materializes the value at the current token as a {@link JSonNode} tree.
+ *
+ * @author thomas
+ *
+ */
+public class JSonPullParser {
+
+    private static final int      CTX_ROOT    = 0;
+    private static final int      CTX_OBJECT  = 1;
+    private static final int      CTX_ARRAY   = 2;
+    /* container opened, nothing read yet */
+    private static final int      STATE_START = 0;
+    /* object key read, ':' + value expected */
+    private static final int      STATE_KEY   = 1;
+    /* value read, ',' or end of container expected */
+    private static final int      STATE_VALUE = 2;
+
+    private static final double[] POW10       = new double[] { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private final InputStream     is;
+    private final ByteBuffer      byteBuffer;
+    private byte[]                buf;
+    private int                   pos;
+    private int                   limit;
+    private int                   bufferStart;
+    private long                  offset      = 0;
+
+    private int[]                 context     = new int[32];
+    private int[]                 state       = new int[32];
+    protected int                 depth       = 0;
+
+    protected JSonToken           token       = null;
+    private char[]                cbuf        = new char[128];
+    private int                   clen        = 0;
+    protected String              text        = null;
+    protected long                longValue;
+    protected double              doubleValue;
+    protected boolean             booleanValue;
+    /* dedups keys and short string values, null to create a new String for every token */
+    protected JSonSymbolTable     symbols     = JSonSymbolTable.getShared();
+
+    /**
+     * @param json
+     * @return a {@link JSonBinaryParser} if json starts with {@link JSonBinaryParser#MAGIC}, else a json text parser
+     */
+    public static JSonPullParser create(final byte[] json) {
+        if (JSonBinaryParser.isBinary(json, 0, json.length)) {
+            return new JSonBinaryParser(json);
+        }
+        return new JSonPullParser(json);
+    }
+
+    /**
+     * @param is
+     * @return a {@link JSonBinaryParser} if the stream starts with {@link JSonBinaryParser#MAGIC}, else a json text parser
+     * @throws IOException
+     */
+    public static JSonPullParser create(final InputStream is) throws IOException {
+        final PushbackInputStream pis = new PushbackInputStream(is, JSonBinaryParser.MAGIC.length);
+        if (JSonBinaryParser.isBinary(pis)) {
+            return new JSonBinaryParser(pis);
+        }
+        return new JSonPullParser(pis);
+    }
+
+    /**
+     * for subclasses that read their input themselves and override {@link #readToken()}
+     */
+    protected JSonPullParser() {
+        this.is = null;
+        this.byteBuffer = null;
+        this.buf = null;
+    }
+
+    public JSonPullParser(final byte[] json) {
+        this(json, 0, json.length);
+    }
+
+    public JSonPullParser(final byte[] json, final int offset, final int length) {
+        this.is = null;
+        this.byteBuffer = null;
+        this.buf = json;
+        this.pos = offset;
+        this.bufferStart = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * does not modify the position of the given buffer
+     *
+     * @param buffer
+     */
+    public JSonPullParser(final ByteBuffer buffer) {
+        this.is = null;
+        if (buffer.hasArray()) {
+            this.byteBuffer = null;
+            this.buf = buffer.array();
+            this.pos = buffer.arrayOffset() + buffer.position();
+            this.bufferStart = this.pos;
+            this.limit = buffer.arrayOffset() + buffer.limit();
+        } else {
+            this.byteBuffer = buffer.duplicate();
+            this.buf = new byte[Math.max(1, Math.min(8192, buffer.remaining()))];
+            this.pos = 0;
+            this.limit = 0;
+        }
+    }
+
+    /**
+     * does NOT close the inputStream. see {@link #close()}
+     *
+     * @param is
+     */
+    public JSonPullParser(final InputStream is) {
+        this.is = is;
+        this.byteBuffer = null;
+        this.buf = new byte[8192];
+        this.pos = 0;
+        this.limit = 0;
+    }
+
+    private ParserException bam(final String expected) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(expected);
+        sb.append(" @");
+        sb.append(this.getPosition());
+        final int from = Math.max(this.pos - 20, this.bufferStart);
+        final int to = Math.min(this.limit, this.pos + 20);
+        if (to > from) {
+            sb.append("\r\n\t");
+            try {
+                sb.append(new String(this.buf, from, to - from, "UTF-8").replace("\r", "\\r").replace("\n", "\\n"));
+            } catch (final UnsupportedEncodingException e) {
+                throw new WTFException(e);
+            }
+        }
+        return new ParserException(sb.toString());
+    }
+
+    /**
+     * closes the underlying InputStream (if any)
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (this.is != null) {
+            this.is.close();
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (this.is == null && this.byteBuffer == null) {
+            return false;
+        }
+        this.offset += this.limit - this.bufferStart;
+        this.bufferStart = 0;
+        int read;
+        if (this.is != null) {
+            read = this.is.read(this.buf, 0, this.buf.length);
+        } else {
+            read = Math.min(this.buf.length, this.byteBuffer.remaining());
+            if (read > 0) {
+                this.byteBuffer.get(this.buf, 0, read);
+            }
+        }
+        if (read <= 0) {
+            this.pos = 0;
+            this.limit = 0;
+            return false;
+        }
+        this.pos = 0;
+        this.limit = read;
+        return true;
+    }
+
+    public boolean getBooleanValue() {
+        return this.booleanValue;
+    }
+
+    /**
+     * current nesting depth. 0 means root level
+     *
+     * @return
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+    public double getDoubleValue() {
+        if (this.token == JSonToken.LONG) {
+            return this.longValue;
+        }
+        return this.doubleValue;
+    }
+
+    public long getLongValue() {
+        if (this.token == JSonToken.DOUBLE) {
+            return (long) this.doubleValue;
+        }
+        return this.longValue;
+    }
+
+    /**
+     * @return the number of bytes consumed so far
+     */
+    public long getPosition() {
+        return this.offset + this.pos - this.bufferStart;
+    }
+
+    /**
+     * @return the text of the current KEY/STRING/LONG/DOUBLE token
+     */
+    public String getText() {
+        if (this.text == null) {
+            final JSonSymbolTable symbols = this.symbols;
+            if (symbols != null && (this.token == JSonToken.KEY || this.token == JSonToken.STRING)) {
+                this.text = symbols.lookup(this.cbuf, 0, this.clen, this.token == JSonToken.KEY);
+            } else {
+                this.text = new String(this.cbuf, 0, this.clen);
+            }
+        }
+        return this.text;
+    }
+
+    /**
+     * @param symbols
+     *            table to dedup keys and short string values with, null to disable
+     */
+    public void setSymbolTable(final JSonSymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public JSonSymbolTable getSymbolTable() {
+        return this.symbols;
+    }
+
+    public JSonToken getToken() {
+        return this.token;
+    }
+
+    /**
+     * @return the value of the current token boxed the same way {@link JSonValue#getValue()} does
+     */
+    public Object getValue() {
+        switch (this.token) {
+        case STRING:
+            return this.getText();
+        case LONG:
+            return this.longValue;
+        case DOUBLE:
+            return this.doubleValue;
+        case BOOLEAN:
+            return this.booleanValue;
+        default:
+            return null;
+        }
+    }
+
+    private void append(final char c) {
+        if (this.clen == this.cbuf.length) {
+            this.cbuf = Arrays.copyOf(this.cbuf, this.clen * 2);
+        }
+        this.cbuf[this.clen++] = c;
+    }
+
+    public JSonToken nextToken() throws ParserException {
+        this.text = null;
+        try {
+            return this.token = this.readToken();
+        } catch (final IOException e) {
+            throw new ParserException(e);
+        }
+    }
+
+    private int peek() throws IOException {
+        if (this.pos >= this.limit && !this.fill()) {
+            return -1;
+        }
+        return this.buf[this.pos] & 0xff;
+    }
+
+    private void push(final int ctx) {
+        if (++this.depth == this.context.length) {
+            this.context = Arrays.copyOf(this.context, this.depth * 2);
+            this.state = Arrays.copyOf(this.state, this.depth * 2);
+        }
+        this.context[this.depth] = ctx;
+        this.state[this.depth] = JSonPullParser.STATE_START;
+    }
+
+    private int read() throws IOException {
+        if (this.pos >= this.limit && !this.fill()) {
+            return -1;
+        }
+        return this.buf[this.pos++] & 0xff;
+    }
+
+    private int readContinuation() throws IOException {
+        final int c = this.read();
+        if (c < 0) {
+            return -1;
+        }
+        if ((c & 0xC0) != 0x80) {
+            /* not a continuation byte - process it again as start of a new char */
+            this.pos--;
+            return -1;
+        }
+        return c & 0x3F;
+    }
+
+    private void readEscape() throws IOException, ParserException {
+        final int c = this.read();
+        switch (c) {
+        case '"':
+        case '\\':
+        case '/':
+            this.append((char) c);
+            return;
+        case 'r':
+            this.append('\r');
+            return;
+        case 'n':
+            this.append('\n');
+            return;
+        case 't':
+            this.append('\t');
+            return;
+        case 'f':
+            this.append('\f');
+            return;
+        case 'b':
+            this.append('\b');
+            return;
+        case 'u':
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                final int digit = Character.digit(this.read(), 16);
+                if (digit < 0) {
+                    throw this.bam("illegal unicode escape");
+                }
+                value = value << 4 | digit;
+            }
+            this.append((char) value);
+            return;
+        case -1:
+            throw this.bam("Unexpected End of String \"" + new String(this.cbuf, 0, this.clen));
+        default:
+            throw this.bam("illegal escape char");
+        }
+    }
+
+    private void readLiteral(final String literal) throws IOException, ParserException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (this.read() != literal.charAt(i)) {
+                throw this.bam("Illegal Char");
+            }
+        }
+    }
+
+    private void readMultiByte(final int c) throws IOException {
+        int c2, c3, c4;
+        if ((c & 0xE0) == 0xC0) {
+            if ((c2 = this.readContinuation()) >= 0) {
+                this.append((char) ((c & 0x1F) << 6 | c2));
+                return;
+            }
+        } else if ((c & 0xF0) == 0xE0) {
+            if ((c2 = this.readContinuation()) >= 0 && (c3 = this.readContinuation()) >= 0) {
+                this.append((char) ((c & 0x0F) << 12 | c2 << 6 | c3));
+                return;
+            }
+        } else if ((c & 0xF8) == 0xF0) {
+            if ((c2 = this.readContinuation()) >= 0 && (c3 = this.readContinuation()) >= 0 && (c4 = this.readContinuation()) >= 0) {
+                final int codePoint = (c & 0x07) << 18 | c2 << 12 | c3 << 6 | c4;
+                if (codePoint >= 0x10000 && codePoint <= 0x10FFFF) {
+                    this.append(Character.highSurrogate(codePoint));
+                    this.append(Character.lowSurrogate(codePoint));
+                    return;
+                }
+            }
+        }
+        /* malformed input. same replacement as new String(bytes,"UTF-8") */
+        this.append('\uFFFD');
+    }
+
+    /**
+     * reads the value at the current token as JSonNode tree. Afterwards the current token is the last token of the value (e.g.
+     * END_OBJECT for objects)
+     *
+     * @return
+     * @throws ParserException
+     */
+    public JSonNode readNode() throws ParserException {
+        if (this.token == null) {
+            this.nextToken();
+        }
+        switch (this.token) {
+        case START_OBJECT:
+            final JSonObject obj = new JSonObject();
+            while (this.nextToken() == JSonToken.KEY) {
+                final String key = this.getText();
+                this.nextToken();
+                obj.put(key, this.readNode());
+            }
+            return obj;
+        case START_ARRAY:
+            final JSonArray arr = new JSonArray();
+            while (this.nextToken() != JSonToken.END_ARRAY) {
+                arr.add(this.readNode());
+            }
+            return arr;
+        case STRING:
+            return new JSonValue(this.getText());
+        case LONG:
+            return new JSonValue(this.longValue);
+        case DOUBLE:
+            return new JSonValue(this.doubleValue);
+        case BOOLEAN:
+            return new JSonValue(this.booleanValue);
+        case NULL:
+            return new JSonValue((String) null);
+        default:
+            throw this.bam("Value expected");
+        }
+    }
+
+    private JSonToken readNumber(int c) throws IOException, ParserException {
+        this.clen = 0;
+        boolean negative = false;
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            this.append((char) c);
+            this.pos++;
+            c = this.peek();
+        }
+        /* fast path: up to 18 significant digits fit into a long */
+        long mantissa = 0;
+        int mantissaDigits = 0;
+        int exponent = 0;
+        boolean truncated = false;
+        boolean floating = false;
+        int digits = 0;
+        while (c >= '0' && c <= '9') {
+            this.append((char) c);
+            if (mantissaDigits < 18) {
+                mantissa = mantissa * 10 + c - '0';
+                if (mantissa != 0) {
+                    mantissaDigits++;
+                }
+            } else {
+                truncated = true;
+            }
+            digits++;
+            this.pos++;
+            c = this.peek();
+        }
+        if (digits == 0) {
+            throw this.bam("Illegal Char");
+        }
+        if (c == '.') {
+            floating = true;
+            this.append('.');
+            this.pos++;
+            c = this.peek();
+            while (c >= '0' && c <= '9') {
+                this.append((char) c);
+                if (mantissaDigits < 18) {
+                    mantissa = mantissa * 10 + c - '0';
+                    if (mantissa != 0) {
+                        mantissaDigits++;
+                    }
+                    exponent--;
+                } else {
+                    truncated = true;
+                }
+                this.pos++;
+                c = this.peek();
+            }
+        }
+        if (c == 'e' || c == 'E') {
+            floating = true;
+            this.append((char) c);
+            this.pos++;
+            c = this.peek();
+            boolean negativeExponent = false;
+            if (c == '-' || c == '+') {
+                negativeExponent = c == '-';
+                this.append((char) c);
+                this.pos++;
+                c = this.peek();
+            }
+            int exp = 0;
+            digits = 0;
+            while (c >= '0' && c <= '9') {
+                this.append((char) c);
+                if (exp < 100000) {
+                    exp = exp * 10 + c - '0';
+                }
+                digits++;
+                this.pos++;
+                c = this.peek();
+            }
+            if (digits == 0) {
+                throw this.bam("Illegal Number");
+            }
+            exponent += negativeExponent ? -exp : exp;
+        }
+        if (!floating) {
+            if (!truncated) {
+                this.longValue = negative ? -mantissa : mantissa;
+            } else {
+                try {
+                    final int start = this.cbuf[0] == '+' ? 1 : 0;
+                    this.longValue = Long.parseLong(new String(this.cbuf, start, this.clen - start));
+                } catch (final NumberFormatException e) {
+                    throw this.bam("Number out of range");
+                }
+            }
+            return JSonToken.LONG;
+        }
+        if (!truncated && mantissaDigits <= 15 && exponent >= -22 && exponent <= 22) {
+            /* mantissa and 10^exponent are exact doubles, so a single operation is correctly rounded */
+            final double d = exponent < 0 ? mantissa / JSonPullParser.POW10[-exponent] : mantissa * JSonPullParser.POW10[exponent];
+            this.doubleValue = negative ? -d : d;
+        } else {
+            /* token still refers to the previous token here, so do not go through getText */
+            this.text = new String(this.cbuf, 0, this.clen);
+            this.doubleValue = Double.parseDouble(this.text);
+        }
+        return JSonToken.DOUBLE;
+    }
+
+    private void readString() throws IOException, ParserException {
+        this.clen = 0;
+        while (true) {
+            if (this.pos >= this.limit && !this.fill()) {
+                throw this.bam("Unexpected End of String \"" + new String(this.cbuf, 0, this.clen));
+            }
+            /* fast path for ascii runs */
+            final byte[] b = this.buf;
+            final int l = this.limit;
+            int p = this.pos;
+            char[] cb = this.cbuf;
+            int cl = this.clen;
+            int c = 0;
+            while (p < l) {
+                c = b[p];
+                if (c == '"' || c == '\\' || c < 0) {
+                    break;
+                }
+                if (cl == cb.length) {
+                    cb = this.cbuf = Arrays.copyOf(cb, cl * 2);
+                }
+                cb[cl++] = (char) c;
+                p++;
+            }
+            this.clen = cl;
+            this.pos = p;
+            if (p < l) {
+                this.pos++;
+                if (c == '"') {
+                    return;
+                } else if (c == '\\') {
+                    this.readEscape();
+                } else {
+                    this.readMultiByte(c & 0xff);
+                }
+            }
+        }
+    }
+
+    private JSonToken readKey(final int c) throws IOException, ParserException {
+        if (c != '"') {
+            throw this.bam("\" expected");
+        }
+        this.pos++;
+        this.readString();
+        this.state[this.depth] = JSonPullParser.STATE_KEY;
+        return JSonToken.KEY;
+    }
+
+    /**
+     * reads the next token and updates the token values. Subclasses for other encodings override this
+     *
+     * @return
+     * @throws IOException
+     * @throws ParserException
+     */
+    protected JSonToken readToken() throws IOException, ParserException {
+        int c = this.skipWhiteSpace();
+        final int ctx = this.context[this.depth];
+        if (c < 0 && ctx != JSonPullParser.CTX_ROOT) {
+            throw this.bam("Ended unexpected");
+        }
+        switch (ctx) {
+        case CTX_ROOT:
+            if (this.state[0] == JSonPullParser.STATE_VALUE) {
+                if (c < 0) {
+                    return JSonToken.EOF;
+                }
+                throw this.bam("Unexpected End of JSonString");
+            }
+            if (c == 0xEF && this.getPosition() == 0) {
+                /* UTF-8 BOM */
+                this.pos++;
+                if (this.read() != 0xBB || this.read() != 0xBF) {
+                    throw this.bam("Illegal Char");
+                }
+                c = this.skipWhiteSpace();
+            }
+            this.state[0] = JSonPullParser.STATE_VALUE;
+            return this.readValue(c);
+        case CTX_OBJECT:
+            switch (this.state[this.depth]) {
+            case STATE_START:
+                if (c == '}') {
+                    this.pos++;
+                    this.depth--;
+                    return JSonToken.END_OBJECT;
+                }
+                return this.readKey(c);
+            case STATE_KEY:
+                if (c != ':') {
+                    throw this.bam("':' expected");
+                }
+                this.pos++;
+                this.state[this.depth] = JSonPullParser.STATE_VALUE;
+                return this.readValue(this.skipWhiteSpace());
+            default:
+                if (c == ',') {
+                    this.pos++;
+                    return this.readKey(this.skipWhiteSpace());
+                } else if (c == '}') {
+                    this.pos++;
+                    this.depth--;
+                    return JSonToken.END_OBJECT;
+                }
+                throw this.bam(", or }' expected");
+            }
+        default:
+            if (c == ']') {
+                this.pos++;
+                this.depth--;
+                return JSonToken.END_ARRAY;
+            }
+            if (this.state[this.depth] == JSonPullParser.STATE_START) {
+                if (c == ',') {
+                    throw this.bam("Value missing");
+                }
+            } else {
+                if (c != ',') {
+                    throw this.bam("']' or ',' expected");
+                }
+                this.pos++;
+                c = this.skipWhiteSpace();
+            }
+            this.state[this.depth] = JSonPullParser.STATE_VALUE;
+            return this.readValue(c);
+        }
+    }
+
+    private JSonToken readValue(final int c) throws IOException, ParserException {
+        switch (c) {
+        case '{':
+            this.pos++;
+            this.push(JSonPullParser.CTX_OBJECT);
+            return JSonToken.START_OBJECT;
+        case '[':
+            this.pos++;
+            this.push(JSonPullParser.CTX_ARRAY);
+            return JSonToken.START_ARRAY;
+        case '"':
+            this.pos++;
+            this.readString();
+            return JSonToken.STRING;
+        case 't':
+            this.readLiteral("true");
+            this.booleanValue = true;
+            return JSonToken.BOOLEAN;
+        case 'f':
+            this.readLiteral("false");
+            this.booleanValue = false;
+            return JSonToken.BOOLEAN;
+        case 'n':
+            this.readLiteral("null");
+            return JSonToken.NULL;
+        case -1:
+            throw this.bam("Ended unexpected");
+        default:
+            if (c == '-' || c == '+' || c >= '0' && c <= '9') {
+                return this.readNumber(c);
+            }
+            throw this.bam("Illegal Char");
+        }
+    }
+
+    /**
+     * if the current token is START_OBJECT or START_ARRAY, all tokens up to the matching END_* token are skipped.
+     *
+     * @throws ParserException
+     */
+    public void skipChildren() throws ParserException {
+        if (this.token != JSonToken.START_OBJECT && this.token != JSonToken.START_ARRAY) {
+            return;
+        }
+        int open = 1;
+        while (open > 0) {
+            switch (this.nextToken()) {
+            case START_OBJECT:
+            case START_ARRAY:
+                open++;
+                break;
+            case END_OBJECT:
+            case END_ARRAY:
+                open--;
+                break;
+            case EOF:
+                throw this.bam("Ended unexpected");
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * skips whitespace and returns (but does not consume) the next byte. -1 on end of input
+     *
+     * @return
+     * @throws IOException
+     */
+    private int skipWhiteSpace() throws IOException {
+        while (true) {
+            if (this.pos >= this.limit && !this.fill()) {
+                return -1;
+            }
+            final int c = this.buf[this.pos] & 0xff;
+            switch (c) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\r':
+            case '\f':
+            case 0x0B:
+            case 0x1C:
+            case 0x1D:
+            case 0x1E:
+            case 0x1F:
+                this.pos++;
+                continue;
+            default:
+                return c;
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.simplejson;
+
+import java.util.Arrays;
+
+/**
+ * Bounded table of canonical Strings for object keys and short values. Large maps with repeated keys (e.g. a list of beans) otherwise
+ * create one String per occurrence. Lookups work on the parser's char buffer, so a hit does not allocate at all.<br>
+ * The table is direct mapped and lossy: a colliding symbol simply replaces the old one. Entries are immutable Strings, so unsynchronized
+ * access from several parsers is safe - a racing reader just sees a miss.
+ *
+ * @author thomas
+ *
+ */
+public class JSonSymbolTable {
+
+    private static volatile JSonSymbolTable SHARED = new JSonSymbolTable(4096, 128, 32);
+
+    /**
+     * @return the table new parsers use, or null if deduplication is disabled
+     */
+    public static JSonSymbolTable getShared() {
+        return JSonSymbolTable.SHARED;
+    }
+
+    /**
+     * @param table
+     *            table for parsers created from now on. null disables deduplication
+     */
+    public static void setShared(final JSonSymbolTable table) {
+        JSonSymbolTable.SHARED = table;
+    }
+
+    /**
+     * adds a known key (e.g. a bean property name) to the shared table, so parsed keys reuse that instance
+     *
+     * @param key
+     */
+    public static void register(final String key) {
+        final JSonSymbolTable table = JSonSymbolTable.SHARED;
+        if (table != null) {
+            table.intern(key, true);
+        }
+    }
+
+    private final String[] symbols;
+    private final int      mask;
+    private final int      maxKeyLength;
+    private final int      maxValueLength;
+
+    /**
+     * @param capacity
+     *            number of slots, rounded up to a power of two
+     * @param maxKeyLength
+     *            longer keys are not deduplicated
+     * @param maxValueLength
+     *            longer string values are not deduplicated. 0 disables value deduplication
+     */
+    public JSonSymbolTable(final int capacity, final int maxKeyLength, final int maxValueLength) {
+        int size = 16;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.symbols = new String[size];
+        this.mask = size - 1;
+        this.maxKeyLength = maxKeyLength;
+        this.maxValueLength = maxValueLength;
+    }
+
+    public int getCapacity() {
+        return this.symbols.length;
+    }
+
+    public int getMaxKeyLength() {
+        return this.maxKeyLength;
+    }
+
+    public int getMaxValueLength() {
+        return this.maxValueLength;
+    }
+
+    public void clear() {
+        Arrays.fill(this.symbols, null);
+    }
+
+    private int index(final int hash) {
+        return (hash ^ hash >>> 16) & this.mask;
+    }
+
+    /**
+     * @param chars
+     * @param offset
+     * @param length
+     * @param key
+     *            true for object keys, false for string values
+     * @return a canonical String with the given content
+     */
+    public String lookup(final char[] chars, final int offset, final int length, final boolean key) {
+        if (length > (key ? this.maxKeyLength : this.maxValueLength)) {
+            return new String(chars, offset, length);
+        }
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        final int index = this.index(hash);
+        final String existing = this.symbols[index];
+        if (existing != null && existing.length() == length && existing.hashCode() == hash) {
+            int i = 0;
+            while (i < length && existing.charAt(i) == chars[offset + i]) {
+                i++;
+            }
+            if (i == length) {
+                return existing;
+            }
+        }
+        final String ret = new String(chars, offset, length);
+        this.symbols[index] = ret;
+        return ret;
+    }
+
+    /**
+     * @param sb
+     * @param key
+     *            true for object keys, false for string values
+     * @return a canonical String with the content of sb
+     */
+    public String lookup(final CharSequence sb, final boolean key) {
+        final int length = sb.length();
+        if (length > (key ? this.maxKeyLength : this.maxValueLength)) {
+            return sb.toString();
+        }
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + sb.charAt(i);
+        }
+        final int index = this.index(hash);
+        final String existing = this.symbols[index];
+        if (existing != null && existing.length() == length && existing.hashCode() == hash) {
+            int i = 0;
+            while (i < length && existing.charAt(i) == sb.charAt(i)) {
+                i++;
+            }
+            if (i == length) {
+                return existing;
+            }
+        }
+        final String ret = sb.toString();
+        this.symbols[index] = ret;
+        return ret;
+    }
+
+    /**
+     * @param string
+     * @param key
+     *            true for object keys, false for string values
+     * @return the canonical instance of string. string itself if it is too long or has not been seen before
+     */
+    public String intern(final String string, final boolean key) {
+        final int length = string.length();
+        if (length > (key ? this.maxKeyLength : this.maxValueLength)) {
+            return string;
+        }
+        final int index = this.index(string.hashCode());
+        final String existing = this.symbols[index];
+        if (existing != null && existing.equals(string)) {
+            return existing;
+        }
+        this.symbols[index] = string;
+        return string;
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.simplejson.mapper;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.appwork.utils.reflection.ClassFileWriter;
+import org.appwork.utils.reflection.ClassFileWriter.Code;
+
+/**
+ * Creates an {@link Accessor} class per getter, setter or null constructor that calls it directly, like
+ * {@link org.appwork.storage.config.handler.ConfigInterfaceGenerator} does for config interfaces. The accessor is defined in its own
+ * classloader next to the declaring class, so only public members of public classes can be reached. For everything else null is
+ * returned and the caller keeps using reflection.
+ *
+ * The generated code does not check or convert anything: setters get only values of the exact (boxed) parameter type, the caller
+ * has to use reflection for everything else.
+ *
+ * @author thomas
+ *
+ */
+public class AccessorGenerator {
+    private static final String        ACCESSOR_NAME = "org/appwork/storage/simplejson/mapper/Accessor";
+    private static final AtomicInteger COUNTER       = new AtomicInteger();
+
+    /**
+     * Accessor is always taken from this library, even if the classloader of the declaring class would find another one
+     */
+    private static class GeneratedClassLoader extends ClassLoader {
+        private GeneratedClassLoader(final ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            if (Accessor.class.getName().equals(name)) {
+                return Accessor.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        private Class<?> define(final String name, final byte[] bytes) {
+            return this.defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static final int ALOAD_0       = 0x2a;
+    private static final int ALOAD_1       = 0x2b;
+    private static final int ALOAD_2       = 0x2c;
+    private static final int POP           = 0x57;
+    private static final int POP2          = 0x58;
+    private static final int DUP           = 0x59;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC  = 0xb8;
+    private static final int NEW           = 0xbb;
+    private static final int CHECKCAST     = 0xc0;
+    private static final int ARETURN       = 0xb0;
+    private static final int RETURN        = 0xb1;
+
+    /**
+     * @param m
+     *            a getter without parameters
+     * @return an accessor whose {@link Accessor#get(Object)} calls m, or null
+     */
+    public static Accessor createGetter(final Method m) {
+        if (!isSupported(m) || m.getParameterTypes().length != 0 || m.getReturnType() == void.class) {
+            return null;
+        }
+        final Class<?> owner = m.getDeclaringClass();
+        try {
+            final String name = getName(owner, m.getName());
+            final ClassFileWriter cw = createClass(name);
+            final Class<?> type = m.getReturnType();
+            final Code code = new Code(2, 2);
+            code.op(ALOAD_1).op(CHECKCAST, cw.classRef(ClassFileWriter.getInternalName(owner)));
+            code.op(INVOKEVIRTUAL, cw.methodRef(ClassFileWriter.getInternalName(owner), m.getName(), ClassFileWriter.getDescriptor(m)));
+            if (type.isPrimitive()) {
+                final Class<?> wrapper = getWrapper(type);
+                code.op(INVOKESTATIC, cw.methodRef(ClassFileWriter.getInternalName(wrapper), "valueOf", "(" + ClassFileWriter.getDescriptor(type) + ")" + ClassFileWriter.getDescriptor(wrapper)));
+            }
+            code.op(ARETURN);
+            cw.method("get", "(Ljava/lang/Object;)Ljava/lang/Object;", code);
+            return define(owner, name, cw);
+        } catch (final Throwable e) {
+            org.appwork.utils.logging2.extmanager.LoggerFactory.getDefaultLogger().log(e);
+            return null;
+        }
+    }
+
+    /**
+     * @param m
+     *            a setter with one parameter
+     * @return an accessor whose {@link Accessor#set(Object, Object)} calls m, or null
+     */
+    public static Accessor createSetter(final Method m) {
+        if (!isSupported(m) || m.getParameterTypes().length != 1 || !isAccessible(m.getParameterTypes()[0])) {
+            return null;
+        }
+        final Class<?> owner = m.getDeclaringClass();
+        try {
+            final String name = getName(owner, m.getName());
+            final ClassFileWriter cw = createClass(name);
+            final Class<?> type = m.getParameterTypes()[0];
+            final Code code = new Code(4, 3);
+            code.op(ALOAD_1).op(CHECKCAST, cw.classRef(ClassFileWriter.getInternalName(owner)));
+            code.op(ALOAD_2);
+            if (type.isPrimitive()) {
+                final Class<?> wrapper = getWrapper(type);
+                code.op(CHECKCAST, cw.classRef(ClassFileWriter.getInternalName(wrapper)));
+                code.op(INVOKEVIRTUAL, cw.methodRef(ClassFileWriter.getInternalName(wrapper), type.getName() + "Value", "()" + ClassFileWriter.getDescriptor(type)));
+            } else if (type != Object.class) {
+                code.op(CHECKCAST, cw.classRef(ClassFileWriter.getInternalName(type)));
+            }
+            code.op(INVOKEVIRTUAL, cw.methodRef(ClassFileWriter.getInternalName(owner), m.getName(), ClassFileWriter.getDescriptor(m)));
+            /* chained setters return a value */
+            if (m.getReturnType() == long.class || m.getReturnType() == double.class) {
+                code.op(POP2);
+            } else if (m.getReturnType() != void.class) {
+                code.op(POP);
+            }
+            code.op(RETURN);
+            cw.method("set", "(Ljava/lang/Object;Ljava/lang/Object;)V", code);
+            return define(owner, name, cw);
+        } catch (final Throwable e) {
+            org.appwork.utils.logging2.extmanager.LoggerFactory.getDefaultLogger().log(e);
+            return null;
+        }
+    }
+
+    /**
+     * @param c
+     *            a constructor without parameters
+     * @return an accessor whose {@link Accessor#newInstance()} calls c, or null
+     */
+    public static Accessor createConstructor(final Constructor<?> c) {
+        final Class<?> owner = c.getDeclaringClass();
+        if (!Modifier.isPublic(c.getModifiers()) || c.getParameterTypes().length != 0 || Modifier.isAbstract(owner.getModifiers()) || owner.isInterface() || !isAccessible(owner)) {
+            return null;
+        }
+        try {
+            final String name = getName(owner, "new");
+            final ClassFileWriter cw = createClass(name);
+            final Code code = new Code(2, 1);
+            code.op(NEW, cw.classRef(ClassFileWriter.getInternalName(owner))).op(DUP);
+            code.op(INVOKESPECIAL, cw.methodRef(ClassFileWriter.getInternalName(owner), "<init>", "()V"));
+            code.op(ARETURN);
+            cw.method("newInstance", "()Ljava/lang/Object;", code);
+            return define(owner, name, cw);
+        } catch (final Throwable e) {
+            org.appwork.utils.logging2.extmanager.LoggerFactory.getDefaultLogger().log(e);
+            return null;
+        }
+    }
+
+    private static boolean isSupported(final Method m) {
+        final Class<?> owner = m.getDeclaringClass();
+        return Modifier.isPublic(m.getModifiers()) && !Modifier.isStatic(m.getModifiers()) && !owner.isInterface() && isAccessible(owner);
+    }
+
+    /**
+     * @return true if the type can be used by a class of another classloader
+     */
+    private static boolean isAccessible(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        for (Class<?> c = type; c != null; c = c.getDeclaringClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Class<?> getWrapper(final Class<?> type) {
+        if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        } else if (type == char.class) {
+            return Character.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == double.class) {
+            return Double.class;
+        }
+        throw new IllegalArgumentException(type + " is no primitive");
+    }
+
+    /**
+     * @param type
+     *            the primitive type
+     * @return the class of the boxed values that the accessor of this type accepts
+     */
+    public static Class<?> getAcceptedType(final Class<?> type) {
+        return type.isPrimitive() ? getWrapper(type) : type;
+    }
+
+    private static String getName(final Class<?> owner, final String member) {
+        /* accessors of java.* classes must not be defined in the java package */
+        return Accessor.class.getName() + "$$" + owner.getSimpleName() + "_" + member + "_" + COUNTER.incrementAndGet();
+    }
+
+    private static ClassFileWriter createClass(final String name) throws IOException {
+        final ClassFileWriter cw = new ClassFileWriter();
+        final Code init = new Code(1, 1);
+        init.op(ALOAD_0).op(INVOKESPECIAL, cw.methodRef(ACCESSOR_NAME, "<init>", "()V")).op(RETURN);
+        cw.method("<init>", "()V", init);
+        return cw;
+    }
+
+    private static Accessor define(final Class<?> owner, final String name, final ClassFileWriter cw) throws Exception {
+        final Class<?> clazz = new GeneratedClassLoader(owner.getClassLoader()).define(name, cw.toByteArray(name.replace('.', '/'), ACCESSOR_NAME));
+        /* links and verifies the class, so a broken accessor is never returned */
+        return (Accessor) clazz.newInstance();
+    }
+}
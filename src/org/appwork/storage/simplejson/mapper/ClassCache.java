@@ -39,18 +39,21 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.appwork.storage.simplejson.Ignore;
 import org.appwork.storage.simplejson.Ignores;
+import org.appwork.storage.simplejson.JSonSymbolTable;
 
 /**
  * @author thomas
  *
  */
 public class ClassCache {
-    private static final HashMap<Class<?>, ClassCache> CACHE        = new HashMap<Class<?>, ClassCache>();
-    private static final Object[]                      EMPTY_OBJECT = new Object[] {};
-    private static final Class<?>[]                    EMPTY_TYPES  = new Class[] {};
+    /* accessed by all mapping threads, so it has to be a concurrent map */
+    private static final ConcurrentHashMap<Class<?>, ClassCache> CACHE        = new ConcurrentHashMap<Class<?>, ClassCache>();
+    private static final Object[]                                EMPTY_OBJECT = new Object[] {};
+    private static final Class<?>[]                              EMPTY_TYPES  = new Class[] {};
 
     /**
      * @param clazz
@@ -104,6 +107,7 @@ public class ClassCache {
                 try {
                     c.setAccessible(true);
                     cc.constructor = c;
+                    cc.constructorAccessor = AccessorGenerator.createConstructor(c);
                 } catch (final java.lang.SecurityException e) {
                     org.appwork.utils.logging2.extmanager.LoggerFactory.getDefaultLogger().log(e);
                 }
@@ -156,13 +160,26 @@ public class ClassCache {
     public static ClassCache getClassCache(final Class<? extends Object> clazz) throws SecurityException, NoSuchMethodException {
         ClassCache cc = ClassCache.CACHE.get(clazz);
         if (cc == null) {
+            /* the ClassCache is completely initialized before it gets published */
             cc = ClassCache.create(clazz);
-            ClassCache.CACHE.put(clazz, cc);
+            final ClassCache existing = ClassCache.CACHE.putIfAbsent(clazz, cc);
+            if (existing != null) {
+                return existing;
+            }
+            /* parsed keys of this class will reuse the property name instances */
+            for (final Setter s : cc.setter) {
+                JSonSymbolTable.register(s.getKey());
+            }
+            for (final Getter g : cc.getter) {
+                JSonSymbolTable.register(g.getKey());
+            }
         }
         return cc;
     }
 
     protected Constructor<? extends Object> constructor;
+    /* generated direct call, null if the constructor is not public */
+    protected Accessor                      constructorAccessor;
 
     protected final Class<? extends Object> clazz;
     protected final java.util.List<Getter>  getter;
@@ -197,8 +214,15 @@ public class ClassCache {
      * @throws IllegalArgumentException
      */
     public Object getInstance() throws IllegalArgumentException, InstantiationException, IllegalAccessException, InvocationTargetException {
-
-        return constructor.newInstance(ClassCache.EMPTY_OBJECT);
+        if (this.constructorAccessor == null) {
+            return this.constructor.newInstance(ClassCache.EMPTY_OBJECT);
+        }
+        try {
+            return this.constructorAccessor.newInstance();
+        } catch (final Throwable e) {
+            /* same as Constructor.newInstance */
+            throw new InvocationTargetException(e);
+        }
     }
 
     public java.util.List<Setter> getSetter() {
@@ -44,8 +44,10 @@ import org.appwork.storage.config.annotations.JSonFieldName;
  */
 public class Getter {
 
-    private final String key;
-    private final Method method;
+    private final String   key;
+    private final Method   method;
+    /* generated direct call, null if the method is not public */
+    private final Accessor accessor;
 
     /**
      * @param substring
@@ -60,6 +62,7 @@ public class Getter {
         }
         this.method = m;
         m.setAccessible(true);
+        this.accessor = AccessorGenerator.createGetter(m);
     }
 
     public String getKey() {
@@ -78,8 +81,15 @@ public class Getter {
      * @throws IllegalArgumentException
      */
     public Object getValue(final Object obj) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-
-        return this.method.invoke(obj);
+        if (this.accessor == null) {
+            return this.method.invoke(obj);
+        }
+        try {
+            return this.accessor.get(obj);
+        } catch (final Throwable e) {
+            /* same as Method.invoke */
+            throw new InvocationTargetException(e);
+        }
     }
 
 }
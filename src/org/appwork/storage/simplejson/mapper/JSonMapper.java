@@ -34,6 +34,7 @@
 package org.appwork.storage.simplejson.mapper;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.InvocationTargetException;
@@ -53,9 +54,15 @@ import java.util.Map.Entry;
 
 import org.appwork.storage.TypeRef;
 import org.appwork.storage.simplejson.JSonArray;
+import org.appwork.storage.simplejson.JSonGenerator;
+import org.appwork.storage.simplejson.JSonLazyDocument;
+import org.appwork.storage.simplejson.JSonLazyNode;
 import org.appwork.storage.simplejson.JSonNode;
 import org.appwork.storage.simplejson.JSonObject;
+import org.appwork.storage.simplejson.JSonPullParser;
+import org.appwork.storage.simplejson.JSonToken;
 import org.appwork.storage.simplejson.JSonValue;
+import org.appwork.storage.simplejson.ParserException;
 import org.appwork.utils.StringUtils;
 import org.appwork.utils.reflection.Clazz;
 
@@ -254,6 +261,83 @@ public class JSonMapper {
         return null;
     }
 
+    /**
+     * Streaming version of {@link #create(Object)}. Writes obj directly into the generator without building a {@link JSonNode} tree.
+     * The output is the same as create(obj).toString()
+     *
+     * @param obj
+     * @param gen
+     * @throws MapperException
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    public void write(final Object obj, final JSonGenerator gen) throws MapperException, IOException {
+        try {
+            if (obj == null) {
+                gen.writeNull();
+                return;
+            }
+            final Class<? extends Object> clazz = obj.getClass();
+            TypeMapper<?> mapper;
+            if (clazz.isEnum()) {
+                gen.writeString(obj + "");
+            } else if (obj instanceof Boolean) {
+                gen.writeBoolean(((Boolean) obj).booleanValue());
+            } else if (obj instanceof Character) {
+                gen.writeLong(0 + ((Character) obj).charValue());
+            } else if (obj instanceof Byte || obj instanceof Short || obj instanceof Integer || obj instanceof Long) {
+                gen.writeLong(((Number) obj).longValue());
+            } else if (obj instanceof Float || obj instanceof Double) {
+                gen.writeDouble(((Number) obj).doubleValue());
+            } else if (obj instanceof String) {
+                gen.writeString((String) obj);
+            } else if (obj instanceof Map) {
+                gen.writeStartObject();
+                Entry<Object, Object> next;
+                for (final Iterator<Entry<Object, Object>> it = ((Map<Object, Object>) obj).entrySet().iterator(); it.hasNext();) {
+                    next = it.next();
+                    if (!(next.getKey() instanceof String)) {
+                        throw new MapperException("Map keys have to be Strings: " + clazz + " Keyclass:" + (next.getKey() == null ? "<null>" : next.getKey().getClass()));
+                    }
+                    gen.writeKey(next.getKey().toString());
+                    write(next.getValue(), gen);
+                }
+                gen.writeEndObject();
+            } else if (obj instanceof Collection) {
+                gen.writeStartArray();
+                for (final Object o : (Collection<?>) obj) {
+                    write(o, gen);
+                }
+                gen.writeEndArray();
+            } else if (clazz.isArray()) {
+                gen.writeStartArray();
+                final int length = Array.getLength(obj);
+                for (int i = 0; i < length; i++) {
+                    write(Array.get(obj, i), gen);
+                }
+                gen.writeEndArray();
+            } else if (obj instanceof Class) {
+                gen.writeString(((Class<?>) obj).getName());
+            } else if ((mapper = typeMapper.get(clazz)) != null) {
+                gen.writeRawValue(mapper.map(obj).toString());
+            } else/* if (obj instanceof Storable) */{
+                final ClassCache cc = ClassCache.getClassCache(clazz);
+                gen.writeStartObject();
+                for (final Getter g : cc.getGetter()) {
+                    gen.writeKey(g.getKey());
+                    write(g.getValue(obj), gen);
+                }
+                gen.writeEndObject();
+            }
+        } catch (final IllegalAccessException e) {
+            throw new MapperException(e);
+        } catch (final InvocationTargetException e) {
+            throw new MapperException(e);
+        } catch (final NoSuchMethodException e) {
+            throw new MapperException(e);
+        }
+    }
+
     public boolean isIgnoreIllegalArgumentMappings() {
         return ignoreIllegalArgumentMappings;
     }
@@ -523,6 +607,341 @@ public class JSonMapper {
         return null;
     }
 
+    /**
+     * Binds json directly from the parser tokens without building a {@link JSonNode} tree first. If the parser has not been started
+     * yet, the whole document is read and trailing data is rejected. Otherwise the value at the current token is read and the parser
+     * is left at the last token of that value.
+     *
+     * @param parser
+     * @param type
+     * @return
+     * @throws MapperException
+     */
+    public Object jsonToObject(final JSonPullParser parser, final Type type) throws MapperException {
+        try {
+            if (parser.getToken() == null) {
+                parser.nextToken();
+                final Object ret = this.readObject(parser, type);
+                if (parser.nextToken() != JSonToken.EOF) {
+                    throw new MapperException("Unexpected End of JSonString @" + parser.getPosition());
+                }
+                return ret;
+            }
+            return this.readObject(parser, type);
+        } catch (final ParserException e) {
+            throw new MapperException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T jsonToObject(final JSonPullParser parser, final TypeRef<T> type) throws MapperException {
+        return (T) this.jsonToObject(parser, type.getType());
+    }
+
+    /**
+     * maps a value of a {@link JSonLazyDocument}. Only this value is decoded
+     *
+     * @param node
+     * @param type
+     * @return
+     * @throws MapperException
+     */
+    public Object jsonToObject(final JSonLazyNode node, final Type type) throws MapperException {
+        return this.jsonToObject(node.createParser(), type);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T jsonToObject(final JSonLazyNode node, final TypeRef<T> type) throws MapperException {
+        return (T) this.jsonToObject(node.createParser(), type.getType());
+    }
+
+    /**
+     * Selective projection of a lazy json object into a new clazz instance. Only the given properties (all setters of clazz if none are
+     * given) are decoded, all other members of the object are never touched.
+     *
+     * @param node
+     * @param clazz
+     * @param properties
+     *            keys as used by {@link ClassCache}
+     * @return
+     * @throws MapperException
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T project(final JSonLazyNode node, final Class<T> clazz, final String... properties) throws MapperException {
+        if (!node.isObject()) {
+            return (T) this.jsonToObject(node, clazz);
+        }
+        try {
+            final ClassCache cc = ClassCache.getClassCache(clazz);
+            final Object inst = cc.getInstance();
+            if (properties == null || properties.length == 0) {
+                for (final JSonLazyNode member : node.getChildren()) {
+                    this.project(inst, cc.getSetter(member.getKey()), member);
+                }
+            } else {
+                for (final String property : properties) {
+                    final JSonLazyNode member = node.get(property);
+                    if (member != null) {
+                        this.project(inst, cc.getSetter(property), member);
+                    }
+                }
+            }
+            return (T) inst;
+        } catch (final NoSuchMethodException e) {
+            throw new MapperException(e);
+        } catch (final InstantiationException e) {
+            throw new MapperException(e);
+        } catch (final IllegalAccessException e) {
+            throw new MapperException(e);
+        } catch (final InvocationTargetException e) {
+            throw new MapperException(e);
+        }
+    }
+
+    private void project(final Object inst, final Setter s, final JSonLazyNode member) throws MapperException, IllegalAccessException, InvocationTargetException {
+        if (s == null) {
+            return;
+        }
+        final Object v = this.jsonToObject(member, s.getType());
+        try {
+            s.setValue(inst, v);
+        } catch (final IllegalArgumentException e) {
+            if (isIgnoreIllegalArgumentMappings()) {
+                return;
+            } else if (v == null && isIgnorePrimitiveNullMapping()) {
+                return;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Tree-less version of {@link #jsonToObject(JSonNode, Type)}. Has to follow the same mapping rules
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object readObject(final JSonPullParser parser, Type type) throws MapperException, ParserException {
+        final JSonToken token = parser.getToken();
+        final boolean container = token == JSonToken.START_OBJECT || token == JSonToken.START_ARRAY;
+        final int depth = container ? parser.getDepth() - 1 : parser.getDepth();
+        try {
+            Class<?> clazz = null;
+            if (type instanceof ParameterizedType) {
+                final Type typ = ((ParameterizedType) type).getRawType();
+                if (typ instanceof Class) {
+                    clazz = (Class<?>) typ;
+                }
+            } else if (type instanceof Class) {
+                clazz = (Class) type;
+            } else if (type instanceof GenericArrayType) {
+                type = clazz = Array.newInstance((Class<?>) ((GenericArrayType) type).getGenericComponentType(), 0).getClass();
+            }
+            if (clazz == null || clazz == Object.class) {
+                switch (token) {
+                case START_ARRAY:
+                    type = clazz = LinkedList.class;
+                    break;
+                case START_OBJECT:
+                    type = clazz = HashMap.class;
+                    break;
+                case BOOLEAN:
+                    type = clazz = boolean.class;
+                    break;
+                case DOUBLE:
+                    type = clazz = double.class;
+                    break;
+                case LONG:
+                    type = clazz = long.class;
+                    break;
+                case NULL:
+                case STRING:
+                    type = clazz = String.class;
+                    break;
+                default:
+                    throw new MapperException("Value expected @" + parser.getPosition());
+                }
+            }
+            final TypeMapper<?> tm = typeMapper.get(clazz);
+            if (tm != null) {
+                return tm.reverseMap(parser.readNode());
+            }
+            if (!container) {
+                final Object value = parser.getValue();
+                if (!Clazz.isPrimitive(type) && !Clazz.isString(type) && type != Object.class && value != null && !Clazz.isEnum(type)) {
+                    throw new MapperException(parser.readNode() + " cannot be mapped to " + type);
+                }
+                switch (token) {
+                case BOOLEAN:
+                case DOUBLE:
+                case LONG:
+                    if (type instanceof Class) {
+                        return JSonMapper.cast(value, (Class) type);
+                    } else {
+                        return value;
+                    }
+                case STRING:
+                    if (type instanceof Class && ((Class<?>) type).isEnum()) {
+                        try {
+                            return Enum.valueOf((Class<Enum>) type, (String) value);
+                        } catch (final IllegalArgumentException e) {
+                            if (isIgnoreIllegalArgumentMappings() || isIgnoreIllegalEnumMappings()) {
+                                return null;
+                            }
+                            throw e;
+                        }
+                    } else {
+                        return value;
+                    }
+                default:
+                    return null;
+                }
+            }
+            if (type instanceof ParameterizedType) {
+                final ParameterizedType pType = (ParameterizedType) type;
+                final Type raw = pType.getRawType();
+                if (raw instanceof Class && Collection.class.isAssignableFrom((Class) raw)) {
+                    this.expect(parser, JSonToken.START_ARRAY, type);
+                    final Collection<Object> inst = (Collection<Object>) mapClasses((Class) raw).newInstance();
+                    final Type gType = pType.getActualTypeArguments()[0];
+                    while (parser.nextToken() != JSonToken.END_ARRAY) {
+                        inst.add(this.readObject(parser, gType));
+                    }
+                    return inst;
+                } else if (raw instanceof Class && Map.class.isAssignableFrom((Class) raw)) {
+                    this.expect(parser, JSonToken.START_OBJECT, type);
+                    final Map<String, Object> inst = (Map<String, Object>) mapClasses((Class) raw).newInstance();
+                    this.readMap(parser, inst, pType.getActualTypeArguments()[1]);
+                    return inst;
+                }
+            }
+            if (Collection.class.isAssignableFrom(clazz)) {
+                this.expect(parser, JSonToken.START_ARRAY, type);
+                final Collection<Object> inst = (Collection<Object>) mapClasses(clazz).newInstance();
+                final Type gs = clazz.getGenericSuperclass();
+                final Type gType;
+                if (gs instanceof ParameterizedType) {
+                    gType = ((ParameterizedType) gs).getActualTypeArguments()[0];
+                } else {
+                    gType = void.class;
+                }
+                while (parser.nextToken() != JSonToken.END_ARRAY) {
+                    inst.add(this.readObject(parser, gType));
+                }
+                return inst;
+            } else if (Map.class.isAssignableFrom(clazz)) {
+                this.expect(parser, JSonToken.START_OBJECT, type);
+                final Map<String, Object> inst = (Map<String, Object>) mapClasses(clazz).newInstance();
+                final Type gs = clazz.getGenericSuperclass();
+                final Type gType;
+                if (gs instanceof ParameterizedType) {
+                    gType = ((ParameterizedType) gs).getActualTypeArguments()[1];
+                } else {
+                    gType = void.class;
+                }
+                this.readMap(parser, inst, gType);
+                return inst;
+            } else if (clazz.isArray()) {
+                this.expect(parser, JSonToken.START_ARRAY, type);
+                final ArrayList<Object> values = new ArrayList<Object>();
+                while (parser.nextToken() != JSonToken.END_ARRAY) {
+                    values.add(this.readObject(parser, clazz.getComponentType()));
+                }
+                final Object arr = Array.newInstance(mapClasses(clazz.getComponentType()), values.size());
+                for (int i = 0; i < values.size(); i++) {
+                    Array.set(arr, i, values.get(i));
+                }
+                return arr;
+            } else if (token == JSonToken.START_ARRAY) {
+                final java.util.List<Object> inst = new ArrayList<Object>();
+                final Type gs = clazz.getGenericSuperclass();
+                final Type gType;
+                if (gs instanceof ParameterizedType) {
+                    gType = ((ParameterizedType) gs).getActualTypeArguments()[0];
+                } else {
+                    gType = Object.class;
+                }
+                while (parser.nextToken() != JSonToken.END_ARRAY) {
+                    inst.add(this.readObject(parser, gType));
+                }
+                return inst;
+            } else {
+                if (Clazz.isPrimitive(clazz)) {
+                    if (isIgnoreIllegalArgumentMappings()) {
+                        parser.skipChildren();
+                        return null;
+                    } else {
+                        throw new IllegalArgumentException("Cannot Map " + parser.readNode() + " to " + clazz);
+                    }
+                }
+                final ClassCache cc = ClassCache.getClassCache(clazz);
+                final Object inst = cc.getInstance();
+                Object v;
+                while (parser.nextToken() == JSonToken.KEY) {
+                    final Setter s = cc.getSetter(parser.getText());
+                    parser.nextToken();
+                    if (s == null) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    Type fieldType = s.getType();
+                    // special handling for generic fields
+                    if (fieldType instanceof TypeVariable) {
+                        final Type[] actualTypes = ((ParameterizedType) type).getActualTypeArguments();
+                        final TypeVariable<?>[] genericTypes = clazz.getTypeParameters();
+                        for (int i = 0; i < genericTypes.length; i++) {
+                            if (StringUtils.equals(((TypeVariable) fieldType).getName(), genericTypes[i].getName())) {
+                                fieldType = actualTypes[i];
+                                break;
+                            }
+                        }
+                    }
+                    v = this.readObject(parser, fieldType);
+                    try {
+                        s.setValue(inst, v);
+                    } catch (final IllegalArgumentException e) {
+                        if (isIgnoreIllegalArgumentMappings()) {
+                            continue;
+                        } else if (v == null && isIgnorePrimitiveNullMapping()) {
+                            continue;
+                        }
+                        throw e;
+                    }
+                }
+                return inst;
+            }
+        } catch (final SecurityException e) {
+            e.printStackTrace();
+        } catch (final NoSuchMethodException e) {
+            e.printStackTrace();
+        } catch (final IllegalArgumentException e) {
+            e.printStackTrace();
+        } catch (final InstantiationException e) {
+            e.printStackTrace();
+        } catch (final IllegalAccessException e) {
+            e.printStackTrace();
+        } catch (final InvocationTargetException e) {
+            e.printStackTrace();
+        }
+        /* same as tree mapping: failed values become null. skip the rest of the value to keep the parser in sync */
+        while (parser.getDepth() > depth) {
+            parser.nextToken();
+        }
+        return null;
+    }
+
+    private void readMap(final JSonPullParser parser, final Map<String, Object> inst, final Type valueType) throws MapperException, ParserException {
+        while (parser.nextToken() == JSonToken.KEY) {
+            final String key = parser.getText();
+            parser.nextToken();
+            inst.put(key, this.readObject(parser, valueType));
+        }
+    }
+
+    private void expect(final JSonPullParser parser, final JSonToken token, final Type type) throws MapperException, ParserException {
+        if (parser.getToken() != token) {
+            throw new MapperException(parser.readNode() + " cannot be mapped to " + type);
+        }
+    }
+
     /**
      * @param <T>
      * @param json
@@ -48,10 +48,18 @@ import org.appwork.storage.config.annotations.JSonFieldName;
  */
 public class Setter {
 
-    private final String key;
-    private final Method method;
-    private final Type   type;
-    private Class<?>     convertFromClass;
+    private final String   key;
+    private final Method   method;
+    private final Type     type;
+    /* type resolved once, so setValue does not need to inspect the type on every call */
+    private final Class<?> rawType;
+    private final boolean  enumType;
+    private Class<?>       convertFromClass;
+    /* generated direct call, null if the method is not public */
+    private final Accessor accessor;
+    /* values of any other type are converted (or rejected) by Method.invoke */
+    private final Class<?> accessorType;
+    private final boolean  primitive;
 
     /**
      * @param substring
@@ -72,7 +80,11 @@ public class Setter {
         this.method = m;
         m.setAccessible(true);
         this.type = m.getGenericParameterTypes()[0];
-
+        this.rawType = this.type instanceof Class ? (Class<?>) this.type : null;
+        this.enumType = this.rawType != null && this.rawType.isEnum();
+        this.accessor = AccessorGenerator.createSetter(m);
+        this.primitive = m.getParameterTypes()[0].isPrimitive();
+        this.accessorType = AccessorGenerator.getAcceptedType(m.getParameterTypes()[0]);
     }
 
     public String getKey() {
@@ -90,8 +102,8 @@ public class Setter {
     @SuppressWarnings("unchecked")
     public void setValue(final Object inst, Object parameter) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
 
-        if (this.type instanceof Class && ((Class<?>) this.type).isEnum() && parameter != null) {
-            parameter = Enum.valueOf((Class<Enum>) this.type, parameter + "");
+        if (this.enumType && parameter != null && !this.rawType.isInstance(parameter)) {
+            parameter = Enum.valueOf((Class<Enum>) this.rawType, parameter + "");
         }
 
         if (this.convertFromClass != null && parameter != null && parameter.getClass().isAssignableFrom(this.convertFromClass)) {
@@ -126,6 +138,15 @@ public class Setter {
 
         }
         // System.out.println(this.key + " = " + parameter + " " + this.type);
+        if (this.accessor != null && (parameter == null ? !this.primitive : this.accessorType.isInstance(parameter))) {
+            try {
+                this.accessor.set(inst, parameter);
+            } catch (final Throwable e) {
+                /* same as Method.invoke */
+                throw new InvocationTargetException(e);
+            }
+            return;
+        }
         try {
             this.method.invoke(inst, parameter);
         } catch (final IllegalArgumentException e) {
@@ -0,0 +1,264 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.simplejson.mapper.test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+
+import org.appwork.exceptions.WTFException;
+import org.appwork.storage.InvalidTypeException;
+import org.appwork.storage.JSonStorage;
+import org.appwork.storage.Storable;
+import org.appwork.storage.TypeRef;
+import org.appwork.storage.simplejson.mapper.ClassCache;
+import org.appwork.storage.simplejson.mapper.Getter;
+import org.appwork.storage.simplejson.mapper.Setter;
+
+/**
+ * generated getter, setter and constructor accessors of the ClassCache behave like the reflective calls, and canStore results are
+ * cached
+ * 
+ * @author thomas
+ * 
+ */
+public class AccessorTest {
+    public static class Bean implements Storable {
+        private boolean           flag;
+        private char              letter;
+        private short             small;
+        private int               number;
+        private long              big;
+        private float             ratio;
+        private double            value;
+        private String            name;
+        private int[]             numbers;
+        private ArrayList<String> list;
+
+        public Bean() {
+        }
+
+        public boolean isFlag() {
+            return this.flag;
+        }
+
+        public void setFlag(final boolean flag) {
+            this.flag = flag;
+        }
+
+        public char getLetter() {
+            return this.letter;
+        }
+
+        public void setLetter(final char letter) {
+            this.letter = letter;
+        }
+
+        public short getSmall() {
+            return this.small;
+        }
+
+        public void setSmall(final short small) {
+            this.small = small;
+        }
+
+        public int getNumber() {
+            return this.number;
+        }
+
+        public void setNumber(final int number) {
+            if (number < 0) {
+                throw new IllegalStateException("negative");
+            }
+            this.number = number;
+        }
+
+        public long getBig() {
+            return this.big;
+        }
+
+        /* chained setter */
+        public Bean setBig(final long big) {
+            this.big = big;
+            return this;
+        }
+
+        public float getRatio() {
+            return this.ratio;
+        }
+
+        public void setRatio(final float ratio) {
+            this.ratio = ratio;
+        }
+
+        public double getValue() {
+            return this.value;
+        }
+
+        public double setValue(final double value) {
+            this.value = value;
+            return value;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public void setName(final String name) {
+            this.name = name;
+        }
+
+        public int[] getNumbers() {
+            return this.numbers;
+        }
+
+        public void setNumbers(final int[] numbers) {
+            this.numbers = numbers;
+        }
+
+        public ArrayList<String> getList() {
+            return this.list;
+        }
+
+        public void setList(final ArrayList<String> list) {
+            this.list = list;
+        }
+    }
+
+    /* not public, uses reflection */
+    static class Hidden implements Storable {
+        private String name;
+
+        private Hidden() {
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public void setName(final String name) {
+            this.name = name;
+        }
+    }
+
+    public static class Invalid implements Storable {
+        public Invalid() {
+        }
+
+        public Object getAnything() {
+            return null;
+        }
+    }
+
+    private static void assertEquals(final Object expected, final Object value, final String message) {
+        if (expected == null ? value != null : !expected.equals(value)) {
+            throw new WTFException(message + ": " + value + " != " + expected);
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Bean bean = new Bean();
+        bean.setFlag(true);
+        bean.setLetter('x');
+        bean.setSmall((short) -3);
+        bean.setNumber(42);
+        bean.setBig(Long.MAX_VALUE);
+        bean.setRatio(1.5f);
+        bean.setValue(-2.25d);
+        bean.setName("name");
+        bean.setNumbers(new int[] { 1, 2, 3 });
+        bean.setList(new ArrayList<String>());
+        bean.getList().add("a");
+        final String json = JSonStorage.serializeToJson(bean);
+        final Bean restored = JSonStorage.restoreFromString(json, new TypeRef<Bean>() {
+        });
+        AccessorTest.assertEquals(json, JSonStorage.serializeToJson(restored), "round trip");
+        AccessorTest.assertEquals(Long.MAX_VALUE, restored.getBig(), "long");
+        AccessorTest.assertEquals('x', restored.getLetter(), "char");
+
+        final ClassCache cc = ClassCache.getClassCache(Bean.class);
+        AccessorTest.assertEquals(Bean.class, cc.getInstance().getClass(), "constructor");
+        final Getter getter = cc.getGetter("number");
+        AccessorTest.assertEquals(42, getter.getValue(bean), "getter");
+        final Setter setter = cc.getSetter("big");
+        /* Integer for a long parameter is widened by reflection */
+        setter.setValue(bean, 7);
+        AccessorTest.assertEquals(7l, bean.getBig(), "widened");
+        setter.setValue(bean, 8l);
+        AccessorTest.assertEquals(8l, bean.getBig(), "direct");
+        try {
+            setter.setValue(bean, null);
+            throw new WTFException("null for a primitive");
+        } catch (final IllegalArgumentException e) {
+            /* same as reflection */
+        }
+        try {
+            cc.getSetter("number").setValue(bean, -1);
+            throw new WTFException("no exception");
+        } catch (final InvocationTargetException e) {
+            AccessorTest.assertEquals(IllegalStateException.class, e.getCause().getClass(), "wrapped exception");
+        }
+        cc.getSetter("name").setValue(bean, null);
+        AccessorTest.assertEquals(null, bean.getName(), "null");
+
+        final ClassCache hidden = ClassCache.getClassCache(Hidden.class);
+        final Hidden h = (Hidden) hidden.getInstance();
+        hidden.getSetter("name").setValue(h, "hidden");
+        AccessorTest.assertEquals("hidden", hidden.getGetter("name").getValue(h), "reflection");
+
+        /* results are cached, even for new ParameterizedType instances and failures */
+        for (int i = 0; i < 2; i++) {
+            JSonStorage.canStore(new TypeRef<ArrayList<Bean>>() {
+            }.getType(), false);
+            InvalidTypeException first = null;
+            for (int j = 0; j < 2; j++) {
+                try {
+                    JSonStorage.canStore(new TypeRef<ArrayList<Invalid>>() {
+                    }.getType(), false);
+                    throw new WTFException("Invalid can be stored");
+                } catch (final InvalidTypeException e) {
+                    if (first == null) {
+                        first = e;
+                    } else {
+                        if (first == e) {
+                            throw new WTFException("shared exception");
+                        }
+                        AccessorTest.assertEquals(first.getMessage(), e.getMessage(), "cached failure");
+                        AccessorTest.assertEquals(first.getType(), e.getType(), "cached failure type");
+                    }
+                }
+            }
+        }
+        System.out.println("OK");
+    }
+}
@@ -33,9 +33,17 @@
  * ==================================================================================================================================================== */
 package org.appwork.storage.simplejson.mapper.test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.appwork.storage.JSonStorage;
+import org.appwork.storage.simplejson.JSonBinaryGenerator;
+import org.appwork.storage.simplejson.JSonFactory;
+import org.appwork.storage.simplejson.JSonGenerator;
 import org.appwork.storage.simplejson.JSonNode;
+import org.appwork.storage.simplejson.JSonPullParser;
 import org.appwork.storage.simplejson.ParserException;
 import org.appwork.storage.simplejson.mapper.JSonMapper;
 import org.appwork.storage.simplejson.mapper.MapperException;
@@ -56,7 +64,7 @@ public class CompareTest {
         return ret;
     }
 
-    public static void main(final String[] args) throws MapperException, ParserException {
+    public static void main(final String[] args) throws MapperException, ParserException, IOException {
 
         final JSonMapper mapper = new JSonMapper();
         final Object obj = CompareTest.create();
@@ -68,6 +76,29 @@ public class CompareTest {
 
         System.out.println("SUCCESS: " + JSonStorage.serializeToJson(obj).equals(JSonStorage.serializeToJson(re)));
         System.out.println("SUCCESS: " + EqualsBuilder.reflectionEquals(obj, re));
+
+        // tree-less binding directly from the parser tokens
+        final TestClass re2 = (TestClass) mapper.jsonToObject(new JSonPullParser(jsonString.getBytes("UTF-8")), TestClass.class);
+        System.out.println("SUCCESS (stream): " + JSonStorage.serializeToJson(obj).equals(JSonStorage.serializeToJson(re2)));
+        System.out.println("SUCCESS (stream): " + EqualsBuilder.reflectionEquals(obj, re2));
+
+        // streaming serializer. key order differs from the HashMap based tree, so compare the parsed results
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final JSonGenerator gen = new JSonGenerator(bos);
+        mapper.write(obj, gen);
+        gen.flush();
+        final String streamed = new String(bos.toByteArray(), "UTF-8");
+        System.out.println("SUCCESS (generator): " + new JSonFactory(jsonString).parse().toString().equals(new JSonFactory(streamed).parse().toString()));
+
+        // binary encoding, detected by JSonPullParser.create
+        final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        final JSonBinaryGenerator binaryGen = new JSonBinaryGenerator(binary);
+        mapper.write(obj, binaryGen);
+        binaryGen.flush();
+        System.out.println("SUCCESS (binary): " + new JSonFactory(streamed).parse().toString().equals(JSonPullParser.create(binary.toByteArray()).readNode().toString()));
+        final TestClass re3 = (TestClass) mapper.jsonToObject(JSonPullParser.create(new ByteArrayInputStream(binary.toByteArray())), TestClass.class);
+        System.out.println("SUCCESS (binary): " + EqualsBuilder.reflectionEquals(obj, re3));
+        System.out.println("binary: " + binary.size() + " bytes, json: " + bos.size() + " bytes");
     }
 
 }
@@ -0,0 +1,127 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.simplejson.test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.appwork.storage.JSonStorage;
+import org.appwork.storage.simplejson.JSonFactory;
+import org.appwork.storage.simplejson.JSonLazyDocument;
+import org.appwork.storage.simplejson.JSonLazyNode;
+import org.appwork.storage.simplejson.mapper.JSonMapper;
+import org.appwork.storage.simplejson.mapper.test.TestClass;
+
+/**
+ * compares {@link JSonLazyDocument} access with the fully parsed tree
+ *
+ * @author thomas
+ *
+ */
+public class LazyDocumentTest {
+
+    public static void main(final String[] args) throws Exception {
+        final String json = "{\"version\":3, \"name\":\"\\u00e4 test\", \"e\\u0078caped\":true, \"entries\":[{\"id\":1,\"tags\":[\"a\",\"b\"]},{\"id\":2.5,\"tags\":[]},null], \"empty\":{}, \"name\":\"last wins\"}";
+        final JSonLazyDocument doc = new JSonLazyDocument(json.getBytes("UTF-8"));
+        LazyDocumentTest.assertTrue("tree", doc.getRoot().toNode().toString().equals(new JSonFactory(json).parse().toString()));
+        LazyDocumentTest.assertTrue("long", Long.valueOf(3).equals(doc.get("version").getValue()));
+        LazyDocumentTest.assertTrue("duplicate key", "last wins".equals(doc.get("name").getValue()));
+        LazyDocumentTest.assertTrue("escaped key", Boolean.TRUE.equals(doc.get("excaped").getValue()));
+        LazyDocumentTest.assertTrue("path", "b".equals(doc.get("entries[0].tags[1]").getValue()));
+        LazyDocumentTest.assertTrue("double", Double.valueOf(2.5).equals(doc.get("entries[1].id").getValue()));
+        LazyDocumentTest.assertTrue("null", doc.get("entries[2]").isNull());
+        LazyDocumentTest.assertTrue("missing", doc.get("entries[3]") == null && doc.get("version.x") == null && doc.get("nothere") == null);
+        LazyDocumentTest.assertTrue("size", doc.get("entries").size() == 3 && doc.get("empty").size() == 0 && doc.getRoot().size() == 6);
+        LazyDocumentTest.assertTrue("keys", doc.getRoot().getKeys().toString().equals("[version, name, excaped, entries, empty, name]"));
+        LazyDocumentTest.assertTrue("raw", doc.get("entries[0]").toJSonString().equals("{\"id\":1,\"tags\":[\"a\",\"b\"]}"));
+
+        final JSonMapper mapper = new JSonMapper();
+        final TestClass obj = TestClass.createObject();
+        final String objJson = mapper.create(obj).toString();
+        final JSonLazyDocument objDoc = new JSonLazyDocument(("[" + objJson + "]").getBytes("UTF-8"));
+        final TestClass full = (TestClass) mapper.jsonToObject(new JSonFactory(objJson).parse(), TestClass.class);
+        final TestClass projected = mapper.project(objDoc.get("[0]"), TestClass.class);
+        LazyDocumentTest.assertTrue("projection", mapper.create(full).toString().equals(mapper.create(projected).toString()));
+        final TestClass partial = mapper.project(objDoc.get("[0]"), TestClass.class, "pLong", "oInt");
+        LazyDocumentTest.assertTrue("partial projection", partial.getpLong() == obj.getpLong() && partial.getoInt().equals(obj.getoInt()) && partial.getObj() == null);
+
+        for (final String invalid : new String[] { "[1,2", "{\"a\" 1}", "[1,,2]", "[1] 2", "[nul]", "{\"a\":1,}" }) {
+            try {
+                new JSonLazyDocument(invalid.getBytes("UTF-8"));
+                throw new IllegalStateException("Failed: accepted " + invalid);
+            } catch (final org.appwork.storage.simplejson.ParserException e) {
+                System.out.println("OK (expected): " + e.getMessage());
+            }
+        }
+        /* element index of nested arrays, get(int) must return the same nodes as the sibling chain */
+        final StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(i % 10 == 0 ? "[" + i + ",[],[" + i + "]]" : String.valueOf(i));
+        }
+        sb.append("]");
+        final byte[] arrayJson = sb.toString().getBytes("UTF-8");
+        final ByteBuffer direct = ByteBuffer.allocateDirect(arrayJson.length);
+        direct.put(arrayJson).flip();
+        for (final JSonLazyDocument arrayDoc : new JSonLazyDocument[] { new JSonLazyDocument(arrayJson), new JSonLazyDocument(direct) }) {
+            final List<JSonLazyNode> children = arrayDoc.getRoot().getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                LazyDocumentTest.assertTrue("element " + i, children.get(i).toJSonString().equals(arrayDoc.getRoot().get(i).toJSonString()));
+            }
+            LazyDocumentTest.assertTrue("nested element", Long.valueOf(990).equals(arrayDoc.get("[990][2][0]").getValue()) && arrayDoc.get("[990][1]").size() == 0);
+        }
+
+        final File file = File.createTempFile("lazydocument", ".json");
+        try {
+            JSonStorage.saveTo(file, true, null, json);
+            final JSonLazyDocument fileDoc = JSonStorage.restoreLazyFrom(file, true, null);
+            LazyDocumentTest.assertTrue("file", "b".equals(fileDoc.get("entries[0].tags[1]").getValue()) && Boolean.TRUE.equals(fileDoc.get("excaped").getValue()));
+            LazyDocumentTest.assertTrue("file key", fileDoc.getRoot().getKeys().toString().equals("[version, name, excaped, entries, empty, name]"));
+        } finally {
+            file.delete();
+        }
+        final JSonLazyNode root = doc.getRoot();
+        System.out.println("Index size: " + root.getChildren().size() + "/" + doc.getIndexSize());
+        System.out.println("ALL OK");
+    }
+
+    private static void assertTrue(final String message, final boolean b) {
+        if (!b) {
+            throw new IllegalStateException("Failed: " + message);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.simplejson.test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+import org.appwork.storage.simplejson.JSonFactory;
+import org.appwork.storage.simplejson.JSonNode;
+import org.appwork.storage.simplejson.JSonPullParser;
+import org.appwork.storage.simplejson.ParserException;
+
+/**
+ * compares the byte based pull parser with the String based JSonFactory
+ *
+ * @author thomas
+ *
+ */
+public class PullParserTest {
+
+    public static void main(final String[] args) throws Exception {
+        PullParserTest.parseValid("{\"a\" : [1,2,-3, 0.5, -12.25e-3, 1.7976931348623157E308, 4.9E-324, 9223372036854775807, -9223372036854775808], \"b\":{ }, \"c\":[ ], \"d\":null, \"e\":true, \"f\":false}");
+        PullParserTest.parseValid("[\"Unicode \\u003e \\u00e4\\u20ac \u00e4\u00f6\u00fc \u20ac \ud83d\ude00\", \"Z:\\\\\", \"\\r\\n\\t\\b\\f\\/\\\"\"]");
+        PullParserTest.parseValid("23.432e-4");
+        PullParserTest.parseValid("\"\"");
+        PullParserTest.parseValid("  [ 0.1 , 0.2 , 100000000000000000000.5, 123456789012345678901234567890.0 ]  ");
+        PullParserTest.parseInvalid("[1,2");
+        PullParserTest.parseInvalid("{\"a\" 1}");
+        PullParserTest.parseInvalid("[1,,2]");
+        PullParserTest.parseInvalid("[1] 2");
+        PullParserTest.parseInvalid("[nul]");
+        final StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 10000; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append("{\"id\":").append(i).append(",\"name\":\"\u00e4ntry ").append(i).append("\",\"value\":").append(i / 7d).append("}");
+        }
+        sb.append("]");
+        PullParserTest.parseValid(sb.toString());
+        System.out.println("ALL OK");
+    }
+
+    private static void parseInvalid(final String string) throws Exception {
+        try {
+            new JSonFactory(string.getBytes("UTF-8")).parse();
+        } catch (final ParserException e) {
+            System.out.println("OK (expected): " + e.getMessage());
+            return;
+        }
+        throw new Exception("Invalid json parsed: " + string);
+    }
+
+    private static void parseValid(final String string) throws Exception {
+        final String expected = new JSonFactory(string).parse().toString();
+        final byte[] bytes = string.getBytes("UTF-8");
+        final JSonNode fromBytes = new JSonFactory(bytes).parse();
+        final JSonNode fromStream = new JSonFactory(new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(final byte[] b, final int off, final int len) {
+                // force tiny reads to test chunk boundaries
+                return super.read(b, off, Math.min(len, 3));
+            }
+        }).parse();
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        direct.flip();
+        final JSonNode fromBuffer = new JSonFactory(new JSonPullParser(direct)).parse();
+        if (!expected.equals(fromBytes.toString()) || !expected.equals(fromStream.toString()) || !expected.equals(fromBuffer.toString())) {
+            throw new Exception("Mismatch: " + expected + "\r\n" + fromBytes + "\r\n" + fromStream + "\r\n" + fromBuffer);
+        }
+        System.out.println("OK: " + (expected.length() > 200 ? expected.substring(0, 200) + "..." : expected));
+    }
+}
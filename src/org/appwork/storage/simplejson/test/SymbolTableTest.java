@@ -0,0 +1,197 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.simplejson.test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.appwork.storage.simplejson.JSonArray;
+import org.appwork.storage.simplejson.JSonFactory;
+import org.appwork.storage.simplejson.JSonObject;
+import org.appwork.storage.simplejson.JSonSymbolTable;
+import org.appwork.storage.simplejson.JSonValue;
+
+/**
+ * parses from several threads through one small, heavily colliding symbol table and compares with parses without table. Checks that
+ * the table stays bounded and does not keep long strings
+ *
+ * @author thomas
+ *
+ */
+public class SymbolTableTest {
+
+    public static void main(final String[] args) throws Exception {
+        SymbolTableTest.testConcurrentParses();
+        SymbolTableTest.testBounds();
+        SymbolTableTest.testDeduplication();
+        System.out.println("ALL OK");
+    }
+
+    private static void testConcurrentParses() throws Exception {
+        final JSonSymbolTable table = new JSonSymbolTable(16, 8, 4);
+        final ArrayList<String> docs = new ArrayList<String>();
+        final ArrayList<String> expected = new ArrayList<String>();
+        final Random random = new Random(1);
+        for (int d = 0; d < 50; d++) {
+            final StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < 200; i++) {
+                if (i > 0) {
+                    sb.append(",");
+                }
+                /* short and long keys and values, many with equal hashes modulo the table size */
+                sb.append("{\"k").append(random.nextInt(64)).append("\":\"v").append(random.nextInt(32)).append("\",\"");
+                sb.append("longer key ").append(random.nextInt(8)).append("\":\"ä€").append(random.nextInt(100)).append("\",\"Aa\":\"BB\"}");
+            }
+            sb.append("]");
+            docs.add(sb.toString());
+            final JSonFactory factory = new JSonFactory(sb.toString());
+            factory.setSymbolTable(null);
+            expected.add(factory.parse().toString());
+        }
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread("SymbolTableTest:" + t) {
+                @Override
+                public void run() {
+                    try {
+                        for (int round = 0; round < 20; round++) {
+                            for (int d = 0; d < docs.size(); d++) {
+                                final String doc = docs.get((d + id * 7) % docs.size());
+                                final JSonFactory factory = (round & 1) == 0 ? new JSonFactory(doc) : new JSonFactory(doc.getBytes("UTF-8"));
+                                factory.setSymbolTable(table);
+                                final String result = factory.parse().toString();
+                                if (!result.equals(expected.get((d + id * 7) % docs.size()))) {
+                                    throw new Exception("Mismatch in " + this.getName() + ": " + result);
+                                }
+                            }
+                        }
+                    } catch (final Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        if (error.get() != null) {
+            throw new Exception(error.get());
+        }
+        SymbolTableTest.assertBounded(table);
+        System.out.println("OK: concurrent parses");
+    }
+
+    private static void testBounds() throws Exception {
+        final JSonSymbolTable table = new JSonSymbolTable(100, 16, 8);
+        if (table.getCapacity() != 128) {
+            throw new Exception("Capacity " + table.getCapacity());
+        }
+        for (int i = 0; i < 100000; i++) {
+            final String value = "value" + i;
+            table.intern(value, true);
+            table.lookup(value.toCharArray(), 0, value.length(), false);
+            table.lookup(new StringBuilder("long value that is never stored ").append(i), true);
+        }
+        SymbolTableTest.assertBounded(table);
+        final String tooLong = "01234567890123456789";
+        if (table.intern(new String(tooLong), true) == table.intern(new String(tooLong), true)) {
+            throw new Exception("Too long key interned");
+        }
+        if (table.lookup(tooLong.toCharArray(), 0, 9, false) == table.lookup(tooLong.toCharArray(), 0, 9, false)) {
+            throw new Exception("Too long value interned");
+        }
+        table.clear();
+        if (SymbolTableTest.getSymbols(table).size() != 0) {
+            throw new Exception("Not cleared");
+        }
+        System.out.println("OK: bounds");
+    }
+
+    private static void testDeduplication() throws Exception {
+        final JSonSymbolTable table = new JSonSymbolTable(64, 16, 8);
+        final String json = "[{\"name\":\"short\",\"other\":\"a value longer than 8\"},{\"name\":\"short\",\"other\":\"a value longer than 8\"}]";
+        final JSonFactory factory = new JSonFactory(json.getBytes("UTF-8"));
+        factory.setSymbolTable(table);
+        final JSonArray array = (JSonArray) factory.parse();
+        final JSonObject a = (JSonObject) array.get(0);
+        final JSonObject b = (JSonObject) array.get(1);
+        String keyA = null;
+        for (final String key : a.keySet()) {
+            if (key.equals("name")) {
+                keyA = key;
+            }
+        }
+        for (final String key : b.keySet()) {
+            if (key.equals("name") && key != keyA) {
+                throw new Exception("Key not deduplicated");
+            }
+        }
+        if (((JSonValue) a.get("name")).getValue() != ((JSonValue) b.get("name")).getValue()) {
+            throw new Exception("Value not deduplicated");
+        }
+        if (((JSonValue) a.get("other")).getValue() == ((JSonValue) b.get("other")).getValue()) {
+            throw new Exception("Long value deduplicated");
+        }
+        System.out.println("OK: deduplication");
+    }
+
+    private static void assertBounded(final JSonSymbolTable table) throws Exception {
+        final ArrayList<String> symbols = SymbolTableTest.getSymbols(table);
+        if (symbols.size() > table.getCapacity()) {
+            throw new Exception("Table exceeds capacity: " + symbols.size());
+        }
+        for (final String symbol : symbols) {
+            if (symbol.length() > Math.max(table.getMaxKeyLength(), table.getMaxValueLength())) {
+                throw new Exception("Table keeps a long string: " + symbol);
+            }
+        }
+    }
+
+    private static ArrayList<String> getSymbols(final JSonSymbolTable table) throws Exception {
+        final Field field = JSonSymbolTable.class.getDeclaredField("symbols");
+        field.setAccessible(true);
+        final ArrayList<String> ret = new ArrayList<String>();
+        for (final String symbol : (String[]) field.get(table)) {
+            if (symbol != null) {
+                ret.add(symbol);
+            }
+        }
+        return ret;
+    }
+}
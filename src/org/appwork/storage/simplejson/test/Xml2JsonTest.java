@@ -0,0 +1,180 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.simplejson.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Map.Entry;
+
+import org.appwork.storage.Xml2Json;
+import org.appwork.storage.simplejson.JSonArray;
+import org.appwork.storage.simplejson.JSonFactory;
+import org.appwork.storage.simplejson.JSonNode;
+import org.appwork.storage.simplejson.JSonObject;
+
+/**
+ * compares the streaming {@link Xml2Json} conversion with the DOM based one
+ *
+ * @author thomas
+ *
+ */
+public class Xml2JsonTest {
+
+    private static final String MENU = "<breakfast_menu aa=\"1\" ab=\"0.9\" ac=\"bla\">\n<food>\n<name>Belgian Waffles</name>\n<price>$5.95</price>\n<description>\nTwo of our famous Belgian Waffles\n</description>\n<calories>650</calories>\n</food>\n<food id=\"2\">\n<name><![CDATA[Strawberry <b>Waffles</b>]]></name>\n<price>$7.95</price>\n<empty/>\n<calories>900</calories>\n</food>\n</breakfast_menu>";
+
+    public static void main(final String[] args) throws Exception {
+        Xml2JsonTest.compare("plain", new Xml2Json(), MENU);
+
+        Xml2Json rules = new Xml2Json();
+        rules.addPathRule("/breakfast_menu/food", null, true, false);
+        rules.addPathRule("/breakfast_menu/food/name", null, false, true);
+        Xml2JsonTest.compare("repeatable + single", rules, MENU);
+
+        rules = new Xml2Json();
+        rules.addPathRule("/breakfast_menu/food", "id", true, false);
+        Xml2JsonTest.compare("repeatable with key", rules, MENU);
+
+        rules = new Xml2Json();
+        rules.addPathRule("/breakfast_menu/food", "id", false, false);
+        Xml2JsonTest.compare("key", rules, MENU);
+
+        rules = new Xml2Json();
+        rules.addSkipRule("/breakfast_menu/food");
+        Xml2JsonTest.compare("skip", rules, MENU);
+
+        rules = new Xml2Json();
+        rules.addArrayPath("/breakfast_menu/food");
+        Xml2JsonTest.compare("array path", rules, MENU);
+
+        Xml2JsonTest.compare("namespaces", new Xml2Json(), "<a:root xmlns:a=\"urn:a\" xmlns=\"urn:default\" b=\"&lt;1&gt;\"><a:child>x</a:child><child>true</child><deep><deeper><deepest v=\"1\">text</deepest></deeper></deep></a:root>");
+        Xml2JsonTest.compare("single member collapse", new Xml2Json(), "<root><only><inner a=\"1\" b=\"2\"/></only><list><x>1</x></list></root>");
+
+        /* repeatable siblings with other tags between them form one group */
+        rules = new Xml2Json();
+        rules.addPathRule("/r/item", null, true, false);
+        Xml2JsonTest.compare("split repeatable", rules, "<r><item>a</item><other>x</other><item>b</item></r>");
+        Xml2JsonTest.compare("split repeatable first", rules, "<r><item>a</item><item>b</item><other>x</other><item>c</item><other2 a=\"1\"/><item>d</item></r>");
+        rules = new Xml2Json();
+        rules.addPathRule("/r/item", "id", true, false);
+        Xml2JsonTest.compare("split repeatable with key", rules, "<r><item id=\"1\">a</item><other>x</other><item id=\"2\">b</item></r>");
+        rules = new Xml2Json();
+        rules.addArrayPath("/r/item");
+        Xml2JsonTest.compare("split array path", rules, "<r><item><a>1</a></item><other>x</other><item><a>2</a><b>3</b></item></r>");
+        /* duplicate plain members: last wins and the element still collapses */
+        Xml2JsonTest.compare("duplicate members", new Xml2Json(), "<r><a><b>1</b><b>2</b></a><c>text<x/>more text</c><c>3</c></r>");
+
+        /* a root with a single child collapses, its content goes through a temp file beyond the heap limit */
+        final StringBuilder single = new StringBuilder("<r><items total=\"20000\">");
+        for (int i = 0; i < 20000; i++) {
+            single.append("<item id=\"").append(i).append("\"><name>n").append(i).append("</name></item>");
+        }
+        single.append("</items></r>");
+        rules = new Xml2Json();
+        rules.addPathRule("/r/items/item", null, true, false);
+        Xml2JsonTest.compare("single child root", rules, single.toString());
+
+        /* the root has to convert to an object, same as the DOM path */
+        for (final String invalid : new String[] { "<root>text</root>", "<root/>x" }) {
+            try {
+                Xml2JsonTest.stream(new Xml2Json(), invalid);
+                throw new IllegalStateException("Failed: accepted " + invalid);
+            } catch (final IllegalStateException e) {
+                throw e;
+            } catch (final Exception e) {
+                System.out.println("OK (expected): " + e);
+            }
+        }
+
+        /* output starts before the document is complete: 10000 repeatable elements */
+        final StringBuilder sb = new StringBuilder("<list><head>1</head>");
+        for (int i = 0; i < 10000; i++) {
+            sb.append("<item id=\"").append(i).append("\"><name>n").append(i).append("</name></item>");
+        }
+        sb.append("</list>");
+        rules = new Xml2Json();
+        rules.addPathRule("/list/item", null, true, false);
+        Xml2JsonTest.compare("large", rules, sb.toString());
+        System.out.println("ALL OK");
+    }
+
+    private static String stream(final Xml2Json xml2json, final String xml) throws Exception {
+        final StringWriter writer = new StringWriter();
+        xml2json.xml2json(new StringReader(xml), writer);
+        return writer.toString();
+    }
+
+    private static void compare(final String name, final Xml2Json xml2json, final String xml) throws Exception {
+        final JSonNode dom = new JSonFactory(xml2json.xml2json(xml)).parse();
+        final String text = Xml2JsonTest.stream(xml2json, xml);
+        final JSonNode streamed = new JSonFactory(text).parse();
+        if (streamed.toString().length() != text.length()) {
+            /* members written more than once */
+            throw new IllegalStateException("Failed: " + name + " duplicate keys\r\n" + text);
+        }
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        xml2json.xml2json(new ByteArrayInputStream(xml.getBytes("UTF-8")), bos);
+        final JSonNode streamedBytes = new JSonFactory(bos.toByteArray()).parse();
+        if (!Xml2JsonTest.equals(dom, streamed) || !Xml2JsonTest.equals(dom, streamedBytes)) {
+            throw new IllegalStateException("Failed: " + name + "\r\n" + dom + "\r\n" + streamed);
+        }
+        System.out.println("OK: " + name);
+    }
+
+    private static boolean equals(final JSonNode a, final JSonNode b) {
+        if (a instanceof JSonObject) {
+            if (!(b instanceof JSonObject) || ((JSonObject) a).size() != ((JSonObject) b).size()) {
+                return false;
+            }
+            for (final Entry<String, JSonNode> e : ((JSonObject) a).entrySet()) {
+                if (!Xml2JsonTest.equals(e.getValue(), ((JSonObject) b).get(e.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (a instanceof JSonArray) {
+            if (!(b instanceof JSonArray) || ((JSonArray) a).size() != ((JSonArray) b).size()) {
+                return false;
+            }
+            for (int i = 0; i < ((JSonArray) a).size(); i++) {
+                if (!Xml2JsonTest.equals(((JSonArray) a).get(i), ((JSonArray) b).get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return b != null && a.toString().equals(b.toString());
+    }
+}
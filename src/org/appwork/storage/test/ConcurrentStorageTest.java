@@ -0,0 +1,140 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.test;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.appwork.storage.ConcurrentJsonKeyValueStorage;
+import org.appwork.storage.config.ConfigInterface;
+import org.appwork.storage.config.annotations.ConcurrentStorage;
+import org.appwork.storage.config.annotations.DefaultIntValue;
+import org.appwork.storage.config.handler.StorageHandler;
+import org.appwork.utils.Files;
+
+/**
+ * puts and saves from several threads and checks that the file ends up with the latest values, with direct and with delayed writes
+ *
+ * @author thomas
+ *
+ */
+public class ConcurrentStorageTest {
+    @ConcurrentStorage
+    public static interface CounterConfig extends ConfigInterface {
+        @DefaultIntValue(5)
+        public int getCounter();
+
+        public void setCounter(int i);
+    }
+
+    private static final int THREADS = 8;
+    private static final int KEYS    = 20;
+
+    public static void main(final String[] args) throws Exception {
+        final File dir = File.createTempFile("concurrentstoragetest", "");
+        dir.delete();
+        dir.mkdirs();
+        try {
+            for (int round = 0; round < 20; round++) {
+                StorageHandler.setDelayedWritesEnabled((round & 1) == 1);
+                ConcurrentStorageTest.testConcurrentSaves(new File(dir, "storage" + round + ".json"));
+            }
+            StorageHandler.setDelayedWritesEnabled(false);
+            System.out.println("OK: concurrent saves");
+            final StorageHandler<CounterConfig> handler = new StorageHandler<CounterConfig>(new File(dir, "counter"), CounterConfig.class);
+            if (!(handler.getPrimitiveStorage() instanceof ConcurrentJsonKeyValueStorage)) {
+                throw new Exception("Wrong storage: " + handler.getPrimitiveStorage());
+            }
+            final CounterConfig config = (CounterConfig) java.lang.reflect.Proxy.newProxyInstance(CounterConfig.class.getClassLoader(), new Class<?>[] { CounterConfig.class }, handler);
+            ConcurrentStorageTest.assertEquals(config.getCounter(), 5);
+            config.setCounter(7);
+            handler.getPrimitiveStorage().save();
+            StorageHandler.flushWrites();
+            ConcurrentStorageTest.assertEquals(new ConcurrentJsonKeyValueStorage(new File(dir, "counter.json"), true).get("counter", -1), 7);
+            System.out.println("OK: ConcurrentStorage annotation");
+        } finally {
+            Files.deleteRecursiv(dir);
+        }
+        System.out.println("ALL OK");
+    }
+
+    private static void testConcurrentSaves(final File file) throws Exception {
+        final ConcurrentJsonKeyValueStorage storage = new ConcurrentJsonKeyValueStorage(file, true);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final Thread[] threads = new Thread[ConcurrentStorageTest.THREADS];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread("ConcurrentStorageTest:" + t) {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 500; i++) {
+                            storage.put("key" + (i + id) % ConcurrentStorageTest.KEYS, id * 1000 + i);
+                            storage.put("thread" + id, i);
+                            if (storage.getInt("thread" + id, -1) != i) {
+                                throw new Exception("Lost own put");
+                            }
+                            /* the last save of each thread has to write its last put, without a final save after the threads */
+                            storage.save();
+                        }
+                    } catch (final Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        if (error.get() != null) {
+            throw new Exception(error.get());
+        }
+        StorageHandler.flushWrites();
+        final ConcurrentJsonKeyValueStorage reloaded = new ConcurrentJsonKeyValueStorage(file, true);
+        ConcurrentStorageTest.assertEquals(reloaded.size(), storage.size());
+        for (final String key : storage.getKeys()) {
+            ConcurrentStorageTest.assertEquals(reloaded.getLong(key, -1), storage.getLong(key, -2));
+        }
+        for (int t = 0; t < threads.length; t++) {
+            ConcurrentStorageTest.assertEquals(reloaded.getInt("thread" + t, -1), 499);
+        }
+    }
+
+    private static void assertEquals(final Object actual, final Object expected) throws Exception {
+        if (actual == null ? expected != null : !actual.equals(expected)) {
+            throw new Exception(expected + " != " + actual);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.appwork.storage.JsonKeyValueStorage;
+
+/**
+ * checks that the journal mode of {@link JsonKeyValueStorage} restores the same state as a full snapshot
+ *
+ * @author thomas
+ *
+ */
+public class JournalTest {
+
+    public static void main(final String[] args) throws Exception {
+        JournalTest.test(true);
+        JournalTest.test(false);
+        System.out.println("ALL OK");
+    }
+
+    private static void test(final boolean plain) throws Exception {
+        final File file = File.createTempFile("journaltest", plain ? ".json" : ".ejs");
+        file.delete();
+        try {
+            JsonKeyValueStorage storage = JournalTest.open(file, plain);
+            storage.put("a", "a");
+            storage.put("b", 1);
+            storage.put("c", true);
+            storage.save();
+            JournalTest.assertTrue("full snapshot on enable", file.exists() && !storage.getJournalFile().exists());
+            storage.put("a", "a2");
+            storage.remove("b");
+            storage.put("d", 2.5d);
+            storage.save();
+            JournalTest.assertTrue("journal written", storage.getJournalFile().exists());
+            final long snapshot = file.length();
+
+            storage = JournalTest.open(file, plain);
+            JournalTest.assertTrue("snapshot untouched", snapshot == file.length());
+            JournalTest.assertTrue("put", "a2".equals(storage.get("a", "")));
+            JournalTest.assertTrue("remove", !storage.hasProperty("b"));
+            JournalTest.assertTrue("unchanged", storage.get("c", false));
+            JournalTest.assertTrue("new", storage.get("d", 0d) == 2.5d);
+
+            storage.clear();
+            storage.put("e", "e");
+            storage.save();
+            storage = JournalTest.open(file, plain);
+            JournalTest.assertTrue("clear", storage.size() == 1 && "e".equals(storage.get("e", "")));
+
+            /* torn frame at the end of the journal */
+            final RandomAccessFile raf = new RandomAccessFile(storage.getJournalFile(), "rw");
+            try {
+                raf.seek(raf.length());
+                raf.writeInt(1000);
+                raf.write(new byte[] { 1, 2, 3 });
+            } finally {
+                raf.close();
+            }
+            storage = JournalTest.open(file, plain);
+            JournalTest.assertTrue("torn tail", storage.size() == 1 && "e".equals(storage.get("e", "")));
+            storage.put("f", "f");
+            storage.save();
+            storage = JournalTest.open(file, plain);
+            JournalTest.assertTrue("append after torn tail", storage.size() == 2 && "f".equals(storage.get("f", "")));
+
+            /* unreadable record in the middle of the journal, the records after it must survive */
+            storage.put("g", "g");
+            storage.save();
+            final long corruptAt = storage.getJournalFile().length();
+            storage.put("h", "h");
+            storage.save();
+            storage.put("i", "i");
+            storage.save();
+            final long journalLength = storage.getJournalFile().length();
+            final RandomAccessFile craf = new RandomAccessFile(storage.getJournalFile(), "rw");
+            try {
+                craf.seek(corruptAt);
+                final int length = craf.readInt();
+                craf.write(new byte[length]);
+            } finally {
+                craf.close();
+            }
+            storage = JournalTest.open(file, plain);
+            JournalTest.assertTrue("corrupt record skipped", !storage.hasProperty("h") && "g".equals(storage.get("g", "")) && "i".equals(storage.get("i", "")));
+            JournalTest.assertTrue("journal not truncated", storage.getJournalFile().length() == journalLength);
+            JournalTest.assertTrue("corruption reported", new File(storage.getJournalFile().getAbsolutePath() + ".corrupt").exists());
+
+            /* compaction */
+            storage.setJournalCompaction(1024, 1.0d);
+            for (int i = 0; i < 100; i++) {
+                storage.put("key" + i, "value" + i);
+                storage.save();
+            }
+            JournalTest.assertTrue("compacted", storage.getJournalFile().length() < 1024);
+            storage = JournalTest.open(file, plain);
+            JournalTest.assertTrue("after compaction", storage.size() == 104 && "value99".equals(storage.get("key99", "")));
+            System.out.println("OK plain=" + plain);
+        } finally {
+            new File(file.getAbsolutePath() + ".journal.corrupt").delete();
+            new File(file.getAbsolutePath() + ".journal").delete();
+            file.delete();
+        }
+    }
+
+    private static JsonKeyValueStorage open(final File file, final boolean plain) {
+        final JsonKeyValueStorage ret = new JsonKeyValueStorage(file, plain);
+        ret.setAutoPutValues(false);
+        ret.setJournalEnabled(true);
+        return ret;
+    }
+
+    private static void assertTrue(final String message, final boolean b) {
+        if (!b) {
+            throw new IllegalStateException("Failed: " + message);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.test;
+
+import java.io.File;
+
+import org.appwork.storage.ShardedJsonKeyValueStorage;
+import org.appwork.storage.StorageException;
+import org.appwork.utils.Files;
+
+/**
+ * checks that {@link ShardedJsonKeyValueStorage} persists its shard count and refuses to reopen the files with another one
+ *
+ * @author thomas
+ *
+ */
+public class ShardedStorageTest {
+
+    public static void main(final String[] args) throws Exception {
+        final File dir = File.createTempFile("shardedtest", "");
+        dir.delete();
+        dir.mkdirs();
+        try {
+            final File file = new File(dir, "sharded.json");
+            ShardedJsonKeyValueStorage storage = new ShardedJsonKeyValueStorage(file, 4, true);
+            ShardedStorageTest.assertTrue("count file", storage.getShardCountFile().isFile());
+            for (int i = 0; i < 100; i++) {
+                storage.put("key" + i, i);
+            }
+            storage.save();
+            storage.close();
+
+            storage = new ShardedJsonKeyValueStorage(file, 4, true);
+            ShardedStorageTest.assertTrue("reopen", storage.size() == 100 && storage.getInt("key42", -1) == 42);
+            storage.close();
+
+            try {
+                new ShardedJsonKeyValueStorage(file, 8, true);
+                throw new IllegalStateException("Failed: opened with a different shard count");
+            } catch (final StorageException e) {
+                System.out.println("OK: " + e.getMessage());
+            }
+            System.out.println("ALL OK");
+        } finally {
+            Files.deleteRecursiv(dir);
+        }
+    }
+
+    private static void assertTrue(final String message, final boolean b) {
+        if (!b) {
+            throw new IllegalStateException("Failed: " + message);
+        }
+    }
+}
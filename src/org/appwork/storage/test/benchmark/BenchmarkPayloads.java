@@ -0,0 +1,278 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.test.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.appwork.storage.Storable;
+import org.appwork.storage.TypeRef;
+
+/**
+ * representative payloads for the storage benchmarks. All generators use a fixed seed, so every run (and every version of the code) works
+ * on exactly the same data
+ *
+ * @author thomas
+ *
+ */
+public class BenchmarkPayloads {
+
+    public static enum Transport {
+        HTTP,
+        HTTPS,
+        SOCKS
+    }
+
+    /**
+     * typical small config object
+     */
+    public static class SmallConfig implements Storable {
+        private String            name;
+        private int               port;
+        private long              timeout;
+        private boolean           enabled;
+        private Transport         transport;
+        private ArrayList<String> hosts;
+
+        @SuppressWarnings("unused")
+        private SmallConfig() {
+        }
+
+        public SmallConfig(final int seed) {
+            this.name = "config" + seed;
+            this.port = 1024 + seed % 60000;
+            this.timeout = 30000l + seed;
+            this.enabled = seed % 2 == 0;
+            this.transport = Transport.values()[seed % Transport.values().length];
+            this.hosts = new ArrayList<String>();
+            for (int i = 0; i < 3; i++) {
+                this.hosts.add("host" + i + ".example.org");
+            }
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public void setName(final String name) {
+            this.name = name;
+        }
+
+        public int getPort() {
+            return this.port;
+        }
+
+        public void setPort(final int port) {
+            this.port = port;
+        }
+
+        public long getTimeout() {
+            return this.timeout;
+        }
+
+        public void setTimeout(final long timeout) {
+            this.timeout = timeout;
+        }
+
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+
+        public void setEnabled(final boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Transport getTransport() {
+            return this.transport;
+        }
+
+        public void setTransport(final Transport transport) {
+            this.transport = transport;
+        }
+
+        public ArrayList<String> getHosts() {
+            return this.hosts;
+        }
+
+        public void setHosts(final ArrayList<String> hosts) {
+            this.hosts = hosts;
+        }
+    }
+
+    /**
+     * node of a deep Storable tree
+     */
+    public static class GraphNode implements Storable {
+        private String                  id;
+        private double                  weight;
+        private HashMap<String, String> attributes;
+        private ArrayList<GraphNode>    children;
+
+        @SuppressWarnings("unused")
+        private GraphNode() {
+        }
+
+        public GraphNode(final String id, final double weight) {
+            this.id = id;
+            this.weight = weight;
+            this.attributes = new HashMap<String, String>();
+            this.children = new ArrayList<GraphNode>();
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        public void setId(final String id) {
+            this.id = id;
+        }
+
+        public double getWeight() {
+            return this.weight;
+        }
+
+        public void setWeight(final double weight) {
+            this.weight = weight;
+        }
+
+        public HashMap<String, String> getAttributes() {
+            return this.attributes;
+        }
+
+        public void setAttributes(final HashMap<String, String> attributes) {
+            this.attributes = attributes;
+        }
+
+        public ArrayList<GraphNode> getChildren() {
+            return this.children;
+        }
+
+        public void setChildren(final ArrayList<GraphNode> children) {
+            this.children = children;
+        }
+    }
+
+    public static enum Payload {
+        /* a single small config object */
+        SMALL_CONFIG {
+            @Override
+            public Object create() {
+                return new SmallConfig(1);
+            }
+
+            @Override
+            public TypeRef<?> getTypeRef() {
+                return new TypeRef<SmallConfig>() {
+                };
+            }
+        },
+        /* 10k entries of mixed primitive values, like a large JsonKeyValueStorage */
+        MAP_10K {
+            @Override
+            public Object create() {
+                return BenchmarkPayloads.createMap(10000);
+            }
+
+            @Override
+            public TypeRef<?> getTypeRef() {
+                return TypeRef.HASHMAP;
+            }
+        },
+        /* tree of depth 7 with 3 children per node (3280 nodes) */
+        DEEP_GRAPH {
+            @Override
+            public Object create() {
+                return BenchmarkPayloads.createGraph(7, 3);
+            }
+
+            @Override
+            public TypeRef<?> getTypeRef() {
+                return new TypeRef<GraphNode>() {
+                };
+            }
+        };
+
+        public abstract Object create();
+
+        public abstract TypeRef<?> getTypeRef();
+    }
+
+    /**
+     * @param entries
+     * @return map with String, Long, Double and Boolean values
+     */
+    public static HashMap<String, Object> createMap(final int entries) {
+        final Random random = new Random(entries);
+        final HashMap<String, Object> ret = new HashMap<String, Object>();
+        for (int i = 0; i < entries; i++) {
+            final String key = "key" + i;
+            switch (i % 4) {
+            case 0:
+                ret.put(key, "value" + random.nextInt());
+                break;
+            case 1:
+                ret.put(key, random.nextLong());
+                break;
+            case 2:
+                ret.put(key, random.nextDouble());
+                break;
+            default:
+                ret.put(key, random.nextBoolean());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param depth
+     * @param fanout
+     * @return root of a full tree
+     */
+    public static GraphNode createGraph(final int depth, final int fanout) {
+        return BenchmarkPayloads.createNode("0", depth, fanout, new Random(depth * 31 + fanout));
+    }
+
+    private static GraphNode createNode(final String id, final int depth, final int fanout, final Random random) {
+        final GraphNode ret = new GraphNode(id, random.nextDouble());
+        ret.getAttributes().put("label", "node " + id);
+        ret.getAttributes().put("color", random.nextBoolean() ? "red" : "black");
+        if (depth > 0) {
+            for (int i = 0; i < fanout; i++) {
+                ret.getChildren().add(BenchmarkPayloads.createNode(id + "." + i, depth - 1, fanout, random));
+            }
+        }
+        return ret;
+    }
+}
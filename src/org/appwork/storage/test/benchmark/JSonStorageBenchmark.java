@@ -0,0 +1,113 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.storage.test.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.appwork.storage.JSonStorage;
+import org.appwork.storage.SimpleMapper;
+import org.appwork.storage.StorageException;
+import org.appwork.storage.TypeRef;
+import org.appwork.storage.test.benchmark.BenchmarkPayloads.Payload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link JSonStorage} file round trips, plain and encrypted
+ *
+ * @author thomas
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSonStorageBenchmark {
+
+    @Param
+    public Payload     payload;
+
+    @Param({ "true", "false" })
+    public boolean     plain;
+
+    private Object     object;
+    private TypeRef<?> type;
+    private String     json;
+    private File       readFile;
+    private File       writeFile;
+
+    @Setup
+    public void setup() throws Exception {
+        this.object = this.payload.create();
+        this.type = this.payload.getTypeRef();
+        this.json = new SimpleMapper().objectToString(this.object);
+        this.readFile = File.createTempFile("jsonstoragebenchmark", ".json");
+        this.writeFile = File.createTempFile("jsonstoragebenchmark", ".json");
+        JSonStorage.saveTo(this.readFile, this.plain, JSonStorage.KEY, this.json);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.readFile.delete();
+        this.writeFile.delete();
+    }
+
+    @Benchmark
+    public void saveTo() throws StorageException {
+        JSonStorage.saveTo(this.writeFile, this.plain, JSonStorage.KEY, this.json);
+    }
+
+    @Benchmark
+    public void saveObjectTo() throws StorageException {
+        JSonStorage.saveObjectTo(this.writeFile, this.plain, JSonStorage.KEY, this.object);
+    }
+
+    @Benchmark
+    public Object restoreFrom() {
+        return JSonStorage.restoreFrom(this.readFile, this.plain, JSonStorage.KEY, this.type, null);
+    }
+}
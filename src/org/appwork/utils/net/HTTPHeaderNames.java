@@ -0,0 +1,133 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.utils.net;
+
+import org.appwork.net.protocol.http.HTTPConstants;
+
+/**
+ * case insensitive hashing and interning of http header names. the hash is equal for names that are equal by
+ * {@link String#equalsIgnoreCase(String)} and is computed without creating lower case copies, so it can be calculated once per header
+ * and be used for indexed lookups, see {@link HeaderCollection}
+ *
+ * @author thomas
+ *
+ */
+public final class HTTPHeaderNames {
+
+    private static final String[] KNOWN = new String[] { HTTPConstants.HEADER_REQUEST_ACCEPT, HTTPConstants.HEADER_REQUEST_ACCEPT_CHARSET, HTTPConstants.HEADER_REQUEST_ACCEPT_ENCODING, HTTPConstants.HEADER_REQUEST_ACCEPT_LANGUAGE, HTTPConstants.HEADER_REQUEST_AUTHORIZATION, HTTPConstants.HEADER_REQUEST_CACHE_CONTROL, HTTPConstants.HEADER_REQUEST_CONNECTION, HTTPConstants.HEADER_REQUEST_COOKIE, HTTPConstants.HEADER_RESPONSE_CONTENT_LENGTH, HTTPConstants.HEADER_REQUEST_CONTENT_TYPE, HTTPConstants.HEADER_RESPONSE_CONTENT_RANGE, HTTPConstants.HEADER_RESPONSE_SET_COOKIE, HTTPConstants.HEADER_RESPONSE_CONTENT_DISPOSITION, HTTPConstants.HEADER_REQUEST_DATE, HTTPConstants.HEADER_REQUEST_EXPECT, HTTPConstants.HEADER_REQUEST_FROM, HTTPConstants.HEADER_REQUEST_HOST, HTTPConstants.HEADER_REQUEST_IF_MATCH, HTTPConstants.HEADER_REQUEST_IF_MODIFIED_SINCE, HTTPConstants.HEADER_REQUEST_IF_NON_MATCH, HTTPConstants.HEADER_REQUEST_ID_RANGE, HTTPConstants.HEADER_REQUEST_ID_MODIFIED_SINCE, HTTPConstants.HEADER_REQUEST_MAX_FORWARDS, HTTPConstants.HEADER_REQUEST_PRAGMA, HTTPConstants.HEADER_REQUEST_PROXY_AUTHORIZATION, HTTPConstants.HEADER_REQUEST_RANGE, HTTPConstants.HEADER_ETAG, HTTPConstants.HEADER_REQUEST_REFERER, HTTPConstants.HEADER_REQUEST_TE, HTTPConstants.HEADER_REQUEST_UPGRADE, HTTPConstants.HEADER_REQUEST_USER_AGENT, HTTPConstants.HEADER_REQUEST_VIA, HTTPConstants.HEADER_REQUEST_LOCATION, HTTPConstants.HEADER_REQUEST_X_FORWARDED_FOR, HTTPConstants.HEADER_REQUEST_X_CLIENT_IP, HTTPConstants.HEADER_REQUEST_WARNING, HTTPConstants.HEADER_RESPONSE_TRANSFER_ENCODING, HTTPConstants.HEADER_RESPONSE_ACCEPT_RANGES, HTTPConstants.HEADER_RESPONSE_LAST_MODIFIED, HTTPConstants.HEADER_RESPONSE_VARY, HTTPConstants.HEADER_RESPONSE_CONTENT_ENCODING, HTTPConstants.HEADER_RESPONSE_SERVER, HTTPConstants.HEADER_RESPONSE_ACCESS_CONTROL_ALLOW_ORIGIN, HTTPConstants.HEADER_RESPONSE_ACCESS_CONTROL_ALLOW_METHODS, HTTPConstants.HEADER_RESPONSE_ACCESS_CONTROL_ALLOW_HEADERS, HTTPConstants.HEADER_RESPONSE_ACCESS_CONTROL_MAX_AGE, "Keep-Alive", "Origin", "Expires", "Age", "WWW-Authenticate", "Proxy-Authenticate", "Proxy-Connection", "Trailer", "Upgrade-Insecure-Requests", "DNT", "X-Requested-With" };
+    /* open addressing table of the known names, indexed by their case sensitive String hash */
+    private static final String[] TABLE;
+    private static final int      MASK;
+
+    static {
+        int size = 16;
+        while (size < KNOWN.length * 4) {
+            size <<= 1;
+        }
+        TABLE = new String[size];
+        MASK = size - 1;
+        for (final String name : HTTPHeaderNames.KNOWN) {
+            int slot = name.hashCode() & HTTPHeaderNames.MASK;
+            while (HTTPHeaderNames.TABLE[slot] != null && !HTTPHeaderNames.TABLE[slot].equals(name)) {
+                slot = slot + 1 & HTTPHeaderNames.MASK;
+            }
+            HTTPHeaderNames.TABLE[slot] = name;
+        }
+    }
+
+    /**
+     * hash of the ISO-8859-1 name in buffer[offset, offset+length), equal to {@link #hashIgnoreCase(String)} of the decoded name
+     */
+    public static int hashIgnoreCase(final byte[] buffer, final int offset, final int length) {
+        int h = 0;
+        for (int index = offset; index < offset + length; index++) {
+            h = 31 * h + HTTPHeaderNames.fold((char) (buffer[index] & 0xff));
+        }
+        return h;
+    }
+
+    public static int hashIgnoreCase(final String name) {
+        int h = 0;
+        final int length = name.length();
+        for (int index = 0; index < length; index++) {
+            h = 31 * h + HTTPHeaderNames.fold(name.charAt(index));
+        }
+        return h;
+    }
+
+    /**
+     * returns the shared instance of a well known header name if buffer[offset, offset+length) equals it (case sensitive, the received
+     * spelling is never changed), else a new ISO-8859-1 String
+     */
+    @SuppressWarnings("deprecation")
+    public static String intern(final byte[] buffer, final int offset, final int length) {
+        int h = 0;
+        for (int index = offset; index < offset + length; index++) {
+            h = 31 * h + (buffer[index] & 0xff);
+        }
+        int slot = h & HTTPHeaderNames.MASK;
+        String name;
+        while ((name = HTTPHeaderNames.TABLE[slot]) != null) {
+            if (name.length() == length && HTTPHeaderNames.equals(name, buffer, offset)) {
+                return name;
+            }
+            slot = slot + 1 & HTTPHeaderNames.MASK;
+        }
+        /* ISO-8859-1 without charset lookup */
+        return new String(buffer, 0, offset, length);
+    }
+
+    private static boolean equals(final String name, final byte[] buffer, final int offset) {
+        for (int index = name.length() - 1; index >= 0; index--) {
+            if (name.charAt(index) != (char) (buffer[offset + index] & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int fold(final char c) {
+        if (c < 128) {
+            if (c >= 'A' && c <= 'Z') {
+                return c + 32;
+            }
+            return c;
+        }
+        /* same folding as equalsIgnoreCase */
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private HTTPHeaderNames() {
+    }
+}
@@ -34,10 +34,11 @@
 package org.appwork.utils.net;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.NoSuchElementException;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
@@ -45,75 +46,149 @@ import java.util.concurrent.CopyOnWriteArraySet;
  *
  */
 public class HeaderCollection implements Iterable<HTTPHeader> {
-    private final CopyOnWriteArrayList<HTTPHeader> collection            = new CopyOnWriteArrayList<HTTPHeader>();
-    private final CopyOnWriteArraySet<String>      allowedDuplicatedKeys = new CopyOnWriteArraySet<String>();
+    private static final HTTPHeader[]         EMPTY                 = new HTTPHeader[0];
+    /* headers in insertion order and their HTTPHeaderNames.hashIgnoreCase */
+    private HTTPHeader[]                      headers;
+    private int[]                             hashes;
+    private int                               size                  = 0;
+    /* open addressing index, position+1 of the first header with that name, 0 = free */
+    private int[]                             index;
+    /* immutable copy for iteration, dropped on modification */
+    private volatile HTTPHeader[]             snapshot              = HeaderCollection.EMPTY;
+    private final CopyOnWriteArraySet<String> allowedDuplicatedKeys = new CopyOnWriteArraySet<String>();
 
     public HeaderCollection() {
+        this(16);
+    }
+
+    public HeaderCollection(final int initialCapacity) {
+        final int capacity = Math.max(4, initialCapacity);
+        this.headers = new HTTPHeader[capacity];
+        this.hashes = new int[capacity];
+        this.index = new int[HeaderCollection.indexSize(capacity)];
         this.allowedDuplicatedKeys.add("Set-Cookie".toLowerCase(Locale.ENGLISH));
     }
 
-    public void add(final HTTPHeader header) {
-        final HTTPHeader existingHeader = this.get(header.getKey());
-        if (existingHeader != null) {
-            if (!this.allowedDuplicatedKeys.contains(header.getKey().toLowerCase(Locale.ENGLISH))) {
-                if (existingHeader.isAllowOverwrite()) {
-                    final int index = indexOf(existingHeader);
-                    collection.set(index, header);
+    private static int indexSize(final int capacity) {
+        int size = 8;
+        while (size < capacity * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    public synchronized void add(final HTTPHeader header) {
+        final String key = header.getKey();
+        if (key != null) {
+            final int hash = HTTPHeaderNames.hashIgnoreCase(key);
+            final int existing = this.find(key, hash);
+            if (existing >= 0) {
+                if (!this.allowedDuplicatedKeys.contains(key.toLowerCase(Locale.ENGLISH))) {
+                    if (this.headers[existing].isAllowOverwrite()) {
+                        this.headers[existing] = header;
+                        this.snapshot = null;
+                    }
+                    return;
                 }
-                return;
             }
+            this.append(header, hash, existing < 0);
+        } else {
+            this.append(header, 0, false);
         }
-        this.collection.add(header);
     }
 
-    public void clear() {
-        this.collection.clear();
+    private void append(final HTTPHeader header, final int hash, final boolean indexed) {
+        if (this.size == this.headers.length) {
+            this.headers = Arrays.copyOf(this.headers, this.size * 2);
+            this.hashes = Arrays.copyOf(this.hashes, this.size * 2);
+            if (this.index.length < HeaderCollection.indexSize(this.headers.length)) {
+                this.index = new int[HeaderCollection.indexSize(this.headers.length)];
+                this.reindex(this.size);
+            }
+        }
+        this.headers[this.size] = header;
+        this.hashes[this.size] = hash;
+        if (indexed) {
+            this.insert(hash, this.size);
+        }
+        this.size++;
+        this.snapshot = null;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(this.headers, 0, this.size, null);
+        Arrays.fill(this.index, 0);
+        this.size = 0;
+        this.snapshot = HeaderCollection.EMPTY;
     }
 
     @Override
-    public HeaderCollection clone() {
-        final HeaderCollection ret = new HeaderCollection();
-        ret.collection.addAll(this.collection);
+    public synchronized HeaderCollection clone() {
+        final HeaderCollection ret = new HeaderCollection(this.headers.length);
+        System.arraycopy(this.headers, 0, ret.headers, 0, this.size);
+        System.arraycopy(this.hashes, 0, ret.hashes, 0, this.size);
+        System.arraycopy(this.index, 0, ret.index, 0, this.index.length);
+        ret.size = this.size;
+        ret.snapshot = null;
         return ret;
     }
 
-    public HTTPHeader get(final int index) {
-        return this.collection.get(index);
+    /**
+     * position of the first header with the given name or -1
+     */
+    private int find(final String key, final int hash) {
+        final int mask = this.index.length - 1;
+        int slot = hash & mask;
+        int entry;
+        while ((entry = this.index[slot]) != 0) {
+            final int position = entry - 1;
+            if (this.hashes[position] == hash && key.equalsIgnoreCase(this.headers[position].getKey())) {
+                return position;
+            }
+            slot = slot + 1 & mask;
+        }
+        return -1;
     }
 
-    public int indexOf(HTTPHeader header) {
-        return collection.indexOf(header);
+    public synchronized HTTPHeader get(final int index) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        return this.headers[index];
     }
 
     public HTTPHeader get(final String key) {
         if (key == null) {
             return null;
         }
-        for (final HTTPHeader header : this.collection) {
-            if (header.getKey() == null) {
-                if (key == null) {
-                    return header;
-                }
-            } else {
-                if (header.getKey().equalsIgnoreCase(key)) {
-                    return header;
-                }
+        final int hash = HTTPHeaderNames.hashIgnoreCase(key);
+        synchronized (this) {
+            final int position = this.find(key, hash);
+            if (position >= 0) {
+                return this.headers[position];
             }
+            return null;
         }
-        return null;
     }
 
     public List<HTTPHeader> getAll(final String key) {
-        final ArrayList<HTTPHeader> ret = new ArrayList<HTTPHeader>();
-        for (final HTTPHeader header : this.collection) {
-            if (header.getKey().equalsIgnoreCase(key)) {
-                ret.add(header);
-            }
+        if (key == null) {
+            return null;
         }
-        if (ret.size() > 0) {
+        final int hash = HTTPHeaderNames.hashIgnoreCase(key);
+        synchronized (this) {
+            final int first = this.find(key, hash);
+            if (first < 0) {
+                return null;
+            }
+            final ArrayList<HTTPHeader> ret = new ArrayList<HTTPHeader>();
+            for (int position = first; position < this.size; position++) {
+                if (this.hashes[position] == hash && key.equalsIgnoreCase(this.headers[position].getKey())) {
+                    ret.add(this.headers[position]);
+                }
+            }
             return ret;
         }
-        return null;
     }
 
     public CopyOnWriteArraySet<String> getAllowedDuplicatedKeys() {
@@ -128,13 +203,81 @@ public class HeaderCollection implements Iterable<HTTPHeader> {
         return null;
     }
 
+    public synchronized int indexOf(final HTTPHeader header) {
+        for (int position = 0; position < this.size; position++) {
+            if (header == null ? this.headers[position] == null : header.equals(this.headers[position])) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(final int hash, final int position) {
+        final int mask = this.index.length - 1;
+        int slot = hash & mask;
+        while (this.index[slot] != 0) {
+            slot = slot + 1 & mask;
+        }
+        this.index[slot] = position + 1;
+    }
+
+    /**
+     * iterates over a snapshot, like the former CopyOnWriteArrayList modifications during iteration are allowed and not visible to the
+     * iterator
+     */
     @Override
     public Iterator<HTTPHeader> iterator() {
-        return this.collection.iterator();
+        HTTPHeader[] headers = this.snapshot;
+        if (headers == null) {
+            synchronized (this) {
+                headers = this.snapshot;
+                if (headers == null) {
+                    headers = Arrays.copyOf(this.headers, this.size);
+                    this.snapshot = headers;
+                }
+            }
+        }
+        final HTTPHeader[] snapshot = headers;
+        return new Iterator<HTTPHeader>() {
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.position < snapshot.length;
+            }
+
+            @Override
+            public HTTPHeader next() {
+                if (this.position >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot[this.position++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
-    public boolean remove(final HTTPHeader header) {
-        if (this.collection.remove(header)) {
+    /**
+     * rebuilds the index for the first count headers, only the first header of each name is indexed
+     */
+    private void reindex(final int count) {
+        Arrays.fill(this.index, 0);
+        for (int position = 0; position < count; position++) {
+            final String key = this.headers[position].getKey();
+            if (key != null && this.find(key, this.hashes[position]) < 0) {
+                this.insert(this.hashes[position], position);
+            }
+        }
+    }
+
+    public synchronized boolean remove(final HTTPHeader header) {
+        final int position = this.indexOf(header);
+        if (position >= 0) {
+            this.removeAt(position);
             return true;
         } else {
             return this.remove(header.getKey());
@@ -142,21 +285,48 @@ public class HeaderCollection implements Iterable<HTTPHeader> {
     }
 
     public boolean remove(final String key) {
-        final HTTPHeader existingHeader = this.get(key);
-        if (existingHeader != null) {
-            return this.collection.remove(existingHeader);
-        } else {
+        if (key == null) {
             return false;
         }
+        final int hash = HTTPHeaderNames.hashIgnoreCase(key);
+        synchronized (this) {
+            final int position = this.find(key, hash);
+            if (position >= 0) {
+                this.removeAt(position);
+                return true;
+            } else {
+                return false;
+            }
+        }
     }
 
-    public int size() {
-        return this.collection.size();
+    private void removeAt(final int position) {
+        final int moved = this.size - position - 1;
+        if (moved > 0) {
+            System.arraycopy(this.headers, position + 1, this.headers, position, moved);
+            System.arraycopy(this.hashes, position + 1, this.hashes, position, moved);
+        }
+        this.headers[--this.size] = null;
+        this.reindex(this.size);
+        this.snapshot = null;
+    }
+
+    public synchronized int size() {
+        return this.size;
     }
 
     @Override
     public String toString() {
-        return this.collection.toString();
+        final Iterator<HTTPHeader> it = this.iterator();
+        final StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        while (it.hasNext()) {
+            sb.append(it.next());
+            if (it.hasNext()) {
+                sb.append(", ");
+            }
+        }
+        return sb.append(']').toString();
     }
 
 }
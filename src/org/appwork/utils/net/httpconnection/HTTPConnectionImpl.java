@@ -74,6 +74,7 @@ import org.appwork.utils.StringUtils;
 import org.appwork.utils.net.Base64InputStream;
 import org.appwork.utils.net.ChunkedInputStream;
 import org.appwork.utils.net.CountingOutputStream;
+import org.appwork.utils.net.HTTPHeader;
 import org.appwork.utils.net.LimitedInputStream;
 import org.appwork.utils.net.PublicSuffixList;
 import org.appwork.utils.net.StreamValidEOF;
@@ -887,49 +888,20 @@ public class HTTPConnectionImpl implements HTTPConnection {
                 return;
             }
             /* read rest of http headers */
-            header = HTTPConnectionUtils.readheader(inputStream, false);
-            final String temp;
-            if (header.hasArray()) {
-                temp = fromBytes(header.array(), 0, header.limit());
-            } else {
-                final byte[] bytes = new byte[header.limit()];
-                header.get(bytes);
-                temp = fromBytes(bytes, -1, -1);
-            }
+            header = HTTPConnectionUtils.readheader(inputStream, false, header.array());
+            final String temp = this.fromBytes(header.array(), 0, header.limit());
             this.requestTime = System.currentTimeMillis() - startTime;
             /*
-             * split header into single strings, use RN or N(buggy fucking non rfc)
+             * split header into single lines, use RN or N(buggy fucking non rfc)
              */
-            String[] headerStrings = temp.split("(\r\n)|(\n)");
-            for (final String line : headerStrings) {
-                String key = null;
-                String value = null;
-                int index = 0;
-                if ((index = line.indexOf(": ")) > 0) {
-                    key = line.substring(0, index);
-                    value = line.substring(index + 2);
-                } else if ((index = line.indexOf(":")) > 0) {
-                    /* buggy servers that don't have :space ARG */
-                    key = line.substring(0, index);
-                    value = line.substring(index + 1);
-                } else {
-                    key = null;
-                    value = line;
-                }
-                if (key != null) {
-                    key = key.trim();
-                }
-                if (value != null) {
-                    value = value.trim();
-                }
-                List<String> list = this.headers.get(key);
+            for (final HTTPHeader line : HTTPConnectionUtils.parseHeaders(temp, true)) {
+                List<String> list = this.headers.get(line.getKey());
                 if (list == null) {
-                    list = new ArrayList<String>();
-                    this.headers.put(key, list);
+                    list = new ArrayList<String>(1);
+                    this.headers.put(line.getKey(), list);
                 }
-                list.add(value);
+                list.add(line.getValue());
             }
-            headerStrings = null;
             InputStream wrappedInputStream;
             if (this.isKeepAlivedEnabled()) {
                 /* keep-alive-> do not close the inputstream! */
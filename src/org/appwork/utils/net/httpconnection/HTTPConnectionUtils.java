@@ -39,12 +39,17 @@ import java.net.InetAddress;
 import java.net.URLDecoder;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.regex.Matcher;
 
 import org.appwork.utils.Application;
 import org.appwork.utils.Regex;
 import org.appwork.utils.StringUtils;
 import org.appwork.utils.encoding.Base64;
+import org.appwork.utils.net.HTTPHeader;
+import org.appwork.utils.net.HTTPHeaderNames;
 
 public class HTTPConnectionUtils {
 
@@ -118,56 +123,180 @@ public class HTTPConnectionUtils {
         return null;
     }
 
-    public static ByteBuffer readheader(final InputStream in, final boolean readSingleLine) throws IOException {
-        ByteBuffer bigbuffer = ByteBuffer.wrap(new byte[4096]);
-        final byte[] minibuffer = new byte[1];
-        int position;
-
-        while (in.read(minibuffer) >= 0) {
-            if (bigbuffer.remaining() < 1) {
-                final ByteBuffer newbuffer = ByteBuffer.wrap(new byte[bigbuffer.capacity() * 2]);
-                bigbuffer.flip();
-                newbuffer.put(bigbuffer);
-                bigbuffer = newbuffer;
-            }
-            bigbuffer.put(minibuffer);
-            if (readSingleLine) {
-                if (bigbuffer.position() >= 1) {
-                    /*
-                     * \n only line termination, for fucking buggy non rfc servers
-                     */
-                    position = bigbuffer.position();
-                    if (bigbuffer.get(position - 1) == HTTPConnectionUtils.N) {
+    /**
+     * splits a header block (as returned by {@link #readheader(InputStream, boolean)}) into its header lines. names and values are sliced
+     * directly out of the buffer (ISO-8859-1), well known names are shared instances, see {@link HTTPHeaderNames#intern(byte[], int, int)}.
+     * lines without a name result in a header with null key and the whole line as value, empty lines are skipped
+     *
+     * @param trim
+     *            trim name and value, else only the optional space after the colon is removed
+     */
+    public static List<HTTPHeader> parseHeaders(final byte[] buffer, final int offset, final int length, final boolean trim) {
+        final ArrayList<HTTPHeader> ret = new ArrayList<HTTPHeader>();
+        final int end = offset + length;
+        int lineStart = offset;
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && buffer[lineEnd] != HTTPConnectionUtils.N) {
+                lineEnd++;
+            }
+            final int next = lineEnd + 1;
+            /* \r\n or \n only line termination, for buggy non rfc clients/servers */
+            if (lineEnd < end && lineEnd > lineStart && buffer[lineEnd - 1] == HTTPConnectionUtils.R) {
+                lineEnd--;
+            }
+            if (lineEnd > lineStart) {
+                int colon = -1;
+                int valueStart = -1;
+                for (int index = lineStart; index < lineEnd - 1; index++) {
+                    if (buffer[index] == ':' && buffer[index + 1] == ' ') {
+                        colon = index;
+                        valueStart = index + 2;
                         break;
                     }
-                    if (bigbuffer.position() >= 2) {
-                        /* \r\n, correct line termination */
-                        if (bigbuffer.get(position - 2) == HTTPConnectionUtils.R && bigbuffer.get(position - 1) == HTTPConnectionUtils.N) {
+                }
+                if (colon <= lineStart) {
+                    /* buggy clients/servers that don't have :space ARG */
+                    colon = -1;
+                    for (int index = lineStart; index < lineEnd; index++) {
+                        if (buffer[index] == ':') {
+                            colon = index;
+                            valueStart = index + 1;
                             break;
                         }
                     }
                 }
-            } else {
-                if (bigbuffer.position() >= 2) {
-                    position = bigbuffer.position();
-                    if (bigbuffer.get(position - 2) == HTTPConnectionUtils.N && bigbuffer.get(position - 1) == HTTPConnectionUtils.N) {
-                        /*
-                         * \n\n for header<->content divider, or fucking buggy non rfc servers
-                         */
-                        break;
-                    }
-                    if (bigbuffer.position() >= 4) {
-                        /* \r\n\r\n for header<->content divider */
-                        if (bigbuffer.get(position - 4) == HTTPConnectionUtils.R && bigbuffer.get(position - 3) == HTTPConnectionUtils.N && bigbuffer.get(position - 2) == HTTPConnectionUtils.R && bigbuffer.get(position - 1) == HTTPConnectionUtils.N) {
-                            break;
+                String key = null;
+                if (colon > lineStart) {
+                    int keyStart = lineStart;
+                    int keyEnd = colon;
+                    if (trim) {
+                        while (keyStart < keyEnd && buffer[keyStart] <= ' ' && buffer[keyStart] >= 0) {
+                            keyStart++;
+                        }
+                        while (keyEnd > keyStart && buffer[keyEnd - 1] <= ' ' && buffer[keyEnd - 1] >= 0) {
+                            keyEnd--;
                         }
                     }
+                    key = HTTPHeaderNames.intern(buffer, keyStart, keyEnd - keyStart);
+                } else {
+                    valueStart = lineStart;
+                }
+                int valueEnd = lineEnd;
+                if (trim) {
+                    while (valueStart < valueEnd && buffer[valueStart] <= ' ' && buffer[valueStart] >= 0) {
+                        valueStart++;
+                    }
+                    while (valueEnd > valueStart && buffer[valueEnd - 1] <= ' ' && buffer[valueEnd - 1] >= 0) {
+                        valueEnd--;
+                    }
+                }
+                ret.add(new HTTPHeader(key, HTTPConnectionUtils.toISO88591(buffer, valueStart, valueEnd - valueStart)));
+            }
+            lineStart = next;
+        }
+        return ret;
+    }
+
+    /**
+     * same as {@link #parseHeaders(byte[], int, int, boolean)} for an already decoded header block, eg the result of
+     * HTTPConnectionImpl.fromBytes. chars beyond ISO-8859-1 are kept as they are
+     */
+    @SuppressWarnings("deprecation")
+    public static List<HTTPHeader> parseHeaders(final String header, final boolean trim) {
+        final int length = header.length();
+        for (int index = 0; index < length; index++) {
+            if (header.charAt(index) > 0xff) {
+                return HTTPConnectionUtils.parseHeaderLines(header, trim);
+            }
+        }
+        /* ISO-8859-1 only, low bytes without charset lookup */
+        final byte[] bytes = new byte[length];
+        header.getBytes(0, length, bytes, 0);
+        return HTTPConnectionUtils.parseHeaders(bytes, 0, length, trim);
+    }
+
+    private static List<HTTPHeader> parseHeaderLines(final String header, final boolean trim) {
+        final ArrayList<HTTPHeader> ret = new ArrayList<HTTPHeader>();
+        for (final String line : header.split("(\r\n)|(\n)")) {
+            if (line.length() == 0) {
+                continue;
+            }
+            String key = null;
+            String value = line;
+            int index = 0;
+            if ((index = line.indexOf(": ")) > 0) {
+                key = line.substring(0, index);
+                value = line.substring(index + 2);
+            } else if ((index = line.indexOf(":")) > 0) {
+                /* buggy clients/servers that don't have :space ARG */
+                key = line.substring(0, index);
+                value = line.substring(index + 1);
+            }
+            if (trim) {
+                if (key != null) {
+                    key = key.trim();
                 }
+                value = value.trim();
+            }
+            ret.add(new HTTPHeader(key, value));
+        }
+        return ret;
+    }
+
+    public static ByteBuffer readheader(final InputStream in, final boolean readSingleLine) throws IOException {
+        return HTTPConnectionUtils.readheader(in, readSingleLine, null);
+    }
+
+    /**
+     * reads a single line or the header block up to and including the empty divider line, never reads beyond. the given buffer is used if
+     * large enough, else a larger one is allocated. the returned ByteBuffer wraps the used array (position 0, limit=bytes read), so
+     * callers can reuse {@link ByteBuffer#array()} for the next call
+     *
+     * @param buffer
+     *            may be null
+     */
+    public static ByteBuffer readheader(final InputStream in, final boolean readSingleLine, byte[] buffer) throws IOException {
+        if (buffer == null || buffer.length == 0) {
+            buffer = new byte[4096];
+        }
+        int position = 0;
+        int read;
+        while ((read = in.read()) >= 0) {
+            if (position == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[position++] = (byte) read;
+            if (read != HTTPConnectionUtils.N) {
+                /* all line terminations end with \n */
+                continue;
+            }
+            if (readSingleLine) {
+                /* \r\n, correct line termination or \n only line termination, for fucking buggy non rfc servers */
+                break;
+            }
+            if (position == 1 || position == 2 && buffer[0] == HTTPConnectionUtils.R) {
+                /* no header lines at all, the divider follows directly, don't read into the content */
+                break;
+            }
+            if (buffer[position - 2] == HTTPConnectionUtils.N) {
+                /*
+                 * \n\n for header<->content divider, or fucking buggy non rfc servers
+                 */
+                break;
+            }
+            if (position >= 4 && buffer[position - 4] == HTTPConnectionUtils.R && buffer[position - 3] == HTTPConnectionUtils.N && buffer[position - 2] == HTTPConnectionUtils.R) {
+                /* \r\n\r\n for header<->content divider */
+                break;
             }
         }
+        return ByteBuffer.wrap(buffer, 0, position);
+    }
 
-        bigbuffer.flip();
-        return bigbuffer;
+    @SuppressWarnings("deprecation")
+    private static String toISO88591(final byte[] buffer, final int offset, final int length) {
+        /* ISO-8859-1 without charset lookup */
+        return new String(buffer, 0, offset, length);
     }
 
     public static InetAddress[] resolvHostIP(String host) throws IOException {
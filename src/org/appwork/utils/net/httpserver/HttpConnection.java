@@ -33,6 +33,7 @@
  * ==================================================================================================================================================== */
 package org.appwork.utils.net.httpserver;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -51,6 +52,7 @@ import org.appwork.utils.Regex;
 import org.appwork.utils.StringUtils;
 import org.appwork.utils.net.HTTPHeader;
 import org.appwork.utils.net.HeaderCollection;
+import org.appwork.utils.net.StreamValidEOF;
 import org.appwork.utils.net.httpconnection.HTTPConnectionUtils;
 import org.appwork.utils.net.httpserver.handler.HttpRequestHandler;
 import org.appwork.utils.net.httpserver.requests.GetRequest;
@@ -150,6 +152,19 @@ public class HttpConnection implements Runnable {
     protected final OutputStream os;
     protected HttpRequest        request;
 
+    /* requests read from this connection so far */
+    protected int                      requestCount          = 0;
+    /* keep the connection open after the current request, see isKeepAliveRequest/isPersistentResponse */
+    protected boolean                  persistent            = false;
+    protected int                      keepAliveTimeout      = 0;
+    private final ResponseOutputStream responseOutputStream;
+    /* -1 for chunked responses */
+    private long                       responseContentLength = 0;
+    /* reused for request line and headers of all requests on this connection, see readRequestLine/readRequestHeaders */
+    private byte[]                     headerBuffer          = null;
+    /* NIO mode: idle persistent connections go back to the selector instead of blocking this thread, see run */
+    private HttpServerSelector         selector              = null;
+
     private static final Pattern METHOD              = Pattern.compile("(GET|POST|HEAD|OPTIONS)");
     private static final Pattern REQUESTLINE         = Pattern.compile(" (/.*?) ");
 
@@ -157,6 +172,12 @@ public class HttpConnection implements Runnable {
 
     private static final Pattern REQUESTPARAM        = Pattern.compile("\\?(.+)");
 
+    private static final Pattern KEEPALIVETIMEOUT    = Pattern.compile("timeout\\s*=\\s*(\\d+)", Pattern.CASE_INSENSITIVE);
+
+    private static final int     READ_TIMEOUT        = 60 * 1000;
+    /* bytes of an unread request body we skip to keep the connection, larger bodies close the connection */
+    private static final int     MAX_SKIP_BODY       = 64 * 1024;
+
     protected HttpConnection(final HttpServer server, final Socket clientSocket, final InputStream is, final OutputStream os) throws IOException {
         this.server = server;
         this.clientSocket = clientSocket;
@@ -166,12 +187,19 @@ public class HttpConnection implements Runnable {
             this.is = is;
         }
         if (os == null) {
-            this.os = clientSocket.getOutputStream();
+            this.responseOutputStream = new ResponseOutputStream(clientSocket.getOutputStream(), clientSocket.getChannel());
+            this.os = this.responseOutputStream;
         } else {
+            this.responseOutputStream = null;
             this.os = os;
         }
         if (clientSocket != null) {
-            this.clientSocket.setSoTimeout(60 * 1000);
+            this.clientSocket.setSoTimeout(HttpConnection.READ_TIMEOUT);
+            try {
+                /* headers and body are separate writes, avoid nagle/delayed ack stalls on persistent connections */
+                this.clientSocket.setTcpNoDelay(true);
+            } catch (final IOException ignore) {
+            }
         }
     }
 
@@ -180,6 +208,7 @@ public class HttpConnection implements Runnable {
         this.clientSocket = null;
         this.is = null;
         this.os = null;
+        this.responseOutputStream = null;
     }
 
     public HttpConnection(final HttpServer server, final Socket clientSocket) throws IOException {
@@ -214,6 +243,10 @@ public class HttpConnection implements Runnable {
         if (StringUtils.isEmpty(requestLine)) {
             throw new IOException("Empty RequestLine");
         }
+        if (this.requestCount++ > 0) {
+            /* next request on a persistent connection arrived, back to normal read timeout */
+            this.clientSocket.setSoTimeout(HttpConnection.READ_TIMEOUT);
+        }
         // TOTO: requestLine may be "" in some cases (chrome pre connection...?)
         final HttpConnectionType connectionType = this.parseConnectionType(requestLine);
         final String requestedURL = new Regex(requestLine, HttpConnection.REQUESTLINE).getMatch(0);
@@ -244,6 +277,7 @@ public class HttpConnection implements Runnable {
         request.setRequestedPath(requestedPath);
         request.setRequestedURL(requestedURL);
         request.setRequestHeaders(requestHeaders);
+        this.persistent = this.isKeepAliveRequest(requestLine, requestHeaders);
         return request;
     }
 
@@ -382,32 +416,18 @@ public class HttpConnection implements Runnable {
 
     protected HeaderCollection parseRequestHeaders() throws IOException {
         final ByteBuffer headers = this.readRequestHeaders();
-        final String[] headerStrings;
+        final List<HTTPHeader> headerList;
         if (headers.hasArray()) {
-            headerStrings = new String(headers.array(), headers.arrayOffset(), headers.limit(), "ISO-8859-1").split("(\r\n)|(\n)");
+            headerList = HTTPConnectionUtils.parseHeaders(headers.array(), headers.arrayOffset() + headers.position(), headers.remaining(), false);
         } else {
-            final byte[] bytesHeaders = new byte[headers.limit()];
+            final byte[] bytesHeaders = new byte[headers.remaining()];
             headers.get(bytesHeaders);
-            headerStrings = new String(bytesHeaders, "ISO-8859-1").split("(\r\n)|(\n)");
+            headerList = HTTPConnectionUtils.parseHeaders(bytesHeaders, 0, bytesHeaders.length, false);
         }
         /* build requestHeaders HashMap */
-        final HeaderCollection requestHeaders = new HeaderCollection();
-        for (final String line : headerStrings) {
-            String key = null;
-            String value = null;
-            int index = 0;
-            if ((index = line.indexOf(": ")) > 0) {
-                key = line.substring(0, index);
-                value = line.substring(index + 2);
-            } else if ((index = line.indexOf(":")) > 0) {
-                /* buggy clients that don't have :space ARG */
-                key = line.substring(0, index);
-                value = line.substring(index + 1);
-            } else {
-                key = null;
-                value = line;
-            }
-            requestHeaders.add(new HTTPHeader(key, value));
+        final HeaderCollection requestHeaders = new HeaderCollection(headerList.size());
+        for (final HTTPHeader header : headerList) {
+            requestHeaders.add(header);
         }
         return requestHeaders;
     }
@@ -432,16 +452,24 @@ public class HttpConnection implements Runnable {
     }
 
     protected ByteBuffer readRequestHeaders() throws IOException {
-        return HTTPConnectionUtils.readheader(this.getInputStream(), false);
+        final ByteBuffer ret = HTTPConnectionUtils.readheader(this.getInputStream(), false, this.headerBuffer);
+        this.headerBuffer = ret.array();
+        return ret;
     }
 
     protected ByteBuffer readRequestLine() throws IOException {
-        return HTTPConnectionUtils.readheader(this.getInputStream(), true);
+        final ByteBuffer ret = HTTPConnectionUtils.readheader(this.getInputStream(), true, this.headerBuffer);
+        this.headerBuffer = ret.array();
+        return ret;
     }
 
-    @Override
-    public void run() {
-        boolean closeConnection = true;
+    /**
+     * handles the current request. returns false if the connection has been handed over (deferred request or exception handler) and must
+     * not be closed or reused by this thread
+     *
+     * @return
+     */
+    protected boolean handleRequest() {
         try {
             if (this.request == null) {
                 this.request = this.buildRequest();
@@ -449,39 +477,223 @@ public class HttpConnection implements Runnable {
             if (this.response == null) {
                 this.response = this.buildResponse();
             }
+            final boolean keepAlive = this.persistent;
+            /* deferred requests are answered by another thread, their connection is closed afterwards */
+            this.persistent = false;
             if (this.deferRequest(this.request)) {
-                closeConnection = false;
-            } else {
-                boolean handled = false;
-                if (this.request instanceof PostRequest) {
-                    for (final HttpRequestHandler handler : this.getHandler()) {
-                        if (handler.onPostRequest((PostRequest) this.request, this.response)) {
-                            handled = true;
-                            break;
-                        }
-                    }
-                } else if (this.request instanceof GetRequest) {
-                    for (final HttpRequestHandler handler : this.getHandler()) {
-                        if (handler.onGetRequest((GetRequest) this.request, this.response)) {
-                            handled = true;
-                            break;
-                        }
+                return false;
+            }
+            this.persistent = keepAlive;
+            boolean handled = false;
+            if (this.request instanceof PostRequest) {
+                for (final HttpRequestHandler handler : this.getHandler()) {
+                    if (handler.onPostRequest((PostRequest) this.request, this.response)) {
+                        handled = true;
+                        break;
                     }
                 }
-                if (!handled) {
-                    /* generate error handler */
-                    this.onUnhandled(this.request, this.response);
+            } else if (this.request instanceof GetRequest) {
+                for (final HttpRequestHandler handler : this.getHandler()) {
+                    if (handler.onGetRequest((GetRequest) this.request, this.response)) {
+                        handled = true;
+                        break;
+                    }
                 }
-                /* send response headers if they have not been sent yet send yet */
-                this.response.getOutputStream(true);
             }
+            if (!handled) {
+                /* generate error handler */
+                this.onUnhandled(this.request, this.response);
+            }
+            /* send response headers if they have not been sent yet send yet */
+            this.response.getOutputStream(true);
+            return true;
         } catch (final Throwable e) {
+            this.persistent = false;
+            if (this.responseOutputStream != null) {
+                this.responseOutputStream.setPersistent(false);
+            }
+            if (this.request == null && this.requestCount > 0 && e instanceof IOException) {
+                /* persistent connection got closed or timed out while waiting for the next request */
+                return true;
+            }
             try {
-                closeConnection = this.onException(e, this.request, this.response);
+                return this.onException(e, this.request, this.response);
             } catch (final Throwable nothing) {
                 e.printStackTrace();
                 nothing.printStackTrace();
             }
+            return true;
+        }
+    }
+
+    /**
+     * @param requestLine
+     * @param requestHeaders
+     * @return true if the client wants to keep the connection open after this request (HTTP/1.1 default, HTTP/1.0 with Connection:
+     *         keep-alive). only in NIO mode, in blocking mode an idle persistent connection would hold a worker thread until it times out
+     */
+    protected boolean isKeepAliveRequest(final String requestLine, final HeaderCollection requestHeaders) {
+        if (this.selector == null || this.responseOutputStream == null || this.server == null || this.requestCount >= this.server.getMaxKeepAliveRequests()) {
+            return false;
+        }
+        final String connection = requestHeaders.getValue(HTTPConstants.HEADER_REQUEST_CONNECTION);
+        final boolean keepAlive;
+        if (requestLine.endsWith("HTTP/1.1")) {
+            keepAlive = connection == null || !StringUtils.containsIgnoreCase(connection, "close");
+        } else {
+            keepAlive = connection != null && StringUtils.containsIgnoreCase(connection, "keep-alive");
+        }
+        if (keepAlive) {
+            this.keepAliveTimeout = this.server.getKeepAliveTimeout();
+            final String timeout = new Regex(requestHeaders.getValue(HTTPConstants.HTTP_KEEP_ALIVE), HttpConnection.KEEPALIVETIMEOUT).getMatch(0);
+            if (timeout != null) {
+                try {
+                    this.keepAliveTimeout = (int) Math.min(this.keepAliveTimeout, Long.parseLong(timeout) * 1000);
+                } catch (final NumberFormatException ignore) {
+                }
+            }
+            return this.keepAliveTimeout > 0;
+        }
+        return false;
+    }
+
+    /**
+     * a response can only be followed by another one on the same connection if its end is known to the client: Content-Length, chunked
+     * encoding or a response without body
+     *
+     * @param request
+     * @param response
+     * @return
+     */
+    protected boolean isPersistentResponse(final HttpRequest request, final HttpResponse response) throws IOException {
+        if (request == null || response == null || this.getRawOutputStream() != this.responseOutputStream) {
+            return false;
+        }
+        final String connection = response.getResponseHeaders().getValue(HTTPConstants.HEADER_REQUEST_CONNECTION);
+        if (connection != null && !"close".equalsIgnoreCase(connection) && !"keep-alive".equalsIgnoreCase(connection)) {
+            return false;
+        }
+        final HeaderCollection requestHeaders = request.getRequestHeaders();
+        final String requestContentLength = requestHeaders.getValue(HTTPConstants.HEADER_RESPONSE_CONTENT_LENGTH);
+        final boolean requestChunked = requestHeaders.get(HTTPConstants.HEADER_RESPONSE_TRANSFER_ENCODING) != null;
+        if (request instanceof PostRequest) {
+            if (requestContentLength == null && !requestChunked) {
+                /* end of request body unknown */
+                return false;
+            }
+        } else if (requestChunked || requestContentLength != null && !"0".equals(requestContentLength.trim())) {
+            /* unexpected request body, we don't read it */
+            return false;
+        }
+        final int code = response.getResponseCode().getCode();
+        if (request instanceof HeadRequest || code < 200 || code == 204 || code == 304) {
+            this.responseContentLength = 0;
+            return true;
+        }
+        final String transferEncoding = response.getResponseHeaders().getValue(HTTPConstants.HEADER_RESPONSE_TRANSFER_ENCODING);
+        if (transferEncoding != null) {
+            this.responseContentLength = -1;
+            return HTTPConstants.HEADER_RESPONSE_TRANSFER_ENCODING_CHUNKED.equalsIgnoreCase(transferEncoding.trim());
+        }
+        final String contentLength = response.getResponseHeaders().getValue(HTTPConstants.HEADER_RESPONSE_CONTENT_LENGTH);
+        if (contentLength != null) {
+            try {
+                this.responseContentLength = Long.parseLong(contentLength.trim());
+                return this.responseContentLength >= 0;
+            } catch (final NumberFormatException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * checks that request and response are complete and resets this connection for the next request
+     *
+     * @return true if the next request can be read from this connection
+     */
+    protected boolean prepareNextRequest() {
+        try {
+            if (!this.persistent || this.clientSocket.isClosed() || this.clientSocket.isInputShutdown() || this.clientSocket.isOutputShutdown()) {
+                return false;
+            }
+            if (this.responseContentLength < 0) {
+                if (!this.responseOutputStream.isChunkedBodyComplete()) {
+                    return false;
+                }
+            } else if (this.responseOutputStream.getBodyBytes() != this.responseContentLength) {
+                return false;
+            }
+            if (!this.skipRequestBody(this.request)) {
+                return false;
+            }
+            this.responseOutputStream.flush();
+            this.responseOutputStream.reset();
+            this.request = null;
+            this.response = null;
+            this.persistent = false;
+            this.setResponseHeadersSent(false);
+            this.clientSocket.setSoTimeout(this.keepAliveTimeout);
+            return true;
+        } catch (final Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * reads the rest of the request body that has not been read by the handler
+     *
+     * @param request
+     * @return false if the end of the request body could not be found
+     * @throws IOException
+     */
+    protected boolean skipRequestBody(final HttpRequest request) throws IOException {
+        if (request instanceof PostRequest) {
+            final InputStream is = ((PostRequest) request).getInputStream();
+            final byte[] buffer = new byte[8192];
+            int skipped = 0;
+            int read = 0;
+            while (skipped <= HttpConnection.MAX_SKIP_BODY && (read = is.read(buffer)) != -1) {
+                skipped += read;
+            }
+            return read == -1 && is instanceof StreamValidEOF && ((StreamValidEOF) is).isValidEOF();
+        }
+        /* other requests without body, see isPersistentResponse */
+        return true;
+    }
+
+    void setSelector(final HttpServerSelector selector) {
+        this.selector = selector;
+    }
+
+    /**
+     * NIO mode: hands the connection back to the selector if the next request has not arrived yet. Pipelined requests that have already
+     * been received are read by this thread
+     *
+     * @return true if the connection has been handed back and must not be used or closed by this thread anymore
+     */
+    private boolean handBackIdleConnection() {
+        try {
+            if (this.selector == null || this.is.available() > 0) {
+                return false;
+            }
+            return this.selector.handBack(this.clientSocket.getChannel(), this.requestCount, this.keepAliveTimeout);
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void run() {
+        boolean closeConnection = true;
+        try {
+            while ((closeConnection = this.handleRequest()) && this.prepareNextRequest()) {
+                /* pipelined requests are simply read one after another from the same stream */
+                if (this.handBackIdleConnection()) {
+                    closeConnection = false;
+                    break;
+                }
+            }
         } finally {
             if (closeConnection) {
                 this.closeConnection();
@@ -502,18 +714,29 @@ public class HttpConnection implements Runnable {
                 throw new IOException("Headers already send!");
             }
             if (this.response != null) {
-                final OutputStream out = this.getRawOutputStream();
-                out.write(HttpResponse.HTTP11);
-                out.write(this.response.getResponseCode().getBytes());
-                out.write(HttpResponse.NEWLINE);
+                this.persistent = this.persistent && this.isPersistentResponse(this.request, this.response);
+                if (this.persistent) {
+                    this.response.getResponseHeaders().add(new HTTPHeader(HTTPConstants.HEADER_REQUEST_CONNECTION, "keep-alive"));
+                    this.response.getResponseHeaders().add(new HTTPHeader(HTTPConstants.HTTP_KEEP_ALIVE, "timeout=" + this.keepAliveTimeout / 1000 + ", max=" + (this.server.getMaxKeepAliveRequests() - this.requestCount)));
+                }
+                /* write status line and headers at once */
+                final ByteArrayOutputStream headers = new ByteArrayOutputStream(512);
+                headers.write(HttpResponse.HTTP11);
+                headers.write(this.response.getResponseCode().getBytes());
+                headers.write(HttpResponse.NEWLINE);
                 for (final HTTPHeader h : this.response.getResponseHeaders()) {
-                    out.write(h.getKey().getBytes("ISO-8859-1"));
-                    out.write(HTTPHeader.DELIMINATOR);
-                    out.write(h.getValue().getBytes("ISO-8859-1"));
-                    out.write(HttpResponse.NEWLINE);
+                    headers.write(h.getKey().getBytes("ISO-8859-1"));
+                    headers.write(HTTPHeader.DELIMINATOR);
+                    headers.write(h.getValue().getBytes("ISO-8859-1"));
+                    headers.write(HttpResponse.NEWLINE);
                 }
-                out.write(HttpResponse.NEWLINE);
+                headers.write(HttpResponse.NEWLINE);
+                final OutputStream out = this.getRawOutputStream();
+                headers.writeTo(out);
                 out.flush();
+                if (out == this.responseOutputStream) {
+                    this.responseOutputStream.beginBody(this.responseContentLength < 0, this.persistent);
+                }
             }
         } finally {
             this.setResponseHeadersSent(true);
@@ -34,6 +34,7 @@
 package org.appwork.utils.net.httpserver;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
@@ -42,6 +43,7 @@ import java.net.SocketAddress;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -60,11 +62,14 @@ import org.appwork.utils.net.httpserver.handler.HttpRequestHandler;
 public class HttpServer implements Runnable {
 
     private final int                                      port;
-    private final AtomicReference<ServerSocket>            controlSocket   = new AtomicReference<ServerSocket>(null);
-    private volatile Thread                                serverThread    = null;
-    private boolean                                        localhostOnly   = false;
-    private boolean                                        debug           = false;
-    private final CopyOnWriteArrayList<HttpRequestHandler> requestHandlers = new CopyOnWriteArrayList<HttpRequestHandler>();
+    private final AtomicReference<ServerSocket>            controlSocket        = new AtomicReference<ServerSocket>(null);
+    private volatile Thread                                serverThread         = null;
+    private boolean                                        localhostOnly        = false;
+    private boolean                                        debug                = false;
+    private volatile boolean                               nioEnabled           = false;
+    private volatile int                                   keepAliveTimeout     = 15 * 1000;
+    private volatile int                                   maxKeepAliveRequests = 100;
+    private final CopyOnWriteArrayList<HttpRequestHandler> requestHandlers      = new CopyOnWriteArrayList<HttpRequestHandler>();
 
     public HttpServer(final int port) {
         this.port = port;
@@ -74,6 +79,19 @@ public class HttpServer implements Runnable {
         return new HttpConnection(this, clientSocket);
     }
 
+    /**
+     * used in NIO mode, see {@link #setNIOEnabled(boolean)}
+     *
+     * @param clientSocket
+     * @param is
+     *            replays the request bytes that have already been read by the selector, followed by the socket stream
+     * @return
+     * @throws IOException
+     */
+    protected Runnable createConnectionHandler(final Socket clientSocket, final InputStream is) throws IOException {
+        return new HttpConnection(this, clientSocket, is, null);
+    }
+
     public List<HttpRequestHandler> getHandler() {
         return this.requestHandlers;
     }
@@ -130,6 +148,60 @@ public class HttpServer implements Runnable {
         return controlSocket.get() != null && this.serverThread != null;
     }
 
+    boolean isControlSocket(final ServerSocket socket) {
+        return controlSocket.get() == socket;
+    }
+
+    /**
+     * @return time in ms a persistent connection may stay idle between two requests
+     */
+    public int getKeepAliveTimeout() {
+        return this.keepAliveTimeout;
+    }
+
+    /**
+     * @return max number of requests handled on one persistent connection
+     */
+    public int getMaxKeepAliveRequests() {
+        return this.maxKeepAliveRequests;
+    }
+
+    public boolean isNIOEnabled() {
+        return this.nioEnabled;
+    }
+
+    /**
+     * In NIO mode a selector thread accepts connections and reads request line and headers. A connection is handed to a worker thread
+     * only once its request header is complete, so slow or idle clients do not exhaust the worker pool. Takes effect with the next
+     * {@link #start()}
+     *
+     * @param nioEnabled
+     */
+    public void setNIOEnabled(final boolean nioEnabled) {
+        this.nioEnabled = nioEnabled;
+    }
+
+    /**
+     * persistent connections are only supported in NIO mode, see {@link #setNIOEnabled(boolean)}
+     *
+     * @param keepAliveTimeout
+     *            time in ms a persistent connection may stay idle between two requests
+     */
+    public void setKeepAliveTimeout(final int keepAliveTimeout) {
+        this.keepAliveTimeout = Math.max(0, keepAliveTimeout);
+    }
+
+    /**
+     * HTTP/1.1 persistent connections: a connection handles up to maxKeepAliveRequests requests before it gets closed. 1 or less
+     * disables keep-alive, every connection is closed after its first response. persistent connections are only supported in NIO mode,
+     * in blocking mode every connection is closed after its first response
+     *
+     * @param maxKeepAliveRequests
+     */
+    public void setMaxKeepAliveRequests(final int maxKeepAliveRequests) {
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
+    }
+
     /*
      * to register a new handler we create a copy of current handlerList and then add new handler to it and set it as new handlerList. by
      * doing so, all current connections dont have to sync on their handlerlist
@@ -141,6 +213,47 @@ public class HttpServer implements Runnable {
         return new HttpHandlerInfo(this, handler);
     }
 
+    private ThreadPoolExecutor createThreadPool() {
+        final ThreadPoolExecutor threadPool = new ThreadPoolExecutor(0, 20, 10000l, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(100), new ThreadFactory() {
+
+            public Thread newThread(final Runnable r) {
+                return new HttpConnectionThread(HttpServer.this, r);
+            }
+
+        }, new ThreadPoolExecutor.AbortPolicy()) {
+
+            final ThreadPoolExecutor threadPool;
+            {
+                threadPool = this;
+            }
+
+            @Override
+            protected void beforeExecute(final Thread t, final Runnable r) {
+                /*
+                 * WORKAROUND for stupid SUN /ORACLE way of "how a threadpool should work" !
+                 */
+                final int active = threadPool.getPoolSize();
+                final int max = threadPool.getMaximumPoolSize();
+                if (active < max) {
+                    final int working = threadPool.getActiveCount();
+                    if (working == active) {
+                        /*
+                         * we can increase max pool size so new threads get started
+                         */
+                        threadPool.setCorePoolSize(Math.min(max, active + 1));
+                    }
+                }
+                if (t instanceof HttpConnectionThread && r instanceof HttpConnection) {
+                    ((HttpConnectionThread) t).setCurrentConnection((HttpConnection) r);
+                }
+                super.beforeExecute(t, r);
+            }
+
+        };
+        threadPool.allowCoreThreadTimeOut(true);
+        return threadPool;
+    }
+
     public void run() {
         final ServerSocket socket = this.controlSocket.get();
         try {
@@ -150,43 +263,17 @@ public class HttpServer implements Runnable {
         }
         ThreadPoolExecutor threadPool = null;
         try {
-            threadPool = new ThreadPoolExecutor(0, 20, 10000l, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(100), new ThreadFactory() {
-
-                public Thread newThread(final Runnable r) {
-                    return new HttpConnectionThread(HttpServer.this, r);
-                }
-
-            }, new ThreadPoolExecutor.AbortPolicy()) {
-
-                final ThreadPoolExecutor threadPool;
-                {
-                    threadPool = this;
-                }
-
-                @Override
-                protected void beforeExecute(final Thread t, final Runnable r) {
-                    /*
-                     * WORKAROUND for stupid SUN /ORACLE way of "how a threadpool should work" !
-                     */
-                    final int active = threadPool.getPoolSize();
-                    final int max = threadPool.getMaximumPoolSize();
-                    if (active < max) {
-                        final int working = threadPool.getActiveCount();
-                        if (working == active) {
-                            /*
-                             * we can increase max pool size so new threads get started
-                             */
-                            threadPool.setCorePoolSize(Math.min(max, active + 1));
-                        }
-                    }
-                    if (t instanceof HttpConnectionThread && r instanceof HttpConnection) {
-                        ((HttpConnectionThread) t).setCurrentConnection((HttpConnection) r);
+            threadPool = this.createThreadPool();
+            if (socket.getChannel() != null) {
+                try {
+                    new HttpServerSelector(this, socket.getChannel(), threadPool).run();
+                } catch (final IOException e) {
+                    if (controlSocket.get() == socket) {
+                        e.printStackTrace();
                     }
-                    super.beforeExecute(t, r);
                 }
-
-            };
-            threadPool.allowCoreThreadTimeOut(true);
+                return;
+            }
             while (controlSocket.get() == socket) {
                 try {
                     final Socket clientSocket = socket.accept();
@@ -270,7 +357,15 @@ public class HttpServer implements Runnable {
 
     public synchronized void start() throws IOException {
         final ServerSocket controlSocket;
-        if (this.isLocalhostOnly()) {
+        if (this.isNIOEnabled()) {
+            controlSocket = ServerSocketChannel.open().socket();
+            controlSocket.setReuseAddress(true);
+            if (this.isLocalhostOnly()) {
+                controlSocket.bind(new InetSocketAddress(this.getLocalHost(), this.port));
+            } else {
+                controlSocket.bind(new InetSocketAddress(this.port));
+            }
+        } else if (this.isLocalhostOnly()) {
             /* we only want localhost bound here */
             final SocketAddress socketAddress = new InetSocketAddress(this.getLocalHost(), this.port);
             controlSocket = new ServerSocket();
@@ -0,0 +1,343 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.utils.net.httpserver;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * accept/read front end of {@link HttpServer} in NIO mode. Connections stay on the selector thread until the request line and all
+ * headers have arrived, so slow or idle clients do not occupy a worker thread. The complete request is then handed to the worker pool as
+ * a normal blocking {@link HttpConnection}: the bytes read so far are replayed in front of the socket stream, so request parsing and the
+ * {@link org.appwork.utils.net.httpserver.handler.HttpRequestHandler} API are the same as in blocking mode. Persistent connections come
+ * back to the selector while they wait for their next request, see {@link #handBack(SocketChannel, int, int)}.
+ *
+ * @author thomas
+ *
+ */
+class HttpServerSelector {
+
+    private static final int  MAX_HEADER_SIZE = 64 * 1024;
+    /* same as the read timeout of a blocking HttpConnection */
+    private static final long IDLE_TIMEOUT    = 60 * 1000l;
+    private static final byte CR              = '\r';
+    private static final byte LF              = '\n';
+    private static final byte[] SERVICE_UNAVAILABLE;
+    static {
+        byte[] bytes;
+        try {
+            bytes = "HTTP/1.1 503 Service Unavailable\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes("ISO-8859-1");
+        } catch (final Throwable e) {
+            bytes = new byte[0];
+        }
+        SERVICE_UNAVAILABLE = bytes;
+    }
+
+    /**
+     * bytes received from a connection until its request header is complete
+     */
+    private static class PendingRequest {
+        private byte[]              buffer         = new byte[1024];
+        private int                 length         = 0;
+        private int                 scanned        = 0;
+        private int                 requestLineEnd = -1;
+        private long                lastActivity   = System.currentTimeMillis();
+        private long                idleTimeout    = HttpServerSelector.IDLE_TIMEOUT;
+        /* requests handled on this connection before, see HttpConnection#requestCount */
+        private int                 requestCount   = 0;
+        /* needed to register connections that come back from a worker */
+        private final SocketChannel channel;
+
+        private PendingRequest(final SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final HttpServer                            server;
+    private final ServerSocketChannel                   channel;
+    private final ThreadPoolExecutor                    threadPool;
+    private final ConcurrentLinkedQueue<PendingRequest> handedBack = new ConcurrentLinkedQueue<PendingRequest>();
+    private volatile Selector                           selector   = null;
+
+    HttpServerSelector(final HttpServer server, final ServerSocketChannel channel, final ThreadPoolExecutor threadPool) {
+        this.server = server;
+        this.channel = channel;
+        this.threadPool = threadPool;
+    }
+
+    void run() throws IOException {
+        final Selector selector = Selector.open();
+        this.selector = selector;
+        try {
+            this.channel.configureBlocking(false);
+            this.channel.register(selector, SelectionKey.OP_ACCEPT);
+            final List<SelectionKey> complete = new ArrayList<SelectionKey>();
+            long lastIdleCheck = System.currentTimeMillis();
+            while (this.server.isControlSocket(this.channel.socket())) {
+                selector.select(1000);
+                this.registerHandedBack(selector);
+                final Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    final SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        this.accept(selector);
+                    } else if (key.isReadable() && this.read(key)) {
+                        key.cancel();
+                        complete.add(key);
+                    }
+                }
+                if (complete.size() > 0) {
+                    /* deregisters the cancelled keys, a channel can not switch to blocking mode while it is registered */
+                    selector.selectNow();
+                    for (final SelectionKey key : complete) {
+                        this.dispatch((SocketChannel) key.channel(), (PendingRequest) key.attachment());
+                    }
+                    complete.clear();
+                }
+                final long now = System.currentTimeMillis();
+                if (now - lastIdleCheck >= 1000) {
+                    lastIdleCheck = now;
+                    this.closeIdle(selector, now);
+                }
+            }
+        } catch (final ClosedChannelException e) {
+            /* server socket closed */
+        } finally {
+            this.selector = null;
+            for (final SelectionKey key : selector.keys()) {
+                HttpServerSelector.close(key.channel());
+            }
+            selector.close();
+            PendingRequest pending;
+            while ((pending = this.handedBack.poll()) != null) {
+                HttpServerSelector.close(pending.channel);
+            }
+        }
+    }
+
+    /**
+     * called by a worker thread once a persistent connection waits for its next request. The connection has to be idle: no bytes of the
+     * next request may have been read yet
+     *
+     * @param client
+     * @param requestCount
+     *            requests handled on this connection so far
+     * @param keepAliveTimeout
+     *            ms the connection may stay idle
+     * @return false if the selector is not running, the caller has to close the connection then
+     */
+    boolean handBack(final SocketChannel client, final int requestCount, final int keepAliveTimeout) {
+        final Selector selector = this.selector;
+        if (selector == null || client == null) {
+            return false;
+        }
+        try {
+            client.configureBlocking(false);
+        } catch (final IOException e) {
+            return false;
+        }
+        final PendingRequest pending = new PendingRequest(client);
+        pending.requestCount = requestCount;
+        pending.idleTimeout = keepAliveTimeout;
+        this.handedBack.add(pending);
+        /* register would block while the selector waits in select */
+        selector.wakeup();
+        if (this.selector == null && this.handedBack.remove(pending)) {
+            /* selector stopped meanwhile */
+            return false;
+        }
+        return true;
+    }
+
+    private void registerHandedBack(final Selector selector) {
+        PendingRequest pending;
+        while ((pending = this.handedBack.poll()) != null) {
+            try {
+                pending.channel.register(selector, SelectionKey.OP_READ, pending);
+            } catch (final IOException e) {
+                HttpServerSelector.close(pending.channel);
+            }
+        }
+    }
+
+    private void accept(final Selector selector) throws IOException {
+        SocketChannel client;
+        while ((client = this.channel.accept()) != null) {
+            try {
+                client.configureBlocking(false);
+                client.register(selector, SelectionKey.OP_READ, new PendingRequest(client));
+            } catch (final IOException e) {
+                HttpServerSelector.close(client);
+            }
+        }
+    }
+
+    /**
+     * @return true if the request header is complete
+     */
+    private boolean read(final SelectionKey key) {
+        final SocketChannel client = (SocketChannel) key.channel();
+        final PendingRequest pending = (PendingRequest) key.attachment();
+        try {
+            while (true) {
+                if (pending.length == pending.buffer.length) {
+                    if (pending.buffer.length >= HttpServerSelector.MAX_HEADER_SIZE) {
+                        /* header too large */
+                        HttpServerSelector.close(client);
+                        return false;
+                    }
+                    pending.buffer = Arrays.copyOf(pending.buffer, pending.buffer.length * 2);
+                }
+                final int read = client.read(ByteBuffer.wrap(pending.buffer, pending.length, pending.buffer.length - pending.length));
+                if (read < 0) {
+                    HttpServerSelector.close(client);
+                    return false;
+                } else if (read == 0) {
+                    break;
+                }
+                pending.length += read;
+                pending.lastActivity = System.currentTimeMillis();
+                if (HttpServerSelector.isComplete(pending)) {
+                    return true;
+                }
+            }
+        } catch (final IOException e) {
+            HttpServerSelector.close(client);
+        }
+        return false;
+    }
+
+    /**
+     * same termination rules as {@link org.appwork.utils.net.httpconnection.HTTPConnectionUtils#readheader(InputStream, boolean)}: the
+     * request line ends with \n, the header block after it with \n\n or \r\n\r\n or is empty
+     */
+    private static boolean isComplete(final PendingRequest pending) {
+        final byte[] b = pending.buffer;
+        int i = pending.scanned;
+        if (pending.requestLineEnd < 0) {
+            for (; i < pending.length; i++) {
+                if (b[i] == HttpServerSelector.LF) {
+                    pending.requestLineEnd = i;
+                    i++;
+                    break;
+                }
+            }
+            if (pending.requestLineEnd < 0) {
+                pending.scanned = i;
+                return false;
+            }
+        }
+        final int headerStart = pending.requestLineEnd + 1;
+        for (; i < pending.length; i++) {
+            if (b[i] != HttpServerSelector.LF) {
+                continue;
+            }
+            if (i == headerStart || i == headerStart + 1 && b[headerStart] == HttpServerSelector.CR) {
+                /* request without header lines */
+                return true;
+            }
+            if (i - 1 >= headerStart && b[i - 1] == HttpServerSelector.LF) {
+                return true;
+            }
+            if (i - 3 >= headerStart && b[i - 1] == HttpServerSelector.CR && b[i - 2] == HttpServerSelector.LF && b[i - 3] == HttpServerSelector.CR) {
+                return true;
+            }
+        }
+        pending.scanned = i;
+        return false;
+    }
+
+    private void dispatch(final SocketChannel client, final PendingRequest pending) {
+        final Socket socket = client.socket();
+        try {
+            client.configureBlocking(true);
+            final InputStream is = new SequenceInputStream(new ByteArrayInputStream(pending.buffer, 0, pending.length), socket.getInputStream());
+            final Runnable connection = this.server.createConnectionHandler(socket, is);
+            if (connection instanceof HttpConnection) {
+                ((HttpConnection) connection).requestCount = pending.requestCount;
+                ((HttpConnection) connection).setSelector(this);
+            }
+            try {
+                this.threadPool.execute(connection);
+            } catch (final RejectedExecutionException e) {
+                /* all workers busy, tell the client instead of resetting the connection */
+                try {
+                    socket.getOutputStream().write(HttpServerSelector.SERVICE_UNAVAILABLE);
+                    socket.getOutputStream().flush();
+                } finally {
+                    HttpServerSelector.close(client);
+                }
+            }
+        } catch (final IOException e) {
+            HttpServerSelector.close(client);
+        }
+    }
+
+    private void closeIdle(final Selector selector, final long now) {
+        for (final SelectionKey key : selector.keys()) {
+            final Object attachment = key.attachment();
+            if (attachment instanceof PendingRequest && now - ((PendingRequest) attachment).lastActivity > ((PendingRequest) attachment).idleTimeout) {
+                HttpServerSelector.close(key.channel());
+            }
+        }
+    }
+
+    private static void close(final Channel channel) {
+        try {
+            channel.close();
+        } catch (final Throwable ignore) {
+        }
+    }
+}
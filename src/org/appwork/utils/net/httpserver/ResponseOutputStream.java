@@ -0,0 +1,261 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.utils.net.httpserver;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.appwork.utils.net.TransferFromChannel;
+
+/**
+ * socket OutputStream of a {@link HttpConnection}. Follows the response body that is written after the response headers, so the
+ * connection can tell if the response was completely delimited by its Content-Length or chunked encoding and the socket may be used for
+ * the next request. While the connection is persistent, close() only ends the current response instead of closing the socket.
+ * File content is sent with {@link FileChannel#transferTo(long, long, WritableByteChannel)} if the socket has a channel (NIO mode).
+ *
+ * @author thomas
+ *
+ */
+class ResponseOutputStream extends OutputStream implements TransferFromChannel {
+
+    private static final int          CHUNK_SIZE       = 0;
+    private static final int          CHUNK_EXTENSION  = 1;
+    private static final int          CHUNK_DATA       = 2;
+    private static final int          CHUNK_DATA_END   = 3;
+    private static final int          CHUNK_TRAILER    = 4;
+    private static final int          CHUNK_TRAILER_LN = 5;
+    private static final int          CHUNK_DONE       = 6;
+    private static final int          CHUNK_INVALID    = 7;
+
+    private final OutputStream        os;
+    private final WritableByteChannel channel;
+    private long                      bodyBytes        = 0;
+    private boolean                   chunked          = false;
+    private int                       chunkState       = ResponseOutputStream.CHUNK_SIZE;
+    private long                      chunkRemaining   = 0;
+    private volatile boolean          persistent       = false;
+    private boolean                   closed           = false;
+
+    ResponseOutputStream(final OutputStream os, final WritableByteChannel channel) {
+        this.os = os;
+        this.channel = channel;
+    }
+
+    /**
+     * called after the response headers have been written
+     *
+     * @param chunked
+     *            true if the body uses Transfer-Encoding: chunked
+     * @param persistent
+     *            true if the connection stays open after this response
+     */
+    void beginBody(final boolean chunked, final boolean persistent) {
+        this.reset();
+        this.chunked = chunked;
+        this.persistent = persistent;
+    }
+
+    /**
+     * prepares this stream for the next response on a persistent connection
+     */
+    void reset() {
+        this.bodyBytes = 0;
+        this.chunked = false;
+        this.chunkState = ResponseOutputStream.CHUNK_SIZE;
+        this.chunkRemaining = 0;
+        this.persistent = false;
+        this.closed = false;
+    }
+
+    long getBodyBytes() {
+        return this.bodyBytes;
+    }
+
+    /**
+     * @return true if the terminating zero length chunk (and trailers) of a chunked body have been written
+     */
+    boolean isChunkedBodyComplete() {
+        return this.chunked && this.chunkState == ResponseOutputStream.CHUNK_DONE;
+    }
+
+    boolean isPersistent() {
+        return this.persistent;
+    }
+
+    void setPersistent(final boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.persistent) {
+            this.closed = true;
+            this.os.flush();
+        } else {
+            this.os.close();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.os.flush();
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        this.ensureOpen();
+        this.os.write(b, off, len);
+        this.bodyBytes += len;
+        if (this.chunked) {
+            int index = off;
+            final int end = off + len;
+            while (index < end) {
+                if (this.chunkState == ResponseOutputStream.CHUNK_DATA) {
+                    final int skip = (int) Math.min(this.chunkRemaining, end - index);
+                    index += skip;
+                    if ((this.chunkRemaining -= skip) == 0) {
+                        this.chunkState = ResponseOutputStream.CHUNK_DATA_END;
+                    }
+                } else {
+                    this.updateChunkState(b[index++]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        this.ensureOpen();
+        this.os.write(b);
+        this.bodyBytes++;
+        if (this.chunked) {
+            if (this.chunkState == ResponseOutputStream.CHUNK_DATA) {
+                if (--this.chunkRemaining == 0) {
+                    this.chunkState = ResponseOutputStream.CHUNK_DATA_END;
+                }
+            } else {
+                this.updateChunkState((byte) b);
+            }
+        }
+    }
+
+    @Override
+    public void transferFrom(final FileChannel file, long position, final long count) throws IOException {
+        this.ensureOpen();
+        final long end = position + count;
+        if (this.channel != null && !this.chunked) {
+            this.os.flush();
+            while (position < end) {
+                final long transferred = file.transferTo(position, end - position, this.channel);
+                if (transferred <= 0) {
+                    throw new EOFException("premature EOF at " + position);
+                }
+                position += transferred;
+                this.bodyBytes += transferred;
+            }
+        } else {
+            final byte[] buffer = new byte[(int) Math.min(32 * 1024, Math.max(1, count))];
+            final ByteBuffer bb = ByteBuffer.wrap(buffer);
+            while (position < end) {
+                bb.clear();
+                bb.limit((int) Math.min(buffer.length, end - position));
+                final int read = file.read(bb, position);
+                if (read <= 0) {
+                    throw new EOFException("premature EOF at " + position);
+                }
+                this.write(buffer, 0, read);
+                position += read;
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Response already closed");
+        }
+    }
+
+    private void endChunkSizeLine() {
+        this.chunkState = this.chunkRemaining == 0 ? ResponseOutputStream.CHUNK_TRAILER : ResponseOutputStream.CHUNK_DATA;
+    }
+
+    private void updateChunkState(final byte b) {
+        switch (this.chunkState) {
+        case CHUNK_SIZE:
+            final int digit = Character.digit((char) (b & 0xff), 16);
+            if (digit >= 0 && this.chunkRemaining < Long.MAX_VALUE >> 4) {
+                this.chunkRemaining = (this.chunkRemaining << 4) + digit;
+                return;
+            } else if (b == ';' || b == ' ') {
+                this.chunkState = ResponseOutputStream.CHUNK_EXTENSION;
+            } else if (b == '\n') {
+                this.endChunkSizeLine();
+            } else if (b != '\r') {
+                this.chunkState = ResponseOutputStream.CHUNK_INVALID;
+            }
+            return;
+        case CHUNK_EXTENSION:
+            if (b == '\n') {
+                this.endChunkSizeLine();
+            }
+            return;
+        case CHUNK_DATA_END:
+            if (b == '\n') {
+                this.chunkState = ResponseOutputStream.CHUNK_SIZE;
+            } else if (b != '\r') {
+                this.chunkState = ResponseOutputStream.CHUNK_INVALID;
+            }
+            return;
+        case CHUNK_TRAILER:
+            if (b == '\n') {
+                this.chunkState = ResponseOutputStream.CHUNK_DONE;
+            } else if (b != '\r') {
+                this.chunkState = ResponseOutputStream.CHUNK_TRAILER_LN;
+            }
+            return;
+        case CHUNK_TRAILER_LN:
+            if (b == '\n') {
+                this.chunkState = ResponseOutputStream.CHUNK_TRAILER;
+            }
+            return;
+        default:
+            /* anything after the last chunk or garbage */
+            this.chunkState = ResponseOutputStream.CHUNK_INVALID;
+        }
+    }
+}
@@ -38,19 +38,33 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.zip.GZIPOutputStream;
 
 import org.appwork.net.protocol.http.HTTPConstants;
 import org.appwork.net.protocol.http.HTTPConstants.ResponseCode;
 import org.appwork.utils.Files;
-import org.appwork.utils.ReusableByteArrayOutputStream;
+import org.appwork.utils.formatter.TimeFormatter;
 import org.appwork.utils.net.ChunkedOutputStream;
 import org.appwork.utils.net.HTTPHeader;
+import org.appwork.utils.net.HeaderCollection;
+import org.appwork.utils.net.TransferFromChannel;
 import org.appwork.utils.net.httpserver.requests.HttpRequestInterface;
 
 /**
@@ -68,13 +82,20 @@ public class FileResponse {
         return mime;
     }
 
-    private final HttpRequestInterface     request;
-    private final HttpResponseInterface    response;
-    private File                           inputFile;
+    private final HttpRequestInterface      request;
+    private final HttpResponseInterface     response;
+    private File                            inputFile;
 
-    private URL                            inputURL;
+    private URL                             inputURL;
 
-    private static HashMap<String, String> MIMES = new HashMap<String, String>();
+    private static HashMap<String, String>  MIMES      = new HashMap<String, String>();
+
+    /* gzip variants of resources up to 1 MB, 16 MB in total */
+    private static final PrecompressedCache GZIP_CACHE = new PrecompressedCache(1024 * 1024, 16 * 1024 * 1024);
+    /* requests with more (merged) ranges get the complete content */
+    private static final int                MAX_RANGES = 16;
+    private static final Pattern            RANGE      = Pattern.compile("\\s*(\\d*)\\s*-\\s*(\\d*)\\s*");
+    private static final SimpleDateFormat   HTTP_DATE  = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH);
 
     static {
         FileResponse.MIMES.put("html", "text/html");
@@ -88,6 +109,18 @@ public class FileResponse {
         FileResponse.MIMES.put("jpg", "image/jpeg");
         FileResponse.MIMES.put("jpe", "image/jpeg");
         FileResponse.MIMES.put("ico", "image/x-icon");
+        FileResponse.HTTP_DATE.setTimeZone(TimeZone.getTimeZone("GMT"));
+    }
+
+    private static String formatDate(final long timeStamp) {
+        synchronized (FileResponse.HTTP_DATE) {
+            return FileResponse.HTTP_DATE.format(new Date(timeStamp));
+        }
+    }
+
+    /* W/"x" and "x" are equal in a weak comparison */
+    private static String weakTag(final String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
     }
 
     public FileResponse(final HttpRequestInterface request, final HttpResponseInterface response, final File inputFile) {
@@ -118,27 +151,30 @@ public class FileResponse {
             /* we do not support ranges for URL resources at the moment */
             return false;
         }
-        return false;
+        return true;
     }
 
     /* what is the size of the given Content ? */
     protected long getContentLength(final long knownLength) {
-        /* TODO: check for unsatisfied range or not allowed range */
-        final boolean allowRanges = this.allowRanges();
         if (this.inputURL != null) {
             /* we do not know size of URL resources in advance! */
             if (knownLength >= 0) { return knownLength; }
             return -1;
         } else {
-            if (!allowRanges) {
-                /* send complete file */
-                return this.inputFile.length();
-            } else {
-                return -1;
-            }
+            /* ranges are sent from the complete file */
+            return this.inputFile.length();
         }
     }
 
+    /*
+     * strong validator for the given Content, null if we cannot tell when it changes. the gzip variant is another representation and
+     * gets its own tag
+     */
+    protected String getETag(final long length, final long lastModified, final boolean gzip) {
+        if (lastModified <= 0 || length < 0) { return null; }
+        return "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + (gzip ? "-gz" : "") + "\"";
+    }
+
     /* return filename for given Content, eg used for Content-Disposition */
     protected String getFileName() {
         String name = null;
@@ -155,79 +191,221 @@ public class FileResponse {
         return FileResponse.getMimeType(this.getFileName());
     }
 
+    /**
+     * parses Range and If-Range of the request
+     * 
+     * @param length
+     * @param etag
+     *            of the identity representation
+     * @param lastModified
+     * @return null to send the complete content, an empty array if no range is satisfiable, else the sorted and merged {start, end}
+     *         ranges
+     */
+    protected long[][] getRequestedRanges(final long length, final String etag, final long lastModified) {
+        final HeaderCollection headers = this.request.getRequestHeaders();
+        final String range = headers.getValue(HTTPConstants.HEADER_REQUEST_RANGE);
+        if (range == null || length < 0 || !range.trim().toLowerCase(Locale.ENGLISH).startsWith("bytes=")) { return null; }
+        final String ifRange = headers.getValue(HTTPConstants.HEADER_REQUEST_ID_RANGE);
+        if (ifRange != null) {
+            /* send the ranges only if the client still has the same content, else the complete content */
+            final String value = ifRange.trim();
+            if (value.startsWith("\"") || value.startsWith("W/")) {
+                /* strong comparison */
+                if (etag == null || !etag.equals(value)) { return null; }
+            } else {
+                final Date date = TimeFormatter.parseDateString(value);
+                if (date == null || lastModified <= 0 || date.getTime() / 1000 != lastModified / 1000) { return null; }
+            }
+        }
+        final List<long[]> ranges = new ArrayList<long[]>();
+        try {
+            for (final String spec : range.trim().substring(6).split(",")) {
+                final Matcher matcher = FileResponse.RANGE.matcher(spec);
+                if (!matcher.matches()) {
+                    /* invalid Range header is ignored */
+                    return null;
+                }
+                final String first = matcher.group(1);
+                final String last = matcher.group(2);
+                final long start;
+                final long end;
+                if (first.length() == 0) {
+                    if (last.length() == 0) { return null; }
+                    /* suffix range, the last n bytes */
+                    start = Math.max(0, length - Long.parseLong(last));
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    if (last.length() == 0) {
+                        end = length - 1;
+                    } else if (Long.parseLong(last) < start) {
+                        return null;
+                    } else {
+                        end = Math.min(length - 1, Long.parseLong(last));
+                    }
+                }
+                if (start < length && start <= end) {
+                    ranges.add(new long[] { start, end });
+                }
+            }
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+        Collections.sort(ranges, new Comparator<long[]>() {
+
+            @Override
+            public int compare(final long[] o1, final long[] o2) {
+                return o1[0] < o2[0] ? -1 : o1[0] == o2[0] ? 0 : 1;
+            }
+        });
+        final List<long[]> merged = new ArrayList<long[]>();
+        for (final long[] next : ranges) {
+            final long[] previous = merged.size() > 0 ? merged.get(merged.size() - 1) : null;
+            if (previous != null && next[0] <= previous[1] + 1) {
+                previous[1] = Math.max(previous[1], next[1]);
+            } else {
+                merged.add(next);
+            }
+        }
+        if (merged.size() > FileResponse.MAX_RANGES) { return null; }
+        return merged.toArray(new long[merged.size()][]);
+    }
+
+    /**
+     * conditional GET: If-None-Match, or If-Modified-Since if there is no If-None-Match
+     * 
+     * @param etag
+     * @param lastModified
+     * @return true if the client already has the current content
+     */
+    protected boolean isNotModified(final String etag, final long lastModified) {
+        final HeaderCollection headers = this.request.getRequestHeaders();
+        final String ifNoneMatch = headers.getValue(HTTPConstants.HEADER_REQUEST_IF_NON_MATCH);
+        if (ifNoneMatch != null) {
+            if (etag == null) { return false; }
+            for (final String tag : ifNoneMatch.split(",")) {
+                final String value = tag.trim();
+                if ("*".equals(value) || FileResponse.weakTag(value).equals(FileResponse.weakTag(etag))) { return true; }
+            }
+            return false;
+        }
+        final String ifModifiedSince = headers.getValue(HTTPConstants.HEADER_REQUEST_IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null && lastModified > 0) {
+            final Date since = TimeFormatter.parseDateString(ifModifiedSince);
+            return since != null && lastModified / 1000 <= since.getTime() / 1000;
+        }
+        return false;
+    }
+
+    private InputStream openInputStream(final URLConnection con) throws IOException {
+        if (con != null) {
+            return con.getInputStream();
+        } else {
+            return new FileInputStream(this.inputFile);
+        }
+    }
+
     public void sendFile() throws IOException {
         InputStream is = null;
         URLConnection con = null;
         GZIPOutputStream gos = null;
         OutputStream os = null;
-        final ReusableByteArrayOutputStream ros = null;
-        boolean chunked = false;
-        boolean gzip = false;
         long knownLength = -1;
+        long lastModified = -1;
         try {
-            /* get inputstream */
+            /* get size and date, the content itself is only opened if we have to send it */
             if (this.inputURL != null) {
                 con = this.inputURL.openConnection();
                 knownLength = con.getContentLengthLong();
-                is = con.getInputStream();
+                lastModified = con.getLastModified();
             } else if (this.inputFile != null) {
-                is = new FileInputStream(this.inputFile);
                 knownLength = this.inputFile.length();
+                lastModified = this.inputFile.lastModified();
             }
+            final long length = this.getContentLength(knownLength);
+            final HeaderCollection headers = this.response.getResponseHeaders();
             this.response.setResponseCode(ResponseCode.SUCCESS_OK);
+            long[][] ranges = null;
             if (this.allowRanges()) {
                 /* do we allow ranges? */
-                this.response.getResponseHeaders().add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_ENCODING, "bytes"));
+                headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_ACCEPT_RANGES, "bytes"));
+                ranges = this.getRequestedRanges(length, this.getETag(length, lastModified, false), lastModified);
             }
-            if (this.allowGZIP()) {
-                /* do we use gzip for content encoding? */
-                if (!this.useContentDisposition()) {
-                    /* only allow gzip when not offering to save the file */
-                    gzip = true;
-                    this.response.getResponseHeaders().add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_ENCODING, "gzip"));
-                }
+            boolean gzip = false;
+            if (!this.useContentDisposition()) {
+                /* only allow gzip when not offering to save the file */
+                headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_VARY, HTTPConstants.HEADER_REQUEST_ACCEPT_ENCODING));
+                /* do we use gzip for content encoding? ranges are always sent from the identity content */
+                gzip = ranges == null && this.allowGZIP();
             }
-            final long length = this.getContentLength(knownLength);
-            if (length >= 0 && !gzip) {
-                /* we know content length, send it */
-                this.response.getResponseHeaders().add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_LENGTH, length + ""));
-            } else {
-                /*
-                 * content length is unknown or we use gzipped coding, let us
-                 * use chunked encoding
-                 */
-                chunked = true;
-                this.response.getResponseHeaders().add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_TRANSFER_ENCODING, "chunked"));
+            final String etag = this.getETag(length, lastModified, gzip);
+            if (etag != null) {
+                headers.add(new HTTPHeader(HTTPConstants.HEADER_ETAG, etag));
+            }
+            if (lastModified > 0) {
+                headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_LAST_MODIFIED, FileResponse.formatDate(lastModified)));
+            }
+            if (this.isNotModified(etag, lastModified)) {
+                this.response.setResponseCode(ResponseCode.REDIRECT_NOT_MODIFIED);
+                os = this.response.getOutputStream(true);
+                return;
+            }
+            if (ranges != null && ranges.length == 0) {
+                /* none of the requested ranges is satisfiable */
+                this.response.setResponseCode(ResponseCode.ERROR_RANGE_NOT_SUPPORTED);
+                headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_RANGE, "bytes */" + length));
+                headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_LENGTH, "0"));
+                os = this.response.getOutputStream(true);
+                return;
             }
-            /* set content-type */
-            this.response.getResponseHeaders().add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_TYPE, this.getMimeType()));
             if (this.useContentDisposition()) {
                 /* offer file to download */
-                this.response.getResponseHeaders().add(new HTTPHeader("Content-Disposition", "attachment;filename*=UTF-8''" + URLEncoder.encode(this.getFileName(), "UTF-8")));
+                headers.add(new HTTPHeader("Content-Disposition", "attachment;filename*=UTF-8''" + URLEncoder.encode(this.getFileName(), "UTF-8")));
+            }
+            if (ranges != null) {
+                final FileInputStream fis = new FileInputStream(this.inputFile);
+                is = fis;
+                os = this.sendRanges(fis.getChannel(), ranges, length);
+                return;
             }
-            /* configure outputstream */
+            /* set content-type */
+            headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_TYPE, this.getMimeType()));
             if (gzip) {
-                if (chunked) {
-                    os = gos = new GZIPOutputStream(new ChunkedOutputStream(this.response.getOutputStream(true)));
-                } else {
-                    os = gos = new GZIPOutputStream(this.response.getOutputStream(true));
+                headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_ENCODING, "gzip"));
+                final String key = this.inputURL != null ? this.inputURL.toExternalForm() : this.inputFile.getAbsolutePath();
+                byte[] compressed = FileResponse.GZIP_CACHE.get(key, lastModified, length);
+                if (compressed == null && FileResponse.GZIP_CACHE.isCacheable(lastModified, length)) {
+                    compressed = PrecompressedCache.gzip(is = this.openInputStream(con));
+                    FileResponse.GZIP_CACHE.put(key, lastModified, length, compressed);
                 }
-            } else {
-                if (chunked) {
-                    os = new ChunkedOutputStream(this.response.getOutputStream(true));
-                } else {
+                if (compressed != null) {
+                    /* precompressed variant, we know its length */
+                    headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_LENGTH, compressed.length + ""));
                     os = this.response.getOutputStream(true);
+                    os.write(compressed);
+                } else {
+                    /* content length is unknown, let us use chunked encoding */
+                    headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_TRANSFER_ENCODING, "chunked"));
+                    is = this.openInputStream(con);
+                    os = gos = new GZIPOutputStream(new ChunkedOutputStream(this.response.getOutputStream(true)));
+                    this.copy(is, os);
                 }
-            }
-            /* forward the data from inputstream to outputstream */
-            final byte[] buffer = new byte[1024];
-            int read = 0;
-            while ((read = is.read(buffer)) >= 0) {
-                if (read > 0) {
-                    os.write(buffer, 0, read);
+            } else if (length >= 0) {
+                /* we know content length, send it */
+                headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_LENGTH, length + ""));
+                is = this.openInputStream(con);
+                os = this.response.getOutputStream(true);
+                if (is instanceof FileInputStream) {
+                    this.transfer(((FileInputStream) is).getChannel(), os, 0, length);
                 } else {
-                    Thread.yield();
+                    this.copy(is, os);
                 }
+            } else {
+                /* content length is unknown, let us use chunked encoding */
+                headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_TRANSFER_ENCODING, "chunked"));
+                is = this.openInputStream(con);
+                os = new ChunkedOutputStream(this.response.getOutputStream(true));
+                this.copy(is, os);
             }
         } finally {
             try {
@@ -249,6 +427,89 @@ public class FileResponse {
                 is.close();
             } catch (final Throwable e) {
             }
+            if (is == null && con != null) {
+                /* nothing was read (304, 416 or cached gzip variant), release the connection that got opened for size and date */
+                this.releaseConnection(con);
+            }
+        }
+    }
+
+    private void releaseConnection(final URLConnection con) {
+        try {
+            con.getInputStream().close();
+        } catch (final Throwable e) {
+            if (con instanceof HttpURLConnection) {
+                ((HttpURLConnection) con).disconnect();
+            }
+        }
+    }
+
+    /* forward the data from inputstream to outputstream */
+    private void copy(final InputStream is, final OutputStream os) throws IOException {
+        final byte[] buffer = new byte[32 * 1024];
+        int read = 0;
+        while ((read = is.read(buffer)) >= 0) {
+            if (read > 0) {
+                os.write(buffer, 0, read);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * 206 response, a single range or multipart/byteranges for several ranges
+     * 
+     * @return the OutputStream to close
+     */
+    private OutputStream sendRanges(final FileChannel channel, final long[][] ranges, final long length) throws IOException {
+        final HeaderCollection headers = this.response.getResponseHeaders();
+        this.response.setResponseCode(ResponseCode.SUCCESS_PARTIAL_CONTENT);
+        if (ranges.length == 1) {
+            final long[] range = ranges[0];
+            headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_TYPE, this.getMimeType()));
+            headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + length));
+            headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_LENGTH, range[1] - range[0] + 1 + ""));
+            final OutputStream os = this.response.getOutputStream(true);
+            this.transfer(channel, os, range[0], range[1] - range[0] + 1);
+            return os;
+        }
+        final String boundary = "AppWorkRanges" + Long.toHexString(System.nanoTime());
+        final byte[][] partHeaders = new byte[ranges.length][];
+        final byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes("ISO-8859-1");
+        long contentLength = end.length;
+        for (int i = 0; i < ranges.length; i++) {
+            final long[] range = ranges[i];
+            partHeaders[i] = ("\r\n--" + boundary + "\r\n" + HTTPConstants.HEADER_RESPONSE_CONTENT_TYPE + ": " + this.getMimeType() + "\r\n" + HTTPConstants.HEADER_RESPONSE_CONTENT_RANGE + ": bytes " + range[0] + "-" + range[1] + "/" + length + "\r\n\r\n").getBytes("ISO-8859-1");
+            contentLength += partHeaders[i].length + range[1] - range[0] + 1;
+        }
+        headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary));
+        headers.add(new HTTPHeader(HTTPConstants.HEADER_RESPONSE_CONTENT_LENGTH, contentLength + ""));
+        final OutputStream os = this.response.getOutputStream(true);
+        for (int i = 0; i < ranges.length; i++) {
+            os.write(partHeaders[i]);
+            this.transfer(channel, os, ranges[i][0], ranges[i][1] - ranges[i][0] + 1);
+        }
+        os.write(end);
+        return os;
+    }
+
+    /* sends count bytes of the file starting at position, without copying them through the heap if the OutputStream supports it */
+    private void transfer(final FileChannel channel, final OutputStream os, long position, final long count) throws IOException {
+        if (os instanceof TransferFromChannel) {
+            ((TransferFromChannel) os).transferFrom(channel, position, count);
+            return;
+        }
+        final byte[] buffer = new byte[(int) Math.min(32 * 1024, Math.max(1, count))];
+        final ByteBuffer bb = ByteBuffer.wrap(buffer);
+        final long end = position + count;
+        while (position < end) {
+            bb.clear();
+            bb.limit((int) Math.min(buffer.length, end - position));
+            final int read = channel.read(bb, position);
+            if (read <= 0) { throw new IOException("premature EOF at " + position); }
+            os.write(buffer, 0, read);
+            position += read;
         }
     }
 
@@ -0,0 +1,123 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.utils.net.httpserver.responses;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * gzip compressed variants of static resources, keyed by path. An entry is only valid for the lastModified/length it has been created
+ * from, a changed resource gets compressed again. Least recently used entries are dropped once maxSize is exceeded.
+ *
+ * @author thomas
+ *
+ */
+class PrecompressedCache {
+
+    private static class Entry {
+        private final long   lastModified;
+        private final long   length;
+        private final byte[] data;
+
+        private Entry(final long lastModified, final long length, final byte[] data) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.data = data;
+        }
+    }
+
+    public static byte[] gzip(final InputStream is) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final GZIPOutputStream gos = new GZIPOutputStream(bos);
+        final byte[] buffer = new byte[32 * 1024];
+        int read = 0;
+        while ((read = is.read(buffer)) >= 0) {
+            gos.write(buffer, 0, read);
+        }
+        gos.finish();
+        gos.close();
+        return bos.toByteArray();
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final int                          maxEntrySize;
+    private final long                         maxSize;
+    private long                               size    = 0;
+
+    PrecompressedCache(final int maxEntrySize, final long maxSize) {
+        this.maxEntrySize = maxEntrySize;
+        this.maxSize = maxSize;
+    }
+
+    public synchronized byte[] get(final String key, final long lastModified, final long length) {
+        final Entry entry = this.entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.lastModified != lastModified || entry.length != length) {
+            this.entries.remove(key);
+            this.size -= entry.data.length;
+            return null;
+        }
+        return entry.data;
+    }
+
+    /**
+     * @param lastModified
+     * @param length
+     * @return true if a resource with this lastModified/length may be cached. Without lastModified we could not tell when the entry is
+     *         outdated
+     */
+    public boolean isCacheable(final long lastModified, final long length) {
+        return lastModified > 0 && length >= 0 && length <= this.maxEntrySize;
+    }
+
+    public synchronized void put(final String key, final long lastModified, final long length, final byte[] data) {
+        final Entry old = this.entries.put(key, new Entry(lastModified, length, data));
+        if (old != null) {
+            this.size -= old.data.length;
+        }
+        this.size += data.length;
+        final Iterator<Map.Entry<String, Entry>> it = this.entries.entrySet().iterator();
+        while (this.size > this.maxSize && it.hasNext()) {
+            this.size -= it.next().getValue().data.length;
+            it.remove();
+        }
+    }
+}
@@ -48,7 +48,6 @@ import org.appwork.remoteapi.exceptions.ApiInterfaceNotAvailable;
 import org.appwork.remoteapi.exceptions.AuthException;
 import org.appwork.remoteapi.exceptions.BasicRemoteAPIException;
 import org.appwork.remoteapi.exceptions.SessionException;
-import org.appwork.storage.JSonStorage;
 import org.appwork.utils.StringUtils;
 import org.appwork.utils.net.httpserver.handler.HttpRequestHandler;
 import org.appwork.utils.net.httpserver.requests.GetRequest;
@@ -214,9 +213,8 @@ public abstract class AbstractSessionRemoteAPI<T extends HttpSession> extends Re
     protected abstract boolean removeSession(final T session);
 
     @Override
-    public String toString(final RemoteAPIRequest request, final RemoteAPIResponse response, final Object responseData) {
-
-        return JSonStorage.serializeToJson(responseData);
+    protected Object toResponseObject(final RemoteAPIRequest request, final RemoteAPIResponse response, final Object responseData) {
+        return responseData;
     }
 
 }
@@ -0,0 +1,289 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.utils.net.httpserver.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.List;
+
+import org.appwork.exceptions.WTFException;
+import org.appwork.net.protocol.http.HTTPConstants;
+import org.appwork.net.protocol.http.HTTPConstants.ResponseCode;
+import org.appwork.utils.net.HTTPHeader;
+import org.appwork.utils.net.HeaderCollection;
+import org.appwork.utils.net.httpserver.requests.HttpRequestInterface;
+import org.appwork.utils.net.httpserver.requests.KeyValuePair;
+import org.appwork.utils.net.httpserver.responses.FileResponse;
+import org.appwork.utils.net.httpserver.responses.HttpResponseInterface;
+
+/**
+ * Range, If-Range and conditional GET handling of FileResponse
+ * 
+ * @author thomas
+ * 
+ */
+public class FileResponseTest {
+    private static class Request implements HttpRequestInterface {
+        private final HeaderCollection headers = new HeaderCollection();
+
+        public Request(final String... headers) {
+            for (int i = 0; i < headers.length; i += 2) {
+                this.headers.add(new HTTPHeader(headers[i], headers[i + 1]));
+            }
+        }
+
+        @Override
+        public String getParameterbyKey(final String key) throws IOException {
+            return null;
+        }
+
+        @Override
+        public HeaderCollection getRequestHeaders() {
+            return this.headers;
+        }
+
+        @Override
+        public String getRequestedPath() {
+            return "/";
+        }
+
+        @Override
+        public String getRequestedURL() {
+            return "/";
+        }
+
+        @Override
+        public List<KeyValuePair> getRequestedURLParameters() {
+            return null;
+        }
+    }
+
+    private static class Response implements HttpResponseInterface {
+        private final HeaderCollection      headers = new HeaderCollection();
+        private final ByteArrayOutputStream body    = new ByteArrayOutputStream();
+        private ResponseCode                responseCode;
+
+        @Override
+        public void closeConnection() {
+        }
+
+        public byte[] getBody() {
+            return this.body.toByteArray();
+        }
+
+        @Override
+        public OutputStream getOutputStream(final boolean sendResponseHeaders) throws IOException {
+            return this.body;
+        }
+
+        @Override
+        public ResponseCode getResponseCode() {
+            return this.responseCode;
+        }
+
+        @Override
+        public HeaderCollection getResponseHeaders() {
+            return this.headers;
+        }
+
+        @Override
+        public void setResponseCode(final ResponseCode responseCode) {
+            this.responseCode = responseCode;
+        }
+    }
+
+    private static File         FILE;
+    private static final byte[] CONTENT = new byte[100];
+
+    private static void assertEquals(final Object expected, final Object value, final String message) {
+        if (expected == null ? value != null : !expected.equals(value)) { throw new WTFException(message + ": " + value + " != " + expected); }
+    }
+
+    private static void assertRange(final Response response, final int start, final int end) {
+        FileResponseTest.assertEquals(ResponseCode.SUCCESS_PARTIAL_CONTENT, response.getResponseCode(), "code");
+        FileResponseTest.assertEquals("bytes " + start + "-" + end + "/" + FileResponseTest.CONTENT.length, response.getResponseHeaders().getValue(HTTPConstants.HEADER_RESPONSE_CONTENT_RANGE), "Content-Range");
+        FileResponseTest.assertEquals(end - start + 1 + "", response.getResponseHeaders().getValue(HTTPConstants.HEADER_RESPONSE_CONTENT_LENGTH), "Content-Length");
+        FileResponseTest.assertEquals(FileResponseTest.slice(start, end), new String(response.getBody()), "body");
+    }
+
+    private static Response get(final String... headers) throws IOException {
+        final Response response = new Response();
+        new FileResponse(new Request(headers), response, FileResponseTest.FILE).sendFile();
+        return response;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        for (int i = 0; i < FileResponseTest.CONTENT.length; i++) {
+            FileResponseTest.CONTENT[i] = (byte) ('A' + i % 26);
+        }
+        FileResponseTest.FILE = File.createTempFile("FileResponseTest", ".txt");
+        FileResponseTest.FILE.deleteOnExit();
+        final FileOutputStream fos = new FileOutputStream(FileResponseTest.FILE);
+        try {
+            fos.write(FileResponseTest.CONTENT);
+        } finally {
+            fos.close();
+        }
+        FileResponseTest.FILE.setLastModified(1400000000000l);
+
+        Response response = FileResponseTest.get();
+        FileResponseTest.assertEquals(ResponseCode.SUCCESS_OK, response.getResponseCode(), "code");
+        FileResponseTest.assertEquals(FileResponseTest.slice(0, 99), new String(response.getBody()), "body");
+        final String etag = response.getResponseHeaders().getValue(HTTPConstants.HEADER_ETAG);
+        final String lastModified = response.getResponseHeaders().getValue(HTTPConstants.HEADER_RESPONSE_LAST_MODIFIED);
+        FileResponseTest.assertEquals("bytes", response.getResponseHeaders().getValue(HTTPConstants.HEADER_RESPONSE_ACCEPT_RANGES), "Accept-Ranges");
+
+        /* suffix ranges */
+        FileResponseTest.assertRange(FileResponseTest.get("Range", "bytes=-10"), 90, 99);
+        FileResponseTest.assertRange(FileResponseTest.get("Range", "bytes=-500"), 0, 99);
+        FileResponseTest.assertRange(FileResponseTest.get("Range", "bytes=95-"), 95, 99);
+        FileResponseTest.assertRange(FileResponseTest.get("Range", "bytes=90-500"), 90, 99);
+        /* overlapping and adjacent ranges are merged */
+        FileResponseTest.assertRange(FileResponseTest.get("Range", "bytes=5-20,0-10"), 0, 20);
+        FileResponseTest.assertRange(FileResponseTest.get("Range", "bytes=0-9,10-19"), 0, 19);
+        FileResponseTest.assertRange(FileResponseTest.get("Range", "bytes=10-19, 0-9, -85"), 0, 19 + 80);
+        /* unsatisfiable ranges are dropped */
+        FileResponseTest.assertRange(FileResponseTest.get("Range", "bytes=200-300,0-0"), 0, 0);
+
+        /* multipart, Content-Length must match the body exactly */
+        response = FileResponseTest.get("Range", "bytes=50-59,0-9,80-");
+        FileResponseTest.assertEquals(ResponseCode.SUCCESS_PARTIAL_CONTENT, response.getResponseCode(), "code");
+        final String contentType = response.getResponseHeaders().getValue(HTTPConstants.HEADER_RESPONSE_CONTENT_TYPE);
+        if (!contentType.startsWith("multipart/byteranges; boundary=")) { throw new WTFException("Content-Type: " + contentType); }
+        final String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        final String body = new String(response.getBody(), "ISO-8859-1");
+        FileResponseTest.assertEquals(response.getBody().length + "", response.getResponseHeaders().getValue(HTTPConstants.HEADER_RESPONSE_CONTENT_LENGTH), "multipart Content-Length");
+        final String[] parts = body.split("\r\n--" + boundary);
+        FileResponseTest.assertEquals(5, parts.length, "parts");
+        FileResponseTest.assertEquals("", parts[0], "preamble");
+        FileResponseTest.assertEquals("--\r\n", parts[4], "epilogue");
+        final int[][] expected = new int[][] { { 0, 9 }, { 50, 59 }, { 80, 99 } };
+        for (int i = 0; i < expected.length; i++) {
+            final String part = parts[i + 1];
+            if (part.indexOf("\r\nContent-Range: bytes " + expected[i][0] + "-" + expected[i][1] + "/100\r\n") < 0) { throw new WTFException("part " + i + ": " + part); }
+            FileResponseTest.assertEquals(FileResponseTest.slice(expected[i][0], expected[i][1]), part.substring(part.indexOf("\r\n\r\n") + 4), "part " + i);
+        }
+
+        /* nothing satisfiable */
+        response = FileResponseTest.get("Range", "bytes=100-200");
+        FileResponseTest.assertEquals(ResponseCode.ERROR_RANGE_NOT_SUPPORTED, response.getResponseCode(), "code");
+        FileResponseTest.assertEquals("bytes */100", response.getResponseHeaders().getValue(HTTPConstants.HEADER_RESPONSE_CONTENT_RANGE), "Content-Range");
+        FileResponseTest.assertEquals(0, response.getBody().length, "body");
+        /* invalid Range headers are ignored */
+        FileResponseTest.assertEquals(ResponseCode.SUCCESS_OK, FileResponseTest.get("Range", "bytes=20-10").getResponseCode(), "code");
+        FileResponseTest.assertEquals(ResponseCode.SUCCESS_OK, FileResponseTest.get("Range", "bytes=x-").getResponseCode(), "code");
+        FileResponseTest.assertEquals(ResponseCode.SUCCESS_OK, FileResponseTest.get("Range", "items=0-1").getResponseCode(), "code");
+
+        /* If-Range */
+        FileResponseTest.assertRange(FileResponseTest.get("Range", "bytes=0-4", "If-Range", etag), 0, 4);
+        FileResponseTest.assertRange(FileResponseTest.get("Range", "bytes=0-4", "If-Range", lastModified), 0, 4);
+        response = FileResponseTest.get("Range", "bytes=0-4", "If-Range", "\"other\"");
+        FileResponseTest.assertEquals(ResponseCode.SUCCESS_OK, response.getResponseCode(), "code");
+        FileResponseTest.assertEquals(100, response.getBody().length, "body");
+        response = FileResponseTest.get("Range", "bytes=0-4", "If-Range", "W/" + etag);
+        FileResponseTest.assertEquals(ResponseCode.SUCCESS_OK, response.getResponseCode(), "weak If-Range");
+        response = FileResponseTest.get("Range", "bytes=0-4", "If-Range", "Thu, 01 Jan 2009 00:00:00 GMT");
+        FileResponseTest.assertEquals(ResponseCode.SUCCESS_OK, response.getResponseCode(), "code");
+
+        /* 304 takes precedence over ranges and 416 */
+        FileResponseTest.assertEquals(ResponseCode.REDIRECT_NOT_MODIFIED, FileResponseTest.get("If-None-Match", etag).getResponseCode(), "code");
+        FileResponseTest.assertEquals(ResponseCode.REDIRECT_NOT_MODIFIED, FileResponseTest.get("If-None-Match", "W/" + etag).getResponseCode(), "weak If-None-Match");
+        FileResponseTest.assertEquals(ResponseCode.REDIRECT_NOT_MODIFIED, FileResponseTest.get("If-None-Match", "\"a\", " + etag).getResponseCode(), "code");
+        FileResponseTest.assertEquals(ResponseCode.REDIRECT_NOT_MODIFIED, FileResponseTest.get("If-None-Match", "*").getResponseCode(), "code");
+        FileResponseTest.assertEquals(ResponseCode.REDIRECT_NOT_MODIFIED, FileResponseTest.get("Range", "bytes=0-4", "If-None-Match", etag).getResponseCode(), "code");
+        FileResponseTest.assertEquals(ResponseCode.REDIRECT_NOT_MODIFIED, FileResponseTest.get("Range", "bytes=100-200", "If-None-Match", etag).getResponseCode(), "code");
+        FileResponseTest.assertEquals(ResponseCode.REDIRECT_NOT_MODIFIED, FileResponseTest.get("If-Modified-Since", lastModified).getResponseCode(), "code");
+        FileResponseTest.assertEquals(0, FileResponseTest.get("If-Modified-Since", lastModified).getBody().length, "body");
+        FileResponseTest.assertEquals(ResponseCode.SUCCESS_OK, FileResponseTest.get("If-Modified-Since", "Thu, 01 Jan 2009 00:00:00 GMT").getResponseCode(), "code");
+        /* If-None-Match wins over If-Modified-Since */
+        FileResponseTest.assertEquals(ResponseCode.SUCCESS_OK, FileResponseTest.get("If-None-Match", "\"other\"", "If-Modified-Since", lastModified).getResponseCode(), "code");
+
+        /* URL resources: the connection opened for size and date is released on 304 */
+        final int[] closed = new int[1];
+        final URL url = new URL(null, "test:/resource.txt", new URLStreamHandler() {
+
+            @Override
+            protected URLConnection openConnection(final URL u) throws IOException {
+                return new URLConnection(u) {
+
+                    @Override
+                    public void connect() throws IOException {
+                    }
+
+                    @Override
+                    public long getContentLengthLong() {
+                        return FileResponseTest.CONTENT.length;
+                    }
+
+                    @Override
+                    public InputStream getInputStream() throws IOException {
+                        return new ByteArrayInputStream(FileResponseTest.CONTENT) {
+
+                            @Override
+                            public void close() throws IOException {
+                                closed[0]++;
+                            }
+                        };
+                    }
+
+                    @Override
+                    public long getLastModified() {
+                        return 1400000000000l;
+                    }
+                };
+            }
+        });
+        response = new Response();
+        new FileResponse(new Request(), response, url).sendFile();
+        FileResponseTest.assertEquals(ResponseCode.SUCCESS_OK, response.getResponseCode(), "code");
+        FileResponseTest.assertEquals(1, closed[0], "closed");
+        response = new Response();
+        new FileResponse(new Request("If-None-Match", etag), response, url).sendFile();
+        FileResponseTest.assertEquals(ResponseCode.REDIRECT_NOT_MODIFIED, response.getResponseCode(), "code");
+        FileResponseTest.assertEquals(2, closed[0], "closed");
+        System.out.println("OK");
+    }
+
+    private static String slice(final int start, final int end) {
+        return new String(FileResponseTest.CONTENT, start, end - start + 1);
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.utils.net.test;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.appwork.exceptions.WTFException;
+import org.appwork.utils.net.HTTPHeader;
+import org.appwork.utils.net.HeaderCollection;
+import org.appwork.utils.net.httpconnection.HTTPConnectionUtils;
+
+/**
+ * indexed lookups, snapshot iteration and reindexing after removal of HeaderCollection, and header parsing
+ * 
+ * @author thomas
+ * 
+ */
+public class HeaderCollectionTest {
+    private static void assertEquals(final Object expected, final Object value, final String message) {
+        if (expected == null ? value != null : !expected.equals(value)) { throw new WTFException(message + ": " + value + " != " + expected); }
+    }
+
+    private static void assertOrder(final HeaderCollection headers, final String... keys) {
+        HeaderCollectionTest.assertEquals(keys.length, headers.size(), "size");
+        final Iterator<HTTPHeader> it = headers.iterator();
+        for (int i = 0; i < keys.length; i++) {
+            HeaderCollectionTest.assertEquals(keys[i], it.next().getKey(), "order " + i);
+            HeaderCollectionTest.assertEquals(keys[i], headers.get(i).getKey(), "get(" + i + ")");
+        }
+        if (it.hasNext()) { throw new WTFException("iterator returns more than " + keys.length); }
+    }
+
+    public static void main(final String[] args) {
+        /* case insensitive index, starts small and grows */
+        HeaderCollection headers = new HeaderCollection(1);
+        for (int i = 0; i < 100; i++) {
+            headers.add(new HTTPHeader("X-Header-" + i, "" + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            HeaderCollectionTest.assertEquals("" + i, headers.getValue("x-HEADER-" + i), "lookup");
+        }
+        HeaderCollectionTest.assertEquals(null, headers.get("X-Header-100"), "missing");
+        HeaderCollectionTest.assertEquals(null, headers.get((String) null), "null key");
+
+        /* first header wins unless it may be overwritten, Set-Cookie may occur several times */
+        headers = new HeaderCollection();
+        headers.add(new HTTPHeader("Content-Type", "text/plain", false));
+        headers.add(new HTTPHeader("content-type", "text/html"));
+        HeaderCollectionTest.assertEquals("text/plain", headers.getValue("Content-Type"), "not overwritable");
+        headers.add(new HTTPHeader("Server", "a"));
+        headers.add(new HTTPHeader("SERVER", "b"));
+        HeaderCollectionTest.assertEquals("b", headers.getValue("server"), "overwritten");
+        headers.add(new HTTPHeader("Set-Cookie", "a=1"));
+        headers.add(new HTTPHeader("X-Between", "x"));
+        headers.add(new HTTPHeader("set-cookie", "b=2"));
+        headers.add(new HTTPHeader(null, "no name"));
+        HeaderCollectionTest.assertOrder(headers, "Content-Type", "SERVER", "Set-Cookie", "X-Between", "set-cookie", null);
+        final List<HTTPHeader> cookies = headers.getAll("SET-COOKIE");
+        HeaderCollectionTest.assertEquals(2, cookies.size(), "getAll");
+        HeaderCollectionTest.assertEquals("a=1", cookies.get(0).getValue(), "getAll");
+        HeaderCollectionTest.assertEquals("b=2", cookies.get(1).getValue(), "getAll");
+
+        /* iterators work on a snapshot */
+        final Iterator<HTTPHeader> it = headers.iterator();
+        it.next();
+        headers.remove("Content-Type");
+        headers.add(new HTTPHeader("X-Added", "1"));
+        int count = 1;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        HeaderCollectionTest.assertEquals(6, count, "snapshot");
+        for (final HTTPHeader header : headers) {
+            /* modifications during iteration are allowed */
+            if ("X-Added".equals(header.getKey())) {
+                headers.remove(header);
+            }
+        }
+        HeaderCollectionTest.assertOrder(headers, "SERVER", "Set-Cookie", "X-Between", "set-cookie", null);
+
+        /* removal moves the following headers and reindexes them */
+        headers.remove("Set-Cookie");
+        HeaderCollectionTest.assertOrder(headers, "SERVER", "X-Between", "set-cookie", null);
+        HeaderCollectionTest.assertEquals("b=2", headers.getValue("Set-Cookie"), "next duplicate indexed");
+        HeaderCollectionTest.assertEquals("x", headers.getValue("x-between"), "moved header indexed");
+        HeaderCollectionTest.assertEquals(true, headers.remove(headers.get(0)), "remove header");
+        HeaderCollectionTest.assertEquals(null, headers.get("Server"), "removed");
+        HeaderCollectionTest.assertEquals(false, headers.remove("Server"), "remove missing");
+        HeaderCollectionTest.assertEquals(true, headers.remove(new HTTPHeader("X-BETWEEN", null)), "remove by name");
+        HeaderCollectionTest.assertOrder(headers, "set-cookie", null);
+        headers.add(new HTTPHeader("Set-Cookie", "c=3"));
+        HeaderCollectionTest.assertEquals(2, headers.getAll("Set-Cookie").size(), "getAll after remove");
+
+        /* clone is independent */
+        final HeaderCollection clone = headers.clone();
+        clone.remove("Set-Cookie");
+        HeaderCollectionTest.assertEquals("b=2", headers.getValue("Set-Cookie"), "clone");
+        HeaderCollectionTest.assertEquals("c=3", clone.getValue("Set-Cookie"), "clone");
+        headers.clear();
+        HeaderCollectionTest.assertOrder(headers);
+        HeaderCollectionTest.assertEquals(null, headers.get("Set-Cookie"), "clear");
+
+        /* parsing, \n only lines, missing space after the colon, lines without name, chars beyond ISO-8859-1 are kept */
+        final String block = "Content-Type: text/plain\r\nX-Buggy:value \nstatus line\r\nX-Name: ä€\r\n\r\n";
+        for (final String text : new String[] { block, block.replace('€', 'e') }) {
+            final List<HTTPHeader> parsed = HTTPConnectionUtils.parseHeaders(text, true);
+            HeaderCollectionTest.assertEquals(4, parsed.size(), "parsed");
+            HeaderCollectionTest.assertEquals("Content-Type", parsed.get(0).getKey(), "key");
+            HeaderCollectionTest.assertEquals("text/plain", parsed.get(0).getValue(), "value");
+            HeaderCollectionTest.assertEquals("X-Buggy", parsed.get(1).getKey(), "key");
+            HeaderCollectionTest.assertEquals("value", parsed.get(1).getValue(), "value");
+            HeaderCollectionTest.assertEquals(null, parsed.get(2).getKey(), "key");
+            HeaderCollectionTest.assertEquals("status line", parsed.get(2).getValue(), "value");
+            HeaderCollectionTest.assertEquals("X-Name", parsed.get(3).getKey(), "key");
+        }
+        HeaderCollectionTest.assertEquals("ä€", HTTPConnectionUtils.parseHeaders(block, true).get(3).getValue(), "non ISO-8859-1");
+        HeaderCollectionTest.assertEquals("äe", HTTPConnectionUtils.parseHeaders(block.replace('€', 'e'), true).get(3).getValue(), "ISO-8859-1");
+        System.out.println("OK");
+    }
+}
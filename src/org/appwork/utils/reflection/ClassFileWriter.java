@@ -0,0 +1,245 @@
+/**
+ *
+ * ====================================================================================================================================================
+ *         "AppWork Utilities" License
+ *         The "AppWork Utilities" will be called [The Product] from now on.
+ * ====================================================================================================================================================
+ *         Copyright (c) 2009-2015, AppWork GmbH <e-mail@appwork.org>
+ *         Schwabacher Straße 117
+ *         90763 Fürth
+ *         Germany
+ * === Preamble ===
+ *     This license establishes the terms under which the [The Product] Source Code & Binary files may be used, copied, modified, distributed, and/or redistributed.
+ *     The intent is that the AppWork GmbH is able to provide their utilities library for free to non-commercial projects whereas commercial usage is only permitted after obtaining a commercial license.
+ *     These terms apply to all files that have the [The Product] License header (IN the file), a <filename>.license or <filename>.info (like mylib.jar.info) file that contains a reference to this license.
+ *
+ * === 3rd Party Licences ===
+ *     Some parts of the [The Product] use or reference 3rd party libraries and classes. These parts may have different licensing conditions. Please check the *.license and *.info files of included libraries
+ *     to ensure that they are compatible to your use-case. Further more, some *.java have their own license. In this case, they have their license terms in the java file header.
+ *
+ * === Definition: Commercial Usage ===
+ *     If anybody or any organization is generating income (directly or indirectly) by using [The Product] or if there's any commercial interest or aspect in what you are doing, we consider this as a commercial usage.
+ *     If your use-case is neither strictly private nor strictly educational, it is commercial. If you are unsure whether your use-case is commercial or not, consider it as commercial or contact us.
+ * === Dual Licensing ===
+ * === Commercial Usage ===
+ *     If you want to use [The Product] in a commercial way (see definition above), you have to obtain a paid license from AppWork GmbH.
+ *     Contact AppWork for further details: <e-mail@appwork.org>
+ * === Non-Commercial Usage ===
+ *     If there is no commercial usage (see definition above), you may use [The Product] under the terms of the
+ *     "GNU Affero General Public License" (http://www.gnu.org/licenses/agpl-3.0.en.html).
+ *
+ *     If the AGPL does not fit your needs, please contact us. We'll find a solution.
+ * ====================================================================================================================================================
+ * ==================================================================================================================================================== */
+package org.appwork.utils.reflection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+
+/**
+ * Minimal class file writer for the classes that are generated at runtime, eg by
+ * {@link org.appwork.storage.config.handler.ConfigInterfaceGenerator}. The generated code has no branches, so neither a
+ * StackMapTable nor exception tables are required
+ *
+ * @author thomas
+ *
+ */
+public class ClassFileWriter {
+    public static class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final int                   maxStack;
+        private final int                   maxLocals;
+
+        public Code(final int maxStack, final int maxLocals) {
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        public Code op(final int opcode) {
+            this.bytes.write(opcode);
+            return this;
+        }
+
+        public Code op(final int opcode, final int index) {
+            this.bytes.write(opcode);
+            this.bytes.write(index >> 8 & 0xff);
+            this.bytes.write(index & 0xff);
+            return this;
+        }
+
+        public Code push(final int value) {
+            if (value <= 5) {
+                /* iconst_<n> */
+                return this.op(0x03 + value);
+            } else if (value <= Byte.MAX_VALUE) {
+                this.bytes.write(0x10);
+                this.bytes.write(value);
+                return this;
+            } else {
+                /* sipush */
+                return this.op(0x11, value);
+            }
+        }
+    }
+
+    public static String getInternalName(final Class<?> type) {
+        /* works for arrays as well, eg [Ljava/lang/String; */
+        return type.getName().replace('.', '/');
+    }
+
+    public static String getDescriptor(final Class<?> type) {
+        if (type == void.class) {
+            return "V";
+        } else if (type == boolean.class) {
+            return "Z";
+        } else if (type == byte.class) {
+            return "B";
+        } else if (type == char.class) {
+            return "C";
+        } else if (type == short.class) {
+            return "S";
+        } else if (type == int.class) {
+            return "I";
+        } else if (type == long.class) {
+            return "J";
+        } else if (type == float.class) {
+            return "F";
+        } else if (type == double.class) {
+            return "D";
+        } else if (type.isArray()) {
+            return getInternalName(type);
+        } else {
+            return "L" + getInternalName(type) + ";";
+        }
+    }
+
+    public static String getDescriptor(final Method m) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("(");
+        for (final Class<?> p : m.getParameterTypes()) {
+            sb.append(getDescriptor(p));
+        }
+        sb.append(")");
+        sb.append(getDescriptor(m.getReturnType()));
+        return sb.toString();
+    }
+
+    private final ByteArrayOutputStream    poolBytes  = new ByteArrayOutputStream();
+    private final DataOutputStream         pool       = new DataOutputStream(this.poolBytes);
+    private final HashMap<String, Integer> entries    = new HashMap<String, Integer>();
+    private int                            poolSize   = 1;
+    private final ByteArrayOutputStream    fieldBytes = new ByteArrayOutputStream();
+    private final DataOutputStream         fields     = new DataOutputStream(this.fieldBytes);
+    private int                            fieldCount;
+    private final ByteArrayOutputStream    bodyBytes  = new ByteArrayOutputStream();
+    private final DataOutputStream         body       = new DataOutputStream(this.bodyBytes);
+    private int                            methodCount;
+
+    private int utf8(final String value) throws IOException {
+        final String id = "U" + value;
+        Integer ret = this.entries.get(id);
+        if (ret == null) {
+            this.pool.writeByte(1);
+            this.pool.writeUTF(value);
+            ret = this.poolSize++;
+            this.entries.put(id, ret);
+        }
+        return ret;
+    }
+
+    private int entry(final int tag, final String id, final int a, final int b) throws IOException {
+        Integer ret = this.entries.get(id);
+        if (ret == null) {
+            this.pool.writeByte(tag);
+            this.pool.writeShort(a);
+            if (b >= 0) {
+                this.pool.writeShort(b);
+            }
+            ret = this.poolSize++;
+            this.entries.put(id, ret);
+        }
+        return ret;
+    }
+
+    public int classRef(final String internalName) throws IOException {
+        return this.entry(7, "C" + internalName, this.utf8(internalName), -1);
+    }
+
+    private int nameAndType(final String name, final String desc) throws IOException {
+        return this.entry(12, "N" + name + " " + desc, this.utf8(name), this.utf8(desc));
+    }
+
+    public int fieldRef(final String owner, final String name, final String desc) throws IOException {
+        return this.entry(9, "F" + owner + " " + name + " " + desc, this.classRef(owner), this.nameAndType(name, desc));
+    }
+
+    public int methodRef(final String owner, final String name, final String desc) throws IOException {
+        return this.entry(10, "M" + owner + " " + name + " " + desc, this.classRef(owner), this.nameAndType(name, desc));
+    }
+
+    public void field(final String name, final String desc) throws IOException {
+        /* private final */
+        this.fields.writeShort(0x0012);
+        this.fields.writeShort(this.utf8(name));
+        this.fields.writeShort(this.utf8(desc));
+        this.fields.writeShort(0);
+        this.fieldCount++;
+    }
+
+    public void method(final String name, final String desc, final Code code) throws IOException {
+        final byte[] bytes = code.bytes.toByteArray();
+        /* public */
+        this.body.writeShort(0x0001);
+        this.body.writeShort(this.utf8(name));
+        this.body.writeShort(this.utf8(desc));
+        this.body.writeShort(1);
+        this.body.writeShort(this.utf8("Code"));
+        this.body.writeInt(12 + bytes.length);
+        this.body.writeShort(code.maxStack);
+        this.body.writeShort(code.maxLocals);
+        this.body.writeInt(bytes.length);
+        this.body.write(bytes);
+        /* exception table and attributes */
+        this.body.writeShort(0);
+        this.body.writeShort(0);
+        this.methodCount++;
+    }
+
+    public byte[] toByteArray(final String name, final String superName, final String... interfaceNames) throws IOException {
+        final int thisIndex = this.classRef(name);
+        final int superIndex = this.classRef(superName);
+        final int[] interfaceIndices = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaceIndices[i] = this.classRef(interfaceNames[i]);
+        }
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bos);
+        out.writeInt(0xCAFEBABE);
+        /* java 5 class file */
+        out.writeShort(0);
+        out.writeShort(49);
+        out.writeShort(this.poolSize);
+        this.pool.flush();
+        this.poolBytes.writeTo(out);
+        /* public final super */
+        out.writeShort(0x0031);
+        out.writeShort(thisIndex);
+        out.writeShort(superIndex);
+        out.writeShort(interfaceIndices.length);
+        for (final int index : interfaceIndices) {
+            out.writeShort(index);
+        }
+        out.writeShort(this.fieldCount);
+        this.fields.flush();
+        this.fieldBytes.writeTo(out);
+        out.writeShort(this.methodCount);
+        this.body.flush();
+        this.bodyBytes.writeTo(out);
+        out.writeShort(0);
+        out.flush();
+        return bos.toByteArray();
+    }
+}